@@ -1,19 +1,90 @@
 package cn.darkjrong.hdfs;
 
+import cn.darkjrong.hdfs.archive.ArchiveFormat;
+import cn.darkjrong.hdfs.archive.ArchiveIngester;
+import cn.darkjrong.hdfs.archive.IngestManifest;
+import cn.darkjrong.hdfs.audit.AuditReport;
+import cn.darkjrong.hdfs.audit.ChecksumAuditor;
+import cn.darkjrong.hdfs.buffer.BufferPool;
+import cn.darkjrong.hdfs.compact.CompactResult;
+import cn.darkjrong.hdfs.compact.SmallFileCompactor;
+import cn.darkjrong.hdfs.copy.ClusterCopier;
+import cn.darkjrong.hdfs.copy.CopyOptions;
+import cn.darkjrong.hdfs.copy.CopyResult;
+import cn.darkjrong.hdfs.dedup.ContentStore;
+import cn.darkjrong.hdfs.dedup.DedupResult;
 import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.darkjrong.hdfs.index.IndexQuery;
+import cn.darkjrong.hdfs.index.IndexedFile;
+import cn.darkjrong.hdfs.index.NamespaceIndex;
+import cn.darkjrong.hdfs.inotify.ChangeEvent;
+import cn.darkjrong.hdfs.inotify.ChangeFeed;
+import cn.darkjrong.hdfs.jfr.JfrRecorder;
+import cn.darkjrong.hdfs.locality.BlockSplit;
+import cn.darkjrong.hdfs.locality.LocalityPlanner;
+import cn.darkjrong.hdfs.pack.PackKey;
+import cn.darkjrong.hdfs.pack.PackReader;
+import cn.darkjrong.hdfs.pack.PackWriter;
+import cn.darkjrong.hdfs.reader.PrefetchInputStream;
+import cn.darkjrong.hdfs.replication.ReplicationResult;
+import cn.darkjrong.hdfs.replication.SnapshotReplicator;
+import cn.darkjrong.hdfs.spool.SpoolUploader;
+import cn.darkjrong.hdfs.support.AdaptiveLimiter;
+import cn.darkjrong.hdfs.support.Bulkhead;
+import cn.darkjrong.hdfs.support.CircuitBreaker;
+import cn.darkjrong.hdfs.support.LimitedExecutor;
+import cn.darkjrong.hdfs.support.OperationInvoker;
+import cn.darkjrong.hdfs.support.SingleFlight;
+import cn.darkjrong.hdfs.support.Throttle;
+import cn.darkjrong.hdfs.support.TokenBucket;
+import cn.darkjrong.hdfs.tiering.StorageTiering;
+import cn.darkjrong.hdfs.tiering.TieringResult;
+import cn.darkjrong.hdfs.tiering.TieringRule;
+import cn.darkjrong.hdfs.usage.DirectoryUsage;
+import cn.darkjrong.hdfs.usage.UsageCache;
+import cn.darkjrong.hdfs.usage.UsageOrder;
+import cn.darkjrong.hdfs.writer.RollingWriter;
+import cn.darkjrong.spring.boot.autoconfigure.HdfsProperties;
 import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.exceptions.ExceptionUtil;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.lang.Assert;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
 import org.apache.hadoop.fs.*;
 import org.apache.hadoop.fs.permission.AclEntry;
 import org.apache.hadoop.fs.permission.AclStatus;
 import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.DFSHedgedReadMetrics;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.IOException;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * hdfs 操作
@@ -24,9 +95,68 @@ import java.util.List;
 public class HdfsTemplate {
 
     private static final Logger logger = LoggerFactory.getLogger(HdfsTemplate.class);
-    private final FileSystem fileSystem;
+    private final Supplier<FileSystem> fileSystemSupplier;
+    private final Object fileSystemLock = new Object();
+    private volatile FileSystem fileSystem;
+    private final HdfsProperties hdfsProperties;
+    private final BufferPool bufferPool;
+    private final Throttle throttle;
+    private final OperationInvoker invoker;
+    private final SingleFlight singleFlight;
+    private final TokenBucket auditLimiter;
+    private final TokenBucket tieringLimiter;
+    private volatile PackReader packReader;
+    private volatile LimitedExecutor executor;
+    private volatile SpoolUploader spoolUploader;
+    private volatile Thread spoolRecovery;
+    private volatile ExecutorService prefetchExecutor;
+    private volatile UsageCache usageCache;
+    private final Object indexLock = new Object();
+    private volatile NamespaceIndex namespaceIndex;
+    private final List<ChangeFeed> changeFeeds = new CopyOnWriteArrayList<>();
+
     public HdfsTemplate(FileSystem fileSystem) {
-        this.fileSystem = fileSystem;
+        this(fileSystem, new HdfsProperties());
+    }
+
+    public HdfsTemplate(FileSystem fileSystem, HdfsProperties hdfsProperties) {
+        this(() -> fileSystem, hdfsProperties);
+    }
+
+    /**
+     * 延迟创建文件系统, 首次访问HDFS时才调用 fileSystemSupplier, 避免NameNode不可用时阻塞应用启动
+     *
+     * @param fileSystemSupplier 文件系统提供者
+     * @param hdfsProperties     配置
+     */
+    public HdfsTemplate(Supplier<FileSystem> fileSystemSupplier, HdfsProperties hdfsProperties) {
+        this.fileSystemSupplier = fileSystemSupplier;
+        this.hdfsProperties = hdfsProperties;
+        HdfsProperties.Buffer buffer = hdfsProperties.getBuffer();
+        this.bufferPool = new BufferPool(buffer.getBufferSize(), buffer.getCapacity(), buffer.getSlabSize(),
+                buffer.getAcquireTimeout().toMillis());
+        HdfsProperties.Throttle throttle = hdfsProperties.getThrottle();
+        this.throttle = new Throttle(throttle.getMetadataOpsPerSecond(), throttle.getDataOpsPerSecond(),
+                throttle.getBytesPerSecond(), throttle.getBurst().toMillis() / 1000.0, throttle.getDefaultPriority());
+        HdfsProperties.Bulkhead bulkhead = hdfsProperties.getBulkhead();
+        this.invoker = new OperationInvoker(hdfsProperties.getTimeout().toMillis(), hdfsProperties.getDataTimeout().toMillis(),
+                hdfsProperties.getHedge().getMetadataDelay().toMillis(), this.throttle,
+                new Bulkhead(bulkhead.getMetadataConcurrency(), bulkhead.getDataConcurrency(),
+                        bulkhead.getMaxWait().toMillis()), createCircuitBreaker(hdfsProperties.getCircuitBreaker()));
+        this.singleFlight = hdfsProperties.isCoalesce() ? new SingleFlight() : null;
+        double filesPerSecond = hdfsProperties.getAudit().getFilesPerSecond();
+        this.auditLimiter = filesPerSecond > 0 ? new TokenBucket(filesPerSecond, filesPerSecond) : null;
+        filesPerSecond = hdfsProperties.getTiering().getFilesPerSecond();
+        this.tieringLimiter = filesPerSecond > 0 ? new TokenBucket(filesPerSecond, filesPerSecond) : null;
+        if (!hdfsProperties.isLazyInit()) {
+            getFileSystem();
+        }
+        if (hdfsProperties.getSpool().isEnabled()) {
+            recoverSpool();
+        }
+        if (hdfsProperties.getWarmUp().isEnabled() || hdfsProperties.getIndex().isEnabled()) {
+            warmUp();
+        }
     }
 
     /**
@@ -40,7 +170,8 @@ public class HdfsTemplate {
         Assert.notBlank(dirOrFile, "目录不能为空");
         Path path = new Path(dirOrFile);
         try {
-            return fileSystem.exists(path);
+            return coalesce("exist", new Object[]{dirOrFile},
+                    () -> invoker.callHedged("exist", dirOrFile, () -> getFileSystem().exists(path)));
         } catch (Exception e) {
             logger.error("exist {}", e.getMessage());
         }
@@ -68,7 +199,7 @@ public class HdfsTemplate {
         Assert.notBlank(directory, "目录不能为空");
         Path path = new Path(directory);
         try {
-            return fileSystem.mkdirs(path, permission);
+            return invoker.call("mkdirs", directory, () -> getFileSystem().mkdirs(path, permission));
         } catch (Exception e) {
             logger.error("mkdirs {}", e.getMessage());
         }
@@ -81,18 +212,113 @@ public class HdfsTemplate {
      */
     public void close() {
         try {
-            fileSystem.close();
+            changeFeeds.forEach(ChangeFeed::close);
+            if (ObjectUtil.isNotNull(namespaceIndex)) {
+                namespaceIndex.close();
+            }
+            if (ObjectUtil.isNotNull(usageCache)) {
+                usageCache.close();
+            }
+            if (ObjectUtil.isNotNull(packReader)) {
+                packReader.close();
+            }
+            if (ObjectUtil.isNotNull(executor)) {
+                executor.shutdownNow();
+            }
+            if (ObjectUtil.isNotNull(prefetchExecutor)) {
+                prefetchExecutor.shutdownNow();
+            }
+            if (ObjectUtil.isNotNull(spoolRecovery)) {
+                spoolRecovery.interrupt();
+            }
+            if (ObjectUtil.isNotNull(spoolUploader)) {
+                spoolUploader.close();
+            }
+            invoker.close();
+            if (ObjectUtil.isNotNull(fileSystem)) {
+                fileSystem.close();
+            }
         } catch (Exception e) {
             logger.error("close {}", e.getMessage());
         }
     }
 
+    /**
+     * 获取文件系统, 首次调用时创建, 创建失败时下次调用重试
+     *
+     * @return {@link FileSystem}
+     * @throws HdfsException 创建异常
+     */
+    public FileSystem getFileSystem() throws HdfsException {
+        FileSystem current = fileSystem;
+        if (ObjectUtil.isNotNull(current)) {
+            return current;
+        }
+        synchronized (fileSystemLock) {
+            if (ObjectUtil.isNull(fileSystem)) {
+                try {
+                    FileSystem created = fileSystemSupplier.get();
+                    Assert.notNull(created, "文件系统不能为空");
+                    fileSystem = created;
+                } catch (Exception e) {
+                    logger.error("getFileSystem {}", e.getMessage());
+                    throw e instanceof HdfsException ? (HdfsException) e : new HdfsException(e);
+                }
+            }
+            return fileSystem;
+        }
+    }
+
+    /**
+     * 后台预热: 创建文件系统并访问根目录以建立连接、解析HA代理, 然后预取 hdfs.warm-up.paths 的元数据,
+     * 开启本地命名空间索引时构建索引; 不阻塞调用线程, 失败只记录日志
+     *
+     * @return 预热结果, 全部成功时为true
+     */
+    public CompletableFuture<Boolean> warmUp() {
+        HdfsProperties.WarmUp warmUp = hdfsProperties.getWarmUp();
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        ThreadUtil.newThread(() -> {
+            try {
+                ThreadUtil.sleep(warmUp.getDelay().toMillis());
+                long start = System.currentTimeMillis();
+                invoker.call("getFileStatus", StrUtil.SLASH, () -> getFileSystem().getFileStatus(new Path(StrUtil.SLASH)));
+                boolean primed = Boolean.TRUE;
+                if (warmUp.isEnabled()) {
+                    for (String path : warmUp.getPaths()) {
+                        try {
+                            if (getFileLinkStatus(path).isDirectory()) {
+                                listStatus(path);
+                            }
+                        } catch (Exception e) {
+                            primed = Boolean.FALSE;
+                        }
+                    }
+                }
+                if (hdfsProperties.getIndex().isEnabled()) {
+                    try {
+                        buildIndex();
+                    } catch (Exception e) {
+                        logger.error("buildIndex {}", e.getMessage());
+                        primed = Boolean.FALSE;
+                    }
+                }
+                logger.info("hdfs warm-up finished in {} ms", System.currentTimeMillis() - start);
+                future.complete(primed);
+            } catch (Exception e) {
+                logger.error("warmUp {}", e.getMessage());
+                future.complete(Boolean.FALSE);
+            }
+        }, "hdfs-warm-up", Boolean.TRUE).start();
+        return future;
+    }
+
     /**
      * 返回当前用户在文件系统中的家目录
      * @return 目录
      */
     public Path getHomeDirectory() {
-        return fileSystem.getHomeDirectory();
+        return getFileSystem().getHomeDirectory();
     }
 
     /**
@@ -100,7 +326,7 @@ public class HdfsTemplate {
      * @return 协议
      */
     public String getScheme() {
-        return fileSystem.getScheme();
+        return getFileSystem().getScheme();
     }
 
     /**
@@ -128,7 +354,7 @@ public class HdfsTemplate {
     private Boolean upload(String src, String target, boolean delSrc, boolean overwrite) {
         Assert.isTrue(FileUtil.exist(src), String.format("待上传文件不存在, fileName : %s", src));
         try {
-            fileSystem.copyFromLocalFile(delSrc, overwrite, new Path(src), new Path(target));
+            invoker.run("upload", target, () -> transferToHdfs(src, target, delSrc, overwrite));
             return Boolean.TRUE;
         } catch (Exception e) {
             logger.error("upload {}", e.getMessage());
@@ -198,7 +424,7 @@ public class HdfsTemplate {
         }
 
         try {
-            fileSystem.concat(new Path(target), paths);
+            invoker.run("concat", target, () -> getFileSystem().concat(new Path(target), paths));
             return Boolean.TRUE;
         } catch (Exception e) {
             logger.error("concat {}", e.getMessage());
@@ -219,7 +445,10 @@ public class HdfsTemplate {
                              boolean useRawLocalFileSystem) throws HdfsException {
         Assert.isTrue(exist(src), String.format("HDFS中不存在该文件, fileName: %s", src));
         try {
-            fileSystem.copyToLocalFile(delSrc, new Path(src), new Path(target), useRawLocalFileSystem);
+            coalesce("download", new Object[]{src, target, delSrc, useRawLocalFileSystem}, () -> {
+                invoker.run("download", src, () -> transferToLocal(src, target, delSrc, useRawLocalFileSystem));
+                return null;
+            });
         } catch (Exception e) {
             logger.error("download {}", e.getMessage());
             throw new HdfsException(e);
@@ -280,7 +509,7 @@ public class HdfsTemplate {
      */
     public Boolean createNewFile(String file) {
         try {
-            return fileSystem.createNewFile(new Path(file));
+            return invoker.call("createNewFile", file, () -> getFileSystem().createNewFile(new Path(file)));
         } catch (Exception e) {
             logger.error("createNewFile {}", e.getMessage());
         }
@@ -297,7 +526,7 @@ public class HdfsTemplate {
      */
     public Path createSnapshot(String file, String snapshotName) throws HdfsException {
         try {
-            return fileSystem.createSnapshot(new Path(file), snapshotName);
+            return invoker.call("createSnapshot", file, () -> getFileSystem().createSnapshot(new Path(file), snapshotName));
         } catch (Exception e) {
             logger.error("createSnapshot {}", e.getMessage());
             throw new HdfsException(e);
@@ -324,7 +553,7 @@ public class HdfsTemplate {
      */
     public FileStatus getFileLinkStatus(String file) throws HdfsException{
         try {
-            return fileSystem.getFileLinkStatus(new Path(file));
+            return invoker.callHedged("getFileLinkStatus", file, () -> getFileSystem().getFileLinkStatus(new Path(file)));
         } catch (Exception e) {
             logger.error("getFileStatus {}", e.getMessage());
             throw new HdfsException(e);
@@ -341,7 +570,7 @@ public class HdfsTemplate {
     public Boolean delete(String dirOrFile, boolean recursive) {
         Assert.isTrue(exist(dirOrFile), String.format("待删除目录/文件不存在, directory : %s", dirOrFile));
         try {
-            return fileSystem.delete(new Path(dirOrFile), recursive);
+            return invoker.call("delete", dirOrFile, () -> getFileSystem().delete(new Path(dirOrFile), recursive));
         } catch (Exception e) {
             logger.error("delete {}", e.getMessage());
         }
@@ -367,7 +596,7 @@ public class HdfsTemplate {
      */
     public Boolean deleteOnExit(String dirOrFile) {
         try {
-            return fileSystem.deleteOnExit(new Path(dirOrFile));
+            return invoker.call("deleteOnExit", dirOrFile, () -> getFileSystem().deleteOnExit(new Path(dirOrFile)));
         } catch (Exception e) {
             logger.error("deleteOnExit {}", e.getMessage());
         }
@@ -383,7 +612,7 @@ public class HdfsTemplate {
      */
     public Boolean deleteSnapshot(String file, String snapshotName) {
         try {
-            fileSystem.deleteSnapshot(new Path(file), snapshotName);
+            invoker.run("deleteSnapshot", file, () -> getFileSystem().deleteSnapshot(new Path(file), snapshotName));
             return Boolean.TRUE;
         } catch (Exception e) {
             logger.error("deleteSnapshot {}", e.getMessage());
@@ -409,7 +638,7 @@ public class HdfsTemplate {
      */
     public AclStatus getAclStatus(String path) throws HdfsException {
         try {
-            return fileSystem.getAclStatus(new Path(path));
+            return invoker.call("getAclStatus", path, () -> getFileSystem().getAclStatus(new Path(path)));
         } catch (Exception e) {
             logger.error("getAclStatus {}", e.getMessage());
             throw new HdfsException(e);
@@ -424,7 +653,8 @@ public class HdfsTemplate {
      */
     public ContentSummary getContentSummary(String path) throws HdfsException {
         try {
-            return fileSystem.getContentSummary(new Path(path));
+            return coalesce("getContentSummary", new Object[]{path},
+                    () -> invoker.call("getContentSummary", path, () -> getFileSystem().getContentSummary(new Path(path))));
         } catch (Exception e) {
             logger.error("getContentSummary {}", e.getMessage());
             throw new HdfsException(e);
@@ -438,7 +668,7 @@ public class HdfsTemplate {
      * @return int 数目
      */
     public int getDefaultReplication(String path) {
-        return fileSystem.getDefaultReplication(new Path(path));
+        return getFileSystem().getDefaultReplication(new Path(path));
     }
 
     /**
@@ -450,7 +680,7 @@ public class HdfsTemplate {
      */
     public FileChecksum getFileChecksum(String path) throws HdfsException {
         try {
-            return fileSystem.getFileChecksum(new Path(path));
+            return invoker.call("getFileChecksum", path, () -> getFileSystem().getFileChecksum(new Path(path)));
         } catch (Exception e) {
             logger.error("getFileChecksum {}", e.getMessage());
             throw new HdfsException(e);
@@ -466,7 +696,7 @@ public class HdfsTemplate {
      */
     public FsStatus getStatus(String path) throws HdfsException {
         try {
-            return fileSystem.getStatus(new Path(path));
+            return invoker.call("getStatus", path, () -> getFileSystem().getStatus(new Path(path)));
         } catch (Exception e) {
             logger.error("getStatus {}", e.getMessage());
             throw new HdfsException(e);
@@ -490,7 +720,7 @@ public class HdfsTemplate {
      */
     public Long getUsed() {
         try {
-            return fileSystem.getUsed();
+            return invoker.call("getUsed", StrUtil.SLASH, () -> getFileSystem().getUsed());
         } catch (Exception e) {
             logger.error("getUsed {}", e.getMessage());
         }
@@ -504,7 +734,7 @@ public class HdfsTemplate {
      * @return {@link String}
      */
     public String getWorkingDirectory() {
-        return fileSystem.getWorkingDirectory().toString();
+        return getFileSystem().getWorkingDirectory().toString();
     }
 
     /**
@@ -517,7 +747,8 @@ public class HdfsTemplate {
     public List<FileStatus> listStatus(String directory) throws HdfsException {
         Assert.isTrue(exist(directory), String.format("目录不存在, directory:  %s", directory));
         try {
-            return CollectionUtil.newArrayList(fileSystem.listStatus(new Path(directory)));
+            return CollectionUtil.newArrayList(invoker.callHedged("listStatus", directory,
+                    () -> getFileSystem().listStatus(new Path(directory))));
         } catch (Exception e) {
             logger.error("listStatus {}", e.getMessage());
             throw new HdfsException(e);
@@ -549,8 +780,9 @@ public class HdfsTemplate {
             files[i] = new Path(fileList.get(i));
         }
         try {
-            return CollectionUtil.newArrayList(fileSystem.listStatus(files, filter));
-        } catch (IOException e) {
+            return CollectionUtil.newArrayList(invoker.call("listStatus", StrUtil.join(StrUtil.COMMA, fileList),
+                    () -> getFileSystem().listStatus(files, filter)));
+        } catch (Exception e) {
             logger.error("listStatus {}", e.getMessage());
             throw new HdfsException(e);
         }
@@ -577,7 +809,7 @@ public class HdfsTemplate {
 
         Assert.isTrue(exist(path), String.format("文件不存在, fileName : %s", path));
         try {
-            return fileSystem.listXAttrs(new Path(path));
+            return invoker.call("listXAttrs", path, () -> getFileSystem().listXAttrs(new Path(path)));
         } catch (Exception e) {
             logger.error("listXAttrs {}", e.getMessage());
             throw new HdfsException(e);
@@ -594,7 +826,7 @@ public class HdfsTemplate {
     public Boolean modifyAclEntries(String path, List<AclEntry> aclSpec) {
         Assert.isTrue(exist(path), String.format("文件不存在, fileName : %s", path));
         try {
-            fileSystem.modifyAclEntries(new Path(path), aclSpec);
+            invoker.run("modifyAclEntries", path, () -> getFileSystem().modifyAclEntries(new Path(path), aclSpec));
             return Boolean.TRUE;
         } catch (Exception e) {
             logger.error("modifyAclEntries {}", e.getMessage());
@@ -611,7 +843,7 @@ public class HdfsTemplate {
     public Boolean removeAcl(String path) {
         Assert.isTrue(exist(path), String.format("文件/目录不存在, path : %s", path));
         try {
-            fileSystem.removeAcl(new Path(path));
+            invoker.run("removeAcl", path, () -> getFileSystem().removeAcl(new Path(path)));
             return Boolean.TRUE;
         } catch (Exception e) {
             logger.error("removeAcl {}", e.getMessage());
@@ -629,7 +861,7 @@ public class HdfsTemplate {
     public Boolean removeAclEntries(String path, List<AclEntry> aclSpec) {
         Assert.isTrue(exist(path), String.format("文件/目录不存在, path : %s", path));
         try {
-            fileSystem.removeAclEntries(new Path(path), aclSpec);
+            invoker.run("removeAclEntries", path, () -> getFileSystem().removeAclEntries(new Path(path), aclSpec));
             return Boolean.TRUE;
         } catch (Exception e) {
             logger.error("removeAclEntries {}", e.getMessage());
@@ -646,9 +878,9 @@ public class HdfsTemplate {
     public Boolean removeDefaultAcl(String path) {
         Assert.isTrue(exist(path), String.format("文件/目录不存在, path : %s", path));
         try {
-            fileSystem.removeDefaultAcl(new Path(path));
+            invoker.run("removeDefaultAcl", path, () -> getFileSystem().removeDefaultAcl(new Path(path)));
             return Boolean.TRUE;
-        } catch (IOException e) {
+        } catch (Exception e) {
             logger.error("removeDefaultAcl {}", e.getMessage());
         }
         return Boolean.FALSE;
@@ -664,7 +896,7 @@ public class HdfsTemplate {
     public Boolean rename(String src, String dst) {
         Assert.isTrue(exist(src), String.format("文件/目录不存在, src : %s", src));
         try {
-            return fileSystem.rename(new Path(src), new Path(dst));
+            return invoker.call("rename", src, () -> getFileSystem().rename(new Path(src), new Path(dst)));
         } catch (Exception e) {
             logger.error("rename {}", e.getMessage());
         }
@@ -682,7 +914,8 @@ public class HdfsTemplate {
     public Boolean renameSnapshot(String path, String snapshotOldName, String snapshotNewName) {
         Assert.isTrue(exist(path), String.format("文件/目录不存在, path : %s", path));
         try {
-            fileSystem.renameSnapshot(new Path(path), snapshotOldName, snapshotNewName);
+            invoker.run("renameSnapshot", path,
+                    () -> getFileSystem().renameSnapshot(new Path(path), snapshotOldName, snapshotNewName));
             return Boolean.TRUE;
         } catch (Exception e) {
             logger.error("renameSnapshot {}", e.getMessage());
@@ -700,9 +933,9 @@ public class HdfsTemplate {
     public Boolean setAcl(String path, List<AclEntry> aclSpec) {
         Assert.isTrue(exist(path), String.format("文件/目录不存在, path : %s", path));
         try {
-            fileSystem.setAcl(new Path(path), aclSpec);
+            invoker.run("setAcl", path, () -> getFileSystem().setAcl(new Path(path), aclSpec));
             return Boolean.TRUE;
-        } catch (IOException e) {
+        } catch (Exception e) {
             logger.error("setAcl {}", e.getMessage());
         }
         return Boolean.FALSE;
@@ -720,7 +953,7 @@ public class HdfsTemplate {
         Assert.isTrue(exist(path), String.format("文件/目录不存在, path : %s", path));
 
         try {
-            fileSystem.setOwner(new Path(path), username, groupName);
+            invoker.run("setOwner", path, () -> getFileSystem().setOwner(new Path(path), username, groupName));
             return Boolean.TRUE;
         } catch (Exception e) {
             logger.error("setOwner {}", e.getMessage());
@@ -739,7 +972,7 @@ public class HdfsTemplate {
     public Boolean setPermission(String path, FsPermission permission) {
         Assert.isTrue(exist(path), String.format("文件/目录不存在, path : %s", path));
         try {
-            fileSystem.setPermission(new Path(path), permission);
+            invoker.run("setPermission", path, () -> getFileSystem().setPermission(new Path(path), permission));
             return Boolean.TRUE;
         } catch (Exception e) {
             logger.error("setPermission {}", e.getMessage());
@@ -758,7 +991,7 @@ public class HdfsTemplate {
     public Boolean setReplication(String src, short replication) {
         Assert.isTrue(exist(src), String.format("文件不存在, path : %s", src));
         try {
-            fileSystem.setReplication(new Path(src), replication);
+            invoker.run("setReplication", src, () -> getFileSystem().setReplication(new Path(src), replication));
             return Boolean.TRUE;
         } catch (Exception e) {
             logger.error("setReplication {}", e.getMessage());
@@ -778,7 +1011,7 @@ public class HdfsTemplate {
     public Boolean setTimes(String path, long mtime, long atime) {
         Assert.isTrue(exist(path), String.format("文件不存在, path : %s", path));
         try {
-            fileSystem.setTimes(new Path(path), mtime, atime);
+            invoker.run("setTimes", path, () -> getFileSystem().setTimes(new Path(path), mtime, atime));
             return Boolean.TRUE;
         } catch (Exception e) {
             logger.error("setTimes {}", e.getMessage());
@@ -795,7 +1028,7 @@ public class HdfsTemplate {
      */
     public Boolean setVerifyChecksum(boolean verifyChecksum) {
         try {
-            fileSystem.setVerifyChecksum(verifyChecksum);
+            getFileSystem().setVerifyChecksum(verifyChecksum);
             return Boolean.TRUE;
         }catch (Exception e) {
             logger.error("setVerifyChecksum {}", e.getMessage());
@@ -811,7 +1044,7 @@ public class HdfsTemplate {
      */
     public Boolean setWriteChecksum(boolean writeChecksum) {
         try {
-            fileSystem.setWriteChecksum(writeChecksum);
+            getFileSystem().setWriteChecksum(writeChecksum);
             return Boolean.TRUE;
         }catch (Exception e) {
             logger.error("setWriteChecksum {}", e.getMessage());
@@ -828,7 +1061,7 @@ public class HdfsTemplate {
     public Boolean cancelDeleteOnExit(String path) {
         Assert.isTrue(exist(path), String.format("文件/目录不存在, path : %s", path));
         try {
-            return fileSystem.cancelDeleteOnExit(new Path(path));
+            return invoker.call("cancelDeleteOnExit", path, () -> getFileSystem().cancelDeleteOnExit(new Path(path)));
         }catch (Exception e) {
             logger.error("cancelDeleteOnExit {}", e.getMessage());
         }
@@ -836,27 +1069,1147 @@ public class HdfsTemplate {
         return Boolean.FALSE;
     }
 
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
+    private void transferToHdfs(String src, String target, boolean delSrc, boolean overwrite) throws Exception {
+        File file = FileUtil.file(src);
+        if (file.isDirectory()) {
+            getFileSystem().copyFromLocalFile(delSrc, overwrite, new Path(src), new Path(target));
+            return;
+        }
+
+        Path path = new Path(target);
+        try {
+            if (getFileSystem().getFileStatus(path).isDirectory()) {
+                path = new Path(path, file.getName());
+            }
+        } catch (FileNotFoundException ignored) {
+        }
+        try (InputStream in = Files.newInputStream(file.toPath());
+             FSDataOutputStream out = getFileSystem().create(path, overwrite)) {
+            bufferPool.copy(in, out, throttle::acquireBytes);
+        }
+        if (delSrc) {
+            FileUtil.del(file);
+        }
+    }
+
+    private void transferToLocal(String src, String target, boolean delSrc,
+                                 boolean useRawLocalFileSystem) throws Exception {
+        Path path = new Path(src);
+        if (getFileSystem().getFileStatus(path).isDirectory()) {
+            getFileSystem().copyToLocalFile(delSrc, path, new Path(target), useRawLocalFileSystem);
+            return;
+        }
+
+        File file = FileUtil.file(target);
+        if (file.isDirectory()) {
+            file = new File(file, path.getName());
+        }
+        FileUtil.mkParentDirs(file);
+        try (FSDataInputStream in = getFileSystem().open(path)) {
+            if (useRawLocalFileSystem) {
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    bufferPool.copy(in, channel, throttle::acquireBytes);
+                }
+            } else {
+                // 非原始本地文件系统会同时写入.crc校验文件
+                LocalFileSystem local = FileSystem.getLocal(getFileSystem().getConf());
+                try (FSDataOutputStream out = local.create(new Path(file.getAbsolutePath()), Boolean.TRUE)) {
+                    bufferPool.copy(in, out, throttle::acquireBytes);
+                }
+            }
+        }
+        if (delSrc) {
+            getFileSystem().delete(path, Boolean.FALSE);
+        }
+    }
+
+    /**
+     * 创建小文件打包写入器, 小文件追加到目录下的容器文件中, 用完需关闭
+     *
+     * @param directory 容器文件目录
+     * @return {@link PackWriter}
+     */
+    public PackWriter createPackWriter(String directory) {
+        Assert.notBlank(directory, "目录不能为空");
+        return new PackWriter(getFileSystem(), new Path(directory), hdfsProperties.getPack().getMaxContainerSize(),
+                throttle::acquireBytes);
+    }
+
+    /**
+     * 读取打包的小文件
+     *
+     * @param key {@link PackWriter#append(String, byte[])} 返回的key
+     * @return 文件内容
+     * @throws HdfsException hdfs异常
+     */
+    public byte[] readPacked(String key) throws HdfsException {
+        return getPackReader().read(PackKey.parse(key));
+    }
+
+    /**
+     * 按名称读取已关闭容器文件中的小文件
+     *
+     * @param container 容器文件
+     * @param name      文件名称
+     * @return 文件内容, 不存在时为null
+     * @throws HdfsException hdfs异常
+     */
+    public byte[] readPacked(String container, String name) throws HdfsException {
+        return getPackReader().read(container, name);
+    }
+
+    private PackReader getPackReader() {
+        if (ObjectUtil.isNull(packReader)) {
+            synchronized (this) {
+                if (ObjectUtil.isNull(packReader)) {
+                    packReader = new PackReader(getFileSystem(), hdfsProperties.getPack().getCacheSize());
+                }
+            }
+        }
+        return packReader;
+    }
+
+    /**
+     * 合并目录下的小文件, 参数使用 hdfs.compact 配置
+     *
+     * @param directory 目录
+     * @return {@link CompactResult}
+     * @throws HdfsException hdfs异常
+     */
+    public CompactResult compact(String directory) throws HdfsException {
+        HdfsProperties.Compact compact = hdfsProperties.getCompact();
+        return compact(directory, compact.getSmallFileSize(), compact.getMinAge().toMillis(), compact.getTargetSize());
+    }
+
+    /**
+     * 合并目录下的小文件, 各分组并行合并
+     *
+     * @param directory     目录
+     * @param smallFileSize 小于该字节数的文件才参与合并
+     * @param minAge        修改时间距今超过该毫秒数的文件才参与合并
+     * @param targetSize    合并后文件的目标字节数, 小于等于0时使用块大小
+     * @return {@link CompactResult}
+     * @throws HdfsException hdfs异常
+     */
+    public CompactResult compact(String directory, long smallFileSize, long minAge, long targetSize) throws HdfsException {
+        Assert.isTrue(exist(directory), String.format("目录不存在, directory:  %s", directory));
+        try {
+            return JfrRecorder.record("compact", directory, Boolean.TRUE, () -> new SmallFileCompactor(getFileSystem(),
+                    getExecutor(), bufferPool, throttle::acquireBytes).compact(directory, smallFileSize, minAge, targetSize));
+        } catch (HdfsException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("compact {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 创建滚动写入器, 参数使用 hdfs.writer 配置, 用完需关闭
+     *
+     * @param directory 目录
+     * @param prefix    文件名前缀
+     * @return {@link RollingWriter}
+     */
+    public RollingWriter createRollingWriter(String directory, String prefix) {
+        Assert.notBlank(directory, "目录不能为空");
+        Assert.notBlank(prefix, "文件名前缀不能为空");
+        HdfsProperties.Writer writer = hdfsProperties.getWriter();
+        return new RollingWriter(getFileSystem(), new Path(directory), prefix, writer.getFlushBytes(),
+                writer.getFlushInterval().toMillis(), writer.getRollSize(), writer.getRollInterval().toMillis(),
+                writer.isHsync(), throttle::acquireBytes);
+    }
+
+    /**
+     * 异步上传文件, 文件先复制到本地缓冲目录后立即返回, 由后台线程上传, 失败自动重试, 重启后继续上传
+     *
+     * @param src       原文件
+     * @param target    目标文件
+     * @param overwrite 是否覆盖目标文件
+     * @return 任务ID
+     * @throws HdfsException hdfs异常
+     */
+    public String uploadAsync(String src, String target, boolean overwrite) throws HdfsException {
+        return getSpoolUploader().submit(new File(src), target, overwrite);
+    }
+
+    /**
+     * 异步上传文件, 覆盖目标文件
+     *
+     * @param src    原文件
+     * @param target 目标文件
+     * @return 任务ID
+     * @throws HdfsException hdfs异常
+     */
+    public String uploadAsync(String src, String target) throws HdfsException {
+        return uploadAsync(src, target, Boolean.TRUE);
+    }
+
+    /**
+     * 异步上传输入流, 输入流先写入本地缓冲目录后立即返回, 不关闭输入流
+     *
+     * @param in        输入流
+     * @param target    目标文件
+     * @param overwrite 是否覆盖目标文件
+     * @return 任务ID
+     * @throws HdfsException hdfs异常
+     */
+    public String uploadAsync(InputStream in, String target, boolean overwrite) throws HdfsException {
+        return getSpoolUploader().submit(in, target, overwrite);
+    }
+
+    /**
+     * 本地缓冲中待上传的任务数
+     *
+     * @return 任务数
+     */
+    public int getPendingUploads() {
+        return ObjectUtil.isNull(spoolUploader) ? 0 : spoolUploader.getPending();
+    }
+
+    /**
+     * 打开预读输入流, 顺序读取大文件时后台提前读取后续分片, 跨块时无需等待建立新连接
+     *
+     * @param file 文件
+     * @return {@link PrefetchInputStream}, 使用后需关闭
+     * @throws HdfsException hdfs异常
+     */
+    public PrefetchInputStream openPrefetching(String file) throws HdfsException {
+        return openPrefetching(file, hdfsProperties.getPrefetch().getWindow());
+    }
+
+    /**
+     * 打开预读输入流
+     *
+     * @param file   文件
+     * @param window 预读分片数, 分片大小为缓冲区大小, 同时受 hdfs.prefetch.max-memory 限制
+     * @return {@link PrefetchInputStream}, 使用后需关闭
+     * @throws HdfsException hdfs异常
+     */
+    public PrefetchInputStream openPrefetching(String file, int window) throws HdfsException {
+        Assert.notBlank(file, "文件不能为空");
+        Path path = new Path(file);
+        try {
+            FileStatus status = invoker.call("getFileStatus", file, () -> getFileSystem().getFileStatus(path));
+            Assert.isTrue(status.isFile(), "不是文件, file: {}", file);
+            FSDataInputStream in = invoker.call("open", file, () -> getFileSystem().open(path));
+            return new PrefetchInputStream(in, status.getLen(), bufferPool, getPrefetchExecutor(), window,
+                    hdfsProperties.getPrefetch().getMaxMemory(), throttle::acquireBytes);
+        } catch (Exception e) {
+            logger.error("openPrefetching {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 去重上传, 按内容计算ID(大文件分段并行计算), 内容只存储一份, 逻辑名称通过索引指向内容;
+     * 内容已存在时只写入索引, 不传输数据
+     *
+     * @param src  本地文件
+     * @param name 逻辑名称, 已存在时指向新内容
+     * @return {@link DedupResult}
+     * @throws HdfsException hdfs异常
+     */
+    public DedupResult uploadDedup(String src, String name) throws HdfsException {
+        Assert.notBlank(src, "文件不能为空");
+        try {
+            return invoker.call("upload", name, () -> getContentStore().put(FileUtil.file(src), name));
+        } catch (Exception e) {
+            logger.error("uploadDedup {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 获取去重上传的名称指向的内容对象路径, 可用于下载或打开
+     *
+     * @param name 逻辑名称
+     * @return 内容对象路径
+     * @throws HdfsException 名称不存在
+     */
+    public String getContentPath(String name) throws HdfsException {
+        try {
+            return invoker.call("getXAttr", name, () -> getContentStore().resolve(name)).toUri().getPath();
+        } catch (Exception e) {
+            logger.error("getContentPath {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 打开去重上传的名称指向的内容
+     *
+     * @param name 逻辑名称
+     * @return {@link FSDataInputStream}, 使用后需关闭
+     * @throws HdfsException hdfs异常
+     */
+    public FSDataInputStream openContent(String name) throws HdfsException {
+        try {
+            return invoker.call("open", name, () -> getContentStore().open(name));
+        } catch (Exception e) {
+            logger.error("openContent {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 构建本地命名空间索引, 已构建时重新构建; 配置了 hdfs.index.image 时从fsimage导出文件加载, 否则并行列出索引目录
+     * <p>
+     * 开启增量更新时先订阅变更再构建, 构建期间的变更在构建完成后重放; 模板关闭时释放索引
+     *
+     * @return {@link NamespaceIndex}
+     * @throws HdfsException hdfs异常
+     */
+    public NamespaceIndex buildIndex() throws HdfsException {
+        HdfsProperties.Index config = hdfsProperties.getIndex();
+        Assert.notEmpty(config.getRoots(), "索引目录不能为空");
+        synchronized (indexLock) {
+            NamespaceIndex index = namespaceIndex;
+            if (ObjectUtil.isNull(index)) {
+                index = new NamespaceIndex(getFileSystem(), config.getRoots(), getExecutor(),
+                        config.getCompactThreshold(), config.getChunkSize());
+                if (config.isFollow()) {
+                    String checkpoint = null;
+                    if (StrUtil.isNotBlank(config.getImage()) && config.getImageTxid() > 0) {
+                        // 从fsimage的事务之后订阅, 索引不持久化, 检查点只在本进程内使用
+                        File file = FileUtil.createTempFile("hdfs-index-", ".txid", null, Boolean.TRUE);
+                        file.deleteOnExit();
+                        FileUtil.writeUtf8String(String.valueOf(config.getImageTxid()), file);
+                        checkpoint = file.getPath();
+                    }
+                    subscribe(checkpoint, config.getRoots(), index::apply);
+                }
+                namespaceIndex = index;
+            }
+            NamespaceIndex built = index;
+            try {
+                return JfrRecorder.record("buildIndex", null, Boolean.FALSE, () -> {
+                    if (StrUtil.isNotBlank(config.getImage())) {
+                        built.load(FileUtil.file(config.getImage()));
+                    } else {
+                        built.build();
+                    }
+                    return built;
+                });
+            } catch (HdfsException e) {
+                throw e;
+            } catch (Exception e) {
+                logger.error("buildIndex {}", e.getMessage());
+                throw new HdfsException(e);
+            }
+        }
+    }
+
+    /**
+     * 查询目录树下满足条件的文件; 路径在已构建的本地命名空间索引中时在本地查询, 否则访问NameNode:
+     * 设置通配符时按通配符列出, 否则并行列出目录树, 列出的文件数受 index.max-scan-files 限制
+     *
+     * @param query 查询条件
+     * @return 按路径排序的文件
+     * @throws HdfsException hdfs异常
+     */
+    public List<IndexedFile> find(IndexQuery query) throws HdfsException {
+        Assert.notNull(query, "查询条件不能为空");
+        String root = NamespaceIndex.root(query);
+        NamespaceIndex index = namespaceIndex;
+        if (ObjectUtil.isNotNull(index) && index.isReady() && index.covers(root)) {
+            return index.query(query);
+        }
+        try {
+            long maxFiles = hdfsProperties.getIndex().getMaxScanFiles();
+            return invoker.call("find", root, () -> NamespaceIndex.scan(getFileSystem(), query, getExecutor(), maxFiles));
+        } catch (HdfsException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("find {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 获取本地命名空间索引
+     *
+     * @return {@link NamespaceIndex}, 未构建时为null
+     */
+    public NamespaceIndex getNamespaceIndex() {
+        return namespaceIndex;
+    }
+
+    /**
+     * 导入本地压缩包(zip/tar/tar.gz), 各条目直接流式写入目标目录, 无需先解压到本地磁盘; zip条目并行写入
+     *
+     * @param archive   压缩包
+     * @param directory 目标目录
+     * @param overwrite 是否覆盖已存在的文件
+     * @return {@link IngestManifest}
+     * @throws HdfsException hdfs异常
+     */
+    public IngestManifest ingestArchive(String archive, String directory, boolean overwrite) throws HdfsException {
+        Assert.notBlank(archive, "压缩包不能为空");
+        Assert.notBlank(directory, "目标目录不能为空");
+        try {
+            return invoker.callJob("upload", directory, () -> createArchiveIngester().ingest(new File(archive), new Path(directory), overwrite));
+        } catch (Exception e) {
+            logger.error("ingestArchive {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 导入压缩包输入流, 各条目按顺序直接流式写入目标目录, 不关闭输入流
+     *
+     * @param in        压缩包输入流
+     * @param format    格式
+     * @param directory 目标目录
+     * @param overwrite 是否覆盖已存在的文件
+     * @return {@link IngestManifest}
+     * @throws HdfsException hdfs异常
+     */
+    public IngestManifest ingestArchive(InputStream in, ArchiveFormat format, String directory,
+                                        boolean overwrite) throws HdfsException {
+        Assert.notNull(in, "输入流不能为空");
+        Assert.notNull(format, "格式不能为空");
+        Assert.notBlank(directory, "目标目录不能为空");
+        try {
+            return invoker.callJob("upload", directory, () -> createArchiveIngester().ingest(in, format, new Path(directory), overwrite));
+        } catch (Exception e) {
+            logger.error("ingestArchive {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 复制到另一个集群, 字节从本集群直接流式写入目标集群, 不经过本地磁盘, 多个文件并行复制;
+     * 比对校验和时以COMPOSITE_CRC模式获取, 不要求两端块大小相同
+     *
+     * @param target  目标集群
+     * @param src     本集群的源文件或目录
+     * @param dst     目标集群的文件或目录
+     * @param options 复制选项
+     * @return {@link CopyResult}
+     * @throws HdfsException hdfs异常
+     */
+    public CopyResult copyTo(HdfsTemplate target, String src, String dst, CopyOptions options) throws HdfsException {
+        Assert.notNull(target, "目标集群不能为空");
+        Assert.notBlank(src, "源路径不能为空");
+        Assert.notBlank(dst, "目标路径不能为空");
+        CopyOptions copyOptions = ObjectUtil.defaultIfNull(options, new CopyOptions());
+        try {
+            return invoker.callJob("copy", src, () -> {
+                if (!copyOptions.isVerifyChecksum()) {
+                    return createCopier(getFileSystem(), target.getFileSystem()).copy(new Path(src), new Path(dst), copyOptions);
+                }
+                try (FileSystem source = newChecksumFileSystem(getFileSystem().getUri());
+                     FileSystem other = target.newChecksumFileSystem(target.getFileSystem().getUri())) {
+                    return createCopier(source, other).copy(new Path(src), new Path(dst), copyOptions);
+                }
+            });
+        } catch (Exception e) {
+            logger.error("copyTo {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 复制文件或目录, 路径可以是带协议与地址的完整URI(如 hdfs://archive:8020/data), 不带时使用本集群
+     *
+     * @param src     源文件或目录
+     * @param dst     目标文件或目录
+     * @param options 复制选项
+     * @return {@link CopyResult}
+     * @throws HdfsException hdfs异常
+     */
+    public CopyResult copy(String src, String dst, CopyOptions options) throws HdfsException {
+        Assert.notBlank(src, "源路径不能为空");
+        Assert.notBlank(dst, "目标路径不能为空");
+        CopyOptions copyOptions = ObjectUtil.defaultIfNull(options, new CopyOptions());
+        try {
+            Path source = new Path(src);
+            Path target = new Path(dst);
+            return invoker.callJob("copy", src, () -> {
+                if (!copyOptions.isVerifyChecksum()) {
+                    return createCopier(resolveFileSystem(source), resolveFileSystem(target)).copy(source, target, copyOptions);
+                }
+                try (FileSystem sourceFileSystem = newChecksumFileSystem(resolveFileSystem(source).getUri());
+                     FileSystem targetFileSystem = newChecksumFileSystem(resolveFileSystem(target).getUri())) {
+                    return createCopier(sourceFileSystem, targetFileSystem).copy(source, target, copyOptions);
+                }
+            });
+        } catch (Exception e) {
+            logger.error("copy {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 快照增量复制到另一个集群, 创建新快照并与上一次复制的快照比对, 只应用新建、修改、重命名与删除的条目, 成功后轮换快照;
+     * 首次复制时全量复制
+     *
+     * @param snapshotDir 本集群的可快照目录
+     * @param target      目标集群
+     * @param targetDir   目标目录
+     * @param name        快照名称前缀, 同一目录复制到多个目标时需各不相同
+     * @param options     复制选项
+     * @return {@link ReplicationResult}
+     * @throws HdfsException hdfs异常
+     */
+    public ReplicationResult replicate(String snapshotDir, HdfsTemplate target, String targetDir, String name,
+                                       CopyOptions options) throws HdfsException {
+        Assert.notNull(target, "目标集群不能为空");
+        return replicate(snapshotDir, target, new Path(targetDir), name, options);
+    }
+
+    /**
+     * 快照增量复制
+     *
+     * @param snapshotDir 本集群的可快照目录
+     * @param targetDir   目标目录, 可以是其他集群的完整URI
+     * @param name        快照名称前缀, 同一目录复制到多个目标时需各不相同
+     * @param options     复制选项
+     * @return {@link ReplicationResult}
+     * @throws HdfsException hdfs异常
+     */
+    public ReplicationResult replicate(String snapshotDir, String targetDir, String name, CopyOptions options) throws HdfsException {
+        Assert.notBlank(targetDir, "目标目录不能为空");
+        return replicate(snapshotDir, this, new Path(targetDir), name, options);
+    }
+
+    /**
+     * 获取目录用量, 结果按 hdfs.usage.ttl 缓存并在后台刷新
+     *
+     * @param path 目录
+     * @return {@link DirectoryUsage}
+     * @throws HdfsException hdfs异常
+     */
+    public DirectoryUsage getUsage(String path) throws HdfsException {
+        Assert.notBlank(path, "目录不能为空");
+        DirectoryUsage usage = getUsageCache().get(CollectionUtil.newArrayList(path)).get(path);
+        if (ObjectUtil.isNull(usage)) {
+            throw new HdfsException("获取目录用量失败, path: {}", path);
+        }
+        return usage;
+    }
+
+    /**
+     * 并行获取多个目录的用量, 未缓存或已过期的目录并行统计内容摘要, 避免逐个调用 getContentSummary
+     *
+     * @param paths 目录
+     * @return 每个目录的用量, 统计失败的目录不包含在结果中
+     */
+    public Map<String, DirectoryUsage> getUsage(Collection<String> paths) {
+        Assert.notEmpty(paths, "目录不能为空");
+        return getUsageCache().get(paths);
+    }
+
+    /**
+     * 获取用量最大或最接近配额的前N个目录
+     *
+     * @param paths 目录
+     * @param order 排序方式
+     * @param limit 数量
+     * @return 用量
+     */
+    public List<DirectoryUsage> topUsage(Collection<String> paths, UsageOrder order, int limit) {
+        Assert.notEmpty(paths, "目录不能为空");
+        Assert.notNull(order, "排序方式不能为空");
+        return getUsageCache().top(paths, order, limit);
+    }
+
+    /**
+     * 移除目录用量缓存
+     *
+     * @param path 目录
+     */
+    public void invalidateUsage(String path) {
+        if (ObjectUtil.isNotNull(usageCache)) {
+            usageCache.invalidate(path);
+        }
+    }
+
+    /**
+     * 完整性审计, 与本地目录比对; 以COMPOSITE_CRC模式并行获取校验和, 本地文件计算整文件CRC后比对内容
+     *
+     * @param dir      HDFS文件或目录
+     * @param localDir 本地文件或目录
+     * @return {@link AuditReport}
+     * @throws HdfsException hdfs异常
+     */
+    public AuditReport auditLocal(String dir, String localDir) throws HdfsException {
+        Assert.notBlank(dir, "目录不能为空");
+        Assert.notBlank(localDir, "本地目录不能为空");
+        try {
+            return JfrRecorder.record("auditLocal", dir, Boolean.FALSE, () -> {
+                try (FileSystem source = newChecksumFileSystem(getFileSystem().getUri())) {
+                    return createAuditor().audit(source, new Path(dir), FileUtil.file(localDir));
+                }
+            });
+        } catch (HdfsException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("auditLocal {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 完整性审计, 与另一个集群比对; 校验和与块大小无关, 两个集群块大小不同时也可比对
+     *
+     * @param dir       本集群文件或目录
+     * @param target    比对的集群
+     * @param targetDir 比对的文件或目录
+     * @return {@link AuditReport}
+     * @throws HdfsException hdfs异常
+     */
+    public AuditReport audit(String dir, HdfsTemplate target, String targetDir) throws HdfsException {
+        Assert.notNull(target, "比对集群不能为空");
+        Assert.notBlank(targetDir, "比对目录不能为空");
+        try {
+            return JfrRecorder.record("audit", dir, Boolean.FALSE, () -> {
+                try (FileSystem other = target.newChecksumFileSystem(target.getFileSystem().getUri())) {
+                    return audit(dir, other, new Path(targetDir));
+                }
+            });
+        } catch (HdfsException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("audit {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 完整性审计
+     *
+     * @param dir       本集群文件或目录
+     * @param targetDir 比对的文件或目录, 可以是其他集群的完整URI
+     * @return {@link AuditReport}
+     * @throws HdfsException hdfs异常
+     */
+    public AuditReport audit(String dir, String targetDir) throws HdfsException {
+        Assert.notBlank(targetDir, "比对目录不能为空");
+        Path target = new Path(targetDir);
+        URI uri = StrUtil.isBlank(target.toUri().getScheme()) ? getFileSystem().getUri() : target.toUri();
+        try {
+            return JfrRecorder.record("audit", dir, Boolean.FALSE, () -> {
+                try (FileSystem other = newChecksumFileSystem(uri)) {
+                    return audit(dir, other, target);
+                }
+            });
+        } catch (HdfsException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("audit {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 完整性审计, 与 {@link #writeManifest(String, String)} 生成的校验和清单比对, 可用于定期巡检
+     *
+     * @param dir      文件或目录
+     * @param manifest 本地清单文件
+     * @return {@link AuditReport}
+     * @throws HdfsException hdfs异常
+     */
+    public AuditReport auditManifest(String dir, String manifest) throws HdfsException {
+        Assert.notBlank(dir, "目录不能为空");
+        Assert.notBlank(manifest, "清单文件不能为空");
+        try {
+            return JfrRecorder.record("auditManifest", dir, Boolean.FALSE, () -> {
+                try (FileSystem source = newChecksumFileSystem(getFileSystem().getUri())) {
+                    return createAuditor().auditManifest(source, new Path(dir), FileUtil.file(manifest));
+                }
+            });
+        } catch (HdfsException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("auditManifest {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 生成校验和清单
+     *
+     * @param dir      文件或目录
+     * @param manifest 本地清单文件, 已存在时覆盖
+     * @return 清单中的文件数
+     * @throws HdfsException hdfs异常
+     */
+    public int writeManifest(String dir, String manifest) throws HdfsException {
+        Assert.notBlank(dir, "目录不能为空");
+        Assert.notBlank(manifest, "清单文件不能为空");
+        try {
+            return JfrRecorder.record("writeManifest", dir, Boolean.FALSE, () -> {
+                try (FileSystem source = newChecksumFileSystem(getFileSystem().getUri())) {
+                    return createAuditor().writeManifest(source, new Path(dir), FileUtil.file(manifest));
+                }
+            });
+        } catch (HdfsException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("writeManifest {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 分层存储, 按修改时间、访问时间与大小选出文件, 设置存储策略(如冷数据COLD、热数据ALL_SSD)或以纠删码策略重写
+     *
+     * @param rule 规则
+     * @return {@link TieringResult}
+     * @throws HdfsException hdfs异常
+     */
+    public TieringResult tier(TieringRule rule) throws HdfsException {
+        return tier(rule, null);
+    }
+
+    /**
+     * 分层存储
+     *
+     * @param rule     规则
+     * @param progress 每处理完一个文件回调当前进度, 可为null
+     * @return {@link TieringResult}
+     * @throws HdfsException hdfs异常
+     */
+    public TieringResult tier(TieringRule rule, Consumer<TieringResult> progress) throws HdfsException {
+        Assert.notNull(rule, "规则不能为空");
+        try {
+            return JfrRecorder.record("tier", rule.getPath(), Boolean.TRUE, () -> {
+                try (FileSystem fileSystem = newChecksumFileSystem(getFileSystem().getUri())) {
+                    Assert.isTrue(fileSystem instanceof DistributedFileSystem, "分层存储只支持HDFS");
+                    return new StorageTiering((DistributedFileSystem) fileSystem, getExecutor(), bufferPool,
+                            throttle::acquireBytes, tieringLimiter).apply(rule, progress);
+                }
+            });
+        } catch (HdfsException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("tier {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 订阅命名空间变更, 通过HDFS inotify按批回调创建、关闭、重命名、删除与元数据变更事件, 需要HDFS超级用户权限
+     * <p>
+     * 回调成功后持久化事务ID, 重启后从检查点继续, 同一事件可能重复投递; 模板关闭时停止订阅
+     *
+     * @param checkpoint 本地检查点文件, 为空时不持久化, 从最新位置开始
+     * @param prefixes   路径前缀, 为空时不过滤
+     * @param listener   回调
+     * @return {@link ChangeFeed}, 可单独关闭
+     * @throws HdfsException hdfs异常
+     */
+    public ChangeFeed subscribe(String checkpoint, Collection<String> prefixes, Consumer<List<ChangeEvent>> listener) throws HdfsException {
+        Assert.notNull(listener, "回调不能为空");
+        FileSystem current = getFileSystem();
+        Assert.isTrue(current instanceof DistributedFileSystem, "变更订阅仅支持HDFS, fileSystem: {}", current.getUri());
+        HdfsProperties.Inotify inotify = hdfsProperties.getInotify();
+        ChangeFeed feed = new ChangeFeed((DistributedFileSystem) current, prefixes,
+                StrUtil.isBlank(checkpoint) ? null : new File(checkpoint), inotify.getBatchSize(),
+                inotify.getBatchInterval().toMillis(), inotify.getRetryInterval().toMillis(), listener);
+        changeFeeds.add(feed);
+        return feed.start();
+    }
+
+    /**
+     * 获取传输缓冲池, 可用于 {@link FSDataInputStream#read(org.apache.hadoop.io.ByteBufferPool, int, java.util.EnumSet)}
+     *
+     * @return {@link BufferPool}
+     */
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * 在截止时间内执行一组操作, 期间当前线程及其提交的并行任务(如 {@link #deleteAll(Collection, boolean)})发起的HDFS调用
+     * 超时后被中断并抛出 {@link HdfsException}
+     * <pre>
+     * hdfsTemplate.withDeadline(Duration.ofSeconds(2), () -> hdfsTemplate.exist("/data"));
+     * </pre>
+     *
+     * @param timeout 超时时间
+     * @param action  操作
+     * @param <T>     返回类型
+     * @return 操作结果
+     */
+    public <T> T withDeadline(Duration timeout, Supplier<T> action) {
+        Assert.notNull(timeout, "超时时间不能为空");
+        return invoker.withDeadline(timeout, action);
+    }
+
+    /**
+     * 以指定优先级执行一组操作, 限流时交互式请求优先于批量请求获取令牌
+     * <pre>
+     * hdfsTemplate.withPriority(Throttle.Priority.BATCH, () -> hdfsTemplate.upload(src, target));
+     * </pre>
+     *
+     * @param priority 优先级
+     * @param action   操作
+     * @param <T>      返回类型
+     * @return 操作结果
+     */
+    public <T> T withPriority(Throttle.Priority priority, Supplier<T> action) {
+        Assert.notNull(priority, "优先级不能为空");
+        return throttle.withPriority(priority, action);
+    }
+
+    /**
+     * 获取操作执行器, 可查看超时及元数据对冲调用次数
+     *
+     * @return {@link OperationInvoker}
+     */
+    public OperationInvoker getOperationInvoker() {
+        return invoker;
+    }
+
+    /**
+     * 获取数据读取对冲统计, 需配置 hdfs.hedge.read-thread-pool-size
+     *
+     * @return {@link DFSHedgedReadMetrics} 非HDFS文件系统时为null
+     */
+    public DFSHedgedReadMetrics getHedgedReadMetrics() {
+        FileSystem fileSystem = getFileSystem();
+        if (fileSystem instanceof DistributedFileSystem) {
+            return ((DistributedFileSystem) fileSystem).getClient().getHedgedReadMetrics();
+        }
+        return null;
+    }
+
+    /**
+     * 请求合并共享结果的次数, 未开启 hdfs.coalesce 时为0
+     *
+     * @return 次数
+     */
+    public long getCoalescedCount() {
+        return ObjectUtil.isNull(singleFlight) ? 0 : singleFlight.getShared();
+    }
+
+    /**
+     * 并行删除目录/文件, 并发数由自适应并发限制控制
+     *
+     * @param paths     目录/文件
+     * @param recursive 是否递归删除
+     * @return 每个路径的删除结果
+     */
+    public Map<String, Boolean> deleteAll(Collection<String> paths, boolean recursive) {
+        Assert.notEmpty(paths, "待删除目录/文件不能为空");
+        return executeAll("deleteAll", paths,
+                path -> () -> invoker.call("delete", path, () -> getFileSystem().delete(new Path(path), recursive)),
+                Boolean.FALSE);
+    }
+
+    /**
+     * 并行获取多个目录下的文件或目录, 获取失败的目录不包含在结果中
+     *
+     * @param directories 目录
+     * @return 每个目录下的文件或目录
+     */
+    public Map<String, List<FileStatus>> listStatusAll(Collection<String> directories) {
+        Assert.notEmpty(directories, "目录不能为空");
+        return executeAll("listStatusAll", directories, directory -> () -> CollectionUtil.newArrayList(
+                invoker.callHedged("listStatus", directory, () -> getFileSystem().listStatus(new Path(directory)))), null);
+    }
+
+    /**
+     * 并行上传多个文件
+     *
+     * @param files     原文件 -> 目标文件
+     * @param overwrite 是否覆盖目标文件
+     * @return 每个原文件的上传结果
+     */
+    public Map<String, Boolean> uploadAll(Map<String, String> files, boolean overwrite) {
+        Assert.notEmpty(files, "待上传文件不能为空");
+        return executeAll("uploadAll", files.keySet(), src -> () -> {
+            invoker.run("upload", files.get(src), () -> transferToHdfs(src, files.get(src), Boolean.FALSE, overwrite));
+            return Boolean.TRUE;
+        }, Boolean.FALSE);
+    }
 
+    /**
+     * 并行下载多个文件
+     *
+     * @param files hdfs文件 -> 目标文件
+     * @return 每个hdfs文件的下载结果
+     */
+    public Map<String, Boolean> downloadAll(Map<String, String> files) {
+        Assert.notEmpty(files, "待下载文件不能为空");
+        return executeAll("downloadAll", files.keySet(), src -> () -> {
+            invoker.run("download", src, () -> transferToLocal(src, files.get(src), Boolean.FALSE, Boolean.FALSE));
+            return Boolean.TRUE;
+        }, Boolean.FALSE);
+    }
+
+    /**
+     * 获取文件或目录树下所有文件的块位置与存储类型, 通过listLocatedStatus批量获取, 每次RPC返回一批文件及其块位置
+     *
+     * @param path 文件或目录
+     * @return 分片, 每个块一个
+     * @throws HdfsException hdfs异常
+     */
+    public List<BlockSplit> getBlockSplits(String path) throws HdfsException {
+        return getBlockSplits(path, Boolean.TRUE);
+    }
+
+    /**
+     * 获取文件或目录下所有文件的块位置与存储类型
+     *
+     * @param path      文件或目录
+     * @param recursive 是否包含子目录
+     * @return 分片, 每个块一个
+     * @throws HdfsException hdfs异常
+     */
+    public List<BlockSplit> getBlockSplits(String path, boolean recursive) throws HdfsException {
+        Assert.notBlank(path, "路径不能为空");
+        try {
+            List<BlockSplit> splits = new ArrayList<>();
+            Deque<Path> directories = new ArrayDeque<>();
+            directories.push(new Path(path));
+            while (!directories.isEmpty()) {
+                // 每个目录单独调用, 限流、超时与熔断按目录生效
+                Path directory = directories.pop();
+                List<LocatedFileStatus> statuses = invoker.call("listLocatedStatus", directory.toUri().getPath(), () -> {
+                    List<LocatedFileStatus> list = new ArrayList<>();
+                    RemoteIterator<LocatedFileStatus> iterator = getFileSystem().listLocatedStatus(directory);
+                    while (iterator.hasNext()) {
+                        list.add(iterator.next());
+                    }
+                    return list;
+                });
+                for (LocatedFileStatus status : statuses) {
+                    if (status.isFile()) {
+                        splits.addAll(LocalityPlanner.toSplits(status));
+                    } else if (recursive && status.isDirectory()) {
+                        directories.push(status.getPath());
+                    }
+                }
+            }
+            return splits;
+        } catch (Exception e) {
+            logger.error("getBlockSplits {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 按首选主机对文件或目录树下的分片分组, 供调度器将任务放到数据所在节点
+     *
+     * @param path 文件或目录
+     * @return 主机与分配到该主机的分片, 无位置信息的分片在 {@link LocalityPlanner#ANY_HOST} 下
+     * @throws HdfsException hdfs异常
+     */
+    public Map<String, List<BlockSplit>> groupByHost(String path) throws HdfsException {
+        return LocalityPlanner.groupByHost(getBlockSplits(path));
+    }
+
+    /**
+     * 获取并行操作的自适应并发限制, 可查看当前并发上限
+     *
+     * @return {@link AdaptiveLimiter}
+     */
+    public AdaptiveLimiter getLimiter() {
+        return getExecutor().getLimiter();
+    }
+
+    private <T> T coalesce(String operation, Object[] args, Callable<T> callable) throws Exception {
+        return ObjectUtil.isNull(singleFlight) ? callable.call() : singleFlight.execute(operation, args, callable);
+    }
+
+    /**
+     * 后台恢复未完成的本地缓冲上传, 不依赖预热结果; 文件系统暂不可用时按重试间隔重试, 直到上传器创建成功
+     */
+    private void recoverSpool() {
+        long interval = Math.max(1000, hdfsProperties.getSpool().getRetryInterval().toMillis());
+        spoolRecovery = ThreadUtil.newThread(() -> {
+            for (;;) {
+                try {
+                    getSpoolUploader();
+                    return;
+                } catch (Exception e) {
+                    logger.warn("recoverSpool {}", e.getMessage());
+                    if (!ThreadUtil.sleep(interval)) {
+                        return;
+                    }
+                }
+            }
+        }, "hdfs-spool-recovery", Boolean.TRUE);
+        spoolRecovery.start();
+    }
+
+    private SpoolUploader getSpoolUploader() {
+        if (ObjectUtil.isNull(spoolUploader)) {
+            synchronized (this) {
+                if (ObjectUtil.isNull(spoolUploader)) {
+                    HdfsProperties.Spool spool = hdfsProperties.getSpool();
+                    spoolUploader = new SpoolUploader(getFileSystem(), bufferPool, new File(spool.getDirectory()), spool.getParallelism(),
+                            spool.getMaxRetries(), spool.getRetryInterval().toMillis(), throttle::acquireBytes);
+                }
+            }
+        }
+        return spoolUploader;
+    }
+
+    private static CircuitBreaker createCircuitBreaker(HdfsProperties.CircuitBreaker circuitBreaker) {
+        if (!circuitBreaker.isEnabled()) {
+            return null;
+        }
+        return new CircuitBreaker(circuitBreaker.getWindowSize(), circuitBreaker.getMinimumCalls(),
+                circuitBreaker.getFailureRateThreshold(), circuitBreaker.getSlowCallThreshold().toMillis(),
+                circuitBreaker.getSlowCallRateThreshold(), circuitBreaker.getOpenDuration().toMillis(),
+                circuitBreaker.getHalfOpenCalls());
+    }
+
+    /**
+     * 获取路径所在的文件系统, 路径不带协议时为本集群; 其他集群的文件系统由hadoop缓存复用, 不在此关闭
+     */
+    private FileSystem resolveFileSystem(Path path) throws Exception {
+        URI uri = path.toUri();
+        if (StrUtil.isBlank(uri.getScheme())) {
+            return getFileSystem();
+        }
+        org.apache.hadoop.conf.Configuration configuration = getFileSystem().getConf();
+        return StrUtil.isBlank(hdfsProperties.getUsername()) ? FileSystem.get(uri, configuration)
+                : FileSystem.get(uri, configuration, hdfsProperties.getUsername());
+    }
+
+    private AuditReport audit(String dir, FileSystem target, Path targetDir) throws Exception {
+        Assert.notBlank(dir, "目录不能为空");
+        try (FileSystem source = newChecksumFileSystem(getFileSystem().getUri())) {
+            return createAuditor().audit(source, new Path(dir), target, targetDir);
+        }
+    }
+
+    private ArchiveIngester createArchiveIngester() {
+        HdfsProperties.Archive archive = hdfsProperties.getArchive();
+        return new ArchiveIngester(getFileSystem(), getExecutor(), bufferPool, throttle::acquireBytes,
+                archive.getMaxEntries(), archive.getMaxTotalBytes(), archive.getMaxCompressionRatio());
+    }
+
+    private ChecksumAuditor createAuditor() {
+        return new ChecksumAuditor(getExecutor(), bufferPool, auditLimiter);
+    }
+
+    /**
+     * 创建以COMPOSITE_CRC模式获取校验和的独立文件系统实例, 使用后需关闭
+     */
+    private FileSystem newChecksumFileSystem(URI uri) throws Exception {
+        org.apache.hadoop.conf.Configuration configuration = new org.apache.hadoop.conf.Configuration(getFileSystem().getConf());
+        configuration.set("dfs.checksum.combine.mode", "COMPOSITE_CRC");
+        return StrUtil.isBlank(hdfsProperties.getUsername()) ? FileSystem.newInstance(uri, configuration)
+                : FileSystem.newInstance(uri, configuration, hdfsProperties.getUsername());
+    }
+
+    private ClusterCopier createCopier(FileSystem source, FileSystem target) {
+        return new ClusterCopier(source, target, getExecutor(), bufferPool, throttle::acquireBytes);
+    }
+
+    /**
+     * 快照增量复制
+     *
+     * @param owner 打开目标目录所用的集群, 目标目录不带协议与地址时为该集群
+     */
+    private ReplicationResult replicate(String snapshotDir, HdfsTemplate owner, Path targetDir, String name,
+                                        CopyOptions options) throws HdfsException {
+        Assert.notBlank(snapshotDir, "快照目录不能为空");
+        Assert.notBlank(name, "快照名称不能为空");
+        CopyOptions copyOptions = ObjectUtil.defaultIfNull(options, new CopyOptions());
+        try {
+            return JfrRecorder.record("replicate", snapshotDir, Boolean.TRUE, () -> {
+                if (!copyOptions.isVerifyChecksum()) {
+                    return replicate(getFileSystem(), owner.resolveFileSystem(targetDir), snapshotDir, targetDir, name,
+                            copyOptions);
+                }
+                try (FileSystem source = newChecksumFileSystem(getFileSystem().getUri());
+                     FileSystem target = owner.newChecksumFileSystem(owner.resolveFileSystem(targetDir).getUri())) {
+                    return replicate(source, target, snapshotDir, targetDir, name, copyOptions);
+                }
+            });
+        } catch (HdfsException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("replicate {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    private ReplicationResult replicate(FileSystem source, FileSystem target, String snapshotDir, Path targetDir,
+                                        String name, CopyOptions options) {
+        Assert.isTrue(source instanceof DistributedFileSystem, "快照增量复制只支持HDFS");
+        return new SnapshotReplicator((DistributedFileSystem) source, target, createCopier(source, target))
+                .replicate(new Path(snapshotDir), targetDir, name, options);
+    }
+
+    private UsageCache getUsageCache() {
+        if (ObjectUtil.isNull(usageCache)) {
+            synchronized (this) {
+                if (ObjectUtil.isNull(usageCache)) {
+                    HdfsProperties.Usage usage = hdfsProperties.getUsage();
+                    usageCache = new UsageCache(path -> DirectoryUsage.of(path, getContentSummary(path)), getExecutor(),
+                            usage.getTtl().toMillis(), usage.getRefreshInterval().toMillis());
+                }
+            }
+        }
+        return usageCache;
+    }
+
+    private ContentStore getContentStore() {
+        FileSystem current = getFileSystem();
+        Assert.isTrue(current instanceof DistributedFileSystem, "去重上传只支持HDFS");
+        HdfsProperties.Dedup dedup = hdfsProperties.getDedup();
+        return new ContentStore((DistributedFileSystem) current, new Path(dedup.getRoot()), dedup.getPartSize(),
+                getExecutor(), bufferPool, throttle::acquireBytes);
+    }
+
+    private ExecutorService getPrefetchExecutor() {
+        if (ObjectUtil.isNull(prefetchExecutor)) {
+            synchronized (this) {
+                if (ObjectUtil.isNull(prefetchExecutor)) {
+                    prefetchExecutor = Executors.newCachedThreadPool(
+                            ThreadUtil.newNamedThreadFactory("hdfs-prefetch-", Boolean.TRUE));
+                }
+            }
+        }
+        return prefetchExecutor;
+    }
+
+    private LimitedExecutor getExecutor() {
+        if (ObjectUtil.isNull(executor)) {
+            synchronized (this) {
+                if (ObjectUtil.isNull(executor)) {
+                    int parallelism = Math.max(1, hdfsProperties.getParallelism());
+                    HdfsProperties.Limiter limiter = hdfsProperties.getLimiter();
+                    int initialLimit = limiter.getInitialLimit() > 0 ? limiter.getInitialLimit() : parallelism / 2;
+                    executor = new LimitedExecutor(parallelism, "hdfs-worker-", new AdaptiveLimiter(initialLimit,
+                            Math.min(limiter.getMinLimit(), parallelism), parallelism, limiter.getLatencyTolerance(),
+                            limiter.getBackoffRatio()));
+                }
+            }
+        }
+        return executor;
+    }
+
+    private <K, V> Map<K, V> executeAll(String operation, Collection<K> keys, Function<K, Callable<V>> task, V fallback) {
+        Map<K, Future<V>> futures = new LinkedHashMap<>(keys.size());
+        for (K key : keys) {
+            futures.put(key, getExecutor().submit(operation, invoker.propagate(task.apply(key))));
+        }
+        Map<K, V> results = new LinkedHashMap<>(keys.size());
+        futures.forEach((key, future) -> {
+            try {
+                results.put(key, future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new HdfsException(e);
+            } catch (Exception e) {
+                logger.error("{} {} {}", operation, key, ExceptionUtil.getRootCauseMessage(e));
+                if (ObjectUtil.isNotNull(fallback)) {
+                    results.put(key, fallback);
+                }
+            }
+        });
+        return results;
+    }
 
 }
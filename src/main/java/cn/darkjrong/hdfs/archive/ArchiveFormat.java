@@ -0,0 +1,50 @@
+package cn.darkjrong.hdfs.archive;
+
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.hutool.core.util.StrUtil;
+
+/**
+ * 压缩包格式
+ *
+ * @author Rong.Jia
+ * @date 2022/01/18
+ */
+public enum ArchiveFormat {
+
+    /**
+     * zip, 本地文件可随机访问, 各条目并行写入
+     */
+    ZIP,
+
+    /**
+     * tar
+     */
+    TAR,
+
+    /**
+     * tar.gz / tgz
+     */
+    TAR_GZ;
+
+    /**
+     * 根据文件名获取格式
+     *
+     * @param fileName 文件名
+     * @return {@link ArchiveFormat}
+     * @throws HdfsException 不支持的格式
+     */
+    public static ArchiveFormat of(String fileName) throws HdfsException {
+        String name = StrUtil.nullToEmpty(fileName).toLowerCase();
+        if (StrUtil.endWith(name, ".zip")) {
+            return ZIP;
+        }
+        if (StrUtil.endWithAny(name, ".tar.gz", ".tgz")) {
+            return TAR_GZ;
+        }
+        if (StrUtil.endWith(name, ".tar")) {
+            return TAR;
+        }
+        throw new HdfsException("不支持的压缩包格式, fileName: {}", fileName);
+    }
+
+}
@@ -0,0 +1,465 @@
+package cn.darkjrong.hdfs.archive;
+
+import cn.darkjrong.hdfs.buffer.BufferPool;
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.darkjrong.hdfs.support.AtomicRename;
+import cn.hutool.core.lang.Assert;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 压缩包导入, 将zip/tar/tar.gz的各条目直接流式写入HDFS, 无需先解压到本地磁盘
+ * <p>
+ * 本地zip文件可随机访问, 各条目并行写入; 其余情况按条目顺序写入. 每个条目先写入同目录的临时文件, 成功后原子重命名,
+ * 失败时删除临时文件, 不会留下截断的文件. 单个条目失败时记录到清单并继续;
+ * 条目名称包含 ".." 或与之前的条目写到同一路径时拒绝写入.
+ * <p>
+ * 条目数、解压后总字节数或压缩比超过上限时视为压缩炸弹, 中止整个导入并抛出 {@link HdfsException}
+ *
+ * @author Rong.Jia
+ * @date 2022/01/18
+ */
+public class ArchiveIngester {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveIngester.class);
+
+    /**
+     * 解压字节数超过该值后才检查压缩比, 避免小文件误判
+     */
+    private static final long RATIO_GRACE_BYTES = 1024 * 1024;
+
+    private final FileSystem fileSystem;
+    private final ExecutorService executor;
+    private final BufferPool bufferPool;
+    private final LongConsumer onChunk;
+    private final int maxEntries;
+    private final long maxTotalBytes;
+    private final double maxCompressionRatio;
+
+    /**
+     * 压缩包导入
+     *
+     * @param fileSystem          文件系统
+     * @param executor            并行写入zip条目的线程池
+     * @param bufferPool          缓冲池
+     * @param onChunk             每次写入前回调字节数, 可用于限流, 可为null
+     * @param maxEntries          最多文件条目数, 小于等于0不限制
+     * @param maxTotalBytes       解压后最多总字节数, 小于等于0不限制
+     * @param maxCompressionRatio 解压后字节数与压缩字节数的最大比值, 小于等于0不限制
+     */
+    public ArchiveIngester(FileSystem fileSystem, ExecutorService executor, BufferPool bufferPool, LongConsumer onChunk,
+                           int maxEntries, long maxTotalBytes, double maxCompressionRatio) {
+        this.fileSystem = fileSystem;
+        this.executor = executor;
+        this.bufferPool = bufferPool;
+        this.onChunk = onChunk;
+        this.maxEntries = maxEntries;
+        this.maxTotalBytes = maxTotalBytes;
+        this.maxCompressionRatio = maxCompressionRatio;
+    }
+
+    /**
+     * 导入本地压缩包, 格式由文件扩展名决定
+     *
+     * @param archive   压缩包
+     * @param directory 目标目录
+     * @param overwrite 是否覆盖已存在的文件
+     * @return {@link IngestManifest}
+     * @throws HdfsException hdfs异常
+     */
+    public IngestManifest ingest(File archive, Path directory, boolean overwrite) throws HdfsException {
+        Assert.isTrue(archive.isFile(), "压缩包不存在, archive: {}", archive);
+        ArchiveFormat format = ArchiveFormat.of(archive.getName());
+        if (format != ArchiveFormat.ZIP) {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(archive.toPath()))) {
+                return ingest(in, format, directory, overwrite);
+            } catch (IOException e) {
+                throw new HdfsException(e);
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        IngestManifest manifest = new IngestManifest();
+        manifest.setFormat(format);
+        manifest.setDirectory(directory.toString());
+        Budget budget = new Budget(null);
+        Set<String> paths = new HashSet<>();
+        try (ZipFile zipFile = new ZipFile(archive)) {
+            precheck(zipFile);
+            Map<String, Future<ManifestEntry>> futures = new LinkedHashMap<>();
+            try {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (entry.isDirectory()) {
+                        continue;
+                    }
+                    budget.entry();
+                    Path path;
+                    try {
+                        path = resolve(directory, entry.getName(), paths);
+                    } catch (Exception e) {
+                        logger.error("ingest {} failed {}", entry.getName(), e.getMessage());
+                        manifest.getFailed().add(entry.getName());
+                        continue;
+                    }
+                    futures.put(entry.getName(), executor.submit(() -> {
+                        try (InputStream in = zipFile.getInputStream(entry)) {
+                            return write(entry.getName(), path, new LimitedInputStream(in, budget, entry.getCompressedSize()),
+                                    entry.getTime(), overwrite);
+                        }
+                    }));
+                }
+                for (Map.Entry<String, Future<ManifestEntry>> future : futures.entrySet()) {
+                    try {
+                        add(manifest, future.getValue().get());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new HdfsException(e);
+                    } catch (ExecutionException e) {
+                        if (e.getCause() instanceof LimitExceededException) {
+                            throw (LimitExceededException) e.getCause();
+                        }
+                        logger.error("ingest {} failed {}", future.getKey(), e.getCause().getMessage());
+                        manifest.getFailed().add(future.getKey());
+                    }
+                }
+            } finally {
+                futures.values().forEach(a -> a.cancel(Boolean.TRUE));
+            }
+        } catch (IOException e) {
+            throw new HdfsException(e);
+        }
+        manifest.setElapsed(System.currentTimeMillis() - start);
+        return manifest;
+    }
+
+    /**
+     * 导入压缩包输入流, 按条目顺序写入, 不关闭输入流
+     *
+     * @param in        压缩包输入流
+     * @param format    格式
+     * @param directory 目标目录
+     * @param overwrite 是否覆盖已存在的文件
+     * @return {@link IngestManifest}
+     * @throws HdfsException hdfs异常
+     */
+    public IngestManifest ingest(InputStream in, ArchiveFormat format, Path directory, boolean overwrite) throws HdfsException {
+        long start = System.currentTimeMillis();
+        IngestManifest manifest = new IngestManifest();
+        manifest.setFormat(format);
+        manifest.setDirectory(directory.toString());
+        // 顺序读取时按读取的压缩字节数计算整体压缩比
+        CountingInputStream raw = new CountingInputStream(in);
+        Budget budget = new Budget(raw::getCount);
+        Set<String> paths = new HashSet<>();
+        try {
+            if (format == ArchiveFormat.ZIP) {
+                ZipInputStream zip = new ZipInputStream(raw);
+                ZipEntry entry;
+                while ((entry = zip.getNextEntry()) != null) {
+                    if (!entry.isDirectory()) {
+                        writeQuietly(manifest, budget, paths, entry.getName(), zip, entry.getTime(), directory, overwrite);
+                    }
+                }
+            } else {
+                TarArchiveInputStream tar = new TarArchiveInputStream(format == ArchiveFormat.TAR_GZ
+                        ? new GzipCompressorInputStream(raw, Boolean.TRUE) : raw);
+                TarArchiveEntry entry;
+                while ((entry = tar.getNextTarEntry()) != null) {
+                    // 目录随文件创建, 链接、设备等特殊条目忽略
+                    if (entry.isFile()) {
+                        writeQuietly(manifest, budget, paths, entry.getName(), tar, entry.getModTime().getTime(),
+                                directory, overwrite);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.error("ingest {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+        manifest.setElapsed(System.currentTimeMillis() - start);
+        return manifest;
+    }
+
+    /**
+     * 按中央目录声明的条目数与大小预先检查, 实际解压时仍按读取的字节数检查
+     */
+    private void precheck(ZipFile zipFile) {
+        int entries = 0;
+        long bytes = 0;
+        Enumeration<? extends ZipEntry> enumeration = zipFile.entries();
+        while (enumeration.hasMoreElements()) {
+            ZipEntry entry = enumeration.nextElement();
+            if (!entry.isDirectory()) {
+                entries++;
+                bytes += Math.max(0, entry.getSize());
+            }
+        }
+        if (maxEntries > 0 && entries > maxEntries) {
+            throw new LimitExceededException("压缩包条目数超过上限, entries: {}, max: {}", entries, maxEntries);
+        }
+        if (maxTotalBytes > 0 && bytes > maxTotalBytes) {
+            throw new LimitExceededException("压缩包解压后字节数超过上限, bytes: {}, max: {}", bytes, maxTotalBytes);
+        }
+    }
+
+    private void writeQuietly(IngestManifest manifest, Budget budget, Set<String> paths, String name, InputStream in,
+                              long modificationTime, Path directory, boolean overwrite) {
+        budget.entry();
+        try {
+            Path path = resolve(directory, name, paths);
+            add(manifest, write(name, path, new LimitedInputStream(in, budget, -1), modificationTime, overwrite));
+        } catch (LimitExceededException e) {
+            logger.error("ingest {} aborted {}", name, e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            // 下一次getNextEntry会跳过当前条目的剩余内容
+            logger.error("ingest {} failed {}", name, e.getMessage());
+            manifest.getFailed().add(name);
+        }
+    }
+
+    private ManifestEntry write(String name, Path path, InputStream in, long modificationTime,
+                                boolean overwrite) throws IOException {
+        if (!overwrite && fileSystem.exists(path)) {
+            throw new FileAlreadyExistsException(path.toString());
+        }
+        Path tmp = new Path(path.getParent(), StrUtil.DOT + path.getName() + StrUtil.DOT + IdUtil.fastSimpleUUID() + ".ingest");
+        CheckedInputStream checked = new CheckedInputStream(in, new CRC32());
+        long size;
+        try {
+            try (FSDataOutputStream out = fileSystem.create(tmp, Boolean.FALSE)) {
+                size = bufferPool.copy(checked, out, onChunk);
+            }
+            if (modificationTime > 0) {
+                fileSystem.setTimes(tmp, modificationTime, -1);
+            }
+            AtomicRename.rename(fileSystem, tmp, path, overwrite);
+        } catch (IOException | RuntimeException e) {
+            fileSystem.delete(tmp, Boolean.FALSE);
+            throw e;
+        }
+
+        ManifestEntry entry = new ManifestEntry();
+        entry.setName(name);
+        entry.setPath(path.toUri().getPath());
+        entry.setSize(size);
+        entry.setCrc32(checked.getChecksum().getValue());
+        entry.setModificationTime(modificationTime);
+        return entry;
+    }
+
+    private void add(IngestManifest manifest, ManifestEntry entry) {
+        manifest.getEntries().add(entry);
+        manifest.setBytes(manifest.getBytes() + entry.getSize());
+    }
+
+    /**
+     * 条目的目标路径, 与之前的条目重复时拒绝
+     */
+    private Path resolve(Path directory, String name, Set<String> paths) {
+        Path path = new Path(directory, normalize(name));
+        if (!paths.add(path.toUri().getPath())) {
+            throw new HdfsException("重复的条目名称, name: {}", name);
+        }
+        return path;
+    }
+
+    private String normalize(String name) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : StrUtil.split(name.replace(StrUtil.C_BACKSLASH, StrUtil.C_SLASH), StrUtil.C_SLASH)) {
+            if (StrUtil.isEmpty(segment) || StrUtil.DOT.equals(segment)) {
+                continue;
+            }
+            if (StrUtil.DOUBLE_DOT.equals(segment)) {
+                throw new HdfsException("非法的条目名称, name: {}", name);
+            }
+            segments.add(segment);
+        }
+        Assert.notEmpty(segments, "条目名称不能为空");
+        return StrUtil.join(StrUtil.SLASH, segments);
+    }
+
+    /**
+     * 一次导入的解压限制, zip条目并行写入时共享
+     */
+    private final class Budget {
+
+        private final AtomicInteger entries = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+        private final LongSupplier compressed;
+
+        /**
+         * @param compressed 已读取的压缩字节数, 为null时按条目的压缩大小检查压缩比
+         */
+        private Budget(LongSupplier compressed) {
+            this.compressed = compressed;
+        }
+
+        private void entry() {
+            int count = entries.incrementAndGet();
+            if (maxEntries > 0 && count > maxEntries) {
+                throw new LimitExceededException("压缩包条目数超过上限, max: {}", maxEntries);
+            }
+        }
+
+        private void consume(long count, long entryBytes, long compressedSize) {
+            long total = bytes.addAndGet(count);
+            if (maxTotalBytes > 0 && total > maxTotalBytes) {
+                throw new LimitExceededException("压缩包解压后字节数超过上限, max: {}", maxTotalBytes);
+            }
+            if (maxCompressionRatio <= 0) {
+                return;
+            }
+            if (compressedSize > 0) {
+                if (entryBytes > RATIO_GRACE_BYTES && entryBytes > compressedSize * maxCompressionRatio) {
+                    throw new LimitExceededException("条目压缩比超过上限, max: {}", maxCompressionRatio);
+                }
+            } else if (compressed != null && total > RATIO_GRACE_BYTES
+                    && total > compressed.getAsLong() * maxCompressionRatio) {
+                throw new LimitExceededException("压缩包压缩比超过上限, max: {}", maxCompressionRatio);
+            }
+        }
+
+    }
+
+    /**
+     * 统计单个条目解压后的字节数并计入限制
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private final Budget budget;
+        private final long compressedSize;
+        private long count;
+
+        private LimitedInputStream(InputStream in, Budget budget, long compressedSize) {
+            super(in);
+            this.budget = budget;
+            this.compressedSize = compressedSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                consume(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                consume(read);
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // 条目流由压缩包流管理, 不关闭
+        }
+
+        private void consume(int read) {
+            count += read;
+            budget.consume(read, count, compressedSize);
+        }
+
+    }
+
+    /**
+     * 统计读取的压缩字节数
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private final AtomicLong count = new AtomicLong();
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count.addAndGet(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count.addAndGet(Math.max(0, skipped));
+            return skipped;
+        }
+
+        @Override
+        public void close() {
+            // 不关闭调用方的输入流
+        }
+
+        private long getCount() {
+            return count.get();
+        }
+
+    }
+
+    /**
+     * 超过解压限制, 中止整个导入
+     */
+    private static final class LimitExceededException extends HdfsException {
+
+        private LimitExceededException(String messageTemplate, Object... params) {
+            super(messageTemplate, params);
+        }
+
+    }
+
+}
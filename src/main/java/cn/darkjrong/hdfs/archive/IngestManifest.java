@@ -0,0 +1,47 @@
+package cn.darkjrong.hdfs.archive;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 压缩包导入清单
+ *
+ * @author Rong.Jia
+ * @date 2022/01/18
+ */
+@Data
+public class IngestManifest {
+
+    /**
+     * 压缩包格式
+     */
+    private ArchiveFormat format;
+
+    /**
+     * 目标目录
+     */
+    private String directory;
+
+    /**
+     * 已写入的文件
+     */
+    private List<ManifestEntry> entries = new ArrayList<>();
+
+    /**
+     * 写入失败的条目名称
+     */
+    private List<String> failed = new ArrayList<>();
+
+    /**
+     * 写入的总字节数
+     */
+    private long bytes;
+
+    /**
+     * 耗时, 毫秒
+     */
+    private long elapsed;
+
+}
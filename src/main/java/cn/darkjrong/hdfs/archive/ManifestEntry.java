@@ -0,0 +1,39 @@
+package cn.darkjrong.hdfs.archive;
+
+import lombok.Data;
+
+/**
+ * 压缩包导入清单条目
+ *
+ * @author Rong.Jia
+ * @date 2022/01/18
+ */
+@Data
+public class ManifestEntry {
+
+    /**
+     * 压缩包内的条目名称
+     */
+    private String name;
+
+    /**
+     * 写入的HDFS路径
+     */
+    private String path;
+
+    /**
+     * 字节数
+     */
+    private long size;
+
+    /**
+     * 内容的CRC32校验值
+     */
+    private long crc32;
+
+    /**
+     * 条目在压缩包中记录的修改时间
+     */
+    private long modificationTime;
+
+}
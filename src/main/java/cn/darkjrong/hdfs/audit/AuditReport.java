@@ -0,0 +1,71 @@
+package cn.darkjrong.hdfs.audit;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 完整性审计结果, 路径均相对审计根目录
+ *
+ * @author Rong.Jia
+ * @date 2022/01/22
+ */
+@Data
+public class AuditReport {
+
+    /**
+     * 审计的文件数
+     */
+    private int files;
+
+    /**
+     * 审计的字节数
+     */
+    private long bytes;
+
+    /**
+     * 长度与校验和一致的文件数
+     */
+    private int matched;
+
+    /**
+     * 长度或校验和不一致的文件
+     */
+    private List<String> mismatched = new ArrayList<>();
+
+    /**
+     * 比对对象中缺失的文件
+     */
+    private List<String> missing = new ArrayList<>();
+
+    /**
+     * 仅存在于比对对象中的文件
+     */
+    private List<String> extra = new ArrayList<>();
+
+    /**
+     * 长度一致但校验和算法不同或无校验和, 无法比对内容的文件
+     */
+    private List<String> unverified = new ArrayList<>();
+
+    /**
+     * 列出或获取校验和失败的文件、目录
+     */
+    private List<String> failed = new ArrayList<>();
+
+    /**
+     * 耗时, 毫秒
+     */
+    private long elapsed;
+
+    /**
+     * 是否完全一致
+     *
+     * @return 是否一致
+     */
+    public boolean isConsistent() {
+        return mismatched.isEmpty() && missing.isEmpty() && extra.isEmpty() && unverified.isEmpty() && failed.isEmpty();
+    }
+
+}
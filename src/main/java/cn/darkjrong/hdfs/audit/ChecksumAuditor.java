@@ -0,0 +1,315 @@
+package cn.darkjrong.hdfs.audit;
+
+import cn.darkjrong.hdfs.buffer.BufferPool;
+import cn.darkjrong.hdfs.copy.ClusterCopier;
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.darkjrong.hdfs.support.ParallelLister;
+import cn.darkjrong.hdfs.support.TokenBucket;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.NumberUtil;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.PureJavaCrc32;
+import org.apache.hadoop.util.PureJavaCrc32C;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Checksum;
+
+/**
+ * 完整性审计, 并行列出目录树并获取各文件校验和, 与本地目录、另一个集群或校验和清单比对
+ * <p>
+ * 文件系统需以COMPOSITE_CRC模式(dfs.checksum.combine.mode)获取校验和, 其值等于整个文件内容的CRC,
+ * 与块大小、分块方式无关, 可与其他集群或本地文件直接比对
+ *
+ * @author Rong.Jia
+ * @date 2022/01/22
+ */
+public class ChecksumAuditor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChecksumAuditor.class);
+
+    /**
+     * COMPOSITE_CRC模式校验和算法名前缀
+     */
+    public static final String COMPOSITE_PREFIX = "COMPOSITE-";
+    private static final String COMPOSITE_CRC32 = COMPOSITE_PREFIX + "CRC32";
+    private static final String COMPOSITE_CRC32C = COMPOSITE_PREFIX + "CRC32C";
+
+    private final ExecutorService executor;
+    private final BufferPool bufferPool;
+    private final TokenBucket limiter;
+
+    /**
+     * 完整性审计
+     *
+     * @param executor   并行列出与获取校验和的线程池
+     * @param bufferPool 读取本地文件的缓冲池
+     * @param limiter    每个文件获取校验和前取一个令牌, 可为null
+     */
+    public ChecksumAuditor(ExecutorService executor, BufferPool bufferPool, TokenBucket limiter) {
+        this.executor = executor;
+        this.bufferPool = bufferPool;
+        this.limiter = limiter;
+    }
+
+    /**
+     * 与本地目录比对, 本地文件按HDFS校验和的CRC类型计算整文件CRC
+     *
+     * @param fileSystem 文件系统
+     * @param root       HDFS文件或目录
+     * @param local      本地文件或目录
+     * @return {@link AuditReport}
+     * @throws HdfsException hdfs异常
+     */
+    public AuditReport audit(FileSystem fileSystem, Path root, File local) throws HdfsException {
+        long start = System.currentTimeMillis();
+        List<String> failed = new ArrayList<>();
+        Map<String, ChecksumEntry> source = checksum(fileSystem, root, failed);
+        Map<String, ChecksumEntry> reference = checksum(local, source, failed);
+        return report(source, reference, failed, start);
+    }
+
+    /**
+     * 与另一个文件系统比对
+     *
+     * @param fileSystem 文件系统
+     * @param root       文件或目录
+     * @param target     比对的文件系统
+     * @param targetRoot 比对的文件或目录
+     * @return {@link AuditReport}
+     * @throws HdfsException hdfs异常
+     */
+    public AuditReport audit(FileSystem fileSystem, Path root, FileSystem target, Path targetRoot) throws HdfsException {
+        long start = System.currentTimeMillis();
+        List<String> failed = new ArrayList<>();
+        Map<String, ChecksumEntry> source = checksum(fileSystem, root, failed);
+        Map<String, ChecksumEntry> reference = checksum(target, targetRoot, failed);
+        return report(source, reference, failed, start);
+    }
+
+    /**
+     * 与校验和清单比对
+     *
+     * @param fileSystem 文件系统
+     * @param root       文件或目录
+     * @param manifest   由 {@link #writeManifest(FileSystem, Path, File)} 生成的清单
+     * @return {@link AuditReport}
+     * @throws HdfsException hdfs异常
+     */
+    public AuditReport auditManifest(FileSystem fileSystem, Path root, File manifest) throws HdfsException {
+        long start = System.currentTimeMillis();
+        List<String> failed = new ArrayList<>();
+        Map<String, ChecksumEntry> reference = readManifest(manifest);
+        Map<String, ChecksumEntry> source = checksum(fileSystem, root, failed);
+        return report(source, reference, failed, start);
+    }
+
+    /**
+     * 生成校验和清单, 每行为 "长度\t算法\t校验和\t相对路径"
+     *
+     * @param fileSystem 文件系统
+     * @param root       文件或目录
+     * @param manifest   清单文件, 已存在时覆盖
+     * @return 清单条目数
+     * @throws HdfsException hdfs异常, 有文件获取校验和失败时不生成清单
+     */
+    public int writeManifest(FileSystem fileSystem, Path root, File manifest) throws HdfsException {
+        List<String> failed = new ArrayList<>();
+        Map<String, ChecksumEntry> entries = checksum(fileSystem, root, failed);
+        if (!failed.isEmpty()) {
+            throw new HdfsException("获取校验和失败, paths: {}", failed);
+        }
+        List<String> lines = new ArrayList<>(entries.size());
+        entries.values().forEach(a -> lines.add(StrUtil.join(StrUtil.TAB, a.getLength(),
+                StrUtil.nullToEmpty(a.getAlgorithm()), StrUtil.nullToEmpty(a.getChecksum()), a.getPath())));
+        FileUtil.writeUtf8Lines(lines, manifest);
+        return lines.size();
+    }
+
+    /**
+     * 并行列出并获取校验和
+     *
+     * @return 相对路径与校验和, 源为文件时以文件名为相对路径
+     */
+    private Map<String, ChecksumEntry> checksum(FileSystem fileSystem, Path root, List<String> failed) throws HdfsException {
+        Map<String, FileStatus> files = list(fileSystem, root, failed);
+        Map<String, Future<ChecksumEntry>> futures = new LinkedHashMap<>(files.size());
+        files.forEach((path, status) -> futures.put(path, executor.submit(() -> {
+            if (ObjectUtil.isNotNull(limiter)) {
+                limiter.acquire(1, Boolean.FALSE);
+            }
+            FileChecksum checksum = fileSystem.getFileChecksum(status.getPath());
+            ChecksumEntry entry = entry(path, status.getLen());
+            if (ObjectUtil.isNotNull(checksum)) {
+                entry.setAlgorithm(checksum.getAlgorithmName());
+                entry.setChecksum(HexUtil.encodeHexStr(checksum.getBytes()));
+            }
+            return entry;
+        })));
+        return await(futures, failed);
+    }
+
+    /**
+     * 计算本地文件CRC, 只计算在HDFS中存在、长度一致且为COMPOSITE_CRC校验和的文件
+     */
+    private Map<String, ChecksumEntry> checksum(File local, Map<String, ChecksumEntry> source,
+                                                List<String> failed) throws HdfsException {
+        if (!local.exists()) {
+            throw new HdfsException("本地文件不存在, path: {}", local);
+        }
+        Map<String, File> files = new TreeMap<>();
+        if (local.isFile()) {
+            files.put(local.getName(), local);
+        } else {
+            java.nio.file.Path rootPath = local.toPath();
+            for (File file : FileUtil.loopFiles(local)) {
+                String relative = rootPath.relativize(file.toPath()).toString();
+                files.put(relative.replace(File.separatorChar, StrUtil.C_SLASH), file);
+            }
+        }
+
+        Map<String, Future<ChecksumEntry>> futures = new LinkedHashMap<>(files.size());
+        Map<String, ChecksumEntry> entries = new TreeMap<>();
+        files.forEach((path, file) -> {
+            ChecksumEntry expected = source.get(path);
+            if (ObjectUtil.isNull(expected) || expected.getLength() != file.length()
+                    || !StrUtil.equalsAny(expected.getAlgorithm(), COMPOSITE_CRC32, COMPOSITE_CRC32C)) {
+                entries.put(path, entry(path, file.length()));
+            } else {
+                futures.put(path, executor.submit(() -> crc(path, file, expected.getAlgorithm())));
+            }
+        });
+        entries.putAll(await(futures, failed));
+        return entries;
+    }
+
+    private ChecksumEntry crc(String path, File file, String algorithm) throws IOException {
+        Checksum crc = COMPOSITE_CRC32C.equals(algorithm) ? new PureJavaCrc32C() : new PureJavaCrc32();
+        ByteBuffer buffer = bufferPool.getBuffer(Boolean.FALSE, bufferPool.getBufferSize());
+        long length = 0;
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = in.read(buffer.array(), buffer.arrayOffset(), bufferPool.getBufferSize())) > 0) {
+                crc.update(buffer.array(), buffer.arrayOffset(), read);
+                length += read;
+            }
+        } finally {
+            bufferPool.putBuffer(buffer);
+        }
+        ChecksumEntry entry = entry(path, length);
+        entry.setAlgorithm(algorithm);
+        entry.setChecksum(HexUtil.encodeHexStr(ByteBuffer.allocate(Integer.BYTES).putInt((int) crc.getValue()).array()));
+        return entry;
+    }
+
+    /**
+     * 并行列出目录, 跳过复制中的临时文件
+     */
+    private Map<String, FileStatus> list(FileSystem fileSystem, Path root, List<String> failed) throws HdfsException {
+        Map<String, FileStatus> files = new TreeMap<>();
+        String rootPath = fileSystem.makeQualified(root).toUri().getPath();
+        for (FileStatus status : ParallelLister.listFiles(fileSystem, root, executor, failed)) {
+            String path = status.getPath().toUri().getPath();
+            if (StrUtil.endWith(path, ClusterCopier.TMP_SUFFIX)) {
+                continue;
+            }
+            String relative = StrUtil.removePrefix(StrUtil.removePrefix(path, rootPath), StrUtil.SLASH);
+            files.put(StrUtil.isEmpty(relative) ? status.getPath().getName() : relative, status);
+        }
+        return files;
+    }
+
+    private Map<String, ChecksumEntry> await(Map<String, Future<ChecksumEntry>> futures, List<String> failed) {
+        Map<String, ChecksumEntry> entries = new TreeMap<>();
+        futures.forEach((path, future) -> {
+            try {
+                entries.put(path, future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new HdfsException(e);
+            } catch (Exception e) {
+                logger.error("checksum {} failed {}", path, e.getMessage());
+                failed.add(path);
+            }
+        });
+        return entries;
+    }
+
+    private AuditReport report(Map<String, ChecksumEntry> source, Map<String, ChecksumEntry> reference,
+                               List<String> failed, long start) {
+        AuditReport report = new AuditReport();
+        report.getFailed().addAll(failed);
+        source.forEach((path, entry) -> {
+            report.setFiles(report.getFiles() + 1);
+            report.setBytes(report.getBytes() + entry.getLength());
+            ChecksumEntry expected = reference.get(path);
+            if (ObjectUtil.isNull(expected)) {
+                // 获取校验和失败的文件已计入失败
+                if (!failed.contains(path)) {
+                    report.getMissing().add(path);
+                }
+            } else if (entry.getLength() != expected.getLength()) {
+                report.getMismatched().add(path);
+            } else if (ObjectUtil.hasNull(entry.getChecksum(), expected.getChecksum())
+                    || !StrUtil.equals(entry.getAlgorithm(), expected.getAlgorithm())) {
+                report.getUnverified().add(path);
+            } else if (entry.getChecksum().equals(expected.getChecksum())) {
+                report.setMatched(report.getMatched() + 1);
+            } else {
+                report.getMismatched().add(path);
+            }
+        });
+        reference.keySet().stream()
+                .filter(a -> !source.containsKey(a) && !failed.contains(a))
+                .forEach(a -> report.getExtra().add(a));
+        report.setElapsed(System.currentTimeMillis() - start);
+        return report;
+    }
+
+    private Map<String, ChecksumEntry> readManifest(File manifest) throws HdfsException {
+        if (!manifest.isFile()) {
+            throw new HdfsException("校验和清单不存在, path: {}", manifest);
+        }
+        Map<String, ChecksumEntry> entries = new TreeMap<>();
+        for (String line : FileUtil.readUtf8Lines(manifest)) {
+            if (StrUtil.isBlank(line)) {
+                continue;
+            }
+            List<String> fields = StrUtil.split(line, StrUtil.C_TAB, 4);
+            if (fields.size() != 4 || !NumberUtil.isLong(fields.get(0))) {
+                throw new HdfsException("非法的校验和清单, line: {}", line);
+            }
+            ChecksumEntry entry = entry(fields.get(3), Long.parseLong(fields.get(0)));
+            entry.setAlgorithm(StrUtil.emptyToNull(fields.get(1)));
+            entry.setChecksum(StrUtil.emptyToNull(fields.get(2)));
+            entries.put(entry.getPath(), entry);
+        }
+        return entries;
+    }
+
+    private ChecksumEntry entry(String path, long length) {
+        ChecksumEntry entry = new ChecksumEntry();
+        entry.setPath(path);
+        entry.setLength(length);
+        return entry;
+    }
+
+}
@@ -0,0 +1,34 @@
+package cn.darkjrong.hdfs.audit;
+
+import lombok.Data;
+
+/**
+ * 文件校验和清单条目
+ *
+ * @author Rong.Jia
+ * @date 2022/01/22
+ */
+@Data
+public class ChecksumEntry {
+
+    /**
+     * 相对审计根目录的路径
+     */
+    private String path;
+
+    /**
+     * 文件长度
+     */
+    private long length;
+
+    /**
+     * 校验和算法, 如 COMPOSITE-CRC32C, 未获取校验和时为null
+     */
+    private String algorithm;
+
+    /**
+     * 校验和, 十六进制, 未获取校验和时为null
+     */
+    private String checksum;
+
+}
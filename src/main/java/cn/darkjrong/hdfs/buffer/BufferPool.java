@@ -0,0 +1,356 @@
+package cn.darkjrong.hdfs.buffer;
+
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.darkjrong.hdfs.jfr.JfrRecorder;
+import cn.hutool.core.lang.Assert;
+import cn.hutool.core.util.ObjectUtil;
+import org.apache.hadoop.fs.ByteBufferReadable;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.io.ByteBufferPool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+
+/**
+ * 传输缓冲池, 按块(slab)分配固定大小的堆外/堆内缓冲区, 所有缓冲区共享一个全局内存上限
+ * <p>
+ * 内存耗尽时获取缓冲区会阻塞等待, 超时后抛出 {@link HdfsException}, 调用方据此限流;
+ * 超过缓冲区大小的请求不入池, 按占用的缓冲区个数计入内存上限, 归还后释放;
+ * 一种类型的缓冲区不足时, 只回收另一类型中缓冲区全部空闲的块
+ *
+ * @author Rong.Jia
+ * @date 2022/01/09
+ */
+public class BufferPool implements ByteBufferPool {
+
+    private final int bufferSize;
+    private final int buffersPerSlab;
+    private final int maxBuffers;
+    private final long acquireTimeout;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final Deque<ByteBuffer> directBuffers = new ArrayDeque<>();
+    private final Deque<ByteBuffer> heapBuffers = new ArrayDeque<>();
+    private final Set<ByteBuffer> outstanding = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<ByteBuffer, Slab> owners = new IdentityHashMap<>();
+    private final List<Slab> slabs = new ArrayList<>();
+    private final Map<ByteBuffer, Integer> oversized = new IdentityHashMap<>();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private int allocated;
+
+    /**
+     * 传输缓冲池
+     *
+     * @param bufferSize     单个缓冲区字节数
+     * @param capacity       全局内存上限, 字节
+     * @param slabSize       每次分配的块字节数
+     * @param acquireTimeout 内存耗尽时获取缓冲区的最长等待时间, 毫秒, 0表示不等待
+     */
+    public BufferPool(int bufferSize, long capacity, long slabSize, long acquireTimeout) {
+        Assert.isTrue(bufferSize > 0, "缓冲区大小必须大于0");
+        Assert.isTrue(capacity >= bufferSize, "内存上限不能小于缓冲区大小");
+        this.bufferSize = bufferSize;
+        this.maxBuffers = (int) Math.min(Integer.MAX_VALUE, capacity / bufferSize);
+        this.buffersPerSlab = (int) Math.max(1, Math.min(maxBuffers, slabSize / bufferSize));
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    @Override
+    public ByteBuffer getBuffer(boolean direct, int length) {
+        long start = System.nanoTime();
+        long remaining = TimeUnit.MILLISECONDS.toNanos(acquireTimeout);
+        lock.lock();
+        try {
+            if (length > bufferSize) {
+                return allocateOversized(direct, length, remaining);
+            }
+            Deque<ByteBuffer> buffers = direct ? directBuffers : heapBuffers;
+            while (buffers.isEmpty()) {
+                if (allocated < maxBuffers) {
+                    allocateSlab(direct, buffers);
+                } else if (!releaseIdleSlab(!direct)) {
+                    remaining = await(remaining);
+                }
+            }
+            ByteBuffer buffer = buffers.pop();
+            ((Buffer) buffer).clear();
+            owners.get(buffer).idle--;
+            outstanding.add(buffer);
+            return buffer;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HdfsException(e);
+        } finally {
+            lock.unlock();
+            waitNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void putBuffer(ByteBuffer buffer) {
+        lock.lock();
+        try {
+            Integer units = oversized.remove(buffer);
+            if (ObjectUtil.isNotNull(units)) {
+                allocated -= units;
+                released.signalAll();
+            } else if (outstanding.remove(buffer)) {
+                owners.get(buffer).idle++;
+                (buffer.isDirect() ? directBuffers : heapBuffers).push(buffer);
+                released.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 使用池化堆内缓冲区复制流, 不关闭流
+     *
+     * @param in  输入流
+     * @param out 输出流
+     * @return 复制字节数
+     * @throws IOException IO异常
+     */
+    public long copy(InputStream in, OutputStream out) throws IOException {
+        return copy(in, out, null);
+    }
+
+    /**
+     * 使用池化堆内缓冲区复制流, 不关闭流
+     *
+     * @param in      输入流
+     * @param out     输出流
+     * @param onChunk 每次写入前回调本次字节数, 可用于限流, 可为null
+     * @return 复制字节数
+     * @throws IOException IO异常
+     */
+    public long copy(InputStream in, OutputStream out, LongConsumer onChunk) throws IOException {
+        long start = System.nanoTime();
+        ByteBuffer buffer = getBuffer(Boolean.FALSE, bufferSize);
+        long wait = System.nanoTime() - start;
+        long total = 0;
+        long chunks = 0;
+        try {
+            byte[] array = buffer.array();
+            int offset = buffer.arrayOffset();
+            int read;
+            while ((read = in.read(array, offset, bufferSize)) != -1) {
+                if (ObjectUtil.isNotNull(onChunk)) {
+                    onChunk.accept(read);
+                }
+                out.write(array, offset, read);
+                total += read;
+                chunks++;
+            }
+            return total;
+        } finally {
+            putBuffer(buffer);
+            JfrRecorder.transfer(total, chunks, wait);
+        }
+    }
+
+    /**
+     * 使用池化堆外缓冲区将HDFS输入流复制到通道, 不关闭流
+     *
+     * @param in  HDFS输入流
+     * @param out 输出通道
+     * @return 复制字节数
+     * @throws IOException IO异常
+     */
+    public long copy(FSDataInputStream in, WritableByteChannel out) throws IOException {
+        return copy(in, out, null);
+    }
+
+    /**
+     * 使用池化堆外缓冲区将HDFS输入流复制到通道, 不关闭流
+     *
+     * @param in      HDFS输入流
+     * @param out     输出通道
+     * @param onChunk 每次写入前回调本次字节数, 可用于限流, 可为null
+     * @return 复制字节数
+     * @throws IOException IO异常
+     */
+    public long copy(FSDataInputStream in, WritableByteChannel out, LongConsumer onChunk) throws IOException {
+        if (!(in.getWrappedStream() instanceof ByteBufferReadable)) {
+            return copy(in, Channels.newOutputStream(out), onChunk);
+        }
+        long start = System.nanoTime();
+        ByteBuffer buffer = getBuffer(Boolean.TRUE, bufferSize);
+        long wait = System.nanoTime() - start;
+        long total = 0;
+        long chunks = 0;
+        try {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (ObjectUtil.isNotNull(onChunk)) {
+                    onChunk.accept(read);
+                }
+                ((Buffer) buffer).flip();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                ((Buffer) buffer).clear();
+                total += read;
+                chunks++;
+            }
+            return total;
+        } finally {
+            putBuffer(buffer);
+            JfrRecorder.transfer(total, chunks, wait);
+        }
+    }
+
+    /**
+     * 单个缓冲区字节数
+     *
+     * @return 字节数
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * 全局内存上限
+     *
+     * @return 字节数
+     */
+    public long getCapacity() {
+        return (long) maxBuffers * bufferSize;
+    }
+
+    /**
+     * 已分配的内存
+     *
+     * @return 字节数
+     */
+    public long getAllocatedBytes() {
+        lock.lock();
+        try {
+            return (long) allocated * bufferSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 正在使用的缓冲区数
+     *
+     * @return 数量
+     */
+    public int getOutstanding() {
+        lock.lock();
+        try {
+            return outstanding.size() + oversized.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 累计等待获取缓冲区的时间
+     *
+     * @return 纳秒
+     */
+    public long getWaitNanos() {
+        return waitNanos.get();
+    }
+
+    /**
+     * 超过缓冲区大小的请求, 按占用的缓冲区个数等待预算
+     */
+    private ByteBuffer allocateOversized(boolean direct, int length, long remaining) throws InterruptedException {
+        int units = (int) ((length + (long) bufferSize - 1) / bufferSize);
+        if (units > maxBuffers) {
+            throw new HdfsException("请求的缓冲区超过内存上限, length: {}, capacity: {}", length, getCapacity());
+        }
+        while (allocated + units > maxBuffers) {
+            if (!releaseIdleSlab(Boolean.FALSE) && !releaseIdleSlab(Boolean.TRUE)) {
+                remaining = await(remaining);
+            }
+        }
+        ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+        allocated += units;
+        oversized.put(buffer, units);
+        return buffer;
+    }
+
+    private long await(long remaining) throws InterruptedException {
+        if (remaining <= 0) {
+            throw new HdfsException("传输缓冲区已耗尽, capacity: {}", getCapacity());
+        }
+        return released.awaitNanos(remaining);
+    }
+
+    private void allocateSlab(boolean direct, Deque<ByteBuffer> buffers) {
+        int count = Math.min(buffersPerSlab, maxBuffers - allocated);
+        ByteBuffer memory = direct ? ByteBuffer.allocateDirect(count * bufferSize) : ByteBuffer.allocate(count * bufferSize);
+        Slab slab = new Slab(direct, count);
+        for (int i = 0; i < count; i++) {
+            ((Buffer) memory).limit((i + 1) * bufferSize).position(i * bufferSize);
+            ByteBuffer buffer = memory.slice();
+            owners.put(buffer, slab);
+            buffers.push(buffer);
+        }
+        slabs.add(slab);
+        allocated += count;
+    }
+
+    /**
+     * 丢弃一个缓冲区全部空闲的块, 腾出预算; 块内仍有缓冲区在使用时, 块的内存无法回收, 不能释放预算
+     *
+     * @param direct 块类型
+     * @return 是否释放
+     */
+    private boolean releaseIdleSlab(boolean direct) {
+        for (Iterator<Slab> iterator = slabs.iterator(); iterator.hasNext(); ) {
+            Slab slab = iterator.next();
+            if (slab.direct == direct && slab.idle == slab.count) {
+                iterator.remove();
+                (direct ? directBuffers : heapBuffers).removeIf(buffer -> owners.get(buffer) == slab);
+                owners.values().removeIf(owner -> owner == slab);
+                allocated -= slab.count;
+                return Boolean.TRUE;
+            }
+        }
+        return Boolean.FALSE;
+    }
+
+    /**
+     * 块, 记录其中空闲的缓冲区个数
+     */
+    private static final class Slab {
+
+        private final boolean direct;
+        private final int count;
+        private int idle;
+
+        private Slab(boolean direct, int count) {
+            this.direct = direct;
+            this.count = count;
+            this.idle = count;
+        }
+
+    }
+
+}
@@ -0,0 +1,47 @@
+package cn.darkjrong.hdfs.compact;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 小文件合并结果
+ *
+ * @author Rong.Jia
+ * @date 2022/01/06
+ */
+@Data
+public class CompactResult {
+
+    /**
+     * 合并后的输出文件
+     */
+    private List<String> outputs = new ArrayList<>();
+
+    /**
+     * 被合并的小文件数
+     */
+    private int mergedFiles;
+
+    /**
+     * 被合并的字节数
+     */
+    private long mergedBytes;
+
+    /**
+     * 合并成功的分组数
+     */
+    private int mergedGroups;
+
+    /**
+     * 完成上次中断的合并的分组数, 删除了已合并但未删除的原文件
+     */
+    private int recoveredGroups;
+
+    /**
+     * 合并失败的分组数
+     */
+    private int failedGroups;
+
+}
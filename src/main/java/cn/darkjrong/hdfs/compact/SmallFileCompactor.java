@@ -0,0 +1,240 @@
+package cn.darkjrong.hdfs.compact;
+
+import cn.darkjrong.hdfs.buffer.BufferPool;
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.lang.Assert;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * 小文件合并, 将目录下的小文件按修改时间分组, 重写为接近目标大小的文件
+ * <p>
+ * 每组先写入临时目录, 再写入清单(输出文件与原文件列表), rename到目标位置后删除原文件与清单.
+ * 每次合并前先按残留清单恢复: 输出文件已存在时删除剩余的原文件, 否则丢弃临时文件, 中断后重新合并不会重复数据;
+ * 同一目录不应并发合并
+ *
+ * @author Rong.Jia
+ * @date 2022/01/06
+ */
+public class SmallFileCompactor {
+
+    private static final Logger logger = LoggerFactory.getLogger(SmallFileCompactor.class);
+
+    /**
+     * 合并输出文件前缀
+     */
+    public static final String OUTPUT_PREFIX = "compacted-";
+
+    /**
+     * 合并的临时目录
+     */
+    private static final String TMP_DIR = ".compact-tmp";
+
+    /**
+     * 清单文件后缀
+     */
+    private static final String MANIFEST_SUFFIX = ".manifest";
+
+    private final FileSystem fileSystem;
+    private final ExecutorService executor;
+    private final BufferPool bufferPool;
+    private final LongConsumer onChunk;
+
+    public SmallFileCompactor(FileSystem fileSystem, ExecutorService executor, BufferPool bufferPool) {
+        this(fileSystem, executor, bufferPool, null);
+    }
+
+    /**
+     * 小文件合并
+     *
+     * @param fileSystem 文件系统
+     * @param executor   并行合并线程池
+     * @param bufferPool 缓冲池
+     * @param onChunk    每次写入前回调字节数, 可用于限流, 可为null
+     */
+    public SmallFileCompactor(FileSystem fileSystem, ExecutorService executor, BufferPool bufferPool, LongConsumer onChunk) {
+        this.fileSystem = fileSystem;
+        this.executor = executor;
+        this.bufferPool = bufferPool;
+        this.onChunk = onChunk;
+    }
+
+    /**
+     * 合并目录下的小文件
+     *
+     * @param directory     目录
+     * @param smallFileSize 小于该字节数的文件才参与合并
+     * @param minAge        修改时间距今超过该毫秒数的文件才参与合并, 避免合并正在写入的文件
+     * @param targetSize    合并后文件的目标字节数, 小于等于0时使用目录的块大小
+     * @return {@link CompactResult}
+     * @throws HdfsException hdfs异常
+     */
+    public CompactResult compact(String directory, long smallFileSize, long minAge, long targetSize) throws HdfsException {
+        Assert.notBlank(directory, "目录不能为空");
+        Path dir = new Path(directory);
+        Path tmpDir = new Path(dir, TMP_DIR);
+        CompactResult result = new CompactResult();
+        try {
+            result.setRecoveredGroups(recover(tmpDir));
+            long target = targetSize > 0 ? targetSize : fileSystem.getDefaultBlockSize(dir);
+            long deadline = System.currentTimeMillis() - minAge;
+
+            List<FileStatus> candidates = CollectionUtil.newArrayList(fileSystem.listStatus(dir, path -> {
+                String name = path.getName();
+                return !StrUtil.startWithAny(name, ".", "_");
+            })).stream()
+                    .filter(FileStatus::isFile)
+                    .filter(a -> a.getLen() > 0 && a.getLen() < smallFileSize)
+                    .filter(a -> a.getModificationTime() < deadline)
+                    .sorted(Comparator.comparingLong(FileStatus::getModificationTime))
+                    .collect(Collectors.toList());
+
+            List<List<FileStatus>> groups = group(candidates, target);
+            List<Future<String>> futures = new ArrayList<>(groups.size());
+            for (List<FileStatus> group : groups) {
+                futures.add(executor.submit(() -> merge(dir, tmpDir, group)));
+            }
+
+            for (int i = 0; i < groups.size(); i++) {
+                List<FileStatus> group = groups.get(i);
+                try {
+                    String output = futures.get(i).get();
+                    result.getOutputs().add(output);
+                    result.setMergedFiles(result.getMergedFiles() + group.size());
+                    result.setMergedBytes(result.getMergedBytes() + group.stream().mapToLong(FileStatus::getLen).sum());
+                    result.setMergedGroups(result.getMergedGroups() + 1);
+                } catch (Exception e) {
+                    logger.error("compact group of {} files in {} failed {}", group.size(), directory, e.getMessage());
+                    result.setFailedGroups(result.getFailedGroups() + 1);
+                }
+            }
+            return result;
+        } catch (Exception e) {
+            logger.error("compact {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 按修改时间顺序分组, 每组总大小不超过目标字节数, 只有一个文件的分组无需合并
+     */
+    private List<List<FileStatus>> group(List<FileStatus> candidates, long target) {
+        List<List<FileStatus>> groups = new ArrayList<>();
+        List<FileStatus> current = new ArrayList<>();
+        long size = 0;
+        for (FileStatus status : candidates) {
+            if (!current.isEmpty() && size + status.getLen() > target) {
+                groups.add(current);
+                current = new ArrayList<>();
+                size = 0;
+            }
+            current.add(status);
+            size += status.getLen();
+        }
+        groups.add(current);
+        return groups.stream().filter(a -> a.size() > 1).collect(Collectors.toList());
+    }
+
+    /**
+     * 按清单恢复上次中断的合并, 然后删除临时目录中的所有残留文件
+     *
+     * @return 完成的分组数
+     */
+    private int recover(Path tmpDir) throws IOException {
+        if (!fileSystem.exists(tmpDir)) {
+            return 0;
+        }
+        int recovered = 0;
+        FileStatus[] leftovers = fileSystem.listStatus(tmpDir);
+        for (FileStatus status : leftovers) {
+            if (!StrUtil.endWith(status.getPath().getName(), MANIFEST_SUFFIX)) {
+                continue;
+            }
+            List<String> lines;
+            try (FSDataInputStream in = fileSystem.open(status.getPath())) {
+                lines = StrUtil.split(IoUtil.read(in, StandardCharsets.UTF_8), StrUtil.C_LF, Boolean.TRUE, Boolean.TRUE);
+            }
+            if (lines.isEmpty() || !fileSystem.exists(new Path(lines.get(0)))) {
+                continue;
+            }
+            // 输出文件已发布, 原文件未删除完
+            for (String source : lines.subList(1, lines.size())) {
+                fileSystem.delete(new Path(source), Boolean.FALSE);
+            }
+            logger.info("compact recovered {} from {}", lines.get(0), status.getPath());
+            recovered++;
+        }
+        for (FileStatus status : leftovers) {
+            fileSystem.delete(status.getPath(), Boolean.TRUE);
+        }
+        return recovered;
+    }
+
+    private String merge(Path dir, Path tmpDir, List<FileStatus> group) throws Exception {
+        String name = OUTPUT_PREFIX + System.currentTimeMillis() + "-" + IdUtil.fastSimpleUUID();
+        Path output = new Path(dir, name);
+        Path tmp = new Path(tmpDir, name);
+        Path manifest = new Path(tmpDir, name + MANIFEST_SUFFIX);
+        Path manifestTmp = new Path(tmpDir, name + MANIFEST_SUFFIX + StrUtil.DOT + "tmp");
+        try {
+            long bytes = 0;
+            try (FSDataOutputStream out = fileSystem.create(tmp, Boolean.FALSE)) {
+                for (FileStatus status : group) {
+                    try (FSDataInputStream in = fileSystem.open(status.getPath())) {
+                        bytes += bufferPool.copy(in, out, onChunk);
+                    }
+                }
+            }
+            if (bytes != group.stream().mapToLong(FileStatus::getLen).sum()) {
+                throw new HdfsException("文件在合并期间被修改, directory: {}", dir);
+            }
+            List<String> lines = new ArrayList<>(group.size() + 1);
+            lines.add(output.toUri().getPath());
+            group.forEach(a -> lines.add(a.getPath().toUri().getPath()));
+            try (FSDataOutputStream out = fileSystem.create(manifestTmp, Boolean.TRUE)) {
+                out.write(StrUtil.join(StrUtil.LF, lines).getBytes(StandardCharsets.UTF_8));
+            }
+            if (!fileSystem.rename(manifestTmp, manifest)) {
+                throw new HdfsException("rename {} to {} failed", manifestTmp, manifest);
+            }
+            if (!fileSystem.rename(tmp, output)) {
+                throw new HdfsException("rename {} to {} failed", tmp, output);
+            }
+        } catch (Exception e) {
+            // rename可能已在NameNode完成, 此时保留清单
+            if (!fileSystem.exists(output)) {
+                fileSystem.delete(tmp, Boolean.FALSE);
+                fileSystem.delete(manifestTmp, Boolean.FALSE);
+                fileSystem.delete(manifest, Boolean.FALSE);
+            }
+            throw e;
+        }
+
+        // 输出文件已发布, 此后中断由下次合并按清单删除原文件
+        for (FileStatus status : group) {
+            fileSystem.delete(status.getPath(), Boolean.FALSE);
+        }
+        fileSystem.delete(manifest, Boolean.FALSE);
+        return output.toString();
+    }
+
+}
@@ -2,11 +2,19 @@ package cn.darkjrong.hdfs.config;
 
 import cn.darkjrong.spring.boot.autoconfigure.HdfsProperties;
 import cn.hutool.core.convert.Convert;
+import cn.hutool.core.lang.Assert;
+import cn.hutool.core.util.StrUtil;
+import org.apache.hadoop.conf.ConfigRedactor;
 import org.apache.hadoop.fs.FileSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 
 import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * hdfs配置
@@ -17,6 +25,8 @@ import java.net.URI;
 @Configuration
 public class HdfsConfig {
 
+    private static final Logger logger = LoggerFactory.getLogger(HdfsConfig.class);
+
     private final HdfsProperties hdfsProperties;
 
     public HdfsConfig(HdfsProperties hdfsProperties) {
@@ -24,7 +34,7 @@ public class HdfsConfig {
     }
 
     /**
-     * 获取HDFS配置信息
+     * 获取HDFS配置信息, 依次应用调优配置组、对冲读配置与 hdfs.hadoop.* 原始参数, 后者覆盖前者
      * @return HDFS配置信息
      */
     @Bean
@@ -32,14 +42,45 @@ public class HdfsConfig {
         org.apache.hadoop.conf.Configuration configuration = new org.apache.hadoop.conf.Configuration();
         configuration.set("fs.defaultFS", hdfsProperties.getServerAddress());
         configuration.set("dfs.replication", Convert.toStr(hdfsProperties.getReplication()));
+
+        Map<String, String> applied = new LinkedHashMap<>();
+        for (TuningProfile profile : hdfsProperties.getProfiles()) {
+            profile.getSettings().forEach((key, value) -> {
+                configuration.set(key, value);
+                applied.put(key, value);
+            });
+        }
+
+        HdfsProperties.Hedge hedge = hdfsProperties.getHedge();
+        if (hedge.getReadThreadPoolSize() > 0) {
+            configuration.setInt("dfs.client.hedged.read.threadpool.size", hedge.getReadThreadPoolSize());
+            configuration.setLong("dfs.client.hedged.read.threshold.millis", hedge.getReadThreshold().toMillis());
+            applied.put("dfs.client.hedged.read.threadpool.size", Convert.toStr(hedge.getReadThreadPoolSize()));
+            applied.put("dfs.client.hedged.read.threshold.millis", Convert.toStr(hedge.getReadThreshold().toMillis()));
+        }
+
+        hdfsProperties.getHadoop().forEach((key, value) -> {
+            Assert.notBlank(key, "hadoop参数名不能为空");
+            Assert.notNull(value, "hadoop参数值不能为空, key: {}", key);
+            configuration.set(key, value);
+            applied.put(key, value);
+        });
+
+        validate(configuration);
+        // 原始参数可能包含密钥, 按 hadoop.security.sensitive-config-keys 脱敏后输出
+        ConfigRedactor redactor = new ConfigRedactor(configuration);
+        Map<String, String> redacted = new LinkedHashMap<>(applied.size());
+        applied.forEach((key, value) -> redacted.put(key, redactor.redact(key, value)));
+        logger.info("hdfs client profiles {}, settings {}", hdfsProperties.getProfiles(), redacted);
         return configuration;
     }
 
     /**
-     * 创建HDFS文件系统对象
+     * 创建HDFS文件系统对象, 延迟到首次使用时创建
      * @return HDFS文件系统对象
      * @throws Exception 创建异常
      */
+    @Lazy
     @Bean
     public FileSystem createFileSystem(org.apache.hadoop.conf.Configuration configuration) throws Exception {
 
@@ -52,5 +93,20 @@ public class HdfsConfig {
         return FileSystem.get(new URI(hdfsProperties.getServerAddress()), configuration, hdfsProperties.getUsername());
     }
 
+    /**
+     * 校验相互依赖的客户端参数, 避免配置错误到首次读写时才暴露
+     */
+    private void validate(org.apache.hadoop.conf.Configuration configuration) {
+        if (configuration.getBoolean("dfs.client.read.shortcircuit", Boolean.FALSE)) {
+            Assert.isTrue(StrUtil.isNotBlank(configuration.get("dfs.domain.socket.path")),
+                    "开启短路读(dfs.client.read.shortcircuit)时必须配置 dfs.domain.socket.path");
+        }
+        Assert.isTrue(configuration.getInt("io.file.buffer.size", 4096) > 0, "io.file.buffer.size必须大于0");
+        Assert.isTrue(configuration.getInt("dfs.client-write-packet-size", 65536) > 0,
+                "dfs.client-write-packet-size必须大于0");
+        Assert.isTrue(configuration.getInt("dfs.client.hedged.read.threadpool.size", 0) >= 0,
+                "dfs.client.hedged.read.threadpool.size不能小于0");
+    }
+
 
 }
@@ -0,0 +1,70 @@
+package cn.darkjrong.hdfs.config;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * HDFS客户端调优配置组, 每组为经过验证的一组客户端参数, 可组合使用, 后配置的覆盖先配置的
+ *
+ * @author Rong.Jia
+ * @date 2022/01/15
+ */
+public enum TuningProfile {
+
+    /**
+     * 大文件吞吐: 增大读写缓冲与数据包, 扩大连接与短路读缓存, 繁忙时多等待NameNode分配块
+     */
+    THROUGHPUT(settings(
+            "io.file.buffer.size", "131072",
+            "dfs.client-write-packet-size", "131072",
+            "dfs.client.socketcache.capacity", "32",
+            "dfs.client.read.shortcircuit.streams.cache.size", "512",
+            "dfs.client.block.write.locateFollowingBlock.retries", "10")),
+
+    /**
+     * 低延迟: 缩短连接、读写超时与故障转移等待, 开启对冲读
+     */
+    LOW_LATENCY(settings(
+            "ipc.client.connect.timeout", "5000",
+            "ipc.client.connect.max.retries.on.timeouts", "3",
+            "dfs.client.socket-timeout", "15000",
+            "dfs.client.failover.max.attempts", "5",
+            "dfs.client.failover.sleep.base.millis", "100",
+            "dfs.client.failover.sleep.max.millis", "2000",
+            "dfs.client.hedged.read.threadpool.size", "8",
+            "dfs.client.hedged.read.threshold.millis", "200")),
+
+    /**
+     * 小文件: 缩短关闭文件时等待块确认的初始间隔, 延长并扩大DataNode连接缓存
+     */
+    SMALL_FILES(settings(
+            "dfs.client.block.write.locateFollowingBlock.initial.delay.ms", "100",
+            "dfs.client.socketcache.capacity", "64",
+            "dfs.client.socketcache.expiryMsec", "30000",
+            "dfs.client.read.shortcircuit.streams.cache.size", "1024"));
+
+    private final Map<String, String> settings;
+
+    TuningProfile(Map<String, String> settings) {
+        this.settings = Collections.unmodifiableMap(settings);
+    }
+
+    /**
+     * 获取该配置组的客户端参数
+     *
+     * @return 参数名与参数值
+     */
+    public Map<String, String> getSettings() {
+        return settings;
+    }
+
+    private static Map<String, String> settings(String... keyValues) {
+        Map<String, String> settings = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            settings.put(keyValues[i], keyValues[i + 1]);
+        }
+        return settings;
+    }
+
+}
@@ -0,0 +1,298 @@
+package cn.darkjrong.hdfs.copy;
+
+import cn.darkjrong.hdfs.audit.ChecksumAuditor;
+import cn.darkjrong.hdfs.buffer.BufferPool;
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.darkjrong.hdfs.support.AtomicRename;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
+
+/**
+ * 跨集群复制, 字节从源集群输入流直接写入目标集群输出流, 不经过本地磁盘, 多个文件并行复制
+ * <p>
+ * 文件先写入同目录下的临时文件, 长度与校验和比对通过后再原子rename到目标位置, 复制中断不会留下不完整的目标文件
+ * <p>
+ * 校验和应以COMPOSITE_CRC模式(dfs.checksum.combine.mode)获取, 其值与块大小无关; 文件系统不支持校验和、算法不同,
+ * 或默认的MD5MD5CRC校验和因块大小不同而不可比时, 只比对长度并计入跳过比对的文件数
+ *
+ * @author Rong.Jia
+ * @date 2022/01/19
+ */
+public class ClusterCopier {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterCopier.class);
+
+    /**
+     * 复制中临时文件后缀, 临时文件名为 "目标文件名.随机ID._COPYING_", 并发复制到同一目标时互不覆盖
+     */
+    public static final String TMP_SUFFIX = "._COPYING_";
+
+    private final FileSystem source;
+    private final FileSystem target;
+    private final ExecutorService executor;
+    private final BufferPool bufferPool;
+    private final LongConsumer onChunk;
+
+    /**
+     * 跨集群复制
+     *
+     * @param source     源文件系统
+     * @param target     目标文件系统
+     * @param executor   并行复制线程池
+     * @param bufferPool 缓冲池
+     * @param onChunk    每次写入前回调字节数, 可用于限流, 可为null
+     */
+    public ClusterCopier(FileSystem source, FileSystem target, ExecutorService executor, BufferPool bufferPool,
+                         LongConsumer onChunk) {
+        this.source = source;
+        this.target = target;
+        this.executor = executor;
+        this.bufferPool = bufferPool;
+        this.onChunk = onChunk;
+    }
+
+    /**
+     * 复制文件或目录
+     *
+     * @param src     源文件或目录
+     * @param dst     源为文件时为目标文件, 源为目录时为目标目录
+     * @param options 复制选项
+     * @return {@link CopyResult}
+     * @throws HdfsException hdfs异常
+     */
+    public CopyResult copy(Path src, Path dst, CopyOptions options) throws HdfsException {
+        try {
+            source.getFileStatus(src);
+        } catch (IOException e) {
+            logger.error("copy {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+        return copyAll(Collections.singletonMap(src, dst), options);
+    }
+
+    /**
+     * 复制多个文件或目录, 所有文件在同一批次中并行复制
+     *
+     * @param paths   源文件或目录与对应的目标
+     * @param options 复制选项
+     * @return {@link CopyResult}, 无法列出的源路径计入失败
+     * @throws HdfsException hdfs异常
+     */
+    public CopyResult copyAll(Map<Path, Path> paths, CopyOptions options) throws HdfsException {
+        long start = System.currentTimeMillis();
+        CopyResult result = new CopyResult();
+        Map<FileStatus, Path> directories = new LinkedHashMap<>();
+        Map<FileStatus, Path> files = new LinkedHashMap<>();
+        paths.forEach((src, dst) -> {
+            try {
+                walk(source.getFileStatus(src), dst, directories, files);
+            } catch (IOException e) {
+                logger.error("list {} failed {}", src, e.getMessage());
+                result.getFailed().add(src.toString());
+            }
+        });
+
+        try {
+            for (Map.Entry<FileStatus, Path> entry : directories.entrySet()) {
+                target.mkdirs(entry.getValue());
+                if (options.isPreservePermission()) {
+                    target.setPermission(entry.getValue(), entry.getKey().getPermission());
+                }
+            }
+
+            Map<FileStatus, Future<Copied>> futures = new LinkedHashMap<>(files.size());
+            try {
+                files.forEach((file, dst) -> futures.put(file, executor.submit(() -> copyFile(file, dst, options))));
+                for (Map.Entry<FileStatus, Future<Copied>> future : futures.entrySet()) {
+                    FileStatus file = future.getKey();
+                    try {
+                        Copied copied = future.getValue().get();
+                        if (ObjectUtil.isNull(copied)) {
+                            result.setSkippedFiles(result.getSkippedFiles() + 1);
+                            continue;
+                        }
+                        result.setCopiedFiles(result.getCopiedFiles() + 1);
+                        result.setCopiedBytes(result.getCopiedBytes() + copied.bytes);
+                        if (copied.verification == Verification.VERIFIED) {
+                            result.setVerifiedFiles(result.getVerifiedFiles() + 1);
+                        } else if (copied.verification == Verification.SKIPPED) {
+                            result.setUnverifiedFiles(result.getUnverifiedFiles() + 1);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new HdfsException(e);
+                    } catch (ExecutionException e) {
+                        logger.error("copy {} failed {}", file.getPath(), e.getCause().getMessage());
+                        result.getFailed().add(file.getPath().toString());
+                    }
+                }
+            } finally {
+                // 调用线程被中断(如超时)时取消未完成的复制, 不再在返回失败后继续发布文件
+                futures.values().forEach(a -> a.cancel(Boolean.TRUE));
+            }
+
+            if (options.isPreserveTimes()) {
+                // 写入文件会改变目录的修改时间, 最后由深到浅设置
+                List<Map.Entry<FileStatus, Path>> entries = new ArrayList<>(directories.entrySet());
+                for (int i = entries.size() - 1; i >= 0; i--) {
+                    FileStatus directory = entries.get(i).getKey();
+                    target.setTimes(entries.get(i).getValue(), directory.getModificationTime(), directory.getAccessTime());
+                }
+            }
+        } catch (IOException e) {
+            logger.error("copy {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+        result.setElapsed(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /**
+     * 复制单个文件
+     *
+     * @return 复制结果, 目标已存在而跳过时为null
+     */
+    private Copied copyFile(FileStatus status, Path dst, CopyOptions options) throws IOException {
+        if (!options.isOverwrite() && target.exists(dst)) {
+            return null;
+        }
+
+        Path tmp = new Path(dst.getParent(), dst.getName() + StrUtil.DOT + IdUtil.fastSimpleUUID() + TMP_SUFFIX);
+        short replication = options.isPreserveReplication() ? status.getReplication() : target.getDefaultReplication(dst);
+        Copied copied = new Copied();
+        try {
+            try (FSDataInputStream in = source.open(status.getPath());
+                 FSDataOutputStream out = target.create(tmp, Boolean.TRUE, bufferPool.getBufferSize(), replication,
+                         target.getDefaultBlockSize(dst))) {
+                copied.bytes = bufferPool.copy(in, out, onChunk);
+            }
+            if (copied.bytes != status.getLen()) {
+                throw new HdfsException("文件长度不一致, source: {}, expected: {}, actual: {}", status.getPath(),
+                        status.getLen(), copied.bytes);
+            }
+            if (options.isVerifyChecksum()) {
+                copied.verification = verify(status, tmp);
+            }
+            // 原子替换, 不覆盖时目标在复制期间被创建则抛出 FileAlreadyExistsException
+            AtomicRename.rename(target, tmp, dst, options.isOverwrite());
+        } catch (IOException | RuntimeException e) {
+            target.delete(tmp, Boolean.FALSE);
+            throw e;
+        }
+
+        if (options.isPreservePermission()) {
+            target.setPermission(dst, status.getPermission());
+        }
+        if (options.isPreserveTimes()) {
+            target.setTimes(dst, status.getModificationTime(), status.getAccessTime());
+        }
+        return copied;
+    }
+
+    private Verification verify(FileStatus status, Path tmp) throws IOException {
+        Path src = status.getPath();
+        FileChecksum expected = source.getFileChecksum(src);
+        FileChecksum actual = target.getFileChecksum(tmp);
+        if (ObjectUtil.hasNull(expected, actual)) {
+            // 非HDFS文件系统可能不支持校验和, 此时仅比对长度
+            return Verification.SKIPPED;
+        }
+        if (!StrUtil.equals(expected.getAlgorithmName(), actual.getAlgorithmName())) {
+            logger.warn("checksum algorithm differs, source: {} {}, target: {}", src, expected.getAlgorithmName(),
+                    actual.getAlgorithmName());
+            return Verification.SKIPPED;
+        }
+        if (!StrUtil.startWith(expected.getAlgorithmName(), ChecksumAuditor.COMPOSITE_PREFIX)
+                && status.getBlockSize() != target.getFileStatus(tmp).getBlockSize()) {
+            logger.warn("checksum depends on block size, source: {}, algorithm: {}", src, expected.getAlgorithmName());
+            return Verification.SKIPPED;
+        }
+        if (!expected.equals(actual)) {
+            throw new HdfsException("校验和不一致, source: {}, expected: {}, actual: {}", src, expected, actual);
+        }
+        return Verification.VERIFIED;
+    }
+
+    private void walk(FileStatus root, Path dst, Map<FileStatus, Path> directories,
+                      Map<FileStatus, Path> files) throws IOException {
+        if (root.isFile()) {
+            files.put(root, dst);
+            return;
+        }
+        String rootPath = root.getPath().toUri().getPath();
+        Deque<FileStatus> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            FileStatus directory = pending.pop();
+            directories.put(directory, resolve(rootPath, dst, directory.getPath()));
+            RemoteIterator<FileStatus> iterator = source.listStatusIterator(directory.getPath());
+            while (iterator.hasNext()) {
+                FileStatus status = iterator.next();
+                if (status.isDirectory()) {
+                    pending.push(status);
+                } else if (status.isFile() && !StrUtil.endWith(status.getPath().getName(), TMP_SUFFIX)) {
+                    files.put(status, resolve(rootPath, dst, status.getPath()));
+                }
+            }
+        }
+    }
+
+    private Path resolve(String rootPath, Path dst, Path path) {
+        String relative = StrUtil.removePrefix(path.toUri().getPath(), rootPath);
+        relative = StrUtil.removePrefix(relative, StrUtil.SLASH);
+        return StrUtil.isEmpty(relative) ? dst : new Path(dst, relative);
+    }
+
+    /**
+     * 校验和比对结果, 不一致时直接抛出异常
+     */
+    private enum Verification {
+
+        /**
+         * 未开启比对
+         */
+        NONE,
+
+        /**
+         * 一致
+         */
+        VERIFIED,
+
+        /**
+         * 不可比, 只比对了长度
+         */
+        SKIPPED
+
+    }
+
+    private static final class Copied {
+
+        private long bytes;
+        private Verification verification = Verification.NONE;
+
+    }
+
+}
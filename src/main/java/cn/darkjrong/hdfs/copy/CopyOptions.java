@@ -0,0 +1,39 @@
+package cn.darkjrong.hdfs.copy;
+
+import lombok.Data;
+
+/**
+ * 跨集群复制选项
+ *
+ * @author Rong.Jia
+ * @date 2022/01/19
+ */
+@Data
+public class CopyOptions {
+
+    /**
+     * 是否覆盖已存在的文件, 否则跳过, 默认false
+     */
+    private boolean overwrite = Boolean.FALSE;
+
+    /**
+     * 是否保留权限, 默认true
+     */
+    private boolean preservePermission = Boolean.TRUE;
+
+    /**
+     * 是否保留修改时间与访问时间, 默认true
+     */
+    private boolean preserveTimes = Boolean.TRUE;
+
+    /**
+     * 是否保留副本数, 否则使用目标集群的默认副本数, 默认false
+     */
+    private boolean preserveReplication = Boolean.FALSE;
+
+    /**
+     * 是否在复制后比对校验和, 默认true
+     */
+    private boolean verifyChecksum = Boolean.TRUE;
+
+}
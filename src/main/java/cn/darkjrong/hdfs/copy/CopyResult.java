@@ -0,0 +1,52 @@
+package cn.darkjrong.hdfs.copy;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 跨集群复制结果
+ *
+ * @author Rong.Jia
+ * @date 2022/01/19
+ */
+@Data
+public class CopyResult {
+
+    /**
+     * 复制的文件数
+     */
+    private int copiedFiles;
+
+    /**
+     * 复制的字节数
+     */
+    private long copiedBytes;
+
+    /**
+     * 目标已存在而跳过的文件数
+     */
+    private int skippedFiles;
+
+    /**
+     * 校验和比对一致的文件数
+     */
+    private int verifiedFiles;
+
+    /**
+     * 开启校验和比对, 但文件系统不支持校验和或校验和不可比而只比对了长度的文件数
+     */
+    private int unverifiedFiles;
+
+    /**
+     * 复制失败(含校验和不一致)的源文件
+     */
+    private List<String> failed = new ArrayList<>();
+
+    /**
+     * 耗时, 毫秒
+     */
+    private long elapsed;
+
+}
@@ -0,0 +1,96 @@
+package cn.darkjrong.hdfs.dedup;
+
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.ObjectUtil;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 分段内容哈希, 按固定段长计算每段的SHA-256, 内容ID为各段摘要依次拼接后的SHA-256
+ * <p>
+ * 各段可在不同线程并行计算后按顺序合并, 也可顺序写入, 两种方式结果相同; 段长不同时同一内容的ID不同
+ *
+ * @author Rong.Jia
+ * @date 2022/01/25
+ */
+public class ContentHasher {
+
+    private static final String ALGORITHM = "SHA-256";
+
+    private final long partSize;
+    private final MessageDigest top = newDigest();
+    private MessageDigest part;
+    private long partBytes;
+
+    /**
+     * 分段内容哈希
+     *
+     * @param partSize 段长
+     */
+    public ContentHasher(long partSize) {
+        this.partSize = partSize;
+    }
+
+    /**
+     * 顺序写入内容
+     *
+     * @param b   数据
+     * @param off 偏移
+     * @param len 长度
+     */
+    public void update(byte[] b, int off, int len) {
+        while (len > 0) {
+            if (ObjectUtil.isNull(part)) {
+                part = newDigest();
+                partBytes = 0;
+            }
+            int count = (int) Math.min(len, partSize - partBytes);
+            part.update(b, off, count);
+            partBytes += count;
+            off += count;
+            len -= count;
+            if (partBytes == partSize) {
+                top.update(part.digest());
+                part = null;
+            }
+        }
+    }
+
+    /**
+     * 写入一段已计算好的摘要, 需按段的顺序写入
+     *
+     * @param digest 段摘要
+     */
+    public void updatePart(byte[] digest) {
+        top.update(digest);
+    }
+
+    /**
+     * 计算内容ID, 之后不能再写入
+     *
+     * @return 十六进制内容ID
+     */
+    public String digest() {
+        if (ObjectUtil.isNotNull(part)) {
+            top.update(part.digest());
+            part = null;
+        }
+        return HexUtil.encodeHexStr(top.digest());
+    }
+
+    /**
+     * 创建段摘要
+     *
+     * @return {@link MessageDigest}
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new HdfsException(e);
+        }
+    }
+
+}
@@ -0,0 +1,344 @@
+package cn.darkjrong.hdfs.dedup;
+
+import cn.darkjrong.hdfs.buffer.BufferPool;
+import cn.darkjrong.hdfs.copy.ClusterCopier;
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.hutool.core.lang.Assert;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
+
+/**
+ * 内容寻址存储, 文件按内容ID只存储一份, 逻辑名称通过索引指向内容ID
+ * <p>
+ * 目录结构: 内容对象为 "根目录/objects/ID前两位/ID", 名称索引为 "根目录/names/名称", 索引条目是空文件,
+ * 内容ID保存在扩展属性 {@link #CONTENT_ID_XATTR} 中. 内容已存在时只创建索引条目, 不传输数据;
+ * 不再被引用的内容对象不会自动删除
+ *
+ * @author Rong.Jia
+ * @date 2022/01/25
+ */
+public class ContentStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContentStore.class);
+
+    /**
+     * 索引条目中保存内容ID的扩展属性
+     */
+    public static final String CONTENT_ID_XATTR = "user.content.id";
+
+    private static final String OBJECTS = "objects";
+    private static final String NAMES = "names";
+
+    private final DistributedFileSystem fileSystem;
+    private final Path root;
+    private final long partSize;
+    private final ExecutorService executor;
+    private final BufferPool bufferPool;
+    private final LongConsumer onChunk;
+
+    /**
+     * 内容寻址存储
+     *
+     * @param fileSystem 文件系统
+     * @param root       存储根目录
+     * @param partSize   并行计算内容ID的段长, 修改后同一内容的ID不同
+     * @param executor   并行计算线程池
+     * @param bufferPool 缓冲池
+     * @param onChunk    每次写入前回调字节数, 可用于限流, 可为null
+     */
+    public ContentStore(DistributedFileSystem fileSystem, Path root, long partSize, ExecutorService executor,
+                        BufferPool bufferPool, LongConsumer onChunk) {
+        Assert.isTrue(partSize > 0, "段长必须大于0");
+        this.fileSystem = fileSystem;
+        this.root = root;
+        this.partSize = partSize;
+        this.executor = executor;
+        this.bufferPool = bufferPool;
+        this.onChunk = onChunk;
+    }
+
+    /**
+     * 上传本地文件并以名称索引, 内容已存在时只写入索引
+     *
+     * @param file 本地文件
+     * @param name 逻辑名称, 已存在时指向新内容
+     * @return {@link DedupResult}
+     * @throws HdfsException hdfs异常
+     */
+    public DedupResult put(File file, String name) throws HdfsException {
+        Assert.isTrue(file.isFile(), "文件不存在, file: {}", file);
+        long start = System.currentTimeMillis();
+        DedupResult result = new DedupResult();
+        result.setName(normalize(name));
+        try {
+            String id = hash(file);
+            result.setHashElapsed(System.currentTimeMillis() - start);
+            Path object = objectPath(id);
+            long size = file.length();
+            boolean deduplicated = exists(object, size) || !upload(file, object, id, size);
+            link(result.getName(), id);
+
+            result.setContentId(id);
+            result.setPath(object.toUri().getPath());
+            result.setSize(size);
+            result.setDeduplicated(deduplicated);
+        } catch (IOException e) {
+            logger.error("put {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+        result.setElapsed(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /**
+     * 获取名称指向的内容对象路径
+     *
+     * @param name 逻辑名称
+     * @return 内容对象路径
+     * @throws HdfsException 名称不存在
+     */
+    public Path resolve(String name) throws HdfsException {
+        Path entry = namePath(normalize(name));
+        try {
+            byte[] id = fileSystem.getXAttr(entry, CONTENT_ID_XATTR);
+            return objectPath(new String(id, StandardCharsets.UTF_8));
+        } catch (FileNotFoundException e) {
+            throw new HdfsException("名称不存在, name: {}", name);
+        } catch (IOException e) {
+            logger.error("resolve {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 打开名称指向的内容
+     *
+     * @param name 逻辑名称
+     * @return {@link FSDataInputStream}, 使用后需关闭
+     * @throws HdfsException hdfs异常
+     */
+    public FSDataInputStream open(String name) throws HdfsException {
+        try {
+            return fileSystem.open(resolve(name));
+        } catch (IOException e) {
+            logger.error("open {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 按段并行计算内容ID, 每段用定位读读取
+     */
+    private String hash(File file) throws IOException {
+        long size = file.length();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            List<Future<byte[]>> futures = new ArrayList<>();
+            for (long offset = 0; offset < size; offset += partSize) {
+                long position = offset;
+                long length = Math.min(partSize, size - offset);
+                futures.add(executor.submit(() -> digest(channel, position, length)));
+            }
+            ContentHasher hasher = new ContentHasher(partSize);
+            for (Future<byte[]> future : futures) {
+                hasher.updatePart(future.get());
+            }
+            return hasher.digest();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HdfsException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    private byte[] digest(FileChannel channel, long position, long length) throws IOException {
+        MessageDigest digest = ContentHasher.newDigest();
+        ByteBuffer buffer = bufferPool.getBuffer(Boolean.FALSE, bufferPool.getBufferSize());
+        try {
+            long end = position + length;
+            while (position < end) {
+                ((Buffer) buffer).clear();
+                ((Buffer) buffer).limit((int) Math.min(bufferPool.getBufferSize(), end - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("文件在计算内容ID期间被截断");
+                }
+                digest.update(buffer.array(), buffer.arrayOffset(), read);
+                position += read;
+            }
+        } finally {
+            bufferPool.putBuffer(buffer);
+        }
+        return digest.digest();
+    }
+
+    private boolean exists(Path object, long size) throws IOException {
+        try {
+            FileStatus status = fileSystem.getFileStatus(object);
+            if (status.getLen() != size) {
+                throw new HdfsException("内容对象长度不一致, path: {}, expected: {}, actual: {}", object, size, status.getLen());
+            }
+            return Boolean.TRUE;
+        } catch (FileNotFoundException e) {
+            return Boolean.FALSE;
+        }
+    }
+
+    /**
+     * 上传内容对象, 先写入临时文件, 上传时重新计算内容ID, 一致后rename发布
+     *
+     * @return 是否由本次上传发布, 并发上传相同内容时只有一个发布成功
+     */
+    private boolean upload(File file, Path object, String id, long size) throws IOException {
+        Path tmp = new Path(object.getParent(), object.getName() + StrUtil.DOT + IdUtil.fastSimpleUUID()
+                + ClusterCopier.TMP_SUFFIX);
+        fileSystem.mkdirs(object.getParent());
+        ContentHasher hasher = new ContentHasher(partSize);
+        long bytes;
+        try (InputStream in = new HashingInputStream(Files.newInputStream(file.toPath()), hasher);
+             FSDataOutputStream out = fileSystem.create(tmp, Boolean.FALSE)) {
+            bytes = bufferPool.copy(in, out, onChunk);
+        }
+
+        try {
+            if (bytes != size || !id.equals(hasher.digest())) {
+                throw new HdfsException("文件在上传期间被修改, file: {}", file);
+            }
+            if (fileSystem.rename(tmp, object)) {
+                return Boolean.TRUE;
+            }
+            fileSystem.delete(tmp, Boolean.FALSE);
+            if (!exists(object, size)) {
+                throw new HdfsException("rename {} to {} failed", tmp, object);
+            }
+            return Boolean.FALSE;
+        } catch (IOException | RuntimeException e) {
+            fileSystem.delete(tmp, Boolean.FALSE);
+            throw e;
+        }
+    }
+
+    /**
+     * 写入名称索引, 已指向相同内容时不做修改; 先创建带扩展属性的临时条目再覆盖rename, 读取方不会看到没有内容ID的条目
+     */
+    private void link(String name, String id) throws IOException {
+        Path entry = namePath(name);
+        byte[] value = id.getBytes(StandardCharsets.UTF_8);
+        try {
+            byte[] current = fileSystem.getXAttr(entry, CONTENT_ID_XATTR);
+            if (ObjectUtil.equals(id, new String(current, StandardCharsets.UTF_8))) {
+                return;
+            }
+        } catch (IOException ignored) {
+            // 条目不存在或没有内容ID
+        }
+
+        Path tmp = new Path(entry.getParent(), entry.getName() + StrUtil.DOT + IdUtil.fastSimpleUUID()
+                + ClusterCopier.TMP_SUFFIX);
+        fileSystem.mkdirs(entry.getParent());
+        fileSystem.create(tmp, Boolean.FALSE).close();
+        try {
+            fileSystem.setXAttr(tmp, CONTENT_ID_XATTR, value);
+            fileSystem.rename(tmp, entry, Options.Rename.OVERWRITE);
+        } catch (IOException | RuntimeException e) {
+            fileSystem.delete(tmp, Boolean.FALSE);
+            throw e;
+        }
+    }
+
+    private Path objectPath(String id) {
+        return new Path(root, OBJECTS + Path.SEPARATOR + id.substring(0, 2) + Path.SEPARATOR + id);
+    }
+
+    private Path namePath(String name) {
+        return new Path(root, NAMES + Path.SEPARATOR + name);
+    }
+
+    private String normalize(String name) {
+        Assert.notBlank(name, "名称不能为空");
+        List<String> segments = new ArrayList<>();
+        for (String segment : StrUtil.split(name, StrUtil.C_SLASH)) {
+            if (StrUtil.isEmpty(segment) || StrUtil.DOT.equals(segment)) {
+                continue;
+            }
+            if (StrUtil.DOUBLE_DOT.equals(segment)) {
+                throw new HdfsException("非法的名称, name: {}", name);
+            }
+            segments.add(segment);
+        }
+        Assert.notEmpty(segments, "名称不能为空");
+        return StrUtil.join(StrUtil.SLASH, segments);
+    }
+
+    /**
+     * 读取时顺序计算内容ID
+     */
+    private static class HashingInputStream extends FilterInputStream {
+
+        private final ContentHasher hasher;
+
+        private HashingInputStream(InputStream in, ContentHasher hasher) {
+            super(in);
+            this.hasher = hasher;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                hasher.update(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                hasher.update(b, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            throw new IOException("skip not supported");
+        }
+
+        @Override
+        public boolean markSupported() {
+            return Boolean.FALSE;
+        }
+
+    }
+
+}
@@ -0,0 +1,49 @@
+package cn.darkjrong.hdfs.dedup;
+
+import lombok.Data;
+
+/**
+ * 去重上传结果
+ *
+ * @author Rong.Jia
+ * @date 2022/01/25
+ */
+@Data
+public class DedupResult {
+
+    /**
+     * 逻辑名称
+     */
+    private String name;
+
+    /**
+     * 内容ID
+     */
+    private String contentId;
+
+    /**
+     * 内容对象路径
+     */
+    private String path;
+
+    /**
+     * 文件字节数
+     */
+    private long size;
+
+    /**
+     * 内容已存在, 只写入了名称索引
+     */
+    private boolean deduplicated;
+
+    /**
+     * 计算内容ID耗时, 毫秒
+     */
+    private long hashElapsed;
+
+    /**
+     * 总耗时, 毫秒
+     */
+    private long elapsed;
+
+}
@@ -0,0 +1,54 @@
+package cn.darkjrong.hdfs.index;
+
+import lombok.Data;
+
+/**
+ * 命名空间索引查询, 返回满足全部条件的文件, 按路径排序
+ *
+ * @author Rong.Jia
+ * @date 2022/01/27
+ */
+@Data
+public class IndexQuery {
+
+    /**
+     * 文件或目录, 查询目录树下的文件; 为空时取 {@link #glob} 中第一个通配符之前的目录
+     */
+    private String path;
+
+    /**
+     * 完整路径的通配符, 如 /data/logs/*&#47;2022-01-*.log, 为空时不限制; 与globStatus一致按 / 分段匹配, * 不匹配 /
+     */
+    private String glob;
+
+    /**
+     * 修改时间不早于该时间戳, 毫秒, 0不限制
+     */
+    private long modifiedSince = 0;
+
+    /**
+     * 修改时间早于该时间戳, 毫秒, 0不限制
+     */
+    private long modifiedBefore = 0;
+
+    /**
+     * 文件最小字节数, 默认0
+     */
+    private long minSize = 0;
+
+    /**
+     * 文件最大字节数, 0不限制
+     */
+    private long maxSize = 0;
+
+    /**
+     * 属主, 为空时不限制
+     */
+    private String owner;
+
+    /**
+     * 最多返回的文件数, 0不限制
+     */
+    private int limit = 0;
+
+}
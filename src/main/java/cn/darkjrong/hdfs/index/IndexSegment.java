@@ -0,0 +1,391 @@
+package cn.darkjrong.hdfs.index;
+
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.hutool.core.util.ObjectUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 堆外有序段, 文件记录按路径的UTF-8字节序连续存放在堆外块中, 记录地址数组同样在堆外, 按地址二分查找
+ * <p>
+ * 记录格式: 路径长度(int), 路径, 字节数(long), 修改时间(long), 访问时间(long), 副本数(short), 权限(short),
+ * 属主编号(int), 属组编号(int); 属主与属组在堆内去重保存. 段创建后只读, 可被多个线程并发查询
+ * <p>
+ * 段带引用计数, 创建时为1, 由发布者持有; 查询前 {@link #retain()}, 结束后 {@link #release()}, 计数归零时立即释放堆外内存,
+ * 不等待GC. 无法访问Cleaner的JVM上仍由GC回收
+ *
+ * @author Rong.Jia
+ * @date 2022/01/27
+ */
+final class IndexSegment {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexSegment.class);
+
+    /**
+     * 与UTF-8字节序一致的路径顺序, 即按码点比较
+     */
+    static final Comparator<String> PATH_ORDER = IndexSegment::comparePaths;
+
+    private static final int FIXED_LENGTH = 4 + 8 + 8 + 8 + 2 + 2 + 4 + 4;
+    private static final int MIN_CHUNK_SIZE = 1024 * 1024;
+    private static final Consumer<ByteBuffer> CLEANER = cleaner();
+
+    private final ByteBuffer[] chunks;
+    private final ByteBuffer addresses;
+    private final LongBuffer offsets;
+    private final int size;
+    private final String[] names;
+    private final long memory;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private IndexSegment(ByteBuffer[] chunks, ByteBuffer addresses, int size, String[] names) {
+        this.chunks = chunks;
+        this.addresses = addresses;
+        this.offsets = addresses.asLongBuffer();
+        this.size = size;
+        this.names = names;
+        long bytes = addresses.capacity();
+        for (ByteBuffer chunk : chunks) {
+            bytes += chunk.capacity();
+        }
+        this.memory = bytes;
+    }
+
+    /**
+     * 增加引用, 段已释放时失败
+     *
+     * @return 是否成功
+     */
+    boolean retain() {
+        for (;;) {
+            int count = references.get();
+            if (count <= 0) {
+                return Boolean.FALSE;
+            }
+            if (references.compareAndSet(count, count + 1)) {
+                return Boolean.TRUE;
+            }
+        }
+    }
+
+    /**
+     * 减少引用, 归零时释放堆外内存, 之后不能再访问
+     */
+    void release() {
+        if (references.decrementAndGet() != 0 || ObjectUtil.isNull(CLEANER)) {
+            return;
+        }
+        for (ByteBuffer chunk : chunks) {
+            CLEANER.accept(chunk);
+        }
+        CLEANER.accept(addresses);
+    }
+
+    /**
+     * 当前引用数
+     *
+     * @return 引用数, 已释放时为0
+     */
+    int references() {
+        return Math.max(0, references.get());
+    }
+
+    /**
+     * 文件数
+     *
+     * @return 文件数
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * 占用的堆外内存
+     *
+     * @return 字节数
+     */
+    long memory() {
+        return memory;
+    }
+
+    /**
+     * 第一个路径不小于key的记录下标
+     *
+     * @param key 路径的UTF-8字节
+     * @return 下标, 全部小于key时为 {@link #size()}
+     */
+    int lowerBound(byte[] key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(mid, key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 查找路径
+     *
+     * @param key 路径的UTF-8字节
+     * @return 下标, 不存在时为-1
+     */
+    int find(byte[] key) {
+        int index = lowerBound(key);
+        return index < size && compare(index, key) == 0 ? index : -1;
+    }
+
+    /**
+     * 比较记录路径与key
+     */
+    int compare(int index, byte[] key) {
+        long address = offsets.get(index);
+        ByteBuffer chunk = chunks[(int) (address >>> 32)];
+        int position = (int) address;
+        int length = chunk.getInt(position);
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int diff = (chunk.get(position + 4 + i) & 0xff) - (key[i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - key.length;
+    }
+
+    /**
+     * 记录路径是否以prefix开头
+     */
+    boolean startsWith(int index, byte[] prefix) {
+        long address = offsets.get(index);
+        ByteBuffer chunk = chunks[(int) (address >>> 32)];
+        int position = (int) address;
+        if (chunk.getInt(position) < prefix.length) {
+            return Boolean.FALSE;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (chunk.get(position + 4 + i) != prefix[i]) {
+                return Boolean.FALSE;
+            }
+        }
+        return Boolean.TRUE;
+    }
+
+    /**
+     * 读取记录
+     */
+    IndexedFile get(int index) {
+        long address = offsets.get(index);
+        ByteBuffer chunk = chunks[(int) (address >>> 32)];
+        int position = (int) address;
+        int length = chunk.getInt(position);
+        byte[] path = new byte[length];
+        ByteBuffer view = chunk.duplicate();
+        ((Buffer) view).position(position + 4);
+        view.get(path);
+        position += 4 + length;
+
+        IndexedFile file = new IndexedFile();
+        file.setPath(new String(path, StandardCharsets.UTF_8));
+        file.setLength(chunk.getLong(position));
+        file.setModificationTime(chunk.getLong(position + 8));
+        file.setAccessTime(chunk.getLong(position + 16));
+        file.setReplication(chunk.getShort(position + 24));
+        file.setPermission(chunk.getShort(position + 26));
+        file.setOwner(names[chunk.getInt(position + 28)]);
+        file.setGroup(names[chunk.getInt(position + 32)]);
+        return file;
+    }
+
+    /**
+     * 立即释放直接缓冲区的方法: JDK 9+ 为 Unsafe.invokeCleaner, JDK 8 为 DirectBuffer.cleaner().clean(), 都不可用时为null
+     */
+    private static Consumer<ByteBuffer> cleaner() {
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(Boolean.TRUE);
+            Object unsafe = field.get(null);
+            return buffer -> invoke(() -> invokeCleaner.invoke(unsafe, buffer));
+        } catch (Exception ignored) {
+            // JDK 8没有invokeCleaner
+        }
+        try {
+            Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> invoke(() -> clean.invoke(cleaner.invoke(buffer)));
+        } catch (Exception e) {
+            logger.warn("direct buffer cleaner unavailable, off-heap index memory is freed by GC {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static void invoke(Callable<?> callable) {
+        try {
+            callable.call();
+        } catch (Exception e) {
+            logger.warn("free direct buffer {}", e.getMessage());
+        }
+    }
+
+    private static int comparePaths(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int x = a.codePointAt(i);
+            int y = b.codePointAt(j);
+            if (x != y) {
+                return Integer.compare(x, y);
+            }
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    private static int compare(ByteBuffer[] chunks, long a, long b) {
+        ByteBuffer x = chunks[(int) (a >>> 32)];
+        ByteBuffer y = chunks[(int) (b >>> 32)];
+        int i = (int) a;
+        int j = (int) b;
+        int xLength = x.getInt(i);
+        int yLength = y.getInt(j);
+        int common = Math.min(xLength, yLength);
+        for (int k = 4; k < common + 4; k++) {
+            int diff = (x.get(i + k) & 0xff) - (y.get(j + k) & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return xLength - yLength;
+    }
+
+    /**
+     * 堆外有序段构建器, 记录按添加顺序写入堆外块, 构建时按路径排序, 相同路径保留最后添加的记录
+     * <p>
+     * 构建期间记录地址数组与归并排序的辅助数组在堆内, 每个文件约16字节(1亿文件约1.6GB), 构建完成后地址复制到堆外并释放
+     */
+    static final class Builder {
+
+        private final int chunkSize;
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private final Map<String, Integer> nameIds = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private ByteBuffer current;
+        private long[] offsets = new long[1024];
+        private int size;
+
+        /**
+         * @param chunkSize 单个堆外块的最大字节数, 单条记录不能超过该值
+         */
+        Builder(int chunkSize) {
+            this.chunkSize = Math.max(MIN_CHUNK_SIZE, chunkSize);
+        }
+
+        Builder add(IndexedFile file) {
+            byte[] path = file.getPath().getBytes(StandardCharsets.UTF_8);
+            int length = FIXED_LENGTH + path.length;
+            if (length > chunkSize) {
+                throw new HdfsException("路径过长, path: {}", file.getPath());
+            }
+            if (ObjectUtil.isNull(current) || current.remaining() < length) {
+                int capacity = ObjectUtil.isNull(current) ? MIN_CHUNK_SIZE : Math.min(chunkSize, current.capacity() * 2);
+                current = ByteBuffer.allocateDirect(Math.max(capacity, length));
+                chunks.add(current);
+            }
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            offsets[size++] = ((long) (chunks.size() - 1) << 32) | current.position();
+            current.putInt(path.length)
+                    .put(path)
+                    .putLong(file.getLength())
+                    .putLong(file.getModificationTime())
+                    .putLong(file.getAccessTime())
+                    .putShort(file.getReplication())
+                    .putShort(file.getPermission())
+                    .putInt(nameId(file.getOwner()))
+                    .putInt(nameId(file.getGroup()));
+            return this;
+        }
+
+        IndexSegment build() {
+            ByteBuffer[] buffers = chunks.toArray(new ByteBuffer[0]);
+            sort(buffers, offsets, size);
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (count > 0 && compare(buffers, offsets[count - 1], offsets[i]) == 0) {
+                    offsets[count - 1] = offsets[i];
+                } else {
+                    offsets[count++] = offsets[i];
+                }
+            }
+            ByteBuffer addresses = ByteBuffer.allocateDirect(Math.max(1, count) * 8);
+            addresses.asLongBuffer().put(offsets, 0, count);
+            offsets = null;
+            return new IndexSegment(buffers, addresses, count, names.toArray(new String[0]));
+        }
+
+        private int nameId(String name) {
+            return nameIds.computeIfAbsent(name, a -> {
+                names.add(a);
+                return names.size() - 1;
+            });
+        }
+
+        /**
+         * 自底向上的稳定归并排序, 已有序的区间直接复制
+         */
+        private static void sort(ByteBuffer[] chunks, long[] offsets, int size) {
+            long[] src = offsets;
+            long[] dst = new long[size];
+            for (int width = 1; width < size; width <<= 1) {
+                for (int low = 0; low < size; low += width << 1) {
+                    int mid = Math.min(low + width, size);
+                    int high = Math.min(low + (width << 1), size);
+                    if (mid >= high || compare(chunks, src[mid - 1], src[mid]) <= 0) {
+                        System.arraycopy(src, low, dst, low, high - low);
+                        continue;
+                    }
+                    int i = low;
+                    int j = mid;
+                    int k = low;
+                    while (i < mid && j < high) {
+                        dst[k++] = compare(chunks, src[j], src[i]) < 0 ? src[j++] : src[i++];
+                    }
+                    System.arraycopy(src, i, dst, k, mid - i);
+                    System.arraycopy(src, j, dst, k + mid - i, high - j);
+                }
+                long[] swap = src;
+                src = dst;
+                dst = swap;
+            }
+            if (src != offsets) {
+                System.arraycopy(src, 0, offsets, 0, size);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,87 @@
+package cn.darkjrong.hdfs.index;
+
+import lombok.Data;
+import org.apache.hadoop.fs.FileStatus;
+
+/**
+ * 命名空间索引中的文件
+ *
+ * @author Rong.Jia
+ * @date 2022/01/27
+ */
+@Data
+public class IndexedFile {
+
+    /**
+     * 路径, 不含scheme与authority
+     */
+    private String path;
+
+    /**
+     * 字节数
+     */
+    private long length;
+
+    /**
+     * 修改时间
+     */
+    private long modificationTime;
+
+    /**
+     * 访问时间
+     */
+    private long accessTime;
+
+    /**
+     * 副本数
+     */
+    private short replication;
+
+    /**
+     * 权限, {@link org.apache.hadoop.fs.permission.FsPermission#toShort()}
+     */
+    private short permission;
+
+    /**
+     * 属主
+     */
+    private String owner;
+
+    /**
+     * 属组
+     */
+    private String group;
+
+    public static IndexedFile of(FileStatus status) {
+        IndexedFile file = new IndexedFile();
+        file.setPath(status.getPath().toUri().getPath());
+        file.setLength(status.getLen());
+        file.setModificationTime(status.getModificationTime());
+        file.setAccessTime(status.getAccessTime());
+        file.setReplication(status.getReplication());
+        file.setPermission(status.getPermission().toShort());
+        file.setOwner(status.getOwner());
+        file.setGroup(status.getGroup());
+        return file;
+    }
+
+    /**
+     * 复制并修改路径, 用于重命名
+     *
+     * @param path 新路径
+     * @return {@link IndexedFile}
+     */
+    IndexedFile withPath(String path) {
+        IndexedFile file = new IndexedFile();
+        file.setPath(path);
+        file.setLength(length);
+        file.setModificationTime(modificationTime);
+        file.setAccessTime(accessTime);
+        file.setReplication(replication);
+        file.setPermission(permission);
+        file.setOwner(owner);
+        file.setGroup(group);
+        return file;
+    }
+
+}
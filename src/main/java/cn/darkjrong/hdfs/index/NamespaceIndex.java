@@ -0,0 +1,733 @@
+package cn.darkjrong.hdfs.index;
+
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.darkjrong.hdfs.inotify.ChangeEvent;
+import cn.darkjrong.hdfs.support.ParallelLister;
+import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.exceptions.ExceptionUtil;
+import cn.hutool.core.lang.Assert;
+import cn.hutool.core.util.NumberUtil;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.GlobPattern;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 本地命名空间索引, 缓存目录树下所有文件的元数据, 在本地回答前缀、通配符与属性查询, 不访问NameNode
+ * <p>
+ * 全量数据保存在堆外有序段中, 由并行列出目录树或离线fsimage导出文件(hdfs oiv -p Delimited)构建;
+ * 之后的变更通过 {@link #apply(List)} 写入堆内增量表, 查询时合并, 增量条目超过阈值后合并为新的有序段.
+ * 构建完成前收到的变更暂存, 构建完成后重放. 索引只包含文件, 不包含目录与符号链接
+ * <p>
+ * 有序段与增量表组成不可变的快照, 变更在副本上完成后一次替换, 查询始终看到某一批变更之前或之后的完整状态;
+ * 被替换的有序段在最后一个查询结束后立即释放堆外内存
+ *
+ * @author Rong.Jia
+ * @date 2022/01/27
+ */
+public class NamespaceIndex implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(NamespaceIndex.class);
+
+    /**
+     * 增量表中的删除标记
+     */
+    private static final IndexedFile REMOVED = new IndexedFile();
+
+    private static final String GLOB_CHARS = "*?[{\\";
+    private static final String IMAGE_PATH = "Path";
+    private static final String IMAGE_REPLICATION = "Replication";
+    private static final String IMAGE_MODIFICATION_TIME = "ModificationTime";
+    private static final String IMAGE_ACCESS_TIME = "AccessTime";
+    private static final String IMAGE_FILE_SIZE = "FileSize";
+    private static final String IMAGE_PERMISSION = "Permission";
+    private static final String IMAGE_USER_NAME = "UserName";
+    private static final String IMAGE_GROUP_NAME = "GroupName";
+
+    private final FileSystem fileSystem;
+    private final List<String> roots;
+    private final ExecutorService executor;
+    private final int compactThreshold;
+    private final int chunkSize;
+
+    private final Object lock = new Object();
+    private final List<ChangeEvent> backlog = new ArrayList<>();
+    private volatile Snapshot snapshot;
+    private volatile long buildTime;
+
+    /**
+     * 本地命名空间索引
+     *
+     * @param fileSystem       文件系统, 用于构建与增量刷新
+     * @param roots            建立索引的目录
+     * @param executor         并行列出线程池
+     * @param compactThreshold 增量条目超过该数时合并为新的有序段
+     * @param chunkSize        单个堆外块的最大字节数
+     */
+    public NamespaceIndex(FileSystem fileSystem, Collection<String> roots, ExecutorService executor,
+                          int compactThreshold, int chunkSize) {
+        Assert.notEmpty(roots, "索引目录不能为空");
+        this.fileSystem = fileSystem;
+        this.roots = roots.stream().map(NamespaceIndex::normalize).distinct().collect(Collectors.toList());
+        this.executor = executor;
+        this.compactThreshold = Math.max(1, compactThreshold);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 并行列出所有索引目录构建有序段, 替换已有的段; 任一目录列出失败时不替换
+     *
+     * @throws HdfsException hdfs异常
+     */
+    public void build() throws HdfsException {
+        long start = System.currentTimeMillis();
+        IndexSegment.Builder builder = new IndexSegment.Builder(chunkSize);
+        List<String> failed = Collections.synchronizedList(new ArrayList<>());
+        for (String root : roots) {
+            list(root, failed).forEach(a -> builder.add(IndexedFile.of(a)));
+        }
+        if (CollectionUtil.isNotEmpty(failed)) {
+            throw new HdfsException("构建索引失败, 无法列出目录: {}", failed);
+        }
+        publish(builder.build(), start);
+    }
+
+    /**
+     * 从离线fsimage导出文件构建有序段, 替换已有的段
+     * <p>
+     * 导出文件由 hdfs oiv -p Delimited 生成, 以制表符分隔且包含表头, 只加载索引目录下的文件
+     *
+     * @param image 导出文件
+     * @throws HdfsException 文件不存在或格式错误
+     */
+    public void load(File image) throws HdfsException {
+        Assert.isTrue(image.isFile(), "fsimage导出文件不存在, file: {}", image);
+        long start = System.currentTimeMillis();
+        IndexSegment.Builder builder = new IndexSegment.Builder(chunkSize);
+        try (BufferedReader reader = Files.newBufferedReader(image.toPath(), StandardCharsets.UTF_8)) {
+            List<String> header = StrUtil.split(StrUtil.nullToEmpty(reader.readLine()), StrUtil.C_TAB);
+            int path = column(header, IMAGE_PATH);
+            int replication = column(header, IMAGE_REPLICATION);
+            int modificationTime = column(header, IMAGE_MODIFICATION_TIME);
+            int accessTime = column(header, IMAGE_ACCESS_TIME);
+            int fileSize = column(header, IMAGE_FILE_SIZE);
+            int permission = column(header, IMAGE_PERMISSION);
+            int userName = column(header, IMAGE_USER_NAME);
+            int groupName = column(header, IMAGE_GROUP_NAME);
+            String line;
+            while (ObjectUtil.isNotNull(line = reader.readLine())) {
+                String[] values = StrUtil.splitToArray(line, StrUtil.C_TAB);
+                if (values.length < header.size() || !StrUtil.startWith(values[permission], '-') || !covers(values[path])) {
+                    continue;
+                }
+                IndexedFile file = new IndexedFile();
+                file.setPath(values[path]);
+                file.setReplication(Short.parseShort(values[replication]));
+                file.setModificationTime(parseTime(values[modificationTime]));
+                file.setAccessTime(parseTime(values[accessTime]));
+                file.setLength(Long.parseLong(values[fileSize]));
+                file.setPermission(FsPermission.valueOf(StrUtil.subPre(values[permission], 10)).toShort());
+                file.setOwner(values[userName]);
+                file.setGroup(values[groupName]);
+                builder.add(file);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("load {}", e.getMessage());
+            throw e instanceof HdfsException ? (HdfsException) e : new HdfsException(e);
+        }
+        publish(builder.build(), start);
+    }
+
+    /**
+     * 是否已构建
+     *
+     * @return 是否已构建
+     */
+    public boolean isReady() {
+        return ObjectUtil.isNotNull(snapshot);
+    }
+
+    /**
+     * 路径是否在索引目录下
+     *
+     * @param path 路径
+     * @return 是否在索引目录下
+     */
+    public boolean covers(String path) {
+        if (StrUtil.isBlank(path)) {
+            return Boolean.FALSE;
+        }
+        for (String root : roots) {
+            if (StrUtil.SLASH.equals(root) || path.equals(root) || path.startsWith(root + StrUtil.SLASH)) {
+                return Boolean.TRUE;
+            }
+        }
+        return Boolean.FALSE;
+    }
+
+    /**
+     * 获取文件
+     *
+     * @param path 路径
+     * @return {@link IndexedFile}, 不存在或不是文件时为null
+     */
+    public IndexedFile get(String path) {
+        String normalized = normalize(path);
+        Snapshot current = acquire();
+        if (ObjectUtil.isNull(current)) {
+            return null;
+        }
+        try {
+            return current.get(normalized);
+        } finally {
+            current.segment.release();
+        }
+    }
+
+    /**
+     * 查询文件
+     *
+     * @param query 查询条件, 路径须在索引目录下
+     * @return 按路径排序的文件
+     * @throws HdfsException 索引未构建
+     */
+    public List<IndexedFile> query(IndexQuery query) throws HdfsException {
+        String root = root(query);
+        Assert.isTrue(covers(root), "路径不在索引目录下, path: {}", root);
+        Predicate<IndexedFile> filter = filter(query);
+        int limit = query.getLimit() > 0 ? query.getLimit() : Integer.MAX_VALUE;
+        Snapshot current = acquire();
+        if (ObjectUtil.isNull(current)) {
+            throw new HdfsException("索引未构建");
+        }
+        List<IndexedFile> files = new ArrayList<>();
+        try {
+            current.scan(root, a -> {
+                if (filter.test(a)) {
+                    files.add(a);
+                }
+                return files.size() < limit;
+            });
+        } finally {
+            current.segment.release();
+        }
+        return files;
+    }
+
+    /**
+     * 应用命名空间变更, 可作为 {@link cn.darkjrong.hdfs.inotify.ChangeFeed} 的回调
+     * <p>
+     * 删除与重命名直接修改索引, 其余变更重新获取文件状态; 重命名移入索引目录的目录重新列出.
+     * 整批在增量表副本上完成后一次发布, 失败时索引保持不变
+     *
+     * @param events 变更
+     * @throws HdfsException 获取文件状态失败, 变更订阅会重试整批
+     */
+    public void apply(List<ChangeEvent> events) throws HdfsException {
+        synchronized (lock) {
+            Snapshot current = snapshot;
+            if (ObjectUtil.isNull(current)) {
+                backlog.addAll(events);
+                return;
+            }
+            Snapshot draft = new Snapshot(current.segment, new TreeMap<>(current.delta));
+            Set<String> stale = new LinkedHashSet<>();
+            Set<String> trees = new LinkedHashSet<>();
+            for (ChangeEvent event : events) {
+                String path = event.getPath();
+                switch (event.getType()) {
+                    case UNLINK:
+                        removeTree(draft, path);
+                        break;
+                    case RENAME:
+                        String target = event.getDstPath();
+                        if (covers(path)) {
+                            moveTree(draft, path, target);
+                        } else if (covers(target)) {
+                            trees.add(target);
+                        }
+                        stale.addAll(rename(stale, path, target));
+                        trees.addAll(rename(trees, path, target));
+                        break;
+                    default:
+                        if (covers(path)) {
+                            stale.add(path);
+                        }
+                        break;
+                }
+            }
+            try {
+                for (String path : stale) {
+                    refresh(draft, path);
+                }
+            } catch (IOException e) {
+                logger.error("apply {}", e.getMessage());
+                throw new HdfsException(e);
+            }
+            for (String path : trees) {
+                list(path, new ArrayList<>()).forEach(a -> put(draft, IndexedFile.of(a)));
+            }
+            swap(draft.delta.size() >= compactThreshold ? compact(draft) : draft);
+        }
+    }
+
+    /**
+     * 将增量表合并为新的有序段
+     */
+    public void compact() {
+        synchronized (lock) {
+            Snapshot current = snapshot;
+            if (ObjectUtil.isNotNull(current) && !current.delta.isEmpty()) {
+                swap(compact(current));
+            }
+        }
+    }
+
+    /**
+     * 有序段中的文件数, 不含未合并的增量
+     *
+     * @return 文件数
+     */
+    public int size() {
+        Snapshot current = snapshot;
+        return ObjectUtil.isNull(current) ? 0 : current.segment.size();
+    }
+
+    /**
+     * 未合并的增量条目数
+     *
+     * @return 条目数
+     */
+    public int getPendingChanges() {
+        Snapshot current = snapshot;
+        return ObjectUtil.isNull(current) ? 0 : current.delta.size();
+    }
+
+    /**
+     * 有序段占用的堆外内存
+     *
+     * @return 字节数
+     */
+    public long getMemory() {
+        Snapshot current = snapshot;
+        return ObjectUtil.isNull(current) ? 0 : current.segment.memory();
+    }
+
+    /**
+     * 最近一次构建完成的时间
+     *
+     * @return 时间戳, 未构建时为0
+     */
+    public long getBuildTime() {
+        return buildTime;
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            swap(null);
+            backlog.clear();
+        }
+    }
+
+    /**
+     * 不使用索引, 按相同条件直接查询文件系统, 用于索引未覆盖的路径
+     * <p>
+     * 设置通配符时使用 {@link FileSystem#globStatus(Path)} 只列出匹配的目录, 否则并行列出起始路径下的目录树
+     *
+     * @param fileSystem 文件系统
+     * @param query      查询条件
+     * @param executor   并行列出线程池
+     * @param maxFiles   列出的文件数上限, 超过时失败, 小于等于0时不限制
+     * @return 按路径排序的文件
+     * @throws HdfsException hdfs异常, 或文件数超过上限
+     */
+    public static List<IndexedFile> scan(FileSystem fileSystem, IndexQuery query, ExecutorService executor,
+                                         long maxFiles) throws HdfsException {
+        String root = root(query);
+        Predicate<IndexedFile> filter = filter(query);
+        List<FileStatus> statuses;
+        if (StrUtil.isBlank(query.getGlob())) {
+            statuses = list(fileSystem, root, executor, new ArrayList<>(), maxFiles);
+        } else {
+            statuses = glob(fileSystem, query.getGlob(), maxFiles);
+        }
+        String prefix = StrUtil.SLASH.equals(root) ? root : root + StrUtil.SLASH;
+        return statuses.stream()
+                .filter(FileStatus::isFile)
+                .map(IndexedFile::of)
+                .filter(a -> a.getPath().equals(root) || a.getPath().startsWith(prefix))
+                .filter(filter)
+                .sorted((a, b) -> IndexSegment.PATH_ORDER.compare(a.getPath(), b.getPath()))
+                .limit(query.getLimit() > 0 ? query.getLimit() : Long.MAX_VALUE)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 查询的起始路径, 未设置路径时取通配符中第一个通配符之前的目录
+     *
+     * @param query 查询条件
+     * @return 路径
+     */
+    public static String root(IndexQuery query) {
+        if (StrUtil.isNotBlank(query.getPath())) {
+            return normalize(query.getPath());
+        }
+        Assert.notBlank(query.getGlob(), "路径与通配符不能同时为空");
+        String glob = query.getGlob();
+        int end = glob.length();
+        for (int i = 0; i < glob.length(); i++) {
+            if (GLOB_CHARS.indexOf(glob.charAt(i)) >= 0) {
+                end = i;
+                break;
+            }
+        }
+        return normalize(end == glob.length() ? glob : StrUtil.subPre(glob, glob.lastIndexOf(StrUtil.C_SLASH, end) + 1));
+    }
+
+    private static Predicate<IndexedFile> filter(IndexQuery query) {
+        Predicate<String> glob = StrUtil.isBlank(query.getGlob()) ? null : glob(query.getGlob());
+        return file -> file.getLength() >= query.getMinSize()
+                && (query.getMaxSize() <= 0 || file.getLength() <= query.getMaxSize())
+                && (query.getModifiedSince() <= 0 || file.getModificationTime() >= query.getModifiedSince())
+                && (query.getModifiedBefore() <= 0 || file.getModificationTime() < query.getModifiedBefore())
+                && (StrUtil.isBlank(query.getOwner()) || StrUtil.equals(query.getOwner(), file.getOwner()))
+                && (ObjectUtil.isNull(glob) || glob.test(file.getPath()));
+    }
+
+    /**
+     * 与 {@link FileSystem#globStatus(Path)} 一致的匹配: 按 / 分段, 段数相同且每段都匹配, 通配符不跨越 /
+     *
+     * @param glob 通配符
+     * @return 路径匹配条件
+     */
+    static Predicate<String> glob(String glob) {
+        List<Pattern> patterns = components(glob).stream().map(GlobPattern::compile).collect(Collectors.toList());
+        return path -> {
+            List<String> names = StrUtil.split(path, StrUtil.C_SLASH, Boolean.FALSE, Boolean.TRUE);
+            if (names.size() != patterns.size()) {
+                return Boolean.FALSE;
+            }
+            for (int i = 0; i < names.size(); i++) {
+                if (!patterns.get(i).matcher(names.get(i)).matches()) {
+                    return Boolean.FALSE;
+                }
+            }
+            return Boolean.TRUE;
+        };
+    }
+
+    /**
+     * 按 / 拆分通配符, 忽略转义字符之后的字符, 花括号内不能包含 /
+     */
+    private static List<String> components(String glob) {
+        List<String> components = new ArrayList<>();
+        StringBuilder component = new StringBuilder();
+        int depth = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '\\' && i + 1 < glob.length()) {
+                component.append(c).append(glob.charAt(++i));
+                continue;
+            }
+            if (c == StrUtil.C_SLASH) {
+                Assert.isTrue(depth == 0, "通配符的花括号内不能包含 /, glob: {}", glob);
+                if (component.length() > 0) {
+                    components.add(component.toString());
+                    component.setLength(0);
+                }
+                continue;
+            }
+            if (c == '{') {
+                depth++;
+            } else if (c == '}' && depth > 0) {
+                depth--;
+            }
+            component.append(c);
+        }
+        if (component.length() > 0) {
+            components.add(component.toString());
+        }
+        return components;
+    }
+
+    /**
+     * 发布新构建的有序段, 保留构建期间应用的增量
+     */
+    private void publish(IndexSegment built, long start) {
+        synchronized (lock) {
+            Snapshot current = snapshot;
+            swap(new Snapshot(built, ObjectUtil.isNull(current) ? new TreeMap<>(IndexSegment.PATH_ORDER) : current.delta));
+            buildTime = System.currentTimeMillis();
+            logger.info("namespace index built {} files, {} bytes off-heap in {} ms", built.size(), built.memory(),
+                    buildTime - start);
+            if (!backlog.isEmpty()) {
+                List<ChangeEvent> events = new ArrayList<>(backlog);
+                backlog.clear();
+                try {
+                    apply(events);
+                } catch (HdfsException e) {
+                    // 暂存的变更大多早于本次列出, 失败时只记录日志
+                    logger.error("apply backlog {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 读取当前快照并持有其有序段, 使用后须 {@link IndexSegment#release()}
+     *
+     * @return 快照, 未构建或已关闭时为null
+     */
+    private Snapshot acquire() {
+        for (;;) {
+            Snapshot current = snapshot;
+            if (ObjectUtil.isNull(current) || current.segment.retain()) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * 替换快照, 有序段被替换时释放旧段, 须持有锁
+     */
+    private void swap(Snapshot next) {
+        Snapshot previous = snapshot;
+        snapshot = next;
+        if (ObjectUtil.isNotNull(previous) && (ObjectUtil.isNull(next) || previous.segment != next.segment)) {
+            previous.segment.release();
+        }
+    }
+
+    /**
+     * 将快照的增量表合并为新的有序段, 须持有锁
+     */
+    private Snapshot compact(Snapshot current) {
+        long start = System.currentTimeMillis();
+        IndexSegment segment = current.segment;
+        IndexSegment.Builder builder = new IndexSegment.Builder(chunkSize);
+        Iterator<Map.Entry<String, IndexedFile>> iterator = current.delta.entrySet().iterator();
+        Map.Entry<String, IndexedFile> change = iterator.hasNext() ? iterator.next() : null;
+        for (int i = 0; i < segment.size(); i++) {
+            int compare = 1;
+            while (ObjectUtil.isNotNull(change)
+                    && (compare = segment.compare(i, change.getKey().getBytes(StandardCharsets.UTF_8))) >= 0) {
+                if (change.getValue() != REMOVED) {
+                    builder.add(change.getValue());
+                }
+                change = iterator.hasNext() ? iterator.next() : null;
+                if (compare == 0) {
+                    break;
+                }
+            }
+            if (compare != 0) {
+                builder.add(segment.get(i));
+            }
+        }
+        while (ObjectUtil.isNotNull(change)) {
+            if (change.getValue() != REMOVED) {
+                builder.add(change.getValue());
+            }
+            change = iterator.hasNext() ? iterator.next() : null;
+        }
+        Snapshot compacted = new Snapshot(builder.build(), new TreeMap<>(IndexSegment.PATH_ORDER));
+        logger.info("namespace index compacted {} changes in {} ms", current.delta.size(), System.currentTimeMillis() - start);
+        return compacted;
+    }
+
+    private void put(Snapshot draft, IndexedFile file) {
+        if (covers(file.getPath())) {
+            draft.delta.put(file.getPath(), file);
+        }
+    }
+
+    private void removeTree(Snapshot draft, String path) {
+        List<String> removed = new ArrayList<>();
+        draft.scan(normalize(path), a -> removed.add(a.getPath()));
+        removed.forEach(a -> draft.delta.put(a, REMOVED));
+    }
+
+    private void moveTree(Snapshot draft, String source, String target) {
+        List<IndexedFile> moved = new ArrayList<>();
+        draft.scan(normalize(source), moved::add);
+        for (IndexedFile file : moved) {
+            draft.delta.put(file.getPath(), REMOVED);
+            put(draft, file.withPath(target + StrUtil.removePrefix(file.getPath(), source)));
+        }
+    }
+
+    private void refresh(Snapshot draft, String path) throws IOException {
+        try {
+            FileStatus status = fileSystem.getFileStatus(new Path(path));
+            if (status.isFile()) {
+                put(draft, IndexedFile.of(status));
+            }
+        } catch (FileNotFoundException e) {
+            String normalized = normalize(path);
+            if (ObjectUtil.isNotNull(draft.get(normalized))) {
+                draft.delta.put(normalized, REMOVED);
+            }
+        }
+    }
+
+    private List<FileStatus> list(String path, List<String> failed) {
+        return list(fileSystem, path, executor, failed, 0);
+    }
+
+    private static List<FileStatus> list(FileSystem fileSystem, String path, ExecutorService executor,
+                                         List<String> failed, long maxFiles) {
+        try {
+            return ParallelLister.listFiles(fileSystem, new Path(path), executor, failed, maxFiles);
+        } catch (HdfsException e) {
+            if (ExceptionUtil.isCausedBy(e, FileNotFoundException.class)) {
+                return new ArrayList<>();
+            }
+            throw e;
+        }
+    }
+
+    private static List<FileStatus> glob(FileSystem fileSystem, String glob, long maxFiles) {
+        try {
+            FileStatus[] statuses = fileSystem.globStatus(new Path(glob));
+            if (ObjectUtil.isNull(statuses)) {
+                return new ArrayList<>();
+            }
+            if (maxFiles > 0 && statuses.length > maxFiles) {
+                throw new HdfsException("文件数超过上限: {}, glob: {}", maxFiles, glob);
+            }
+            return Arrays.asList(statuses);
+        } catch (IOException e) {
+            logger.error("globStatus {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 同一批中先变更后重命名的路径, 改为重命名后的路径
+     */
+    private static List<String> rename(Set<String> paths, String source, String target) {
+        List<String> renamed = new ArrayList<>();
+        paths.removeIf(a -> {
+            if (a.equals(source) || a.startsWith(source + StrUtil.SLASH)) {
+                renamed.add(target + StrUtil.removePrefix(a, source));
+                return Boolean.TRUE;
+            }
+            return Boolean.FALSE;
+        });
+        return renamed;
+    }
+
+    private static int column(List<String> header, String name) {
+        int index = header.indexOf(name);
+        Assert.isTrue(index >= 0, "fsimage导出文件缺少列: {}, 应使用 hdfs oiv -p Delimited 导出", name);
+        return index;
+    }
+
+    private static long parseTime(String value) {
+        return NumberUtil.isLong(value) ? Long.parseLong(value) : DateUtil.parse(value).getTime();
+    }
+
+    private static String normalize(String path) {
+        Assert.isTrue(StrUtil.startWith(path, StrUtil.C_SLASH), "路径必须是绝对路径, path: {}", path);
+        return new Path(path).toUri().getPath();
+    }
+
+    /**
+     * 有序段与增量表组成的快照, 发布后不再修改; 应用变更时在增量表副本上修改后整体替换
+     */
+    private static final class Snapshot {
+
+        private final IndexSegment segment;
+        private final TreeMap<String, IndexedFile> delta;
+
+        private Snapshot(IndexSegment segment, TreeMap<String, IndexedFile> delta) {
+            this.segment = segment;
+            this.delta = delta;
+        }
+
+        private IndexedFile get(String normalized) {
+            IndexedFile file = delta.get(normalized);
+            if (ObjectUtil.isNotNull(file)) {
+                return file == REMOVED ? null : file;
+            }
+            int index = segment.find(normalized.getBytes(StandardCharsets.UTF_8));
+            return index < 0 ? null : segment.get(index);
+        }
+
+        /**
+         * 按路径顺序合并遍历有序段与增量表中的文件: 路径本身及其下的所有文件
+         *
+         * @param visitor 返回false时停止
+         */
+        private void scan(String root, Predicate<IndexedFile> visitor) {
+            IndexedFile file = get(root);
+            if (ObjectUtil.isNotNull(file) && !visitor.test(file)) {
+                return;
+            }
+            String prefix = StrUtil.SLASH.equals(root) ? root : root + StrUtil.SLASH;
+            byte[] prefixBytes = prefix.getBytes(StandardCharsets.UTF_8);
+            int index = segment.lowerBound(prefixBytes);
+            Iterator<Map.Entry<String, IndexedFile>> iterator = delta.tailMap(prefix).entrySet().iterator();
+            Map.Entry<String, IndexedFile> change = next(iterator, prefix);
+            byte[] key = ObjectUtil.isNull(change) ? null : change.getKey().getBytes(StandardCharsets.UTF_8);
+            for (;;) {
+                boolean base = index < segment.size() && segment.startsWith(index, prefixBytes);
+                if (!base && ObjectUtil.isNull(change)) {
+                    return;
+                }
+                int compare = !base ? 1 : ObjectUtil.isNull(change) ? -1 : segment.compare(index, key);
+                if (compare < 0) {
+                    file = segment.get(index++);
+                } else {
+                    file = change.getValue();
+                    if (compare == 0) {
+                        index++;
+                    }
+                    change = next(iterator, prefix);
+                    key = ObjectUtil.isNull(change) ? null : change.getKey().getBytes(StandardCharsets.UTF_8);
+                }
+                if (file != REMOVED && !visitor.test(file)) {
+                    return;
+                }
+            }
+        }
+
+        private static Map.Entry<String, IndexedFile> next(Iterator<Map.Entry<String, IndexedFile>> iterator, String prefix) {
+            if (!iterator.hasNext()) {
+                return null;
+            }
+            Map.Entry<String, IndexedFile> entry = iterator.next();
+            return entry.getKey().startsWith(prefix) ? entry : null;
+        }
+
+    }
+
+}
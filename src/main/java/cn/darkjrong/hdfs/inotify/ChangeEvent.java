@@ -0,0 +1,45 @@
+package cn.darkjrong.hdfs.inotify;
+
+import lombok.Data;
+import org.apache.hadoop.hdfs.inotify.Event;
+
+/**
+ * 命名空间变更事件
+ *
+ * @author Rong.Jia
+ * @date 2022/01/21
+ */
+@Data
+public class ChangeEvent {
+
+    /**
+     * 事件所在的事务ID
+     */
+    private long txid;
+
+    /**
+     * 事件类型
+     */
+    private Event.EventType type;
+
+    /**
+     * 路径, 重命名时为原路径
+     */
+    private String path;
+
+    /**
+     * 重命名后的路径, 其他事件为null
+     */
+    private String dstPath;
+
+    /**
+     * 文件大小, 仅关闭、截断事件有效
+     */
+    private long size = -1;
+
+    /**
+     * 事件时间, 毫秒, 未知时为0
+     */
+    private long timestamp;
+
+}
@@ -0,0 +1,277 @@
+package cn.darkjrong.hdfs.inotify;
+
+import cn.darkjrong.hdfs.jfr.JfrRecorder;
+import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.NumberUtil;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import org.apache.hadoop.hdfs.DFSInotifyEventInputStream;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.inotify.Event;
+import org.apache.hadoop.hdfs.inotify.EventBatch;
+import org.apache.hadoop.hdfs.inotify.MissingEventsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 命名空间变更订阅, 通过HDFS inotify从NameNode编辑日志读取创建、关闭、重命名、删除与元数据变更事件,
+ * 按路径前缀过滤, 批量回调
+ * <p>
+ * 回调成功后把最后一个事务ID写入本地检查点文件, 重启后从检查点继续, 至少投递一次; 回调失败时暂停读取, 只重试同一批事件;
+ * 检查点之后的编辑日志已被清理时从最新位置继续并记录错误日志. 读取inotify需要HDFS超级用户权限
+ *
+ * @author Rong.Jia
+ * @date 2022/01/21
+ */
+public class ChangeFeed implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeFeed.class);
+
+    private final DistributedFileSystem fileSystem;
+    private final List<String> prefixes;
+    private final File checkpoint;
+    private final int batchSize;
+    private final long batchInterval;
+    private final long retryInterval;
+    private final Consumer<List<ChangeEvent>> listener;
+
+    private volatile boolean running;
+    private volatile long lastTxid = -1;
+    private Thread thread;
+
+    /**
+     * 命名空间变更订阅
+     *
+     * @param fileSystem    文件系统
+     * @param prefixes      路径前缀, 为空时不过滤
+     * @param checkpoint    检查点文件, 为null时不持久化, 每次从最新位置开始
+     * @param batchSize     每批最多事件数
+     * @param batchInterval 未满一批时最长等待毫秒数
+     * @param retryInterval 读取或回调失败后的重试间隔, 毫秒
+     * @param listener      回调
+     */
+    public ChangeFeed(DistributedFileSystem fileSystem, Collection<String> prefixes, File checkpoint, int batchSize,
+                      long batchInterval, long retryInterval, Consumer<List<ChangeEvent>> listener) {
+        this.fileSystem = fileSystem;
+        this.prefixes = CollectionUtil.emptyIfNull(prefixes).stream()
+                .map(a -> StrUtil.removeSuffix(a, StrUtil.SLASH))
+                .collect(Collectors.toList());
+        this.checkpoint = checkpoint;
+        this.batchSize = Math.max(1, batchSize);
+        this.batchInterval = batchInterval;
+        this.retryInterval = retryInterval;
+        this.listener = listener;
+    }
+
+    /**
+     * 开始订阅
+     *
+     * @return this
+     */
+    public synchronized ChangeFeed start() {
+        if (!running) {
+            running = Boolean.TRUE;
+            lastTxid = readCheckpoint();
+            thread = ThreadUtil.newThread(this::run, "hdfs-change-feed", Boolean.TRUE);
+            thread.start();
+        }
+        return this;
+    }
+
+    /**
+     * 最后一个已投递的事务ID
+     *
+     * @return 事务ID, 未投递过时为-1
+     */
+    public long getLastTxid() {
+        return lastTxid;
+    }
+
+    @Override
+    public synchronized void close() {
+        running = Boolean.FALSE;
+        if (ObjectUtil.isNotNull(thread)) {
+            thread.interrupt();
+            ThreadUtil.waitForDie(thread);
+            thread = null;
+        }
+    }
+
+    private void run() {
+        List<ChangeEvent> pending = new ArrayList<>();
+        long pendingTxid = lastTxid;
+        DFSInotifyEventInputStream stream = null;
+        long deadline = 0;
+        while (running) {
+            try {
+                if (ObjectUtil.isNull(stream)) {
+                    stream = lastTxid < 0 ? fileSystem.getInotifyEventStream() : fileSystem.getInotifyEventStream(lastTxid);
+                }
+                long wait = pending.isEmpty() ? batchInterval : Math.max(0, deadline - System.currentTimeMillis());
+                EventBatch batch = stream.poll(wait, TimeUnit.MILLISECONDS);
+                if (ObjectUtil.isNotNull(batch)) {
+                    if (pending.isEmpty()) {
+                        deadline = System.currentTimeMillis() + batchInterval;
+                    }
+                    pendingTxid = batch.getTxid();
+                    for (Event event : batch.getEvents()) {
+                        ChangeEvent change = convert(batch.getTxid(), event);
+                        if (ObjectUtil.isNotNull(change) && matches(change)) {
+                            pending.add(change);
+                        }
+                    }
+                }
+                boolean due = System.currentTimeMillis() >= deadline;
+                if (pending.size() >= batchSize || (due && pendingTxid > lastTxid)) {
+                    // 回调失败时不再读取新事件, 避免消费者故障期间未投递的事件无限累积
+                    while (!deliver(pending)) {
+                        if (!running || !ThreadUtil.sleep(retryInterval)) {
+                            return;
+                        }
+                    }
+                    pending.clear();
+                    lastTxid = pendingTxid;
+                    writeCheckpoint(lastTxid);
+                    deadline = System.currentTimeMillis() + batchInterval;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (MissingEventsException e) {
+                logger.error("change feed missed events, resume from latest {}", e.getMessage());
+                pending.clear();
+                lastTxid = -1;
+                pendingTxid = -1;
+                stream = null;
+            } catch (Exception e) {
+                // 读取失败时丢弃未投递的事件, 从检查点重新打开
+                logger.error("change feed {}", e.getMessage());
+                pending.clear();
+                pendingTxid = lastTxid;
+                stream = null;
+                if (running) {
+                    ThreadUtil.sleep(retryInterval);
+                }
+            }
+        }
+    }
+
+    private boolean deliver(List<ChangeEvent> events) {
+        if (events.isEmpty()) {
+            return Boolean.TRUE;
+        }
+        try {
+            JfrRecorder.record("subscribe", null, Boolean.FALSE, () -> {
+                listener.accept(new ArrayList<>(events));
+                return null;
+            });
+            return Boolean.TRUE;
+        } catch (Exception e) {
+            logger.error("change feed listener {}", e.getMessage());
+            return Boolean.FALSE;
+        }
+    }
+
+    private boolean matches(ChangeEvent event) {
+        return prefixes.isEmpty() || matches(event.getPath()) || matches(event.getDstPath());
+    }
+
+    private boolean matches(String path) {
+        if (StrUtil.isEmpty(path)) {
+            return Boolean.FALSE;
+        }
+        for (String prefix : prefixes) {
+            if (StrUtil.isEmpty(prefix) || path.equals(prefix) || path.startsWith(prefix + StrUtil.SLASH)) {
+                return Boolean.TRUE;
+            }
+        }
+        return Boolean.FALSE;
+    }
+
+    private ChangeEvent convert(long txid, Event event) {
+        ChangeEvent change = new ChangeEvent();
+        change.setTxid(txid);
+        change.setType(event.getEventType());
+        switch (event.getEventType()) {
+            case CREATE:
+                Event.CreateEvent create = (Event.CreateEvent) event;
+                change.setPath(create.getPath());
+                change.setTimestamp(create.getCtime());
+                break;
+            case CLOSE:
+                Event.CloseEvent close = (Event.CloseEvent) event;
+                change.setPath(close.getPath());
+                change.setSize(close.getFileSize());
+                change.setTimestamp(close.getTimestamp());
+                break;
+            case APPEND:
+                change.setPath(((Event.AppendEvent) event).getPath());
+                break;
+            case RENAME:
+                Event.RenameEvent rename = (Event.RenameEvent) event;
+                change.setPath(rename.getSrcPath());
+                change.setDstPath(rename.getDstPath());
+                change.setTimestamp(rename.getTimestamp());
+                break;
+            case METADATA:
+                Event.MetadataUpdateEvent metadata = (Event.MetadataUpdateEvent) event;
+                change.setPath(metadata.getPath());
+                change.setTimestamp(metadata.getMtime());
+                break;
+            case UNLINK:
+                Event.UnlinkEvent unlink = (Event.UnlinkEvent) event;
+                change.setPath(unlink.getPath());
+                change.setTimestamp(unlink.getTimestamp());
+                break;
+            case TRUNCATE:
+                Event.TruncateEvent truncate = (Event.TruncateEvent) event;
+                change.setPath(truncate.getPath());
+                change.setSize(truncate.getFileSize());
+                change.setTimestamp(truncate.getTimestamp());
+                break;
+            default:
+                return null;
+        }
+        return change;
+    }
+
+    private long readCheckpoint() {
+        if (ObjectUtil.isNull(checkpoint) || !checkpoint.isFile()) {
+            return -1;
+        }
+        String txid = StrUtil.trim(FileUtil.readUtf8String(checkpoint));
+        return NumberUtil.isLong(txid) ? Long.parseLong(txid) : -1;
+    }
+
+    private void writeCheckpoint(long txid) throws Exception {
+        if (ObjectUtil.isNull(checkpoint)) {
+            return;
+        }
+        FileUtil.mkParentDirs(checkpoint);
+        File tmp = new File(checkpoint.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(String.valueOf(txid).getBytes(StandardCharsets.UTF_8)));
+            channel.force(Boolean.TRUE);
+        }
+        Files.move(tmp.toPath(), checkpoint.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
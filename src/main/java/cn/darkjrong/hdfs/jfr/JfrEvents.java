@@ -0,0 +1,71 @@
+package cn.darkjrong.hdfs.jfr;
+
+/**
+ * 创建与提交JFR事件, 只在JFR可用时加载, 避免在没有 jdk.jfr 的JVM上加载事件类
+ *
+ * @author Rong.Jia
+ * @date 2022/01/26
+ */
+final class JfrEvents {
+
+    private JfrEvents() {
+    }
+
+    static boolean isAvailable() {
+        return jdk.jfr.FlightRecorder.isAvailable();
+    }
+
+    /**
+     * 开始事件
+     *
+     * @param transfer 是否数据传输
+     * @return 事件, 未启用时为null
+     */
+    static Object begin(boolean transfer) {
+        if (transfer) {
+            TransferEvent event = new TransferEvent();
+            if (!event.isEnabled()) {
+                return null;
+            }
+            event.begin();
+            return event;
+        }
+        OperationEvent event = new OperationEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static void commit(Object event, Recording recording, String outcome, String error) {
+        if (event instanceof TransferEvent) {
+            TransferEvent transfer = (TransferEvent) event;
+            transfer.end();
+            if (transfer.shouldCommit()) {
+                transfer.operation = recording.getOperation();
+                transfer.path = recording.getPath();
+                transfer.bytes = recording.getBytes();
+                transfer.chunks = recording.getChunks();
+                transfer.poolWait = recording.getPoolWait();
+                transfer.retries = recording.getRetries();
+                transfer.outcome = outcome;
+                transfer.error = error;
+                transfer.commit();
+            }
+            return;
+        }
+        OperationEvent operation = (OperationEvent) event;
+        operation.end();
+        if (operation.shouldCommit()) {
+            operation.operation = recording.getOperation();
+            operation.path = recording.getPath();
+            operation.bytes = recording.getBytes();
+            operation.retries = recording.getRetries();
+            operation.outcome = outcome;
+            operation.error = error;
+            operation.commit();
+        }
+    }
+
+}
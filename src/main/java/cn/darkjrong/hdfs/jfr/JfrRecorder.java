@@ -0,0 +1,167 @@
+package cn.darkjrong.hdfs.jfr;
+
+import cn.hutool.core.exceptions.ExceptionUtil;
+import cn.hutool.core.util.ObjectUtil;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * JFR事件记录
+ * <p>
+ * 每次操作提交一个事件, 包含操作、路径、字节数、耗时、重试次数与结果, 数据传输操作另外记录缓冲池等待时间与分块数.
+ * 除经过调用器的HDFS调用外, 复制、审计、分层、合并、索引、变更投递以及容器、滚动写入与暂存上传也各自记录.
+ * 事件是否记录及阈值由JFR配置控制, 事件名称为 cn.darkjrong.hdfs.Operation 与 cn.darkjrong.hdfs.Transfer; 运行在没有 jdk.jfr 的JVM上时不加载任何事件类, 所有方法为空操作.
+ * 当前记录保存在线程变量中, 操作内部提交到其他线程的并行任务不计入
+ *
+ * @author Rong.Jia
+ * @date 2022/01/26
+ */
+public final class JfrRecorder {
+
+    public static final String SUCCESS = "SUCCESS";
+    public static final String TIMEOUT = "TIMEOUT";
+    public static final String FAILURE = "FAILURE";
+
+    private static final boolean AVAILABLE = detect();
+    private static final ThreadLocal<Recording> CURRENT = new ThreadLocal<>();
+
+    private JfrRecorder() {
+    }
+
+    /**
+     * JFR是否可用
+     *
+     * @return 是否可用
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * 开始记录
+     *
+     * @param operation 操作
+     * @param path      路径, 可为null
+     * @param transfer  是否数据传输
+     * @return 记录, JFR不可用或事件未启用时为null
+     */
+    public static Recording begin(String operation, String path, boolean transfer) {
+        if (!AVAILABLE) {
+            return null;
+        }
+        Object event = JfrEvents.begin(transfer);
+        if (ObjectUtil.isNull(event)) {
+            return null;
+        }
+        Recording recording = new Recording(operation, path, event, CURRENT.get());
+        CURRENT.set(recording);
+        return recording;
+    }
+
+    /**
+     * 结束记录并提交事件
+     *
+     * @param recording 记录, 为null时忽略
+     * @param error     异常, 成功时为null
+     */
+    public static void end(Recording recording, Throwable error) {
+        if (ObjectUtil.isNull(recording)) {
+            return;
+        }
+        if (ObjectUtil.isNull(recording.getPrevious())) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(recording.getPrevious());
+        }
+        String outcome = ObjectUtil.isNull(error) ? SUCCESS
+                : ExceptionUtil.isCausedBy(error, TimeoutException.class) ? TIMEOUT : FAILURE;
+        String errorName = ObjectUtil.isNull(error) ? null : ExceptionUtil.getRootCause(error).getClass().getName();
+        JfrEvents.commit(recording.getEvent(), recording, outcome, errorName);
+    }
+
+    /**
+     * 记录一次操作, 调用期间为当前线程的记录
+     *
+     * @param operation 操作
+     * @param path      路径, 可为null
+     * @param transfer  是否数据传输
+     * @param callable  调用
+     * @param <T>       返回类型
+     * @return 调用结果
+     * @throws Exception 调用异常
+     */
+    public static <T> T record(String operation, String path, boolean transfer, Callable<T> callable) throws Exception {
+        Recording recording = begin(operation, path, transfer);
+        Throwable error = null;
+        try {
+            return callable.call();
+        } catch (Throwable e) {
+            error = e;
+            throw e;
+        } finally {
+            end(recording, error);
+        }
+    }
+
+    /**
+     * 当前线程的记录
+     *
+     * @return 记录, 没有时为null
+     */
+    public static Recording current() {
+        return AVAILABLE ? CURRENT.get() : null;
+    }
+
+    /**
+     * 累计当前记录的数据传输
+     *
+     * @param bytes     字节数
+     * @param chunks    分块数
+     * @param waitNanos 获取缓冲区等待时间, 纳秒
+     */
+    public static void transfer(long bytes, long chunks, long waitNanos) {
+        Recording recording = current();
+        if (ObjectUtil.isNotNull(recording)) {
+            recording.addTransfer(bytes, chunks, waitNanos);
+        }
+    }
+
+    /**
+     * 将当前线程的记录传递到任务执行线程, 如对冲请求
+     *
+     * @param callable 任务
+     * @param <T>      结果类型
+     * @return 任务
+     */
+    public static <T> Callable<T> propagate(Callable<T> callable) {
+        Recording recording = current();
+        if (ObjectUtil.isNull(recording)) {
+            return callable;
+        }
+        return () -> {
+            Recording previous = CURRENT.get();
+            CURRENT.set(recording);
+            try {
+                return callable.call();
+            } finally {
+                if (ObjectUtil.isNull(previous)) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        };
+    }
+
+    private static boolean detect() {
+        try {
+            // 只检查类是否存在, 不存在时不会加载引用 jdk.jfr 的 JfrEvents 与事件类
+            Class.forName("jdk.jfr.FlightRecorder", Boolean.FALSE, JfrRecorder.class.getClassLoader());
+            return JfrEvents.isAvailable();
+        } catch (Throwable e) {
+            return Boolean.FALSE;
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+package cn.darkjrong.hdfs.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * HDFS操作JFR事件, 持续时间包含限流、隔离舱等待
+ *
+ * @author Rong.Jia
+ * @date 2022/01/26
+ */
+@Name("cn.darkjrong.hdfs.Operation")
+@Label("HDFS Operation")
+@Category({"HDFS"})
+@Description("HdfsTemplate metadata operation")
+@StackTrace(false)
+class OperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Path")
+    String path;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Retries")
+    @Description("Hedged attempts issued in addition to the first call")
+    int retries;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Error")
+    String error;
+
+}
@@ -0,0 +1,83 @@
+package cn.darkjrong.hdfs.jfr;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一次操作的JFR记录, 操作期间累计传输字节数、分块数、缓冲池等待时间与重试次数
+ *
+ * @author Rong.Jia
+ * @date 2022/01/26
+ */
+public final class Recording {
+
+    private final String operation;
+    private final String path;
+    private final Object event;
+    private final Recording previous;
+
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder poolWait = new LongAdder();
+    private final AtomicInteger retries = new AtomicInteger();
+
+    Recording(String operation, String path, Object event, Recording previous) {
+        this.operation = operation;
+        this.path = path;
+        this.event = event;
+        this.previous = previous;
+    }
+
+    /**
+     * 累计一次数据传输
+     *
+     * @param bytes     字节数
+     * @param chunks    分块数
+     * @param waitNanos 获取缓冲区等待时间, 纳秒
+     */
+    public void addTransfer(long bytes, long chunks, long waitNanos) {
+        this.bytes.add(bytes);
+        this.chunks.add(chunks);
+        this.poolWait.add(waitNanos);
+    }
+
+    /**
+     * 记录一次重试或对冲请求
+     */
+    public void retry() {
+        retries.incrementAndGet();
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public long getChunks() {
+        return chunks.sum();
+    }
+
+    public long getPoolWait() {
+        return poolWait.sum();
+    }
+
+    public int getRetries() {
+        return retries.get();
+    }
+
+    Object getEvent() {
+        return event;
+    }
+
+    Recording getPrevious() {
+        return previous;
+    }
+
+}
@@ -0,0 +1,52 @@
+package cn.darkjrong.hdfs.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * HDFS数据传输JFR事件, 在操作事件的基础上记录缓冲池等待时间与分块数
+ *
+ * @author Rong.Jia
+ * @date 2022/01/26
+ */
+@Name("cn.darkjrong.hdfs.Transfer")
+@Label("HDFS Transfer")
+@Category({"HDFS"})
+@Description("HdfsTemplate data transfer")
+@StackTrace(false)
+class TransferEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Path")
+    String path;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Chunks")
+    long chunks;
+
+    @Label("Pool Wait")
+    @Description("Time spent waiting for pooled buffers")
+    @Timespan
+    long poolWait;
+
+    @Label("Retries")
+    int retries;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Error")
+    String error;
+
+}
@@ -0,0 +1,53 @@
+package cn.darkjrong.hdfs.locality;
+
+import lombok.Data;
+import org.apache.hadoop.fs.StorageType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文件分片, 对应文件的一个块及其副本所在位置
+ *
+ * @author Rong.Jia
+ * @date 2022/01/16
+ */
+@Data
+public class BlockSplit {
+
+    /**
+     * 文件路径
+     */
+    private String path;
+
+    /**
+     * 分片在文件中的起始位置
+     */
+    private long offset;
+
+    /**
+     * 分片字节数
+     */
+    private long length;
+
+    /**
+     * 副本所在主机
+     */
+    private List<String> hosts = new ArrayList<>();
+
+    /**
+     * 已缓存在内存中的副本所在主机
+     */
+    private List<String> cachedHosts = new ArrayList<>();
+
+    /**
+     * 副本的存储类型, 与 hosts 一一对应
+     */
+    private List<StorageType> storageTypes = new ArrayList<>();
+
+    /**
+     * 块是否损坏
+     */
+    private boolean corrupt;
+
+}
@@ -0,0 +1,96 @@
+package cn.darkjrong.hdfs.locality;
+
+import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.util.ArrayUtil;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.LocatedFileStatus;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 数据本地性规划, 将文件块转换为分片, 并按副本所在主机分组, 便于调度器把任务放到数据所在节点上短路读取
+ *
+ * @author Rong.Jia
+ * @date 2022/01/16
+ */
+public class LocalityPlanner {
+
+    /**
+     * 没有副本位置信息(如空文件)的分片分组
+     */
+    public static final String ANY_HOST = "*";
+
+    private LocalityPlanner() {
+    }
+
+    /**
+     * 将文件的块位置转换为分片
+     *
+     * @param status 带块位置的文件状态
+     * @return 分片, 每个块一个; 没有块的文件(如空文件)为一个长度为0、没有副本主机的分片
+     */
+    public static List<BlockSplit> toSplits(LocatedFileStatus status) {
+        BlockLocation[] locations = status.getBlockLocations();
+        if (ArrayUtil.isEmpty(locations)) {
+            BlockSplit split = new BlockSplit();
+            split.setPath(status.getPath().toUri().getPath());
+            return CollectionUtil.newArrayList(split);
+        }
+        List<BlockSplit> splits = new ArrayList<>(locations.length);
+        for (BlockLocation location : locations) {
+            BlockSplit split = new BlockSplit();
+            split.setPath(status.getPath().toUri().getPath());
+            split.setOffset(location.getOffset());
+            split.setLength(location.getLength());
+            split.setHosts(CollectionUtil.newArrayList(location.getHosts()));
+            split.setCachedHosts(CollectionUtil.newArrayList(location.getCachedHosts()));
+            split.setStorageTypes(CollectionUtil.newArrayList(location.getStorageTypes()));
+            split.setCorrupt(location.isCorrupt());
+            splits.add(split);
+        }
+        return splits;
+    }
+
+    /**
+     * 按首选主机分组, 大分片优先分配, 每个分片分配给其副本主机中已分配字节数最少的一个, 优先选择已缓存副本的主机,
+     * 使各主机负载大致均衡
+     *
+     * @param splits 分片
+     * @return 主机与分配到该主机的分片, 无位置信息的分片在 {@link #ANY_HOST} 下
+     */
+    public static Map<String, List<BlockSplit>> groupByHost(List<BlockSplit> splits) {
+        List<BlockSplit> sorted = new ArrayList<>(splits);
+        sorted.sort(Comparator.comparingLong(BlockSplit::getLength).reversed());
+
+        Map<String, Long> assigned = new HashMap<>();
+        Map<String, List<BlockSplit>> groups = new LinkedHashMap<>();
+        for (BlockSplit split : sorted) {
+            List<String> candidates = CollectionUtil.isNotEmpty(split.getCachedHosts())
+                    ? split.getCachedHosts() : split.getHosts();
+            String host = candidates.stream()
+                    .min(Comparator.comparingLong(a -> assigned.getOrDefault(a, 0L)))
+                    .orElse(ANY_HOST);
+            assigned.merge(host, split.getLength(), Long::sum);
+            groups.computeIfAbsent(host, a -> new ArrayList<>()).add(split);
+        }
+        return groups;
+    }
+
+    /**
+     * 统计各主机上的副本字节数
+     *
+     * @param splits 分片
+     * @return 主机与该主机上的副本字节数
+     */
+    public static Map<String, Long> bytesByHost(List<BlockSplit> splits) {
+        Map<String, Long> bytes = new LinkedHashMap<>();
+        splits.forEach(split -> split.getHosts().forEach(host -> bytes.merge(host, split.getLength(), Long::sum)));
+        return bytes;
+    }
+
+}
@@ -0,0 +1,96 @@
+package cn.darkjrong.hdfs.pack;
+
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.hutool.core.lang.Assert;
+
+import java.util.Objects;
+
+/**
+ * 小文件在容器文件中的位置, 格式: 容器路径#偏移量#长度 (偏移量、长度为36进制)
+ *
+ * @author Rong.Jia
+ * @date 2022/01/05
+ */
+public class PackKey {
+
+    private static final char SEPARATOR = '#';
+
+    /**
+     * 容器文件路径
+     */
+    private final String container;
+
+    /**
+     * 数据在容器文件中的偏移量
+     */
+    private final long offset;
+
+    /**
+     * 数据长度
+     */
+    private final int length;
+
+    public PackKey(String container, long offset, int length) {
+        this.container = container;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * 解析key
+     *
+     * @param key key
+     * @return {@link PackKey}
+     * @throws HdfsException key格式错误
+     */
+    public static PackKey parse(String key) throws HdfsException {
+        Assert.notBlank(key, "key不能为空");
+        int lengthIndex = key.lastIndexOf(SEPARATOR);
+        int offsetIndex = lengthIndex > 0 ? key.lastIndexOf(SEPARATOR, lengthIndex - 1) : -1;
+        if (offsetIndex <= 0) {
+            throw new HdfsException("key格式错误, key: {}", key);
+        }
+        try {
+            return new PackKey(key.substring(0, offsetIndex),
+                    Long.parseLong(key.substring(offsetIndex + 1, lengthIndex), Character.MAX_RADIX),
+                    Integer.parseInt(key.substring(lengthIndex + 1), Character.MAX_RADIX));
+        } catch (NumberFormatException e) {
+            throw new HdfsException(e, "key格式错误, key: {}", key);
+        }
+    }
+
+    public String getContainer() {
+        return container;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return container + SEPARATOR + Long.toString(offset, Character.MAX_RADIX)
+                + SEPARATOR + Integer.toString(length, Character.MAX_RADIX);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        PackKey packKey = (PackKey) o;
+        return offset == packKey.offset && length == packKey.length && container.equals(packKey.container);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(container, offset, length);
+    }
+}
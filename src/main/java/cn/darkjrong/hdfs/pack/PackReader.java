@@ -0,0 +1,183 @@
+package cn.darkjrong.hdfs.pack;
+
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.lang.Assert;
+import cn.hutool.core.util.ObjectUtil;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 小文件读取器, 缓存容器文件的输入流及索引, 每次读取只需一次定位读
+ *
+ * @author Rong.Jia
+ * @date 2022/01/05
+ */
+public class PackReader implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PackReader.class);
+
+    private final FileSystem fileSystem;
+    private final LinkedHashMap<String, Container> containers;
+
+    public PackReader(FileSystem fileSystem, int cacheSize) {
+        Assert.isTrue(cacheSize > 0, "缓存数量必须大于0");
+        this.fileSystem = fileSystem;
+        this.containers = new LinkedHashMap<String, Container>(16, 0.75f, Boolean.TRUE) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Container> eldest) {
+                if (size() > cacheSize) {
+                    IoUtil.close(eldest.getValue().in);
+                    return Boolean.TRUE;
+                }
+                return Boolean.FALSE;
+            }
+        };
+    }
+
+    /**
+     * 按key读取小文件
+     *
+     * @param key key
+     * @return 文件内容
+     * @throws HdfsException hdfs异常
+     */
+    public byte[] read(PackKey key) throws HdfsException {
+        Assert.notNull(key, "key不能为空");
+        byte[] data = new byte[key.getLength()];
+        try {
+            try {
+                container(key.getContainer()).in.readFully(key.getOffset(), data);
+            } catch (IOException e) {
+                // 缓存的输入流可能已被淘汰关闭, 重新打开后重试一次
+                invalidate(key.getContainer());
+                container(key.getContainer()).in.readFully(key.getOffset(), data);
+            }
+            return data;
+        } catch (Exception e) {
+            logger.error("read {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 按名称读取已关闭容器文件中的小文件
+     *
+     * @param container 容器文件
+     * @param name      文件名称
+     * @return 文件内容, 不存在时为null
+     * @throws HdfsException hdfs异常
+     */
+    public byte[] read(String container, String name) throws HdfsException {
+        PackKey key = lookup(container, name);
+        return ObjectUtil.isNull(key) ? null : read(key);
+    }
+
+    /**
+     * 从容器文件索引中查找小文件位置
+     *
+     * @param container 容器文件
+     * @param name      文件名称
+     * @return {@link PackKey} 不存在时为null
+     * @throws HdfsException hdfs异常
+     */
+    public PackKey lookup(String container, String name) throws HdfsException {
+        Assert.notBlank(container, "容器文件不能为空");
+        Assert.notBlank(name, "文件名称不能为空");
+        try {
+            return index(container(container), container).get(name);
+        } catch (Exception e) {
+            logger.error("lookup {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 移除容器文件缓存
+     *
+     * @param container 容器文件
+     */
+    public void invalidate(String container) {
+        Container cached;
+        synchronized (containers) {
+            cached = containers.remove(container);
+        }
+        if (ObjectUtil.isNotNull(cached)) {
+            IoUtil.close(cached.in);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (containers) {
+            containers.values().forEach(a -> IoUtil.close(a.in));
+            containers.clear();
+        }
+    }
+
+    private Container container(String container) throws IOException {
+        synchronized (containers) {
+            Container cached = containers.get(container);
+            if (ObjectUtil.isNull(cached)) {
+                cached = new Container(fileSystem.open(new Path(container)));
+                containers.put(container, cached);
+            }
+            return cached;
+        }
+    }
+
+    private Map<String, PackKey> index(Container cached, String container) throws IOException {
+        Map<String, PackKey> index = cached.index;
+        if (ObjectUtil.isNotNull(index)) {
+            return index;
+        }
+
+        long length = fileSystem.getFileStatus(new Path(container)).getLen();
+        if (length < PackWriter.TRAILER_LENGTH) {
+            throw new HdfsException("容器文件未关闭或已损坏, container: {}", container);
+        }
+        byte[] trailer = new byte[PackWriter.TRAILER_LENGTH];
+        cached.in.readFully(length - PackWriter.TRAILER_LENGTH, trailer);
+        DataInputStream trailerIn = new DataInputStream(new ByteArrayInputStream(trailer));
+        long indexOffset = trailerIn.readLong();
+        int count = trailerIn.readInt();
+        if (trailerIn.readInt() != PackWriter.MAGIC) {
+            throw new HdfsException("容器文件未关闭或已损坏, container: {}", container);
+        }
+
+        byte[] indexBytes = new byte[(int) (length - PackWriter.TRAILER_LENGTH - indexOffset)];
+        cached.in.readFully(indexOffset, indexBytes);
+        DataInputStream indexIn = new DataInputStream(new ByteArrayInputStream(indexBytes));
+        index = new HashMap<>(count * 4 / 3 + 1);
+        for (int i = 0; i < count; i++) {
+            String name = indexIn.readUTF();
+            index.put(name, new PackKey(container, indexIn.readLong(), indexIn.readInt()));
+        }
+        cached.index = index;
+        return index;
+    }
+
+    private static class Container {
+
+        private final FSDataInputStream in;
+        private volatile Map<String, PackKey> index;
+
+        private Container(FSDataInputStream in) {
+            this.in = in;
+        }
+    }
+
+}
@@ -0,0 +1,228 @@
+package cn.darkjrong.hdfs.pack;
+
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.darkjrong.hdfs.jfr.JfrRecorder;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.lang.Assert;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.ObjectUtil;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * 小文件打包写入器, 将小文件追加到大的容器文件中, 关闭容器时在文件尾部写入索引
+ * <p>
+ * 容器文件格式: [数据1][数据2]...[索引: (名称, 偏移量, 长度)...][索引偏移量 long][条目数 int][魔数 int]
+ * <p>
+ * 线程安全, 容器文件达到最大字节数时自动切换新文件
+ *
+ * @author Rong.Jia
+ * @date 2022/01/05
+ */
+public class PackWriter implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PackWriter.class);
+
+    /**
+     * 容器文件魔数 "HPK1"
+     */
+    static final int MAGIC = 0x48504B31;
+
+    /**
+     * 尾部长度: 索引偏移量(8) + 条目数(4) + 魔数(4)
+     */
+    static final int TRAILER_LENGTH = 16;
+
+    /**
+     * 容器文件后缀
+     */
+    public static final String SUFFIX = ".pak";
+
+    private final FileSystem fileSystem;
+    private final Path directory;
+    private final long maxContainerSize;
+    private final List<Entry> entries = new ArrayList<>();
+    private final LongConsumer onChunk;
+
+    private FSDataOutputStream out;
+    private Path container;
+    private boolean closed;
+
+    public PackWriter(FileSystem fileSystem, Path directory, long maxContainerSize) {
+        this(fileSystem, directory, maxContainerSize, null);
+    }
+
+    /**
+     * 小文件打包写入器
+     *
+     * @param fileSystem       文件系统
+     * @param directory        容器文件目录
+     * @param maxContainerSize 容器文件最大字节数
+     * @param onChunk          每次写入前回调字节数, 可用于限流, 可为null
+     */
+    public PackWriter(FileSystem fileSystem, Path directory, long maxContainerSize, LongConsumer onChunk) {
+        Assert.isTrue(maxContainerSize > 0, "容器文件最大字节数必须大于0");
+        this.fileSystem = fileSystem;
+        this.directory = directory;
+        this.maxContainerSize = maxContainerSize;
+        this.onChunk = onChunk;
+    }
+
+    /**
+     * 追加小文件
+     *
+     * @param name 文件名称, 用于按名称读取
+     * @param data 文件内容
+     * @return {@link PackKey} 数据位置
+     * @throws HdfsException hdfs异常
+     */
+    public PackKey append(String name, byte[] data) throws HdfsException {
+        Assert.notBlank(name, "文件名称不能为空");
+        Assert.notNull(data, "文件内容不能为空");
+        try {
+            return JfrRecorder.record("packAppend", name, Boolean.TRUE, () -> {
+                if (ObjectUtil.isNotNull(onChunk)) {
+                    // 在锁外等待令牌, 避免限流时阻塞其他线程
+                    onChunk.accept(data.length);
+                }
+                return write(name, data);
+            });
+        } catch (HdfsException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("append {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    private synchronized PackKey write(String name, byte[] data) throws HdfsException {
+        Assert.isFalse(closed, "写入器已关闭");
+        try {
+            if (ObjectUtil.isNotNull(out) && out.getPos() + data.length > maxContainerSize && !entries.isEmpty()) {
+                finish();
+            }
+            if (ObjectUtil.isNull(out)) {
+                open();
+            }
+            long offset = out.getPos();
+            out.write(data);
+            JfrRecorder.transfer(data.length, 1, 0);
+            entries.add(new Entry(name, offset, data.length));
+            return new PackKey(container.toUri().getPath(), offset, data.length);
+        } catch (Exception e) {
+            logger.error("append {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 追加小文件
+     *
+     * @param name 文件名称, 用于按名称读取
+     * @param in   文件内容
+     * @return {@link PackKey} 数据位置
+     * @throws HdfsException hdfs异常
+     */
+    public PackKey append(String name, InputStream in) throws HdfsException {
+        return append(name, IoUtil.readBytes(in, Boolean.FALSE));
+    }
+
+    /**
+     * 将已写入数据刷新到DataNode, 使其对读取可见
+     *
+     * @throws HdfsException hdfs异常
+     */
+    public synchronized void flush() throws HdfsException {
+        if (ObjectUtil.isNull(out)) {
+            return;
+        }
+        try {
+            out.hflush();
+        } catch (Exception e) {
+            logger.error("flush {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 写入索引并关闭当前容器文件, 下次追加时创建新容器文件
+     *
+     * @throws HdfsException hdfs异常
+     */
+    public synchronized void roll() throws HdfsException {
+        try {
+            finish();
+        } catch (Exception e) {
+            logger.error("roll {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 当前容器文件
+     *
+     * @return {@link Path} 未打开时为null
+     */
+    public synchronized Path getContainer() {
+        return container;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = Boolean.TRUE;
+        roll();
+    }
+
+    private void open() throws Exception {
+        container = new Path(directory, "pack-" + System.currentTimeMillis() + "-" + IdUtil.fastSimpleUUID() + SUFFIX);
+        out = fileSystem.create(container, Boolean.FALSE);
+    }
+
+    private void finish() throws Exception {
+        if (ObjectUtil.isNull(out)) {
+            return;
+        }
+        try {
+            long indexOffset = out.getPos();
+            for (Entry entry : entries) {
+                out.writeUTF(entry.name);
+                out.writeLong(entry.offset);
+                out.writeInt(entry.length);
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(entries.size());
+            out.writeInt(MAGIC);
+        } finally {
+            out.close();
+            out = null;
+            container = null;
+            entries.clear();
+        }
+    }
+
+    private static class Entry {
+
+        private final String name;
+        private final long offset;
+        private final int length;
+
+        private Entry(String name, long offset, int length) {
+            this.name = name;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+}
@@ -0,0 +1,258 @@
+package cn.darkjrong.hdfs.reader;
+
+import cn.darkjrong.hdfs.buffer.BufferPool;
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.hutool.core.lang.Assert;
+import cn.hutool.core.util.ObjectUtil;
+import org.apache.hadoop.fs.FSDataInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+
+/**
+ * 预读输入流, 顺序读取时在后台线程用定位读(pread)提前读取后续若干分片到池化缓冲区,
+ * 读取方跨块时无需等待与下一个DataNode建立连接
+ * <p>
+ * 分片大小为缓冲池的缓冲区大小, 预读窗口为同时预读的分片数, 受单流内存上限约束; 非线程安全
+ *
+ * @author Rong.Jia
+ * @date 2022/01/17
+ */
+public class PrefetchInputStream extends InputStream {
+
+    private final FSDataInputStream in;
+    private final long length;
+    private final BufferPool bufferPool;
+    private final ExecutorService executor;
+    private final LongConsumer onChunk;
+    private final int chunkSize;
+    private final int window;
+
+    private final Deque<Prefetch> pending = new ArrayDeque<>();
+    private ByteBuffer current;
+    private long position;
+    private long scheduled;
+    private boolean closed;
+
+    /**
+     * 预读输入流
+     *
+     * @param in         HDFS输入流, 关闭时一并关闭
+     * @param length     文件长度
+     * @param bufferPool 缓冲池
+     * @param executor   预读线程池
+     * @param window     预读分片数
+     * @param maxMemory  单流预读占用的内存上限, 字节
+     * @param onChunk    每个分片读取前回调字节数, 可用于限流, 可为null
+     */
+    public PrefetchInputStream(FSDataInputStream in, long length, BufferPool bufferPool, ExecutorService executor,
+                               int window, long maxMemory, LongConsumer onChunk) {
+        Assert.isTrue(window > 0, "预读窗口必须大于0");
+        this.in = in;
+        this.length = length;
+        this.bufferPool = bufferPool;
+        this.executor = executor;
+        this.onChunk = onChunk;
+        this.chunkSize = bufferPool.getBufferSize();
+        this.window = (int) Math.max(1, Math.min(window, maxMemory / chunkSize));
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        position++;
+        return current.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int count = Math.min(len, current.remaining());
+        current.get(b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        long target = Math.min(length, position + n);
+        long skipped = target - position;
+        if (ObjectUtil.isNotNull(current) && skipped <= current.remaining()) {
+            ((Buffer) current).position(current.position() + (int) skipped);
+        } else {
+            // 超出当前分片时丢弃已预读的分片, 从新位置重新预读
+            discard();
+            scheduled = target;
+        }
+        position = target;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        return ObjectUtil.isNull(current) ? 0 : current.remaining();
+    }
+
+    /**
+     * 当前读取位置
+     *
+     * @return 位置
+     */
+    public long getPos() {
+        return position;
+    }
+
+    /**
+     * 实际预读窗口
+     *
+     * @return 分片数
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = Boolean.TRUE;
+        try {
+            discard();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * 确保当前分片有可读数据, 需要时取下一个已预读的分片并补满预读窗口
+     *
+     * @return 是否还有数据
+     */
+    private boolean fill() throws IOException {
+        ensureOpen();
+        if (ObjectUtil.isNotNull(current) && current.hasRemaining()) {
+            return Boolean.TRUE;
+        }
+        release();
+        schedule();
+        Prefetch next = pending.poll();
+        if (ObjectUtil.isNull(next)) {
+            return Boolean.FALSE;
+        }
+        current = await(next.future);
+        schedule();
+        return current.hasRemaining();
+    }
+
+    private void schedule() {
+        while (pending.size() < window && scheduled < length) {
+            long offset = scheduled;
+            int size = (int) Math.min(chunkSize, length - offset);
+            scheduled += size;
+            AtomicBoolean started = new AtomicBoolean();
+            pending.add(new Prefetch(started, executor.submit(() -> {
+                if (!started.compareAndSet(Boolean.FALSE, Boolean.TRUE)) {
+                    return null;
+                }
+                if (ObjectUtil.isNotNull(onChunk)) {
+                    onChunk.accept(size);
+                }
+                ByteBuffer buffer = bufferPool.getBuffer(Boolean.FALSE, chunkSize);
+                try {
+                    in.readFully(offset, buffer.array(), buffer.arrayOffset(), size);
+                    ((Buffer) buffer).limit(size);
+                    return buffer;
+                } catch (Exception e) {
+                    bufferPool.putBuffer(buffer);
+                    throw e;
+                }
+            })));
+        }
+    }
+
+    private ByteBuffer await(Future<ByteBuffer> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HdfsException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * 丢弃当前及已预读的分片, 未开始的预读直接取消, 已开始的预读需等待完成后归还缓冲区
+     * <p>
+     * Future.cancel 对运行中的任务同样返回true, 无法据此判断缓冲区是否已取出, 因此由任务与丢弃方竞争启动标记
+     */
+    private void discard() {
+        release();
+        for (Prefetch prefetch : pending) {
+            if (prefetch.started.compareAndSet(Boolean.FALSE, Boolean.TRUE)) {
+                prefetch.future.cancel(Boolean.FALSE);
+                continue;
+            }
+            try {
+                bufferPool.putBuffer(prefetch.future.get());
+            } catch (Exception ignored) {
+                // 预读失败时缓冲区已归还
+            }
+        }
+        pending.clear();
+    }
+
+    private void release() {
+        if (ObjectUtil.isNotNull(current)) {
+            bufferPool.putBuffer(current);
+            current = null;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    /**
+     * 已提交的预读分片
+     */
+    private static class Prefetch {
+
+        private final AtomicBoolean started;
+        private final Future<ByteBuffer> future;
+
+        private Prefetch(AtomicBoolean started, Future<ByteBuffer> future) {
+            this.started = started;
+            this.future = future;
+        }
+
+    }
+
+}
@@ -0,0 +1,72 @@
+package cn.darkjrong.hdfs.replication;
+
+import cn.darkjrong.hdfs.copy.CopyResult;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 快照增量复制结果
+ *
+ * @author Rong.Jia
+ * @date 2022/01/20
+ */
+@Data
+public class ReplicationResult {
+
+    /**
+     * 上一次复制的快照, 首次全量复制时为null
+     */
+    private String fromSnapshot;
+
+    /**
+     * 本次复制的快照
+     */
+    private String toSnapshot;
+
+    /**
+     * 新建的条目数
+     */
+    private int created;
+
+    /**
+     * 修改的条目数
+     */
+    private int modified;
+
+    /**
+     * 重命名的条目数
+     */
+    private int renamed;
+
+    /**
+     * 删除的条目数
+     */
+    private int deleted;
+
+    /**
+     * 新建与修改条目的复制结果
+     */
+    private CopyResult copy;
+
+    /**
+     * 应用失败的条目
+     */
+    private List<String> failed = new ArrayList<>();
+
+    /**
+     * 耗时, 毫秒
+     */
+    private long elapsed;
+
+    /**
+     * 是否全部成功, 成功时已轮换快照
+     *
+     * @return 是否成功
+     */
+    public boolean isSucceeded() {
+        return failed.isEmpty() && (copy == null || copy.getFailed().isEmpty());
+    }
+
+}
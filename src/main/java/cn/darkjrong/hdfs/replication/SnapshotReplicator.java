@@ -0,0 +1,234 @@
+package cn.darkjrong.hdfs.replication;
+
+import cn.darkjrong.hdfs.copy.ClusterCopier;
+import cn.darkjrong.hdfs.copy.CopyOptions;
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.hutool.core.util.NumberUtil;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSUtilClient;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport.DiffReportEntry;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport.DiffType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 快照增量复制, 对可快照目录创建新快照, 通过快照差异只把新建、修改、重命名与删除的条目应用到目标目录
+ * <p>
+ * 快照命名为 "名称-时间戳", 首次复制时全量复制新快照; 全部成功后删除上一个快照, 部分失败或抛出异常时删除本次快照,
+ * 下次从上一个快照重新比对, 已应用的删除与重命名可重复执行
+ *
+ * @author Rong.Jia
+ * @date 2022/01/20
+ */
+public class SnapshotReplicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotReplicator.class);
+
+    /**
+     * 目标目录下重命名中转目录名
+     */
+    private static final String RENAME_TMP = "._REPLICATING_";
+
+    private final DistributedFileSystem source;
+    private final FileSystem target;
+    private final ClusterCopier copier;
+
+    /**
+     * 快照增量复制
+     *
+     * @param source 源文件系统
+     * @param target 目标文件系统
+     * @param copier 源到目标的复制器
+     */
+    public SnapshotReplicator(DistributedFileSystem source, FileSystem target, ClusterCopier copier) {
+        this.source = source;
+        this.target = target;
+        this.copier = copier;
+    }
+
+    /**
+     * 增量复制
+     *
+     * @param root       源可快照目录
+     * @param targetRoot 目标目录
+     * @param name       快照名称前缀, 同一目录复制到多个目标时需各不相同
+     * @param options    复制选项, 新建与修改的文件总是覆盖
+     * @return {@link ReplicationResult}
+     * @throws HdfsException hdfs异常
+     */
+    public ReplicationResult replicate(Path root, Path targetRoot, String name, CopyOptions options) throws HdfsException {
+        long start = System.currentTimeMillis();
+        ReplicationResult result = new ReplicationResult();
+        try {
+            String previous = latestSnapshot(root, name);
+            String current = name + StrUtil.DASHED + System.currentTimeMillis();
+            source.createSnapshot(root, current);
+            result.setFromSnapshot(previous);
+            result.setToSnapshot(current);
+
+            try {
+                Path snapshot = new Path(root, HdfsConstants.DOT_SNAPSHOT_DIR + Path.SEPARATOR + current);
+                if (ObjectUtil.isNull(previous)) {
+                    result.setCopy(copier.copy(snapshot, targetRoot, options));
+                } else {
+                    apply(source.getSnapshotDiffReport(root, previous, current), snapshot, targetRoot, options, result);
+                }
+            } catch (Throwable e) {
+                // 本次快照不能作为下次比对的基准, 否则上一个快照之后的变更不会再复制
+                discard(root, current, e);
+                throw e;
+            }
+
+            String expired = result.isSucceeded() ? previous : current;
+            if (ObjectUtil.isNotNull(expired)) {
+                source.deleteSnapshot(root, expired);
+            }
+        } catch (IOException e) {
+            logger.error("replicate {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+        result.setElapsed(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private void discard(Path root, String snapshot, Throwable cause) {
+        try {
+            source.deleteSnapshot(root, snapshot);
+        } catch (Exception e) {
+            logger.error("delete snapshot {} failed {}", snapshot, e.getMessage());
+            cause.addSuppressed(e);
+        }
+    }
+
+    private void apply(SnapshotDiffReport report, Path snapshot, Path targetRoot, CopyOptions options,
+                       ReplicationResult result) throws IOException {
+        List<DiffReportEntry> deletes = new ArrayList<>();
+        List<DiffReportEntry> renames = new ArrayList<>();
+        List<DiffReportEntry> changes = new ArrayList<>();
+        for (DiffReportEntry entry : report.getDiffList()) {
+            if (entry.getType() == DiffType.DELETE) {
+                deletes.add(entry);
+            } else if (entry.getType() == DiffType.RENAME) {
+                renames.add(entry);
+            } else {
+                changes.add(entry);
+            }
+        }
+
+        // 删除与重命名的路径均基于上一个快照, 先删除, 再经中转目录重命名, 避免互换、链式重命名相互覆盖
+        for (DiffReportEntry entry : deletes) {
+            String path = relative(entry.getSourcePath());
+            Path dst = new Path(targetRoot, path);
+            if (target.exists(dst) && !target.delete(dst, Boolean.TRUE)) {
+                result.getFailed().add(path);
+                continue;
+            }
+            result.setDeleted(result.getDeleted() + 1);
+        }
+        applyRenames(renames, targetRoot, result);
+
+        Map<String, String> renamed = new LinkedHashMap<>();
+        renames.forEach(a -> renamed.put(relative(a.getSourcePath()), relative(a.getTargetPath())));
+        Map<Path, Path> copies = new LinkedHashMap<>();
+        for (DiffReportEntry entry : changes) {
+            String path = translate(relative(entry.getSourcePath()), renamed);
+            Path src = StrUtil.isEmpty(path) ? snapshot : new Path(snapshot, path);
+            if (entry.getType() == DiffType.MODIFY) {
+                // 目录的修改表示其子条目变化, 子条目另有记录
+                FileStatus status = source.getFileStatus(src);
+                if (status.isDirectory()) {
+                    continue;
+                }
+                result.setModified(result.getModified() + 1);
+            } else {
+                result.setCreated(result.getCreated() + 1);
+            }
+            copies.put(src, StrUtil.isEmpty(path) ? targetRoot : new Path(targetRoot, path));
+        }
+
+        CopyOptions overwrite = new CopyOptions();
+        overwrite.setOverwrite(Boolean.TRUE);
+        overwrite.setPreservePermission(options.isPreservePermission());
+        overwrite.setPreserveTimes(options.isPreserveTimes());
+        overwrite.setPreserveReplication(options.isPreserveReplication());
+        overwrite.setVerifyChecksum(options.isVerifyChecksum());
+        result.setCopy(copier.copyAll(copies, overwrite));
+    }
+
+    private void applyRenames(List<DiffReportEntry> renames, Path targetRoot, ReplicationResult result) throws IOException {
+        if (renames.isEmpty()) {
+            return;
+        }
+        Path tmp = new Path(targetRoot, RENAME_TMP);
+        target.mkdirs(tmp);
+        List<Boolean> staged = new ArrayList<>(renames.size());
+        for (int i = 0; i < renames.size(); i++) {
+            Path src = new Path(targetRoot, relative(renames.get(i).getSourcePath()));
+            staged.add(target.exists(src) && target.rename(src, new Path(tmp, String.valueOf(i))));
+        }
+        for (int i = 0; i < renames.size(); i++) {
+            String path = relative(renames.get(i).getTargetPath());
+            Path dst = new Path(targetRoot, path);
+            boolean done;
+            if (staged.get(i)) {
+                target.mkdirs(dst.getParent());
+                done = target.rename(new Path(tmp, String.valueOf(i)), dst);
+            } else {
+                // 上次复制中途失败时重命名可能已应用
+                done = target.exists(dst);
+            }
+            if (done) {
+                result.setRenamed(result.getRenamed() + 1);
+            } else {
+                result.getFailed().add(path);
+            }
+        }
+        target.delete(tmp, Boolean.TRUE);
+    }
+
+    /**
+     * 重命名目录下的条目在差异报告中使用原路径, 转换为新路径
+     */
+    private String translate(String path, Map<String, String> renamed) {
+        for (Map.Entry<String, String> entry : renamed.entrySet()) {
+            String from = entry.getKey();
+            if (StrUtil.startWith(path, from + StrUtil.SLASH)) {
+                return entry.getValue() + path.substring(from.length());
+            }
+        }
+        return path;
+    }
+
+    private String relative(byte[] path) {
+        return StrUtil.removePrefix(DFSUtilClient.bytes2String(path), StrUtil.SLASH);
+    }
+
+    private String latestSnapshot(Path root, String name) throws IOException {
+        String prefix = name + StrUtil.DASHED;
+        String latest = null;
+        long latestTime = Long.MIN_VALUE;
+        for (FileStatus status : source.listStatus(new Path(root, HdfsConstants.DOT_SNAPSHOT_DIR))) {
+            String snapshot = status.getPath().getName();
+            String suffix = StrUtil.removePrefix(snapshot, prefix);
+            if (StrUtil.startWith(snapshot, prefix) && NumberUtil.isLong(suffix) && Long.parseLong(suffix) > latestTime) {
+                latest = snapshot;
+                latestTime = Long.parseLong(suffix);
+            }
+        }
+        return latest;
+    }
+
+}
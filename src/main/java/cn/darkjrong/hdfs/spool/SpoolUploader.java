@@ -0,0 +1,329 @@
+package cn.darkjrong.hdfs.spool;
+
+import cn.darkjrong.hdfs.buffer.BufferPool;
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.darkjrong.hdfs.jfr.JfrRecorder;
+import cn.darkjrong.hdfs.support.AtomicRename;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.lang.Assert;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.ParentNotDirectoryException;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.security.AccessControlException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * 本地缓冲上传, 写入先落到本地缓冲目录后立即返回, 由后台线程上传到HDFS
+ * <p>
+ * 每个任务在缓冲目录中对应 数据文件(.data) 与 任务日志(.task), 启动时扫描任务日志继续上传未完成的任务,
+ * 超过最大重试次数或不可重试(目标已存在、无权限、父路径不是目录)的任务移动到 failed 子目录;
+ * 目标已存在且内容与数据文件相同时视为上次已发布, 只清理任务
+ *
+ * @author Rong.Jia
+ * @date 2022/01/08
+ */
+public class SpoolUploader implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpoolUploader.class);
+
+    private static final String DATA_SUFFIX = ".data";
+    private static final String TASK_SUFFIX = ".task";
+    private static final String FAILED_DIR = "failed";
+    private static final String TARGET = "target";
+    private static final String OVERWRITE = "overwrite";
+    private static final String ATTEMPTS = "attempts";
+
+    private final FileSystem fileSystem;
+    private final BufferPool bufferPool;
+    private final File spoolDirectory;
+    private final int maxRetries;
+    private final long retryInterval;
+    private final ScheduledExecutorService executor;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongConsumer onChunk;
+
+    /**
+     * 本地缓冲上传
+     *
+     * @param fileSystem     文件系统
+     * @param bufferPool     传输缓冲池
+     * @param spoolDirectory 本地缓冲目录
+     * @param parallelism    上传线程数
+     * @param maxRetries     最大重试次数
+     * @param retryInterval  重试间隔, 毫秒
+     */
+    public SpoolUploader(FileSystem fileSystem, BufferPool bufferPool, File spoolDirectory, int parallelism,
+                         int maxRetries, long retryInterval) {
+        this(fileSystem, bufferPool, spoolDirectory, parallelism, maxRetries, retryInterval, null);
+    }
+
+    /**
+     * 本地缓冲上传
+     *
+     * @param fileSystem     文件系统
+     * @param bufferPool     传输缓冲池
+     * @param spoolDirectory 本地缓冲目录
+     * @param parallelism    上传线程数
+     * @param maxRetries     最大重试次数
+     * @param retryInterval  重试间隔, 毫秒
+     * @param onChunk        上传时每次写入前回调字节数, 可用于限流, 可为null
+     */
+    public SpoolUploader(FileSystem fileSystem, BufferPool bufferPool, File spoolDirectory, int parallelism,
+                         int maxRetries, long retryInterval, LongConsumer onChunk) {
+        this.onChunk = onChunk;
+        this.fileSystem = fileSystem;
+        this.bufferPool = bufferPool;
+        this.spoolDirectory = FileUtil.mkdir(spoolDirectory);
+        this.maxRetries = maxRetries;
+        this.retryInterval = retryInterval;
+        this.executor = Executors.newScheduledThreadPool(Math.max(1, parallelism),
+                ThreadUtil.newNamedThreadFactory("hdfs-spool-", Boolean.TRUE));
+        recover();
+    }
+
+    /**
+     * 将本地文件复制到缓冲目录并异步上传
+     *
+     * @param src       本地文件
+     * @param target    HDFS目标文件
+     * @param overwrite 是否覆盖目标文件
+     * @return 任务ID
+     * @throws HdfsException hdfs异常
+     */
+    public String submit(File src, String target, boolean overwrite) throws HdfsException {
+        Assert.isTrue(FileUtil.exist(src), String.format("待上传文件不存在, fileName : %s", src));
+        try (InputStream in = Files.newInputStream(src.toPath())) {
+            return submit(in, target, overwrite);
+        } catch (HdfsException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("submit {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 将输入流写入缓冲目录并异步上传, 不关闭输入流
+     *
+     * @param in        输入流
+     * @param target    HDFS目标文件
+     * @param overwrite 是否覆盖目标文件
+     * @return 任务ID
+     * @throws HdfsException hdfs异常
+     */
+    public String submit(InputStream in, String target, boolean overwrite) throws HdfsException {
+        Assert.notBlank(target, "目标文件不能为空");
+        String id = IdUtil.fastSimpleUUID();
+        File data = new File(spoolDirectory, id + DATA_SUFFIX);
+        try {
+            try (FileChannel channel = FileChannel.open(data.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                IoUtil.copy(in, Channels.newOutputStream(channel));
+                channel.force(Boolean.TRUE);
+            }
+            Properties task = new Properties();
+            task.setProperty(TARGET, target);
+            task.setProperty(OVERWRITE, String.valueOf(overwrite));
+            task.setProperty(ATTEMPTS, "0");
+            writeTask(id, task);
+        } catch (Exception e) {
+            FileUtil.del(data);
+            logger.error("submit {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+        schedule(id, 0);
+        return id;
+    }
+
+    /**
+     * 待上传与上传中的任务数
+     *
+     * @return 任务数
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void recover() {
+        File[] tasks = spoolDirectory.listFiles((dir, name) -> name.endsWith(TASK_SUFFIX));
+        if (tasks == null) {
+            return;
+        }
+        for (File task : tasks) {
+            String id = StrUtil.removeSuffix(task.getName(), TASK_SUFFIX);
+            logger.info("recover spooled upload {}", id);
+            schedule(id, 0);
+        }
+        File[] orphans = spoolDirectory.listFiles((dir, name) -> name.endsWith(DATA_SUFFIX)
+                && !new File(dir, StrUtil.removeSuffix(name, DATA_SUFFIX) + TASK_SUFFIX).exists());
+        if (orphans != null) {
+            // 数据写入完成前进程退出, 没有任务日志的数据文件不可信, 直接删除
+            for (File orphan : orphans) {
+                FileUtil.del(orphan);
+            }
+        }
+    }
+
+    private void schedule(String id, long delay) {
+        pending.incrementAndGet();
+        executor.schedule(() -> upload(id), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void upload(String id) {
+        try {
+            doUpload(id);
+        } finally {
+            pending.decrementAndGet();
+        }
+    }
+
+    private void doUpload(String id) {
+        File data = new File(spoolDirectory, id + DATA_SUFFIX);
+        Properties task;
+        try {
+            task = readTask(id);
+        } catch (Exception e) {
+            logger.error("upload {} read task failed {}", id, e.getMessage());
+            return;
+        }
+
+        Path target = new Path(task.getProperty(TARGET));
+        boolean overwrite = Boolean.parseBoolean(task.getProperty(OVERWRITE));
+        Path tmp = new Path(target.getParent(), "." + target.getName() + "." + id + ".spool");
+        try {
+            JfrRecorder.record("spoolUpload", target.toUri().getPath(), Boolean.TRUE, () -> {
+                try (InputStream in = Files.newInputStream(data.toPath());
+                     FSDataOutputStream out = fileSystem.create(tmp, Boolean.TRUE)) {
+                    bufferPool.copy(in, out, onChunk);
+                }
+                // 原子替换, 不覆盖时目标已存在抛出 FileAlreadyExistsException
+                AtomicRename.rename(fileSystem, tmp, target, overwrite);
+                return null;
+            });
+            FileUtil.del(new File(spoolDirectory, id + TASK_SUFFIX));
+            FileUtil.del(data);
+        } catch (Exception e) {
+            deleteQuietly(tmp);
+            if (e instanceof FileAlreadyExistsException && isPublished(data, target)) {
+                // 上次发布后、删除任务日志前进程退出, 目标已是本次上传的内容
+                logger.info("upload {} already published to {}", id, target);
+                FileUtil.del(new File(spoolDirectory, id + TASK_SUFFIX));
+                FileUtil.del(data);
+                return;
+            }
+            retry(id, task, e);
+        }
+    }
+
+    /**
+     * 目标文件是否与本地缓冲数据相同: 长度相同且MD5一致
+     */
+    private boolean isPublished(File data, Path target) {
+        try {
+            if (fileSystem.getFileStatus(target).getLen() != data.length()) {
+                return Boolean.FALSE;
+            }
+            try (InputStream local = Files.newInputStream(data.toPath());
+                 InputStream remote = fileSystem.open(target)) {
+                return StrUtil.equals(DigestUtil.md5Hex(local), DigestUtil.md5Hex(remote));
+            }
+        } catch (Exception e) {
+            logger.warn("compare {} with {} failed {}", data, target, e.getMessage());
+            return Boolean.FALSE;
+        }
+    }
+
+    private void retry(String id, Properties task, Exception cause) {
+        int attempts = Integer.parseInt(task.getProperty(ATTEMPTS, "0")) + 1;
+        if (isPermanent(cause)) {
+            logger.error("upload {} to {} failed permanently {}", id, task.getProperty(TARGET), cause.getMessage());
+            park(id);
+            return;
+        }
+        if (attempts > maxRetries) {
+            logger.error("upload {} to {} failed after {} attempts {}", id, task.getProperty(TARGET), attempts, cause.getMessage());
+            park(id);
+            return;
+        }
+        logger.warn("upload {} to {} failed, attempt {} {}", id, task.getProperty(TARGET), attempts, cause.getMessage());
+        task.setProperty(ATTEMPTS, String.valueOf(attempts));
+        try {
+            writeTask(id, task);
+        } catch (Exception e) {
+            logger.error("retry {}", e.getMessage());
+        }
+        schedule(id, retryInterval * attempts);
+    }
+
+    private void park(String id) {
+        File failed = FileUtil.mkdir(new File(spoolDirectory, FAILED_DIR));
+        FileUtil.move(new File(spoolDirectory, id + DATA_SUFFIX), failed, Boolean.TRUE);
+        FileUtil.move(new File(spoolDirectory, id + TASK_SUFFIX), failed, Boolean.TRUE);
+    }
+
+    /**
+     * 重试也不会成功的异常
+     */
+    private static boolean isPermanent(Exception cause) {
+        return cause instanceof FileAlreadyExistsException
+                || cause instanceof AccessControlException
+                || cause instanceof ParentNotDirectoryException;
+    }
+
+    private void deleteQuietly(Path tmp) {
+        try {
+            fileSystem.delete(tmp, Boolean.FALSE);
+        } catch (Exception e) {
+            logger.warn("delete {} failed {}", tmp, e.getMessage());
+        }
+    }
+
+    private Properties readTask(String id) throws Exception {
+        Properties task = new Properties();
+        try (InputStream in = Files.newInputStream(new File(spoolDirectory, id + TASK_SUFFIX).toPath())) {
+            task.load(in);
+        }
+        return task;
+    }
+
+    private void writeTask(String id, Properties task) throws Exception {
+        File tmp = new File(spoolDirectory, id + TASK_SUFFIX + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream out = Channels.newOutputStream(channel);
+            task.store(out, null);
+            channel.force(Boolean.TRUE);
+        }
+        Files.move(tmp.toPath(), new File(spoolDirectory, id + TASK_SUFFIX).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
@@ -0,0 +1,212 @@
+package cn.darkjrong.hdfs.support;
+
+import cn.hutool.core.lang.Assert;
+import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.ipc.RetriableException;
+import org.apache.hadoop.ipc.StandbyException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 自适应并发限制(AIMD), 调用成功且延迟正常时加性增加并发上限, 延迟超过基线的容忍倍数或NameNode过载
+ * ({@link RemoteException}, {@link RetriableException}, {@link StandbyException}, 超时)时乘性减少
+ * <p>
+ * 基线为成功调用延迟的指数加权平均, 随负载缓慢变化; 不同类型的任务(如列目录与复制大文件)延迟相差悬殊,
+ * 基线按任务类型分别维护, 未指定类型时以任务的类区分, 即每个提交位置各自一个基线.
+ * 一次减少后, 在减少之前开始的调用不再触发减少, 避免同一批慢调用连续减少到最小上限
+ *
+ * @author Rong.Jia
+ * @date 2022/01/12
+ */
+public class AdaptiveLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private static final double BASELINE_WEIGHT = 0.05;
+    private static final int WARMUP_SAMPLES = 20;
+
+    private final double latencyTolerance;
+    private final double backoffRatio;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final LongAdder drops = new LongAdder();
+    private final Map<Object, Baseline> baselines = new HashMap<>();
+    private double limit;
+    private int inFlight;
+    private long lastDrop = System.nanoTime();
+
+    /**
+     * 自适应并发限制
+     *
+     * @param initialLimit     初始并发上限
+     * @param minLimit         最小并发上限
+     * @param maxLimit         最大并发上限
+     * @param latencyTolerance 延迟超过基线的该倍数时减少上限, 大于1
+     * @param backoffRatio     减少时的乘数, (0, 1)
+     */
+    public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit, double latencyTolerance, double backoffRatio) {
+        Assert.isTrue(minLimit > 0 && minLimit <= maxLimit, "并发上限范围错误");
+        Assert.isTrue(latencyTolerance > 1, "延迟容忍倍数必须大于1");
+        Assert.isTrue(backoffRatio > 0 && backoffRatio < 1, "减少乘数必须在(0, 1)之间");
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * 包装调用, 执行前获取并发许可, 执行后按延迟和异常调整并发上限
+     *
+     * @param callable 调用
+     * @param <T>      返回类型
+     * @return 包装后的调用
+     */
+    public <T> Callable<T> wrap(Callable<T> callable) {
+        return wrap(callable.getClass(), callable);
+    }
+
+    /**
+     * 包装调用, 执行前获取并发许可, 执行后按延迟和异常调整并发上限
+     *
+     * @param operation 任务类型, 同类型的任务共用一个延迟基线
+     * @param callable  调用
+     * @param <T>       返回类型
+     * @return 包装后的调用
+     */
+    public <T> Callable<T> wrap(Object operation, Callable<T> callable) {
+        return () -> {
+            acquire();
+            long start = System.nanoTime();
+            Throwable error = null;
+            try {
+                return callable.call();
+            } catch (Throwable e) {
+                error = e;
+                throw e;
+            } finally {
+                release(operation, start, System.nanoTime() - start, error);
+            }
+        };
+    }
+
+    /**
+     * 获取并发许可, 达到上限时阻塞
+     *
+     * @throws InterruptedException 中断
+     */
+    public void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                available.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 释放并发许可并调整上限
+     *
+     * @param operation 任务类型
+     * @param start     开始时间, {@link System#nanoTime()}
+     * @param latency   延迟, 纳秒
+     * @param error     异常, 成功时为null
+     */
+    public void release(Object operation, long start, long latency, Throwable error) {
+        lock.lock();
+        try {
+            inFlight--;
+            Baseline baseline = baselines.computeIfAbsent(operation, key -> new Baseline());
+            boolean slow = baseline.samples >= WARMUP_SAMPLES && latency > baseline.value * latencyTolerance;
+            if (error == null) {
+                baseline.update(latency);
+            }
+            if (isOverload(error) || slow) {
+                if (start - lastDrop >= 0) {
+                    drops.increment();
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastDrop = System.nanoTime();
+                }
+            } else if (error == null && inFlight + 1 >= (int) limit) {
+                // 只有并发用满时才增加, 避免空闲时上限无限增长
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 当前并发上限
+     *
+     * @return 上限
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 当前并发数
+     *
+     * @return 并发数
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 因过载或延迟超过阈值而减少上限的次数
+     *
+     * @return 次数
+     */
+    public long getDrops() {
+        return drops.sum();
+    }
+
+    private boolean isOverload(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof RemoteException || e instanceof RetriableException
+                    || e instanceof StandbyException || e instanceof TimeoutException) {
+                return Boolean.TRUE;
+            }
+        }
+        return Boolean.FALSE;
+    }
+
+    /**
+     * 单个任务类型的延迟基线
+     */
+    private static final class Baseline {
+
+        private double value;
+        private int samples;
+
+        private void update(long latency) {
+            value = samples == 0 ? latency : value + (latency - value) * BASELINE_WEIGHT;
+            samples = Math.min(samples + 1, WARMUP_SAMPLES);
+        }
+
+    }
+
+}
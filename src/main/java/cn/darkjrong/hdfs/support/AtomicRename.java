@@ -0,0 +1,42 @@
+package cn.darkjrong.hdfs.support;
+
+import org.apache.hadoop.fs.FileContext;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+
+import java.io.IOException;
+
+/**
+ * 原子重命名, 覆盖时由NameNode在一次操作中替换目标文件, 不存在先删除再重命名的中间状态;
+ * 不覆盖且目标已存在时抛出 {@link org.apache.hadoop.fs.FileAlreadyExistsException}
+ *
+ * @author Rong.Jia
+ * @date 2022/01/18
+ */
+public class AtomicRename {
+
+    private AtomicRename() {
+    }
+
+    /**
+     * 重命名
+     *
+     * @param fileSystem 文件系统
+     * @param src        源文件
+     * @param dst        目标文件
+     * @param overwrite  是否覆盖已存在的目标文件
+     * @throws IOException IO异常
+     */
+    public static void rename(FileSystem fileSystem, Path src, Path dst, boolean overwrite) throws IOException {
+        Options.Rename option = overwrite ? Options.Rename.OVERWRITE : Options.Rename.NONE;
+        if (fileSystem instanceof DistributedFileSystem) {
+            ((DistributedFileSystem) fileSystem).rename(src, dst, option);
+            return;
+        }
+        // 其他文件系统的 rename(Path, Path, Options.Rename...) 不公开, 通过 FileContext 调用
+        FileContext.getFileContext(fileSystem.getUri(), fileSystem.getConf()).rename(src, dst, option);
+    }
+
+}
@@ -0,0 +1,97 @@
+package cn.darkjrong.hdfs.support;
+
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.hutool.core.util.ObjectUtil;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 隔离舱, 分别限制元数据操作与数据操作的并发数, 避免大量慢传输占满调用线程后元数据操作也无法执行
+ * <p>
+ * 并发已满时等待指定时间, 仍无法获取许可则直接失败
+ *
+ * @author Rong.Jia
+ * @date 2022/01/14
+ */
+public class Bulkhead {
+
+    private final Map<OperationType, Semaphore> permits = new EnumMap<>(OperationType.class);
+    private final long maxWait;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * 隔离舱
+     *
+     * @param metadataConcurrency 元数据操作最大并发数, 小于等于0不限制
+     * @param dataConcurrency     数据操作最大并发数, 小于等于0不限制
+     * @param maxWait             并发已满时的最长等待时间, 毫秒
+     */
+    public Bulkhead(int metadataConcurrency, int dataConcurrency, long maxWait) {
+        if (metadataConcurrency > 0) {
+            permits.put(OperationType.METADATA, new Semaphore(metadataConcurrency, Boolean.TRUE));
+        }
+        if (dataConcurrency > 0) {
+            permits.put(OperationType.DATA, new Semaphore(dataConcurrency, Boolean.TRUE));
+        }
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * 获取并发许可
+     *
+     * @param type 操作类型
+     * @throws HdfsException 等待超时
+     */
+    public void acquire(OperationType type) throws HdfsException {
+        Semaphore semaphore = permits.get(type);
+        if (ObjectUtil.isNull(semaphore)) {
+            return;
+        }
+        try {
+            if (!semaphore.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new HdfsException("{}操作并发已满, 请稍后重试", type);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HdfsException(e);
+        }
+    }
+
+    /**
+     * 释放并发许可
+     *
+     * @param type 操作类型
+     */
+    public void release(OperationType type) {
+        Semaphore semaphore = permits.get(type);
+        if (ObjectUtil.isNotNull(semaphore)) {
+            semaphore.release();
+        }
+    }
+
+    /**
+     * 剩余并发许可数
+     *
+     * @param type 操作类型
+     * @return 许可数, 不限制时为 {@link Integer#MAX_VALUE}
+     */
+    public int getAvailable(OperationType type) {
+        Semaphore semaphore = permits.get(type);
+        return ObjectUtil.isNull(semaphore) ? Integer.MAX_VALUE : semaphore.availablePermits();
+    }
+
+    /**
+     * 因并发已满而失败的调用次数
+     *
+     * @return 次数
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+}
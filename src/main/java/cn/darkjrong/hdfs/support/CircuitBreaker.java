@@ -0,0 +1,270 @@
+package cn.darkjrong.hdfs.support;
+
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.hutool.core.lang.Assert;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.ParentNotDirectoryException;
+import org.apache.hadoop.fs.PathIsNotEmptyDirectoryException;
+import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.security.AccessControlException;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * 熔断器, 按最近N次调用的失败率与慢调用率判断集群是否异常, 超过阈值时打开, 打开期间调用直接失败
+ * <p>
+ * 打开超过指定时间后进入半开状态, 放行少量探测调用, 全部成功则关闭, 任一失败则重新打开;
+ * 文件不存在、权限不足等由调用方参数引起的异常不计为失败; 上传下载的耗时取决于传输字节数, 不计为慢调用
+ *
+ * @author Rong.Jia
+ * @date 2022/01/14
+ */
+public class CircuitBreaker {
+
+    private static final byte SUCCESS = 0;
+    private static final byte FAILURE = 1;
+    private static final byte SLOW = 2;
+
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallThreshold;
+    private final double slowCallRateThreshold;
+    private final long openDuration;
+    private final int halfOpenCalls;
+    private final LongSupplier clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder trips = new LongAdder();
+    private final byte[] window;
+    private int position;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probes;
+    private int probeSuccesses;
+
+    /**
+     * 熔断器
+     *
+     * @param windowSize            统计最近的调用次数
+     * @param minimumCalls          统计次数达到该值后才判断是否打开
+     * @param failureRateThreshold  失败率阈值, (0, 1]
+     * @param slowCallThreshold     超过该毫秒数的调用计为慢调用
+     * @param slowCallRateThreshold 慢调用率阈值, (0, 1], 1表示全部为慢调用时才打开
+     * @param openDuration          打开状态持续的毫秒数
+     * @param halfOpenCalls         半开状态放行的探测调用数
+     */
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, long slowCallThreshold,
+                          double slowCallRateThreshold, long openDuration, int halfOpenCalls) {
+        this(windowSize, minimumCalls, failureRateThreshold, slowCallThreshold, slowCallRateThreshold, openDuration,
+                halfOpenCalls, System::nanoTime);
+    }
+
+    /**
+     * 熔断器, 使用指定的时钟判断打开时长
+     *
+     * @param clock 纳秒时钟
+     */
+    CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, long slowCallThreshold,
+                   double slowCallRateThreshold, long openDuration, int halfOpenCalls, LongSupplier clock) {
+        Assert.isTrue(windowSize > 0, "统计次数必须大于0");
+        Assert.isTrue(failureRateThreshold > 0 && failureRateThreshold <= 1, "失败率阈值必须在(0, 1]之间");
+        Assert.isTrue(slowCallRateThreshold > 0 && slowCallRateThreshold <= 1, "慢调用率阈值必须在(0, 1]之间");
+        Assert.isTrue(halfOpenCalls > 0, "探测调用数必须大于0");
+        this.window = new byte[windowSize];
+        this.minimumCalls = Math.max(1, Math.min(windowSize, minimumCalls));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallThreshold = TimeUnit.MILLISECONDS.toNanos(slowCallThreshold);
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openDuration = TimeUnit.MILLISECONDS.toNanos(openDuration);
+        this.halfOpenCalls = halfOpenCalls;
+        this.clock = clock;
+    }
+
+    /**
+     * 获取调用许可, 打开状态或半开状态探测调用已满时直接失败
+     *
+     * @param operation 操作名称
+     * @throws HdfsException 熔断器打开
+     */
+    public void acquire(String operation) throws HdfsException {
+        lock.lock();
+        try {
+            if (state == State.OPEN && clock.getAsLong() - openedAt >= openDuration) {
+                state = State.HALF_OPEN;
+                probes = 0;
+                probeSuccesses = 0;
+            }
+            if (state == State.OPEN || (state == State.HALF_OPEN && probes >= halfOpenCalls)) {
+                rejected.increment();
+                throw new HdfsException("熔断器已打开, 集群暂不可用, operation: {}", operation);
+            }
+            if (state == State.HALF_OPEN) {
+                probes++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 放弃已获取的许可, 用于获取许可后未发起调用的情况(如限流等待被中断)
+     */
+    public void release() {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN && probes > 0) {
+                probes--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 记录调用结果
+     *
+     * @param operation 操作名称
+     * @param latency   延迟, 纳秒
+     * @param error     异常, 成功时为null
+     */
+    public void onResult(String operation, long latency, Throwable error) {
+        boolean failure = error != null && !isClientError(error);
+        boolean slow = OperationType.of(operation) == OperationType.METADATA && latency > slowCallThreshold;
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN) {
+                if (failure || slow) {
+                    open();
+                } else if (++probeSuccesses >= halfOpenCalls) {
+                    close();
+                }
+                return;
+            }
+            if (state == State.OPEN) {
+                return;
+            }
+            record(failure ? FAILURE : slow ? SLOW : SUCCESS);
+            if (recorded >= minimumCalls && (failures >= failureRateThreshold * recorded
+                    || slowCalls >= slowCallRateThreshold * recorded)) {
+                open();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 当前状态
+     *
+     * @return {@link State}
+     */
+    public State getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 因熔断直接失败的调用次数
+     *
+     * @return 次数
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * 熔断器打开的次数
+     *
+     * @return 次数
+     */
+    public long getTrips() {
+        return trips.sum();
+    }
+
+    private void record(byte outcome) {
+        if (recorded == window.length) {
+            byte evicted = window[position];
+            if (evicted == FAILURE) {
+                failures--;
+            } else if (evicted == SLOW) {
+                slowCalls--;
+            }
+        } else {
+            recorded++;
+        }
+        window[position] = outcome;
+        position = (position + 1) % window.length;
+        if (outcome == FAILURE) {
+            failures++;
+        } else if (outcome == SLOW) {
+            slowCalls++;
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+        trips.increment();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        position = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+
+    private boolean isClientError(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof FileNotFoundException || e instanceof AccessControlException
+                    || e instanceof FileAlreadyExistsException || e instanceof ParentNotDirectoryException
+                    || e instanceof PathIsNotEmptyDirectoryException || e instanceof IllegalArgumentException) {
+                return Boolean.TRUE;
+            }
+            if (e instanceof RemoteException) {
+                IOException unwrapped = ((RemoteException) e).unwrapRemoteException(FileNotFoundException.class,
+                        AccessControlException.class, FileAlreadyExistsException.class,
+                        ParentNotDirectoryException.class, PathIsNotEmptyDirectoryException.class);
+                return unwrapped != e;
+            }
+        }
+        return Boolean.FALSE;
+    }
+
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+
+        /**
+         * 关闭, 正常放行
+         */
+        CLOSED,
+
+        /**
+         * 打开, 直接失败
+         */
+        OPEN,
+
+        /**
+         * 半开, 放行少量探测调用
+         */
+        HALF_OPEN
+
+    }
+
+}
@@ -0,0 +1,93 @@
+package cn.darkjrong.hdfs.support;
+
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.hutool.core.thread.ThreadUtil;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 受自适应并发限制的线程池, 通过 submit 与 execute 提交的任务执行前都需获取 {@link AdaptiveLimiter} 许可
+ *
+ * @author Rong.Jia
+ * @date 2022/01/12
+ */
+public class LimitedExecutor extends ThreadPoolExecutor {
+
+    private final AdaptiveLimiter limiter;
+
+    public LimitedExecutor(int poolSize, String threadNamePrefix, AdaptiveLimiter limiter) {
+        super(poolSize, poolSize, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                ThreadUtil.newNamedThreadFactory(threadNamePrefix, Boolean.TRUE));
+        this.limiter = limiter;
+    }
+
+    /**
+     * 提交指定类型的任务, 同类型的任务共用一个延迟基线
+     *
+     * @param operation 任务类型
+     * @param task      任务
+     * @param <T>       返回类型
+     * @return {@link Future}
+     */
+    public <T> Future<T> submit(String operation, Callable<T> task) {
+        RunnableFuture<T> future = new LimitedTask<>(limiter.wrap(operation, task));
+        super.execute(future);
+        return future;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command instanceof LimitedTask) {
+            super.execute(command);
+            return;
+        }
+        Callable<Object> limited = limiter.wrap(command.getClass(), Executors.callable(command));
+        super.execute(() -> {
+            try {
+                limited.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new HdfsException(e);
+            }
+        });
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new LimitedTask<>(limiter.wrap(callable));
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new LimitedTask<>(limiter.wrap(runnable.getClass(), Executors.callable(runnable, value)));
+    }
+
+    /**
+     * 获取自适应并发限制
+     *
+     * @return {@link AdaptiveLimiter}
+     */
+    public AdaptiveLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * 已获取许可的任务, execute 时不再包装
+     */
+    private static final class LimitedTask<T> extends FutureTask<T> {
+
+        private LimitedTask(Callable<T> callable) {
+            super(callable);
+        }
+
+    }
+
+}
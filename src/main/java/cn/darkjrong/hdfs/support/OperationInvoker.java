@@ -0,0 +1,432 @@
+package cn.darkjrong.hdfs.support;
+
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.darkjrong.hdfs.jfr.JfrRecorder;
+import cn.darkjrong.hdfs.jfr.Recording;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.ObjectUtil;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 操作执行器, 为HDFS调用提供超时中断与对冲(hedged)重试
+ * <p>
+ * 调用依次经过熔断器、限流与隔离舱, 集群异常时快速失败, 不再等待限流令牌与客户端完整的重试周期;
+ * <p>
+ * 设置了超时时调用在独立线程中执行, 超时后中断该线程并抛出 {@link HdfsException};
+ * 元数据操作与数据操作分别配置超时, 复制、导入等多文件作业通过 {@link #callJob(String, String, Callable)} 执行, 不受单次超时限制;
+ * 也可通过 {@link #withDeadline(Duration, Supplier)} 为当前线程内的一组调用设置截止时间, 截止时间随 {@link #propagate(Callable)} 传递到并行任务
+ *
+ * @author Rong.Jia
+ * @date 2022/01/10
+ */
+public class OperationInvoker implements Closeable {
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private final long timeout;
+    private final long dataTimeout;
+    private final long hedgeDelay;
+    private final ExecutorService executor;
+    private final Throttle throttle;
+    private final Bulkhead bulkhead;
+    private final CircuitBreaker circuitBreaker;
+
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    /**
+     * 操作执行器
+     *
+     * @param timeout        元数据操作超时时间, 毫秒, 小于等于0表示不限制
+     * @param dataTimeout    单次数据操作(上传、下载单个文件)超时时间, 毫秒, 小于等于0表示不限制
+     * @param hedgeDelay     幂等元数据调用超过该毫秒数未返回时发起对冲调用, 小于等于0表示不对冲
+     * @param throttle       限流, 可为null
+     * @param bulkhead       隔离舱, 可为null
+     * @param circuitBreaker 熔断器, 可为null
+     */
+    public OperationInvoker(long timeout, long dataTimeout, long hedgeDelay, Throttle throttle, Bulkhead bulkhead,
+                            CircuitBreaker circuitBreaker) {
+        this.timeout = timeout;
+        this.dataTimeout = dataTimeout;
+        this.hedgeDelay = hedgeDelay;
+        this.throttle = throttle;
+        this.bulkhead = bulkhead;
+        this.circuitBreaker = circuitBreaker;
+        this.executor = Executors.newCachedThreadPool(ThreadUtil.newNamedThreadFactory("hdfs-call-", Boolean.TRUE));
+    }
+
+    /**
+     * 执行调用
+     *
+     * @param operation 操作名称
+     * @param callable  调用
+     * @param <T>       返回类型
+     * @return 调用结果
+     * @throws Exception 调用异常, 超时时为 {@link HdfsException}
+     */
+    public <T> T call(String operation, Callable<T> callable) throws Exception {
+        return call(operation, null, callable);
+    }
+
+    /**
+     * 执行调用, 启用JFR时记录操作事件
+     *
+     * @param operation 操作名称
+     * @param path      路径, 可为null
+     * @param callable  调用
+     * @param <T>       返回类型
+     * @return 调用结果
+     * @throws Exception 调用异常, 超时时为 {@link HdfsException}
+     */
+    public <T> T call(String operation, String path, Callable<T> callable) throws Exception {
+        return record(operation, path, () -> guard(operation, () -> doCall(operation, callable, timeout(operation))));
+    }
+
+    /**
+     * 执行多文件作业(如复制目录树、导入压缩包), 经过熔断器、限流与隔离舱, 不受单次操作超时限制, 只受截止时间限制
+     *
+     * @param operation 操作名称
+     * @param path      路径, 可为null
+     * @param callable  作业
+     * @param <T>       返回类型
+     * @return 作业结果
+     * @throws Exception 作业异常, 超过截止时间时为 {@link HdfsException}
+     */
+    public <T> T callJob(String operation, String path, Callable<T> callable) throws Exception {
+        return record(operation, path, () -> guard(operation, () -> doCall(operation, callable, 0)));
+    }
+
+    /**
+     * 执行无返回值的调用
+     *
+     * @param operation 操作名称
+     * @param action    调用
+     * @throws Exception 调用异常, 超时时为 {@link HdfsException}
+     */
+    public void run(String operation, Action action) throws Exception {
+        run(operation, null, action);
+    }
+
+    /**
+     * 执行无返回值的调用, 启用JFR时记录操作事件
+     *
+     * @param operation 操作名称
+     * @param path      路径, 可为null
+     * @param action    调用
+     * @throws Exception 调用异常, 超时时为 {@link HdfsException}
+     */
+    public void run(String operation, String path, Action action) throws Exception {
+        call(operation, path, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * 执行幂等调用, 超过对冲延迟未返回时并发发起第二次调用, 取先成功的结果并取消另一个
+     *
+     * @param operation 操作名称
+     * @param callable  幂等调用
+     * @param <T>       返回类型
+     * @return 调用结果
+     * @throws Exception 调用异常, 超时时为 {@link HdfsException}
+     */
+    public <T> T callHedged(String operation, Callable<T> callable) throws Exception {
+        return callHedged(operation, null, callable);
+    }
+
+    /**
+     * 执行幂等调用, 启用JFR时记录操作事件, 对冲调用计入重试次数
+     *
+     * @param operation 操作名称
+     * @param path      路径, 可为null
+     * @param callable  幂等调用
+     * @param <T>       返回类型
+     * @return 调用结果
+     * @throws Exception 调用异常, 超时时为 {@link HdfsException}
+     */
+    public <T> T callHedged(String operation, String path, Callable<T> callable) throws Exception {
+        return record(operation, path, () -> {
+            if (hedgeDelay <= 0) {
+                return guard(operation, () -> doCall(operation, callable, timeout(operation)));
+            }
+            return guard(operation, () -> doCallHedged(operation, callable));
+        });
+    }
+
+    /**
+     * 在截止时间内执行一组操作, 期间当前线程发起的调用共享该截止时间, 可嵌套, 取最早的截止时间
+     *
+     * @param timeout 超时时间
+     * @param action  操作
+     * @param <T>     返回类型
+     * @return 操作结果
+     */
+    public <T> T withDeadline(Duration timeout, Supplier<T> action) {
+        Long previous = DEADLINE.get();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        DEADLINE.set(ObjectUtil.isNull(previous) ? deadline : Math.min(previous, deadline));
+        try {
+            return action.get();
+        } finally {
+            if (ObjectUtil.isNull(previous)) {
+                DEADLINE.remove();
+            } else {
+                DEADLINE.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 包装调用, 使其在其他线程执行时沿用当前线程的截止时间、JFR记录与限流优先级
+     *
+     * @param callable 调用
+     * @param <T>      返回类型
+     * @return 包装后的调用
+     */
+    public <T> Callable<T> propagate(Callable<T> callable) {
+        Callable<T> recorded = JfrRecorder.propagate(callable);
+        Callable<T> prioritized = ObjectUtil.isNull(throttle) ? recorded : throttle.propagate(recorded);
+        Long deadline = DEADLINE.get();
+        if (ObjectUtil.isNull(deadline)) {
+            return prioritized;
+        }
+        return () -> {
+            Long previous = DEADLINE.get();
+            DEADLINE.set(deadline);
+            try {
+                return prioritized.call();
+            } finally {
+                if (ObjectUtil.isNull(previous)) {
+                    DEADLINE.remove();
+                } else {
+                    DEADLINE.set(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * 超时次数
+     *
+     * @return 次数
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * 发起的对冲调用次数
+     *
+     * @return 次数
+     */
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    /**
+     * 对冲调用先于首次调用返回的次数
+     *
+     * @return 次数
+     */
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * 获取隔离舱
+     *
+     * @return {@link Bulkhead}, 未配置时为null
+     */
+    public Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    /**
+     * 获取熔断器
+     *
+     * @return {@link CircuitBreaker}, 未启用时为null
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private <T> T record(String operation, String path, Callable<T> callable) throws Exception {
+        return JfrRecorder.record(operation, path, OperationType.of(operation) == OperationType.DATA, callable);
+    }
+
+    private <T> T guard(String operation, Callable<T> callable) throws Exception {
+        OperationType type = OperationType.of(operation);
+        if (ObjectUtil.isNotNull(circuitBreaker)) {
+            // 熔断器打开时直接失败, 不消耗限流令牌
+            circuitBreaker.acquire(operation);
+        }
+        try {
+            acquire(operation);
+            if (ObjectUtil.isNotNull(bulkhead)) {
+                bulkhead.acquire(type);
+            }
+        } catch (RuntimeException e) {
+            if (ObjectUtil.isNotNull(circuitBreaker)) {
+                circuitBreaker.release();
+            }
+            throw e;
+        }
+        try {
+            if (ObjectUtil.isNull(circuitBreaker)) {
+                return callable.call();
+            }
+            long start = System.nanoTime();
+            Throwable error = null;
+            try {
+                return callable.call();
+            } catch (Throwable e) {
+                error = e;
+                throw e;
+            } finally {
+                circuitBreaker.onResult(operation, System.nanoTime() - start, error);
+            }
+        } finally {
+            if (ObjectUtil.isNotNull(bulkhead)) {
+                bulkhead.release(type);
+            }
+        }
+    }
+
+    private <T> T doCallHedged(String operation, Callable<T> callable) throws Exception {
+        long remaining = remainingNanos(operation, timeout(operation));
+        long deadline = remaining == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + remaining;
+        CompletionService<T> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<T>> futures = new ArrayList<>(2);
+        Future<T> primary = completionService.submit(propagate(callable));
+        futures.add(primary);
+        try {
+            Future<T> done = completionService.poll(Math.min(TimeUnit.MILLISECONDS.toNanos(hedgeDelay), remaining),
+                    TimeUnit.NANOSECONDS);
+            if (ObjectUtil.isNull(done) && System.nanoTime() < deadline) {
+                hedges.increment();
+                Recording recording = JfrRecorder.current();
+                if (ObjectUtil.isNotNull(recording)) {
+                    recording.retry();
+                }
+                futures.add(completionService.submit(propagate(callable)));
+            }
+
+            int failures = 0;
+            for (;;) {
+                if (ObjectUtil.isNull(done)) {
+                    long wait = deadline == Long.MAX_VALUE ? Long.MAX_VALUE : deadline - System.nanoTime();
+                    done = wait <= 0 ? null : completionService.poll(wait, TimeUnit.NANOSECONDS);
+                    if (ObjectUtil.isNull(done)) {
+                        timeouts.increment();
+                        throw timeout(operation, new TimeoutException());
+                    }
+                }
+                try {
+                    T result = done.get();
+                    if (done != primary) {
+                        hedgeWins.increment();
+                    }
+                    return result;
+                } catch (ExecutionException e) {
+                    if (++failures >= futures.size()) {
+                        throw unwrap(e);
+                    }
+                }
+                done = null;
+            }
+        } finally {
+            futures.forEach(a -> a.cancel(Boolean.TRUE));
+        }
+    }
+
+    private <T> T doCall(String operation, Callable<T> callable, long timeout) throws Exception {
+        long remaining = remainingNanos(operation, timeout);
+        if (remaining == Long.MAX_VALUE) {
+            return callable.call();
+        }
+
+        Future<T> future = executor.submit(propagate(callable));
+        try {
+            return future.get(remaining, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw timeout(operation, e);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } finally {
+            future.cancel(Boolean.TRUE);
+        }
+    }
+
+    private void acquire(String operation) {
+        if (ObjectUtil.isNotNull(throttle)) {
+            throttle.acquireOperation(operation);
+        }
+    }
+
+    private long timeout(String operation) {
+        return OperationType.of(operation) == OperationType.DATA ? dataTimeout : timeout;
+    }
+
+    private long remainingNanos(String operation, long timeout) {
+        Long deadline = DEADLINE.get();
+        if (ObjectUtil.isNotNull(deadline)) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                timeouts.increment();
+                throw timeout(operation, new TimeoutException());
+            }
+            return remaining;
+        }
+        return timeout > 0 ? TimeUnit.MILLISECONDS.toNanos(timeout) : Long.MAX_VALUE;
+    }
+
+    private HdfsException timeout(String operation, TimeoutException e) {
+        return new HdfsException(e, "操作超时, operation: {}", operation);
+    }
+
+    private Exception unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return cause instanceof Exception ? (Exception) cause : e;
+    }
+
+    /**
+     * 无返回值的调用
+     */
+    @FunctionalInterface
+    public interface Action {
+
+        /**
+         * 执行
+         *
+         * @throws Exception 调用异常
+         */
+        void run() throws Exception;
+    }
+
+}
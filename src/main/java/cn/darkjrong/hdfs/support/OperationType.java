@@ -0,0 +1,37 @@
+package cn.darkjrong.hdfs.support;
+
+import cn.hutool.core.collection.CollectionUtil;
+
+import java.util.Set;
+
+/**
+ * 操作类型
+ *
+ * @author Rong.Jia
+ * @date 2022/01/13
+ */
+public enum OperationType {
+
+    /**
+     * 元数据操作, 只访问NameNode
+     */
+    METADATA,
+
+    /**
+     * 数据操作, 读写DataNode
+     */
+    DATA;
+
+    private static final Set<String> DATA_OPERATIONS = CollectionUtil.newHashSet("upload", "download", "copy");
+
+    /**
+     * 根据操作名称获取操作类型
+     *
+     * @param operation 操作名称
+     * @return {@link OperationType}
+     */
+    public static OperationType of(String operation) {
+        return DATA_OPERATIONS.contains(operation) ? DATA : METADATA;
+    }
+
+}
@@ -0,0 +1,103 @@
+package cn.darkjrong.hdfs.support;
+
+import cn.darkjrong.hdfs.exception.HdfsException;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 并行列出目录树, 按层提交同一层的所有目录, 列出任务之间互不等待, 在有界线程池中也不会死锁
+ *
+ * @author Rong.Jia
+ * @date 2022/01/24
+ */
+public class ParallelLister {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelLister.class);
+
+    private ParallelLister() {
+    }
+
+    /**
+     * 列出文件或目录树下的所有文件
+     *
+     * @param fileSystem 文件系统
+     * @param root       文件或目录
+     * @param executor   线程池
+     * @param failed     列出失败的目录
+     * @return 文件, 根为文件时只包含根
+     * @throws HdfsException 根不存在或无法访问
+     */
+    public static List<FileStatus> listFiles(FileSystem fileSystem, Path root, ExecutorService executor,
+                                             List<String> failed) throws HdfsException {
+        return listFiles(fileSystem, root, executor, failed, 0);
+    }
+
+    /**
+     * 列出文件或目录树下的所有文件, 文件数超过上限时取消未完成的列出并失败
+     *
+     * @param fileSystem 文件系统
+     * @param root       文件或目录
+     * @param executor   线程池
+     * @param failed     列出失败的目录
+     * @param maxFiles   文件数上限, 小于等于0时不限制
+     * @return 文件, 根为文件时只包含根
+     * @throws HdfsException 根不存在或无法访问, 或文件数超过上限
+     */
+    public static List<FileStatus> listFiles(FileSystem fileSystem, Path root, ExecutorService executor,
+                                             List<String> failed, long maxFiles) throws HdfsException {
+        List<FileStatus> files = new ArrayList<>();
+        try {
+            FileStatus status = fileSystem.getFileStatus(root);
+            if (status.isFile()) {
+                files.add(status);
+                return files;
+            }
+            List<FileStatus> level = Collections.singletonList(status);
+            while (!level.isEmpty()) {
+                List<Future<FileStatus[]>> futures = new ArrayList<>(level.size());
+                try {
+                    level.forEach(a -> futures.add(executor.submit(() -> fileSystem.listStatus(a.getPath()))));
+                    List<FileStatus> next = new ArrayList<>();
+                    for (int i = 0; i < futures.size(); i++) {
+                        try {
+                            for (FileStatus child : futures.get(i).get()) {
+                                if (child.isDirectory()) {
+                                    next.add(child);
+                                } else if (child.isFile()) {
+                                    files.add(child);
+                                }
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new HdfsException(e);
+                        } catch (Exception e) {
+                            logger.error("list {} failed {}", level.get(i).getPath(), e.getMessage());
+                            failed.add(level.get(i).getPath().toString());
+                        }
+                        if (maxFiles > 0 && files.size() > maxFiles) {
+                            throw new HdfsException("文件数超过上限: {}, path: {}", maxFiles, root);
+                        }
+                    }
+                    level = next;
+                } finally {
+                    futures.forEach(a -> a.cancel(Boolean.TRUE));
+                }
+            }
+        } catch (IOException e) {
+            logger.error("listFiles {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+        return files;
+    }
+
+}
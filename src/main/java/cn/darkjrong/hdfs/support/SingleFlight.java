@@ -0,0 +1,72 @@
+package cn.darkjrong.hdfs.support;
+
+import cn.hutool.core.util.StrUtil;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 请求合并, 并发的相同调用只执行一次, 结果(或异常)分发给所有等待者
+ *
+ * @author Rong.Jia
+ * @date 2022/01/11
+ */
+public class SingleFlight {
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder shared = new LongAdder();
+
+    /**
+     * 执行调用, 存在相同key的进行中调用时等待其结果
+     *
+     * @param operation 操作名称
+     * @param args      参数, 与操作名称一起组成key
+     * @param callable  调用
+     * @param <T>       返回类型
+     * @return 调用结果
+     * @throws Exception 调用异常
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String operation, Object[] args, Callable<T> callable) throws Exception {
+        String key = operation + StrUtil.C_COLON + StrUtil.join("\u0000", args);
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            shared.increment();
+            try {
+                return (T) existing.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw cause instanceof Exception ? (Exception) cause : e;
+            }
+        }
+
+        try {
+            T result = callable.call();
+            future.complete(result);
+            return result;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * 共享了其他调用结果的次数
+     *
+     * @return 次数
+     */
+    public long getShared() {
+        return shared.sum();
+    }
+
+}
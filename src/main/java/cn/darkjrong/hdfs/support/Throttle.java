@@ -0,0 +1,148 @@
+package cn.darkjrong.hdfs.support;
+
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.hutool.core.util.ObjectUtil;
+
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * 限流, 按操作类型限制每秒操作数, 并限制每秒传输字节数, 交互式请求优先于批量请求获取令牌
+ *
+ * @author Rong.Jia
+ * @date 2022/01/13
+ */
+public class Throttle {
+
+    private static final ThreadLocal<Priority> PRIORITY = new ThreadLocal<>();
+
+    private final TokenBucket metadataOps;
+    private final TokenBucket dataOps;
+    private final TokenBucket bytes;
+    private final Priority defaultPriority;
+
+    /**
+     * 限流
+     *
+     * @param metadataOpsPerSecond 每秒元数据操作数, 小于等于0不限制
+     * @param dataOpsPerSecond     每秒数据操作数, 小于等于0不限制
+     * @param bytesPerSecond       每秒传输字节数, 小于等于0不限制
+     * @param burstSeconds         允许突发的秒数, 令牌桶容量为速率乘以该值
+     * @param defaultPriority      默认优先级
+     */
+    public Throttle(double metadataOpsPerSecond, double dataOpsPerSecond, long bytesPerSecond,
+                    double burstSeconds, Priority defaultPriority) {
+        this.metadataOps = bucket(metadataOpsPerSecond, burstSeconds);
+        this.dataOps = bucket(dataOpsPerSecond, burstSeconds);
+        this.bytes = bucket(bytesPerSecond, burstSeconds);
+        this.defaultPriority = defaultPriority;
+    }
+
+    /**
+     * 获取一次操作的令牌
+     *
+     * @param operation 操作名称
+     */
+    public void acquireOperation(String operation) {
+        acquire(OperationType.of(operation) == OperationType.DATA ? dataOps : metadataOps, 1);
+    }
+
+    /**
+     * 获取传输字节的令牌
+     *
+     * @param count 字节数
+     */
+    public void acquireBytes(long count) {
+        acquire(bytes, count);
+    }
+
+    /**
+     * 以指定优先级执行一组操作
+     *
+     * @param priority 优先级
+     * @param action   操作
+     * @param <T>      返回类型
+     * @return 操作结果
+     */
+    public <T> T withPriority(Priority priority, Supplier<T> action) {
+        Priority previous = PRIORITY.get();
+        PRIORITY.set(priority);
+        try {
+            return action.get();
+        } finally {
+            if (ObjectUtil.isNull(previous)) {
+                PRIORITY.remove();
+            } else {
+                PRIORITY.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 包装调用, 使其在其他线程执行时沿用当前线程的优先级
+     *
+     * @param callable 调用
+     * @param <T>      返回类型
+     * @return 包装后的调用
+     */
+    public <T> Callable<T> propagate(Callable<T> callable) {
+        Priority priority = getPriority();
+        return () -> {
+            Priority previous = PRIORITY.get();
+            PRIORITY.set(priority);
+            try {
+                return callable.call();
+            } finally {
+                if (ObjectUtil.isNull(previous)) {
+                    PRIORITY.remove();
+                } else {
+                    PRIORITY.set(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * 当前线程的优先级
+     *
+     * @return {@link Priority}
+     */
+    public Priority getPriority() {
+        Priority priority = PRIORITY.get();
+        return ObjectUtil.isNull(priority) ? defaultPriority : priority;
+    }
+
+    private void acquire(TokenBucket bucket, long permits) {
+        if (ObjectUtil.isNull(bucket)) {
+            return;
+        }
+        try {
+            bucket.acquire(permits, getPriority() == Priority.INTERACTIVE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HdfsException(e);
+        }
+    }
+
+    private static TokenBucket bucket(double ratePerSecond, double burstSeconds) {
+        return ratePerSecond > 0 ? new TokenBucket(ratePerSecond, ratePerSecond * burstSeconds) : null;
+    }
+
+    /**
+     * 优先级
+     */
+    public enum Priority {
+
+        /**
+         * 交互式请求, 优先获取令牌
+         */
+        INTERACTIVE,
+
+        /**
+         * 批量请求
+         */
+        BATCH
+
+    }
+
+}
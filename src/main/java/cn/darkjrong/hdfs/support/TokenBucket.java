@@ -0,0 +1,86 @@
+package cn.darkjrong.hdfs.support;
+
+import cn.hutool.core.lang.Assert;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 令牌桶, 按固定速率生成令牌, 容量决定允许的突发量
+ * <p>
+ * 有高优先级等待者时, 低优先级请求让出令牌
+ *
+ * @author Rong.Jia
+ * @date 2022/01/13
+ */
+public class TokenBucket {
+
+    private static final long MIN_WAIT = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final double ratePerNano;
+    private final double capacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition refilled = lock.newCondition();
+    private double tokens;
+    private long lastRefill;
+    private int priorityWaiters;
+
+    /**
+     * 令牌桶
+     *
+     * @param ratePerSecond 每秒生成的令牌数
+     * @param capacity      容量
+     */
+    public TokenBucket(double ratePerSecond, double capacity) {
+        Assert.isTrue(ratePerSecond > 0, "令牌生成速率必须大于0");
+        this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = Math.max(1, capacity);
+        this.tokens = this.capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * 获取令牌, 令牌不足时阻塞; 超过容量的请求在令牌桶满时放行并透支
+     *
+     * @param permits  令牌数
+     * @param priority 是否高优先级
+     * @throws InterruptedException 中断
+     */
+    public void acquire(long permits, boolean priority) throws InterruptedException {
+        double need = Math.min(permits, capacity);
+        lock.lock();
+        try {
+            if (priority) {
+                priorityWaiters++;
+            }
+            try {
+                for (;;) {
+                    refill();
+                    boolean turn = priority || priorityWaiters == 0;
+                    if (turn && tokens >= need) {
+                        tokens -= permits;
+                        return;
+                    }
+                    long wait = tokens >= need ? MIN_WAIT : (long) ((need - tokens) / ratePerNano);
+                    refilled.awaitNanos(Math.max(MIN_WAIT, wait));
+                }
+            } finally {
+                if (priority) {
+                    priorityWaiters--;
+                    refilled.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerNano);
+        lastRefill = now;
+    }
+
+}
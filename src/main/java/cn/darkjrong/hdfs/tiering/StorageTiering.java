@@ -0,0 +1,248 @@
+package cn.darkjrong.hdfs.tiering;
+
+import cn.darkjrong.hdfs.audit.ChecksumAuditor;
+import cn.darkjrong.hdfs.buffer.BufferPool;
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.darkjrong.hdfs.support.ParallelLister;
+import cn.darkjrong.hdfs.support.TokenBucket;
+import cn.hutool.core.lang.Assert;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.protocol.BlockStoragePolicy;
+import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * 分层存储, 并行扫描目录树, 按修改时间、访问时间与大小选出文件, 设置存储策略或以纠删码策略重写
+ * <p>
+ * 纠删码只对新写入的数据生效, 已有文件需重写: 先以目标策略写入同目录下的临时文件, 长度与COMPOSITE_CRC校验和比对通过、
+ * 且源文件期间未被修改时, 再以覆盖方式rename替换源文件, 保留权限、属主与时间, 不保留ACL与扩展属性.
+ * 只重写选中的文件, 不修改目录的纠删码策略, 之后写入目录的文件仍使用原策略
+ *
+ * @author Rong.Jia
+ * @date 2022/01/24
+ */
+public class StorageTiering {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageTiering.class);
+
+    /**
+     * 重写中临时文件后缀
+     */
+    public static final String TMP_SUFFIX = "._TIERING_";
+
+    private final DistributedFileSystem fileSystem;
+    private final ExecutorService executor;
+    private final BufferPool bufferPool;
+    private final LongConsumer onChunk;
+    private final TokenBucket limiter;
+
+    /**
+     * 分层存储
+     *
+     * @param fileSystem 文件系统, 应以COMPOSITE_CRC模式获取校验和, 否则重写后只比对长度
+     * @param executor   并行扫描与处理的线程池
+     * @param bufferPool 缓冲池
+     * @param onChunk    重写时每次写入前回调字节数, 可用于限流, 可为null
+     * @param limiter    每个文件处理前取一个令牌, 可为null
+     */
+    public StorageTiering(DistributedFileSystem fileSystem, ExecutorService executor, BufferPool bufferPool,
+                          LongConsumer onChunk, TokenBucket limiter) {
+        this.fileSystem = fileSystem;
+        this.executor = executor;
+        this.bufferPool = bufferPool;
+        this.onChunk = onChunk;
+        this.limiter = limiter;
+    }
+
+    /**
+     * 执行规则
+     *
+     * @param rule     规则
+     * @param progress 每处理完一个文件回调当前结果, 可为null
+     * @return {@link TieringResult}
+     * @throws HdfsException hdfs异常
+     */
+    public TieringResult apply(TieringRule rule, Consumer<TieringResult> progress) throws HdfsException {
+        Assert.notBlank(rule.getPath(), "路径不能为空");
+        Assert.isTrue(StrUtil.isBlank(rule.getStoragePolicy()) != StrUtil.isBlank(rule.getErasureCodingPolicy()),
+                "存储策略与纠删码策略必须且只能设置一个");
+        long start = System.currentTimeMillis();
+        TieringResult result = new TieringResult();
+        Path root = new Path(rule.getPath());
+        try {
+            boolean erasureCoding = StrUtil.isNotBlank(rule.getErasureCodingPolicy());
+            byte policyId = erasureCoding ? 0 : storagePolicyId(rule.getStoragePolicy());
+            List<FileStatus> files = ParallelLister.listFiles(fileSystem, root, executor, result.getFailed());
+            long now = System.currentTimeMillis();
+            List<FileStatus> selected = files.stream()
+                    .filter(a -> !StrUtil.endWith(a.getPath().getName(), TMP_SUFFIX) && matches(rule, a, now))
+                    .collect(Collectors.toList());
+            result.setScannedFiles(files.size());
+            result.setSelectedFiles(selected.size());
+            result.setSelectedBytes(selected.stream().mapToLong(FileStatus::getLen).sum());
+            if (rule.isDryRun() || selected.isEmpty()) {
+                result.setElapsed(System.currentTimeMillis() - start);
+                return result;
+            }
+
+            Map<FileStatus, Future<Long>> futures = new LinkedHashMap<>(selected.size());
+            selected.forEach(file -> futures.put(file, executor.submit(() -> {
+                if (ObjectUtil.isNotNull(limiter)) {
+                    limiter.acquire(1, Boolean.FALSE);
+                }
+                return erasureCoding ? rewrite(file, rule.getErasureCodingPolicy())
+                        : applyStoragePolicy(file, rule, policyId);
+            })));
+            futures.forEach((file, future) -> {
+                try {
+                    long bytes = future.get();
+                    if (bytes < 0) {
+                        result.setSkippedFiles(result.getSkippedFiles() + 1);
+                    } else {
+                        result.setAppliedFiles(result.getAppliedFiles() + 1);
+                        result.setRewrittenBytes(result.getRewrittenBytes() + bytes);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new HdfsException(e);
+                } catch (Exception e) {
+                    logger.error("tier {} failed {}", file.getPath(), e.getMessage());
+                    result.getFailed().add(file.getPath().toString());
+                }
+                result.setProcessedFiles(result.getProcessedFiles() + 1);
+                if (ObjectUtil.isNotNull(progress)) {
+                    result.setElapsed(System.currentTimeMillis() - start);
+                    progress.accept(result);
+                }
+            });
+        } catch (IOException e) {
+            logger.error("tier {}", e.getMessage());
+            throw new HdfsException(e);
+        }
+        result.setElapsed(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private boolean matches(TieringRule rule, FileStatus status, long now) {
+        long accessTime = status.getAccessTime() > 0 ? status.getAccessTime() : status.getModificationTime();
+        return status.getLen() >= rule.getMinSize()
+                && (rule.getMaxSize() <= 0 || status.getLen() <= rule.getMaxSize())
+                && (ObjectUtil.isNull(rule.getOlderThan())
+                || now - status.getModificationTime() >= rule.getOlderThan().toMillis())
+                && (ObjectUtil.isNull(rule.getNotAccessedFor()) || now - accessTime >= rule.getNotAccessedFor().toMillis())
+                && (ObjectUtil.isNull(rule.getAccessedWithin()) || now - accessTime <= rule.getAccessedWithin().toMillis());
+    }
+
+    /**
+     * 设置存储策略
+     *
+     * @return 0, 已是目标策略时为-1
+     */
+    private long applyStoragePolicy(FileStatus status, TieringRule rule, byte policyId) throws IOException {
+        if (status instanceof HdfsFileStatus && ((HdfsFileStatus) status).getStoragePolicy() == policyId) {
+            return -1;
+        }
+        fileSystem.setStoragePolicy(status.getPath(), rule.getStoragePolicy());
+        if (rule.isSatisfy()) {
+            fileSystem.satisfyStoragePolicy(status.getPath());
+        }
+        return 0;
+    }
+
+    /**
+     * 以纠删码策略重写文件
+     *
+     * @return 重写字节数, 已是目标策略时为-1
+     */
+    private long rewrite(FileStatus status, String policy) throws IOException {
+        Path path = status.getPath();
+        ErasureCodingPolicy current = status instanceof HdfsFileStatus
+                ? ((HdfsFileStatus) status).getErasureCodingPolicy() : fileSystem.getErasureCodingPolicy(path);
+        if (ObjectUtil.isNotNull(current) && StrUtil.equals(current.getName(), policy)) {
+            return -1;
+        }
+
+        Path tmp = new Path(path.getParent(), path.getName() + TMP_SUFFIX);
+        long bytes;
+        try (FSDataInputStream in = fileSystem.open(path);
+             FSDataOutputStream out = fileSystem.createFile(tmp).ecPolicyName(policy).overwrite(Boolean.TRUE).build()) {
+            bytes = bufferPool.copy(in, out, onChunk);
+        }
+
+        try {
+            if (bytes != status.getLen()) {
+                throw new HdfsException("文件在重写期间被修改, path: {}", path);
+            }
+            checkUnchanged(status);
+            verify(path, tmp);
+            fileSystem.setPermission(tmp, status.getPermission());
+            FileStatus written = fileSystem.getFileStatus(tmp);
+            if (!StrUtil.equals(written.getOwner(), status.getOwner()) || !StrUtil.equals(written.getGroup(), status.getGroup())) {
+                // 修改属主需要超级用户权限, 失败时保留源文件
+                fileSystem.setOwner(tmp, status.getOwner(), status.getGroup());
+            }
+            // 比对校验和期间源文件可能被替换或追加, rename前再次检查以缩小窗口
+            checkUnchanged(status);
+            fileSystem.rename(tmp, path, Options.Rename.OVERWRITE);
+        } catch (IOException | RuntimeException e) {
+            fileSystem.delete(tmp, Boolean.FALSE);
+            throw e;
+        }
+        fileSystem.setTimes(path, status.getModificationTime(), status.getAccessTime());
+        return bytes;
+    }
+
+    /**
+     * 检查源文件未被替换或修改, 替换后文件编号不同
+     */
+    private void checkUnchanged(FileStatus status) throws IOException {
+        FileStatus latest = fileSystem.getFileStatus(status.getPath());
+        boolean replaced = status instanceof HdfsFileStatus && latest instanceof HdfsFileStatus
+                && ((HdfsFileStatus) status).getFileId() != ((HdfsFileStatus) latest).getFileId();
+        if (replaced || latest.getLen() != status.getLen() || latest.getModificationTime() != status.getModificationTime()) {
+            throw new HdfsException("文件在重写期间被修改, path: {}", status.getPath());
+        }
+    }
+
+    private void verify(Path src, Path tmp) throws IOException {
+        FileChecksum expected = fileSystem.getFileChecksum(src);
+        FileChecksum actual = fileSystem.getFileChecksum(tmp);
+        // 默认的MD5MD5CRC校验和与块布局相关, 副本文件与纠删码文件无法比对
+        if (ObjectUtil.hasNull(expected, actual) || !StrUtil.startWith(expected.getAlgorithmName(), ChecksumAuditor.COMPOSITE_PREFIX)) {
+            return;
+        }
+        if (!expected.equals(actual)) {
+            throw new HdfsException("校验和不一致, source: {}, expected: {}, actual: {}", src, expected, actual);
+        }
+    }
+
+    private byte storagePolicyId(String name) throws IOException {
+        for (BlockStoragePolicy policy : fileSystem.getAllStoragePolicies()) {
+            if (StrUtil.equalsIgnoreCase(policy.getName(), name)) {
+                return policy.getId();
+            }
+        }
+        throw new HdfsException("存储策略不存在, policy: {}", name);
+    }
+
+}
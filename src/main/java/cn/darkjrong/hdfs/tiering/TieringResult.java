@@ -0,0 +1,62 @@
+package cn.darkjrong.hdfs.tiering;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分层存储结果, 执行中作为进度回调
+ *
+ * @author Rong.Jia
+ * @date 2022/01/24
+ */
+@Data
+public class TieringResult {
+
+    /**
+     * 扫描的文件数
+     */
+    private int scannedFiles;
+
+    /**
+     * 满足规则的文件数
+     */
+    private int selectedFiles;
+
+    /**
+     * 满足规则的字节数
+     */
+    private long selectedBytes;
+
+    /**
+     * 已处理的选中文件数, 含成功、跳过与失败
+     */
+    private int processedFiles;
+
+    /**
+     * 已设置存储策略或重写的文件数
+     */
+    private int appliedFiles;
+
+    /**
+     * 重写的字节数
+     */
+    private long rewrittenBytes;
+
+    /**
+     * 已是目标策略而跳过的文件数
+     */
+    private int skippedFiles;
+
+    /**
+     * 处理失败的文件、列出失败的目录
+     */
+    private List<String> failed = new ArrayList<>();
+
+    /**
+     * 耗时, 毫秒
+     */
+    private long elapsed;
+
+}
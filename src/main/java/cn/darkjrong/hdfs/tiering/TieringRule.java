@@ -0,0 +1,67 @@
+package cn.darkjrong.hdfs.tiering;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * 分层存储规则, 选中目录树下满足全部条件的文件, 设置存储策略或以纠删码策略重写
+ *
+ * @author Rong.Jia
+ * @date 2022/01/24
+ */
+@Data
+public class TieringRule {
+
+    /**
+     * 文件或目录
+     */
+    private String path;
+
+    /**
+     * 修改时间早于该时长之前, 为null时不限制
+     */
+    private Duration olderThan;
+
+    /**
+     * 访问时间早于该时长之前, 为null时不限制; NameNode关闭访问时间(dfs.namenode.accesstime.precision=0)时按修改时间判断
+     */
+    private Duration notAccessedFor;
+
+    /**
+     * 访问时间在该时长之内, 为null时不限制, 用于选出热数据
+     */
+    private Duration accessedWithin;
+
+    /**
+     * 文件最小字节数, 默认0
+     */
+    private long minSize = 0;
+
+    /**
+     * 文件最大字节数, 0表示不限制, 默认0
+     */
+    private long maxSize = 0;
+
+    /**
+     * 存储策略, 如 COLD、WARM、ALL_SSD、ONE_SSD, 与纠删码策略二选一
+     */
+    private String storagePolicy;
+
+    /**
+     * 设置存储策略后是否请求NameNode迁移块(satisfyStoragePolicy), 需开启 dfs.storage.policy.satisfier.mode,
+     * 否则需另行运行 hdfs mover, 默认false
+     */
+    private boolean satisfy = false;
+
+    /**
+     * 纠删码策略, 如 RS-6-3-1024k, 只重写选中的文件, 不修改目录策略, 与存储策略二选一
+     */
+    private String erasureCodingPolicy;
+
+    /**
+     * 只统计选中的文件, 不做修改, 默认false
+     */
+    private boolean dryRun = false;
+
+}
@@ -0,0 +1,93 @@
+package cn.darkjrong.hdfs.usage;
+
+import lombok.Data;
+import org.apache.hadoop.fs.ContentSummary;
+
+/**
+ * 目录用量与配额
+ *
+ * @author Rong.Jia
+ * @date 2022/01/23
+ */
+@Data
+public class DirectoryUsage {
+
+    /**
+     * 路径
+     */
+    private String path;
+
+    /**
+     * 文件总字节数
+     */
+    private long length;
+
+    /**
+     * 含副本的占用空间
+     */
+    private long spaceConsumed;
+
+    /**
+     * 文件数
+     */
+    private long fileCount;
+
+    /**
+     * 目录数
+     */
+    private long directoryCount;
+
+    /**
+     * 名称配额, 未设置时为-1
+     */
+    private long quota;
+
+    /**
+     * 空间配额, 未设置时为-1
+     */
+    private long spaceQuota;
+
+    /**
+     * 统计时间, 毫秒
+     */
+    private long updateTime;
+
+    /**
+     * 剩余空间配额
+     *
+     * @return 字节数, 未设置空间配额时为 {@link Long#MAX_VALUE}
+     */
+    public long getSpaceHeadroom() {
+        return spaceQuota < 0 ? Long.MAX_VALUE : spaceQuota - spaceConsumed;
+    }
+
+    /**
+     * 剩余名称配额
+     *
+     * @return 文件与目录数, 未设置名称配额时为 {@link Long#MAX_VALUE}
+     */
+    public long getNamespaceHeadroom() {
+        return quota < 0 ? Long.MAX_VALUE : quota - fileCount - directoryCount;
+    }
+
+    /**
+     * 由内容摘要创建
+     *
+     * @param path    路径
+     * @param summary 内容摘要
+     * @return {@link DirectoryUsage}
+     */
+    public static DirectoryUsage of(String path, ContentSummary summary) {
+        DirectoryUsage usage = new DirectoryUsage();
+        usage.setPath(path);
+        usage.setLength(summary.getLength());
+        usage.setSpaceConsumed(summary.getSpaceConsumed());
+        usage.setFileCount(summary.getFileCount());
+        usage.setDirectoryCount(summary.getDirectoryCount());
+        usage.setQuota(summary.getQuota());
+        usage.setSpaceQuota(summary.getSpaceQuota());
+        usage.setUpdateTime(System.currentTimeMillis());
+        return usage;
+    }
+
+}
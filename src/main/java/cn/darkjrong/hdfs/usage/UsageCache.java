@@ -0,0 +1,214 @@
+package cn.darkjrong.hdfs.usage;
+
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.hutool.core.exceptions.ExceptionUtil;
+import cn.hutool.core.lang.Assert;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.ObjectUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 目录用量缓存, 并行统计多个目录的内容摘要并按TTL缓存
+ * <p>
+ * 后台定期刷新最近被访问过的条目, 访问方通常直接命中缓存; 超过TTL的条目同步重新统计, 超过TTL未被访问的条目淘汰.
+ * 同一目录同时只统计一次, 关闭时取消进行中的统计
+ *
+ * @author Rong.Jia
+ * @date 2022/01/23
+ */
+public class UsageCache implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(UsageCache.class);
+
+    private final Function<String, DirectoryUsage> loader;
+    private final ExecutorService executor;
+    private final long ttl;
+    private final long refreshInterval;
+    private final ScheduledExecutorService scheduler;
+
+    private final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<DirectoryUsage>> loading = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Future<?>> tasks = new ConcurrentHashMap<>();
+
+    /**
+     * 目录用量缓存
+     *
+     * @param loader          统计单个目录, 失败时抛出 {@link HdfsException}
+     * @param executor        并行统计线程池
+     * @param ttl             缓存有效期, 毫秒
+     * @param refreshInterval 后台刷新间隔, 毫秒, 0表示不刷新
+     */
+    public UsageCache(Function<String, DirectoryUsage> loader, ExecutorService executor, long ttl, long refreshInterval) {
+        Assert.isTrue(ttl > 0, "缓存有效期必须大于0");
+        this.loader = loader;
+        this.executor = executor;
+        this.ttl = ttl;
+        this.refreshInterval = refreshInterval;
+        if (refreshInterval > 0) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                    ThreadUtil.newNamedThreadFactory("hdfs-usage-refresh-", Boolean.TRUE));
+            this.scheduler.scheduleWithFixedDelay(this::refresh, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * 获取多个目录的用量, 未缓存或已过期的目录并行统计
+     *
+     * @param paths 目录
+     * @return 每个目录的用量, 统计失败的目录不包含在结果中
+     */
+    public Map<String, DirectoryUsage> get(Collection<String> paths) {
+        long now = System.currentTimeMillis();
+        Map<String, CompletableFuture<DirectoryUsage>> futures = new LinkedHashMap<>(paths.size());
+        for (String path : paths) {
+            Entry entry = cache.get(path);
+            if (ObjectUtil.isNotNull(entry) && now - entry.usage.getUpdateTime() < ttl) {
+                entry.lastAccess = now;
+                futures.put(path, CompletableFuture.completedFuture(entry.usage));
+            } else {
+                futures.put(path, load(path));
+            }
+        }
+
+        Map<String, DirectoryUsage> results = new LinkedHashMap<>(paths.size());
+        futures.forEach((path, future) -> {
+            try {
+                results.put(path, future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new HdfsException(e);
+            } catch (Exception e) {
+                logger.error("getUsage {} {}", path, ExceptionUtil.getRootCauseMessage(e));
+            }
+        });
+        return results;
+    }
+
+    /**
+     * 按指定方式排序, 返回前N个目录
+     *
+     * @param paths 目录
+     * @param order 排序方式
+     * @param limit 数量
+     * @return 用量
+     */
+    public List<DirectoryUsage> top(Collection<String> paths, UsageOrder order, int limit) {
+        return get(paths).values().stream()
+                .sorted(order.getComparator())
+                .limit(Math.max(0, limit))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 移除缓存, 目录内容大量变化后调用
+     *
+     * @param path 目录
+     */
+    public void invalidate(String path) {
+        cache.remove(path);
+    }
+
+    /**
+     * 缓存的目录数
+     *
+     * @return 目录数
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    @Override
+    public void close() {
+        if (ObjectUtil.isNotNull(scheduler)) {
+            scheduler.shutdownNow();
+        }
+        tasks.values().forEach(a -> a.cancel(Boolean.TRUE));
+        tasks.clear();
+        loading.values().forEach(a -> a.cancel(Boolean.TRUE));
+        cache.clear();
+    }
+
+    private CompletableFuture<DirectoryUsage> load(String path) {
+        CompletableFuture<DirectoryUsage> future = new CompletableFuture<>();
+        CompletableFuture<DirectoryUsage> existing = loading.putIfAbsent(path, future);
+        if (ObjectUtil.isNotNull(existing)) {
+            return existing;
+        }
+        try {
+            Future<?> task = executor.submit(() -> {
+                try {
+                    DirectoryUsage usage = loader.apply(path);
+                    Entry previous = cache.get(path);
+                    cache.put(path, new Entry(usage, ObjectUtil.isNull(previous)
+                            ? System.currentTimeMillis() : previous.lastAccess));
+                    future.complete(usage);
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    loading.remove(path, future);
+                }
+            });
+            tasks.put(path, task);
+            // 调用方取消时中断统计
+            future.whenComplete((usage, e) -> {
+                if (future.isCancelled()) {
+                    task.cancel(Boolean.TRUE);
+                }
+                tasks.remove(path, task);
+            });
+        } catch (Exception e) {
+            loading.remove(path, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 刷新最近一个TTL内被访问过且已超过刷新间隔的条目, 淘汰其余过期条目
+     */
+    private void refresh() {
+        long now = System.currentTimeMillis();
+        List<String> expired = new ArrayList<>();
+        cache.forEach((path, entry) -> {
+            if (now - entry.lastAccess >= ttl) {
+                expired.add(path);
+            } else if (now - entry.usage.getUpdateTime() >= refreshInterval) {
+                load(path);
+            }
+        });
+        expired.forEach(cache::remove);
+    }
+
+    private static class Entry {
+
+        private final DirectoryUsage usage;
+        private volatile long lastAccess;
+
+        private Entry(DirectoryUsage usage, long lastAccess) {
+            this.usage = usage;
+            this.lastAccess = lastAccess;
+        }
+
+    }
+
+}
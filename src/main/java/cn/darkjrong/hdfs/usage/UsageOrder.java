@@ -0,0 +1,55 @@
+package cn.darkjrong.hdfs.usage;
+
+import java.util.Comparator;
+
+/**
+ * 用量排序方式
+ *
+ * @author Rong.Jia
+ * @date 2022/01/23
+ */
+public enum UsageOrder {
+
+    /**
+     * 文件总字节数, 从大到小
+     */
+    LENGTH(Comparator.comparingLong(DirectoryUsage::getLength).reversed()),
+
+    /**
+     * 含副本的占用空间, 从大到小
+     */
+    SPACE_CONSUMED(Comparator.comparingLong(DirectoryUsage::getSpaceConsumed).reversed()),
+
+    /**
+     * 文件数, 从多到少
+     */
+    FILE_COUNT(Comparator.comparingLong(DirectoryUsage::getFileCount).reversed()),
+
+    /**
+     * 剩余空间配额, 从少到多, 未设置配额的排在最后
+     */
+    SPACE_HEADROOM(Comparator.comparingLong(DirectoryUsage::getSpaceHeadroom)),
+
+    /**
+     * 剩余名称配额, 从少到多, 未设置配额的排在最后
+     */
+    NAMESPACE_HEADROOM(Comparator.comparingLong(DirectoryUsage::getNamespaceHeadroom)),
+
+    ;
+
+    private final Comparator<DirectoryUsage> comparator;
+
+    UsageOrder(Comparator<DirectoryUsage> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * 比较器
+     *
+     * @return {@link Comparator}
+     */
+    public Comparator<DirectoryUsage> getComparator() {
+        return comparator;
+    }
+
+}
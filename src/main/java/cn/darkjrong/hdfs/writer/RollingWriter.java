@@ -0,0 +1,367 @@
+package cn.darkjrong.hdfs.writer;
+
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.darkjrong.hdfs.jfr.JfrRecorder;
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.lang.Assert;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+
+/**
+ * 滚动写入器, 多个线程的记录写入同一个输出流, 按大小/时间批量 hflush/hsync (组提交), 按大小/时间滚动文件
+ * <p>
+ * 正在写入的文件以 "_" 开头, 滚动时 rename 去掉前缀; 文件名包含随机后缀, 多个写入器可写入同一目录.
+ * 滚动时提交失败的文件被关闭, 其中未提交的记录等待 {@link #sync(long)} 时失败
+ *
+ * @author Rong.Jia
+ * @date 2022/01/07
+ */
+public class RollingWriter implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RollingWriter.class);
+
+    /**
+     * 正在写入文件的前缀
+     */
+    public static final String IN_PROGRESS_PREFIX = "_";
+
+    private static final byte[] LINE_SEPARATOR = {'\n'};
+
+    private final FileSystem fileSystem;
+    private final Path directory;
+    private final String prefix;
+    private final long flushBytes;
+    private final long rollSize;
+    private final long rollInterval;
+    private final boolean hsync;
+    private final ScheduledExecutorService scheduler;
+    private final LongConsumer onChunk;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition synced = lock.newCondition();
+
+    /**
+     * 滚动失败的文件中未提交的记录序号区间, 起始序号 -> 结束序号
+     */
+    private final TreeMap<Long, Long> failed = new TreeMap<>();
+
+    private FSDataOutputStream out;
+    private Path inProgress;
+    private long openedAt;
+    private long fileBytes;
+    private long unsyncedBytes;
+    private long writtenSeq;
+
+    /**
+     * 已提交或已确定失败的最大记录序号
+     */
+    private long syncedSeq;
+    private boolean syncing;
+    private boolean syncScheduled;
+    private boolean closed;
+
+    /**
+     * 滚动写入器
+     *
+     * @param fileSystem    文件系统
+     * @param directory     目录
+     * @param prefix        文件名前缀
+     * @param flushBytes    未提交字节数达到该值时触发组提交
+     * @param flushInterval 组提交间隔, 毫秒
+     * @param rollSize      文件达到该字节数时滚动
+     * @param rollInterval  文件打开超过该毫秒数时滚动
+     * @param hsync         是否使用hsync(落盘), 否则使用hflush(DataNode可见)
+     */
+    public RollingWriter(FileSystem fileSystem, Path directory, String prefix, long flushBytes,
+                         long flushInterval, long rollSize, long rollInterval, boolean hsync) {
+        this(fileSystem, directory, prefix, flushBytes, flushInterval, rollSize, rollInterval, hsync, null);
+    }
+
+    /**
+     * 滚动写入器
+     *
+     * @param fileSystem    文件系统
+     * @param directory     目录
+     * @param prefix        文件名前缀
+     * @param flushBytes    未提交字节数达到该值时触发组提交
+     * @param flushInterval 组提交间隔, 毫秒
+     * @param rollSize      文件达到该字节数时滚动
+     * @param rollInterval  文件打开超过该毫秒数时滚动
+     * @param hsync         是否使用hsync(落盘), 否则使用hflush(DataNode可见)
+     * @param onChunk       每条记录写入前回调字节数, 可用于限流, 可为null
+     */
+    public RollingWriter(FileSystem fileSystem, Path directory, String prefix, long flushBytes,
+                         long flushInterval, long rollSize, long rollInterval, boolean hsync, LongConsumer onChunk) {
+        Assert.isTrue(flushInterval > 0, "提交间隔必须大于0");
+        this.fileSystem = fileSystem;
+        this.directory = directory;
+        this.prefix = prefix;
+        this.flushBytes = flushBytes;
+        this.rollSize = rollSize;
+        this.rollInterval = rollInterval;
+        this.hsync = hsync;
+        this.onChunk = onChunk;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                ThreadUtil.newNamedThreadFactory("hdfs-rolling-writer-", Boolean.TRUE));
+        this.scheduler.scheduleWithFixedDelay(this::tick, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 写入记录, 返回时记录已进入输出流, 由后台组提交
+     *
+     * @param record 记录
+     * @return 记录序号, 可用于 {@link #sync(long)}
+     * @throws HdfsException hdfs异常
+     */
+    public long write(byte[] record) throws HdfsException {
+        Assert.notNull(record, "记录不能为空");
+        if (ObjectUtil.isNotNull(onChunk)) {
+            // 在锁外等待令牌, 避免限流时阻塞组提交
+            onChunk.accept(record.length);
+        }
+        lock.lock();
+        try {
+            Assert.isFalse(closed, "写入器已关闭");
+            if (ObjectUtil.isNull(out)) {
+                open();
+            }
+            out.write(record);
+            fileBytes += record.length;
+            unsyncedBytes += record.length;
+            long seq = ++writtenSeq;
+            if (fileBytes >= rollSize) {
+                roll();
+            } else if (unsyncedBytes >= flushBytes && !syncScheduled) {
+                // 同时最多一个待执行的提交, 执行时覆盖之前写入的所有记录
+                syncScheduled = Boolean.TRUE;
+                scheduler.execute(this::scheduledSync);
+            }
+            return seq;
+        } catch (HdfsException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("write {}", e.getMessage());
+            throw new HdfsException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 写入一行文本
+     *
+     * @param line 文本
+     * @return 记录序号
+     * @throws HdfsException hdfs异常
+     */
+    public long writeLine(String line) throws HdfsException {
+        byte[] bytes = StrUtil.bytes(line, StandardCharsets.UTF_8);
+        byte[] record = new byte[bytes.length + LINE_SEPARATOR.length];
+        System.arraycopy(bytes, 0, record, 0, bytes.length);
+        System.arraycopy(LINE_SEPARATOR, 0, record, bytes.length, LINE_SEPARATOR.length);
+        return write(record);
+    }
+
+    /**
+     * 写入记录并等待其被提交
+     *
+     * @param record 记录
+     * @throws HdfsException hdfs异常
+     */
+    public void writeAndSync(byte[] record) throws HdfsException {
+        sync(write(record));
+    }
+
+    /**
+     * 等待指定序号之前的记录被提交, 并发的等待者共享同一次 hflush/hsync
+     *
+     * @param seq 记录序号
+     * @throws HdfsException hdfs异常, 或记录所在文件滚动时提交失败
+     */
+    public void sync(long seq) throws HdfsException {
+        lock.lock();
+        try {
+            while (syncedSeq < seq) {
+                if (syncing) {
+                    synced.await();
+                    continue;
+                }
+                syncing = Boolean.TRUE;
+                long covering = writtenSeq;
+                FSDataOutputStream stream = out;
+                String file = ObjectUtil.isNull(stream) ? null : inProgress.toUri().getPath();
+                unsyncedBytes = 0;
+                lock.unlock();
+                boolean success = Boolean.FALSE;
+                try {
+                    if (ObjectUtil.isNotNull(stream)) {
+                        JfrRecorder.record("writerSync", file, Boolean.FALSE, () -> {
+                            commit(stream);
+                            return null;
+                        });
+                    }
+                    success = Boolean.TRUE;
+                } finally {
+                    lock.lock();
+                    syncing = Boolean.FALSE;
+                    if (success) {
+                        syncedSeq = Math.max(syncedSeq, covering);
+                    }
+                    synced.signalAll();
+                }
+            }
+            Map.Entry<Long, Long> lost = failed.floorEntry(seq);
+            if (ObjectUtil.isNotNull(lost) && seq <= lost.getValue()) {
+                throw new HdfsException("记录未能提交, 所在文件滚动失败, seq: {}", seq);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HdfsException(e);
+        } catch (HdfsException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("sync {}", e.getMessage());
+            throw new HdfsException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 提交当前文件并滚动, 下次写入时创建新文件
+     *
+     * @throws HdfsException hdfs异常
+     */
+    public void roll() throws HdfsException {
+        lock.lock();
+        try {
+            while (syncing) {
+                synced.awaitUninterruptibly();
+            }
+            if (ObjectUtil.isNull(out)) {
+                return;
+            }
+            JfrRecorder.record("writerRoll", inProgress.toUri().getPath(), Boolean.FALSE, () -> {
+                FSDataOutputStream stream = out;
+                out = null;
+                boolean committed = Boolean.FALSE;
+                try {
+                    commit(stream);
+                    stream.close();
+                    committed = Boolean.TRUE;
+                } finally {
+                    if (!committed) {
+                        // 关闭以释放租约, 文件保留前缀, 其中未提交的记录视为失败
+                        IoUtil.close(stream);
+                        if (writtenSeq > syncedSeq) {
+                            failed.put(syncedSeq + 1, writtenSeq);
+                        }
+                    }
+                    syncedSeq = writtenSeq;
+                    synced.signalAll();
+                }
+                Path completed = new Path(directory, inProgress.getName().substring(IN_PROGRESS_PREFIX.length()));
+                if (!fileSystem.rename(inProgress, completed)) {
+                    throw new HdfsException("rename {} to {} failed", inProgress, completed);
+                }
+                return null;
+            });
+        } catch (HdfsException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("roll {}", e.getMessage());
+            throw new HdfsException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = Boolean.TRUE;
+        } finally {
+            lock.unlock();
+        }
+        scheduler.shutdownNow();
+        roll();
+    }
+
+    private void open() throws Exception {
+        String name = IN_PROGRESS_PREFIX + prefix + "-" + DateUtil.format(DateUtil.date(), "yyyyMMddHHmmss")
+                + "-" + IdUtil.fastSimpleUUID();
+        inProgress = new Path(directory, name);
+        out = fileSystem.create(inProgress, Boolean.FALSE);
+        openedAt = System.currentTimeMillis();
+        fileBytes = 0;
+    }
+
+    private void commit(FSDataOutputStream stream) throws Exception {
+        if (hsync) {
+            stream.hsync();
+        } else {
+            stream.hflush();
+        }
+    }
+
+    private void scheduledSync() {
+        long seq;
+        lock.lock();
+        try {
+            syncScheduled = Boolean.FALSE;
+            seq = writtenSeq;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            sync(seq);
+        } catch (Exception e) {
+            logger.error("scheduledSync {}", e.getMessage());
+        }
+    }
+
+    private void tick() {
+        try {
+            long seq;
+            boolean expired;
+            lock.lock();
+            try {
+                seq = writtenSeq;
+                expired = ObjectUtil.isNotNull(out) && System.currentTimeMillis() - openedAt >= rollInterval;
+            } finally {
+                lock.unlock();
+            }
+            if (expired) {
+                roll();
+            } else {
+                sync(seq);
+            }
+        } catch (Exception e) {
+            logger.error("tick {}", e.getMessage());
+        }
+    }
+
+}
@@ -1,6 +1,7 @@
 package cn.darkjrong.spring.boot.autoconfigure;
 
 import org.apache.hadoop.fs.FileSystem;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -20,9 +21,10 @@ import org.springframework.context.annotation.Configuration;
 public class HdfsAutoConfiguration {
 
     @Bean
-    public HdfsFactoryBean hdfsFactoryBean(FileSystem fileSystem) {
+    public HdfsFactoryBean hdfsFactoryBean(ObjectProvider<FileSystem> fileSystem, HdfsProperties hdfsProperties) {
         HdfsFactoryBean hdfsFactoryBean = new HdfsFactoryBean();
-        hdfsFactoryBean.setFileSystem(fileSystem);
+        hdfsFactoryBean.setFileSystemSupplier(fileSystem::getObject);
+        hdfsFactoryBean.setHdfsProperties(hdfsProperties);
         return hdfsFactoryBean;
     }
 
@@ -7,6 +7,8 @@ import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.InitializingBean;
 
+import java.util.function.Supplier;
+
 /**
  * hdfs工厂bean
  *
@@ -17,11 +19,21 @@ public class HdfsFactoryBean implements FactoryBean<HdfsTemplate>, InitializingB
 
     private HdfsTemplate hdfsTemplate;
     private FileSystem fileSystem;
+    private Supplier<FileSystem> fileSystemSupplier;
+    private HdfsProperties hdfsProperties;
 
     public void setFileSystem(FileSystem fileSystem) {
         this.fileSystem = fileSystem;
     }
 
+    public void setFileSystemSupplier(Supplier<FileSystem> fileSystemSupplier) {
+        this.fileSystemSupplier = fileSystemSupplier;
+    }
+
+    public void setHdfsProperties(HdfsProperties hdfsProperties) {
+        this.hdfsProperties = hdfsProperties;
+    }
+
     @Override
     public HdfsTemplate getObject() {
         return this.hdfsTemplate;
@@ -46,6 +58,7 @@ public class HdfsFactoryBean implements FactoryBean<HdfsTemplate>, InitializingB
 
     @Override
     public void afterPropertiesSet() {
-        hdfsTemplate = new HdfsTemplate(fileSystem);
+        Supplier<FileSystem> supplier = ObjectUtil.isNull(fileSystemSupplier) ? () -> fileSystem : fileSystemSupplier;
+        hdfsTemplate = new HdfsTemplate(supplier, ObjectUtil.isNull(hdfsProperties) ? new HdfsProperties() : hdfsProperties);
     }
 }
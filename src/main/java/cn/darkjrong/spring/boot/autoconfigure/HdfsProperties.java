@@ -1,8 +1,16 @@
 package cn.darkjrong.spring.boot.autoconfigure;
 
+import cn.darkjrong.hdfs.config.TuningProfile;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * HDFS 属性
  *
@@ -38,6 +46,568 @@ public class HdfsProperties {
      */
     private String username;
 
+    /**
+     * 客户端调优配置组(throughput, low-latency, small-files), 可组合, 后配置的覆盖先配置的
+     */
+    private List<TuningProfile> profiles = new ArrayList<>();
+
+    /**
+     * 原样传入hadoop {@link org.apache.hadoop.conf.Configuration} 的参数, 优先级最高;
+     * 参数名包含特殊字符时使用 "[dfs.client.socket-timeout]" 形式
+     */
+    private Map<String, String> hadoop = new LinkedHashMap<>();
+
+    /**
+     * 是否延迟到首次访问时才创建文件系统, 默认true, NameNode不可用时不阻塞应用启动
+     */
+    private boolean lazyInit = Boolean.TRUE;
+
+    /**
+     * 启动后台预热配置
+     */
+    private WarmUp warmUp = new WarmUp();
+
+    /**
+     * 并行操作(合并、批量处理等)线程数, 默认CPU核数*2
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * 并行操作自适应并发限制配置
+     */
+    private Limiter limiter = new Limiter();
+
+    /**
+     * 单次元数据操作超时时间, 超时后中断调用, 默认0不限制
+     */
+    private Duration timeout = Duration.ZERO;
+
+    /**
+     * 单次数据操作(上传、下载单个文件)超时时间, 超时后中断调用, 默认0不限制; 复制、导入压缩包等多文件作业不受单次超时限制
+     */
+    private Duration dataTimeout = Duration.ZERO;
+
+    /**
+     * 对冲调用配置
+     */
+    private Hedge hedge = new Hedge();
+
+    /**
+     * 是否合并并发的相同请求(exist, getContentSummary, download), 默认false
+     */
+    private boolean coalesce = Boolean.FALSE;
+
+    /**
+     * 限流配置
+     */
+    private Throttle throttle = new Throttle();
+
+    /**
+     * 熔断配置
+     */
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    /**
+     * 隔离舱配置
+     */
+    private Bulkhead bulkhead = new Bulkhead();
+
+    /**
+     * 小文件打包配置
+     */
+    private Pack pack = new Pack();
+
+    /**
+     * 小文件合并配置
+     */
+    private Compact compact = new Compact();
+
+    /**
+     * 滚动写入配置
+     */
+    private Writer writer = new Writer();
+
+    /**
+     * 本地缓冲上传配置
+     */
+    private Spool spool = new Spool();
+
+    /**
+     * 传输缓冲池配置
+     */
+    private Buffer buffer = new Buffer();
+
+    /**
+     * 顺序读预读配置
+     */
+    private Prefetch prefetch = new Prefetch();
+
+    /**
+     * 压缩包导入限制
+     */
+    private Archive archive = new Archive();
+
+    /**
+     * 命名空间变更订阅
+     */
+    private Inotify inotify = new Inotify();
+
+    /**
+     * 完整性审计配置
+     */
+    private Audit audit = new Audit();
+
+    /**
+     * 目录用量缓存配置
+     */
+    private Usage usage = new Usage();
+
+    /**
+     * 分层存储配置
+     */
+    private Tiering tiering = new Tiering();
+
+    /**
+     * 内容寻址去重上传配置
+     */
+    private Dedup dedup = new Dedup();
+
+    /**
+     * 本地命名空间索引配置
+     */
+    private Index index = new Index();
+
+    @Data
+    public static class WarmUp {
+
+        /**
+         * 是否在启动后后台预热, 默认false
+         */
+        private boolean enabled = Boolean.FALSE;
+
+        /**
+         * 预热前等待时长, 默认0
+         */
+        private Duration delay = Duration.ZERO;
+
+        /**
+         * 预取元数据的路径, 目录同时预取子目录列表
+         */
+        private List<String> paths = new ArrayList<>();
+
+    }
+
+    @Data
+    public static class Limiter {
+
+        /**
+         * 初始并发上限, 默认0使用并行线程数的一半
+         */
+        private int initialLimit = 0;
+
+        /**
+         * 最小并发上限, 默认4, 不超过并行线程数
+         */
+        private int minLimit = 4;
+
+        /**
+         * 延迟超过基线的该倍数时减少并发上限, 默认2
+         */
+        private double latencyTolerance = 2.0;
+
+        /**
+         * 减少并发上限时的乘数, 默认0.9
+         */
+        private double backoffRatio = 0.9;
+
+    }
+
+    @Data
+    public static class Hedge {
+
+        /**
+         * 幂等元数据调用(exist, getFileLinkStatus, listStatus)超过该时长未返回时发起对冲调用, 默认0不对冲
+         */
+        private Duration metadataDelay = Duration.ZERO;
+
+        /**
+         * 数据对冲读线程数, 对应 dfs.client.hedged.read.threadpool.size, 默认0不开启
+         */
+        private int readThreadPoolSize = 0;
+
+        /**
+         * 数据读取超过该时长未返回时向其他DataNode发起对冲读, 对应 dfs.client.hedged.read.threshold.millis, 默认500毫秒
+         */
+        private Duration readThreshold = Duration.ofMillis(500);
+
+    }
+
+    @Data
+    public static class Throttle {
+
+        /**
+         * 每秒元数据操作数, 默认0不限制
+         */
+        private double metadataOpsPerSecond = 0;
+
+        /**
+         * 每秒数据操作(上传、下载)数, 默认0不限制
+         */
+        private double dataOpsPerSecond = 0;
+
+        /**
+         * 每秒传输字节数, 默认0不限制
+         */
+        private long bytesPerSecond = 0;
+
+        /**
+         * 允许的突发时长, 令牌桶容量为速率乘以该时长, 默认1秒
+         */
+        private Duration burst = Duration.ofSeconds(1);
+
+        /**
+         * 未指定优先级时的默认优先级, 批量任务所在服务可配置为BATCH
+         */
+        private cn.darkjrong.hdfs.support.Throttle.Priority defaultPriority
+                = cn.darkjrong.hdfs.support.Throttle.Priority.INTERACTIVE;
+
+    }
+
+    @Data
+    public static class CircuitBreaker {
+
+        /**
+         * 是否启用熔断, 默认false
+         */
+        private boolean enabled = Boolean.FALSE;
+
+        /**
+         * 统计最近的调用次数, 默认50
+         */
+        private int windowSize = 50;
+
+        /**
+         * 统计次数达到该值后才判断是否打开, 默认10
+         */
+        private int minimumCalls = 10;
+
+        /**
+         * 失败率阈值, 默认0.5
+         */
+        private double failureRateThreshold = 0.5;
+
+        /**
+         * 超过该时长的调用计为慢调用, 默认10秒
+         */
+        private Duration slowCallThreshold = Duration.ofSeconds(10);
+
+        /**
+         * 慢调用率阈值, 默认1, 全部为慢调用时才打开
+         */
+        private double slowCallRateThreshold = 1.0;
+
+        /**
+         * 打开状态持续时长, 之后放行探测调用, 默认30秒
+         */
+        private Duration openDuration = Duration.ofSeconds(30);
+
+        /**
+         * 半开状态放行的探测调用数, 默认3
+         */
+        private int halfOpenCalls = 3;
+
+    }
+
+    @Data
+    public static class Bulkhead {
+
+        /**
+         * 元数据操作最大并发数, 默认0不限制
+         */
+        private int metadataConcurrency = 0;
+
+        /**
+         * 数据操作(上传、下载)最大并发数, 默认0不限制
+         */
+        private int dataConcurrency = 0;
+
+        /**
+         * 并发已满时的最长等待时间, 默认0不等待
+         */
+        private Duration maxWait = Duration.ZERO;
+
+    }
+
+    @Data
+    public static class Pack {
+
+        /**
+         * 单个容器文件最大字节数, 默认128MB
+         */
+        private long maxContainerSize = 128L * 1024 * 1024;
+
+        /**
+         * 缓存的容器文件(输入流及索引)数量, 默认64
+         */
+        private int cacheSize = 64;
+
+    }
+
+    @Data
+    public static class Compact {
+
+        /**
+         * 小于该字节数的文件参与合并, 默认16MB
+         */
+        private long smallFileSize = 16L * 1024 * 1024;
+
+        /**
+         * 修改时间距今超过该时长的文件才参与合并, 默认1小时
+         */
+        private Duration minAge = Duration.ofHours(1);
+
+        /**
+         * 合并后文件的目标字节数, 小于等于0时使用块大小
+         */
+        private long targetSize = 0;
+
+    }
+
+    @Data
+    public static class Writer {
+
+        /**
+         * 未提交字节数达到该值时触发组提交, 默认1MB
+         */
+        private long flushBytes = 1024L * 1024;
+
+        /**
+         * 组提交间隔, 默认1秒
+         */
+        private Duration flushInterval = Duration.ofSeconds(1);
+
+        /**
+         * 文件达到该字节数时滚动, 默认128MB
+         */
+        private long rollSize = 128L * 1024 * 1024;
+
+        /**
+         * 文件打开超过该时长时滚动, 默认1小时
+         */
+        private Duration rollInterval = Duration.ofHours(1);
+
+        /**
+         * 是否使用hsync落盘, 默认false使用hflush
+         */
+        private boolean hsync = Boolean.FALSE;
+
+    }
+
+    @Data
+    public static class Spool {
+
+        /**
+         * 是否在启动时恢复未完成的上传任务, 默认false, 首次异步上传时才恢复
+         */
+        private boolean enabled = Boolean.FALSE;
+
+        /**
+         * 本地缓冲目录, 默认 ${java.io.tmpdir}/hdfs-spool
+         */
+        private String directory = System.getProperty("java.io.tmpdir") + File.separator + "hdfs-spool";
+
+        /**
+         * 上传线程数, 默认4
+         */
+        private int parallelism = 4;
+
+        /**
+         * 最大重试次数, 默认3
+         */
+        private int maxRetries = 3;
+
+        /**
+         * 重试间隔, 按重试次数递增, 默认5秒
+         */
+        private Duration retryInterval = Duration.ofSeconds(5);
+
+    }
+
+    @Data
+    public static class Audit {
+
+        /**
+         * 每秒最多获取校验和的文件数, 获取校验和需读取各DataNode上的块校验和, 0表示不限制, 默认0
+         */
+        private double filesPerSecond = 0;
+
+    }
+
+    @Data
+    public static class Usage {
+
+        /**
+         * 用量缓存有效期, 超过后同步重新统计, 超过该时间未被访问的目录不再刷新, 默认5分钟
+         */
+        private Duration ttl = Duration.ofMinutes(5);
+
+        /**
+         * 后台刷新间隔, 0表示不刷新, 默认1分钟
+         */
+        private Duration refreshInterval = Duration.ofMinutes(1);
+
+    }
+
+    @Data
+    public static class Tiering {
+
+        /**
+         * 每秒最多处理的文件数, 0表示不限制, 默认0; 重写纠删码时的字节速率受 throttle.bytes-per-second 限制
+         */
+        private double filesPerSecond = 0;
+
+    }
+
+    @Data
+    public static class Dedup {
+
+        /**
+         * 内容寻址存储根目录, 默认 /.content-store
+         */
+        private String root = "/.content-store";
+
+        /**
+         * 并行计算内容ID的段长, 修改后已存储内容的ID与新上传的不一致, 默认64MB
+         */
+        private long partSize = 64L * 1024 * 1024;
+
+    }
+
+    @Data
+    public static class Index {
+
+        /**
+         * 是否在启动后后台构建本地命名空间索引, 默认false
+         */
+        private boolean enabled = Boolean.FALSE;
+
+        /**
+         * 建立索引的目录, 查询其他目录时直接访问NameNode
+         */
+        private List<String> roots = new ArrayList<>();
+
+        /**
+         * fsimage导出文件(hdfs oiv -p Delimited), 为空时并行列出索引目录构建
+         */
+        private String image;
+
+        /**
+         * fsimage的事务ID, 大于0时从该事务之后开始增量更新, 否则从构建开始时的最新位置开始
+         */
+        private long imageTxid = -1;
+
+        /**
+         * 是否通过inotify增量更新, 需要HDFS超级用户权限, 默认true
+         */
+        private boolean follow = Boolean.TRUE;
+
+        /**
+         * 增量条目超过该数时合并为新的堆外有序段, 默认100000
+         */
+        private int compactThreshold = 100000;
+
+        /**
+         * 单个堆外块的最大字节数, 默认64MB
+         */
+        private int chunkSize = 64 * 1024 * 1024;
+
+        /**
+         * 查询未建立索引的目录时最多列出的文件数, 超过时查询失败, 小于等于0时不限制, 默认1000000
+         */
+        private long maxScanFiles = 1000000;
+
+    }
+
+    @Data
+    public static class Buffer {
+
+        /**
+         * 单个缓冲区字节数, 默认128KB
+         */
+        private int bufferSize = 128 * 1024;
+
+        /**
+         * 所有传输缓冲区的内存上限, 默认64MB
+         */
+        private long capacity = 64L * 1024 * 1024;
+
+        /**
+         * 每次分配的块字节数, 默认4MB
+         */
+        private long slabSize = 4L * 1024 * 1024;
+
+        /**
+         * 内存耗尽时获取缓冲区的最长等待时间, 超时后操作失败, 默认30秒
+         */
+        private Duration acquireTimeout = Duration.ofSeconds(30);
+
+    }
+
+    @Data
+    public static class Prefetch {
+
+        /**
+         * 预读分片数, 分片大小为 buffer.buffer-size, 默认32
+         */
+        private int window = 32;
+
+        /**
+         * 单个流预读占用的内存上限, 默认16MB
+         */
+        private long maxMemory = 16L * 1024 * 1024;
+
+    }
+
+    @Data
+    public static class Archive {
+
+        /**
+         * 单个压缩包最多文件条目数, 小于等于0不限制, 默认100000
+         */
+        private int maxEntries = 100000;
+
+        /**
+         * 单个压缩包解压后最多总字节数, 小于等于0不限制, 默认100GB
+         */
+        private long maxTotalBytes = 100L * 1024 * 1024 * 1024;
+
+        /**
+         * 解压后字节数与压缩字节数的最大比值, 超过1MB后检查, 小于等于0不限制, 默认100
+         */
+        private double maxCompressionRatio = 100;
+
+    }
+
+    @Data
+    public static class Inotify {
+
+        /**
+         * 每批最多回调的事件数, 默认100
+         */
+        private int batchSize = 100;
+
+        /**
+         * 未满一批时最长等待时间, 默认1秒
+         */
+        private Duration batchInterval = Duration.ofSeconds(1);
+
+        /**
+         * 读取或回调失败后的重试间隔, 默认5秒
+         */
+        private Duration retryInterval = Duration.ofSeconds(5);
+
+    }
+
 
 
 
@@ -1,14 +1,36 @@
 package cn.darkjrong.hdfs;
 
 import cn.darkjrong.hdfs.config.HdfsConfig;
+import cn.darkjrong.hdfs.config.TuningProfile;
+import cn.darkjrong.hdfs.copy.CopyOptions;
+import cn.darkjrong.hdfs.index.IndexQuery;
+import cn.darkjrong.hdfs.index.NamespaceIndex;
+import cn.darkjrong.hdfs.inotify.ChangeFeed;
+import cn.darkjrong.hdfs.jfr.JfrRecorder;
+import cn.darkjrong.hdfs.pack.PackKey;
+import cn.darkjrong.hdfs.pack.PackWriter;
+import cn.darkjrong.hdfs.reader.PrefetchInputStream;
+import cn.darkjrong.hdfs.support.Throttle;
+import cn.darkjrong.hdfs.tiering.TieringRule;
+import cn.darkjrong.hdfs.usage.UsageOrder;
+import cn.darkjrong.hdfs.writer.RollingWriter;
 import cn.darkjrong.spring.boot.autoconfigure.HdfsFactoryBean;
 import cn.darkjrong.spring.boot.autoconfigure.HdfsProperties;
+import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.thread.ThreadUtil;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.permission.AclStatus;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * hdfs操作测试
@@ -22,22 +44,29 @@ public class HdfsTemplateTest {
 
     @BeforeEach
     public void setUp() throws Exception {
+        hdfsTemplate = createTemplate(hdfsProperties -> {});
+    }
 
+    /**
+     * 创建模板, 各功能的测试按需调整配置
+     */
+    private static HdfsTemplate createTemplate(Consumer<HdfsProperties> customizer) throws Exception {
         HdfsProperties hdfsProperties = new HdfsProperties();
         hdfsProperties.setNamespace("/data");
         hdfsProperties.setEnabled(Boolean.TRUE);
         hdfsProperties.setReplication(1);
         hdfsProperties.setUsername("Mr.J");
         hdfsProperties.setServerAddress("hdfs://localhost:9000");
+        customizer.accept(hdfsProperties);
 
         HdfsConfig hdfsConfig = new HdfsConfig(hdfsProperties);
         FileSystem fileSystem = hdfsConfig.createFileSystem(hdfsConfig.getConfiguration());
         HdfsFactoryBean hdfsFactoryBean = new HdfsFactoryBean();
         hdfsFactoryBean.setFileSystem(fileSystem);
+        hdfsFactoryBean.setHdfsProperties(hdfsProperties);
         hdfsFactoryBean.afterPropertiesSet();
 
-        hdfsTemplate = hdfsFactoryBean.getObject();
-
+        return hdfsFactoryBean.getObject();
     }
 
     @Test
@@ -137,6 +166,184 @@ public class HdfsTemplateTest {
         System.out.println(hdfsTemplate.listXAttrs("/data/2.jpg"));
     }
 
+    @Test
+    public void pack() {
+        PackKey key;
+        try (PackWriter packWriter = hdfsTemplate.createPackWriter("/data/pack")) {
+            key = packWriter.append("1.txt", "hello".getBytes());
+            packWriter.append("2.txt", "world".getBytes());
+        }
+        System.out.println(new String(hdfsTemplate.readPacked(key.toString())));
+        System.out.println(new String(hdfsTemplate.readPacked(key.getContainer(), "2.txt")));
+    }
+
+    @Test
+    public void compact() {
+        System.out.println(hdfsTemplate.compact("/data"));
+    }
+
+    @Test
+    public void rollingWriter() {
+        try (RollingWriter rollingWriter = hdfsTemplate.createRollingWriter("/data/audit", "audit")) {
+            for (int i = 0; i < 100; i++) {
+                rollingWriter.writeLine("record " + i);
+            }
+            rollingWriter.writeAndSync("last".getBytes());
+        }
+    }
+
+    @Test
+    public void uploadAsync() {
+        System.out.println(hdfsTemplate.uploadAsync("F:/我的图片/美女/1.jpg", "/data/3.jpg"));
+    }
+
+    @Test
+    public void withDeadline() {
+        System.out.println(hdfsTemplate.withDeadline(Duration.ofSeconds(2), () -> hdfsTemplate.exist("/data/3.jpg")));
+    }
+
+    @Test
+    public void listStatusAll() {
+        System.out.println(hdfsTemplate.listStatusAll(CollectionUtil.newArrayList("/data", "/data2")));
+        System.out.println(hdfsTemplate.getLimiter().getLimit());
+    }
+
+    @Test
+    public void withPriority() {
+        System.out.println(hdfsTemplate.withPriority(Throttle.Priority.BATCH,
+                () -> hdfsTemplate.upload("F:/我的图片/美女/1.jpg", "/data/4.jpg")));
+    }
+
+    @Test
+    public void circuitBreaker() throws Exception {
+        HdfsTemplate hdfsTemplate = createTemplate(hdfsProperties -> hdfsProperties.getCircuitBreaker().setEnabled(Boolean.TRUE));
+        for (int i = 0; i < 20; i++) {
+            System.out.println(hdfsTemplate.exist("/data/3.jpg"));
+        }
+        System.out.println(hdfsTemplate.getOperationInvoker().getCircuitBreaker().getState());
+    }
+
+    @Test
+    public void warmUp() throws Exception {
+        System.out.println(hdfsTemplate.warmUp().get());
+    }
+
+    @Test
+    public void profiles() {
+        HdfsProperties hdfsProperties = new HdfsProperties();
+        hdfsProperties.setServerAddress("hdfs://localhost:9000");
+        hdfsProperties.setReplication(1);
+        hdfsProperties.setProfiles(CollectionUtil.newArrayList(TuningProfile.THROUGHPUT, TuningProfile.SMALL_FILES));
+        hdfsProperties.getHadoop().put("dfs.client.socket-timeout", "30000");
+        org.apache.hadoop.conf.Configuration configuration = new HdfsConfig(hdfsProperties).getConfiguration();
+        System.out.println(configuration.get("dfs.client.socketcache.capacity"));
+        System.out.println(configuration.get("dfs.client.socket-timeout"));
+    }
+
+    @Test
+    public void groupByHost() {
+        System.out.println(hdfsTemplate.getBlockSplits("/data/3.jpg"));
+        System.out.println(hdfsTemplate.groupByHost("/data"));
+    }
+
+    @Test
+    public void openPrefetching() throws Exception {
+        try (PrefetchInputStream in = hdfsTemplate.openPrefetching("/data/3.jpg")) {
+            System.out.println(IoUtil.readBytes(in).length);
+        }
+    }
+
+    @Test
+    public void ingestArchive() {
+        System.out.println(hdfsTemplate.ingestArchive("F:/我的图片/美女.zip", "/data/美女", Boolean.TRUE));
+    }
+
+    @Test
+    public void copy() {
+        CopyOptions copyOptions = new CopyOptions();
+        copyOptions.setOverwrite(Boolean.TRUE);
+        System.out.println(hdfsTemplate.copy("/data/美女", "hdfs://archive:9000/data/美女", copyOptions));
+    }
+
+    @Test
+    public void replicate() {
+        System.out.println(hdfsTemplate.replicate("/data", "hdfs://archive:9000/backup/data", "dr", new CopyOptions()));
+    }
+
+    @Test
+    public void subscribe() {
+        ChangeFeed feed = hdfsTemplate.subscribe("F:/hdfs/change-feed.txid", CollectionUtil.newArrayList("/data"),
+                events -> events.forEach(System.out::println));
+        ThreadUtil.sleep(60000);
+        feed.close();
+        System.out.println(feed.getLastTxid());
+    }
+
+    @Test
+    public void audit() {
+        System.out.println(hdfsTemplate.auditLocal("/data/美女", "F:/我的图片/美女"));
+        System.out.println(hdfsTemplate.audit("/data/美女", "hdfs://archive:9000/data/美女"));
+        System.out.println(hdfsTemplate.writeManifest("/data/美女", "F:/hdfs/美女.manifest"));
+        System.out.println(hdfsTemplate.auditManifest("/data/美女", "F:/hdfs/美女.manifest"));
+    }
+
+    @Test
+    public void topUsage() {
+        List<String> tenants = CollectionUtil.newArrayList("/data", "/user/hive", "/tmp");
+        System.out.println(hdfsTemplate.getUsage(tenants));
+        System.out.println(hdfsTemplate.topUsage(tenants, UsageOrder.SPACE_HEADROOM, 2));
+    }
+
+    @Test
+    public void tier() {
+        TieringRule rule = new TieringRule();
+        rule.setPath("/data/logs");
+        rule.setNotAccessedFor(Duration.ofDays(90));
+        rule.setMinSize(1024 * 1024);
+        rule.setErasureCodingPolicy("RS-6-3-1024k");
+        System.out.println(hdfsTemplate.tier(rule, System.out::println));
+    }
+
+    @Test
+    public void uploadDedup() {
+        System.out.println(hdfsTemplate.uploadDedup("F:/我的图片/美女.zip", "images/美女-v1.zip"));
+        System.out.println(hdfsTemplate.uploadDedup("F:/我的图片/美女.zip", "images/美女-v2.zip"));
+        System.out.println(hdfsTemplate.getContentPath("images/美女-v2.zip"));
+    }
+
+    @Test
+    public void jfr() throws Exception {
+        Assumptions.assumeTrue(JfrRecorder.isAvailable(), "JFR不可用");
+        // 反射调用 jdk.jfr, 没有JFR的JDK也能编译测试
+        Class<?> type = Class.forName("jdk.jfr.Recording");
+        try (AutoCloseable recording = (AutoCloseable) type.getConstructor().newInstance()) {
+            type.getMethod("enable", String.class).invoke(recording, "cn.darkjrong.hdfs.Operation");
+            type.getMethod("enable", String.class).invoke(recording, "cn.darkjrong.hdfs.Transfer");
+            type.getMethod("start").invoke(recording);
+            hdfsTemplate.exist("/test");
+            hdfsTemplate.download("/test/美女.zip", "F:/");
+            type.getMethod("stop").invoke(recording);
+            type.getMethod("dump", Path.class).invoke(recording, Paths.get("F:/hdfs.jfr"));
+        }
+    }
+
+    @Test
+    public void find() throws Exception {
+        HdfsTemplate hdfsTemplate = createTemplate(hdfsProperties -> {
+            hdfsProperties.getIndex().getRoots().add("/data/logs");
+            hdfsProperties.getIndex().setFollow(Boolean.FALSE);
+        });
+        IndexQuery query = new IndexQuery();
+        query.setGlob("/data/logs/*/2022-01-*.log");
+        query.setModifiedSince(System.currentTimeMillis() - Duration.ofDays(7).toMillis());
+        query.setMinSize(1024 * 1024);
+        System.out.println(hdfsTemplate.find(query));
+
+        NamespaceIndex index = hdfsTemplate.buildIndex();
+        System.out.println(index.size() + " " + index.getMemory());
+        System.out.println(hdfsTemplate.find(query));
+    }
+
 
 
 
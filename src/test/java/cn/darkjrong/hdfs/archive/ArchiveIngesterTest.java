@@ -0,0 +1,143 @@
+package cn.darkjrong.hdfs.archive;
+
+import cn.darkjrong.hdfs.buffer.BufferPool;
+import cn.darkjrong.hdfs.exception.HdfsException;
+import cn.hutool.core.io.FileUtil;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 压缩包导入测试, 使用本地文件系统
+ *
+ * @author Rong.Jia
+ * @date 2022/01/18
+ */
+public class ArchiveIngesterTest {
+
+    @TempDir
+    File directory;
+
+    private FileSystem fileSystem;
+    private ExecutorService executor;
+    private Path dir;
+    private BufferPool bufferPool;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        fileSystem = FileSystem.getLocal(new Configuration());
+        executor = Executors.newFixedThreadPool(2);
+        dir = new Path(directory.toURI());
+        bufferPool = new BufferPool(4096, 64 * 1024, 16 * 1024, 1000);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        fileSystem.close();
+    }
+
+    @Test
+    public void ingestZip() throws Exception {
+        File archive = FileUtil.writeBytes(zip("a.txt", "b/c.txt"), FileUtil.file(directory, "in.zip"));
+        IngestManifest manifest = ingester(0, 0, 0).ingest(archive, new Path(dir, "out"), Boolean.FALSE);
+
+        assertEquals(2, manifest.getEntries().size());
+        assertTrue(manifest.getFailed().isEmpty());
+        assertTrue(fileSystem.exists(new Path(dir, "out/b/c.txt")));
+        assertEquals(0, leftovers(new Path(dir, "out")));
+    }
+
+    @Test
+    public void rejectDuplicateEntry() throws Exception {
+        IngestManifest manifest = ingester(0, 0, 0).ingest(new ByteArrayInputStream(zip("a.txt", "./a.txt")),
+                ArchiveFormat.ZIP, dir, Boolean.TRUE);
+
+        assertEquals(1, manifest.getEntries().size());
+        assertEquals("./a.txt", manifest.getFailed().get(0));
+    }
+
+    @Test
+    public void keepExistingFile() throws Exception {
+        fileSystem.create(new Path(dir, "a.txt")).close();
+        IngestManifest manifest = ingester(0, 0, 0).ingest(new ByteArrayInputStream(zip("a.txt")),
+                ArchiveFormat.ZIP, dir, Boolean.FALSE);
+
+        assertEquals(1, manifest.getFailed().size());
+        assertEquals(0, fileSystem.getFileStatus(new Path(dir, "a.txt")).getLen());
+        assertEquals(0, leftovers(dir));
+    }
+
+    @Test
+    public void abortOnLimits() throws Exception {
+        File archive = FileUtil.writeBytes(zip("a", "b", "c"), FileUtil.file(directory, "in.zip"));
+        assertThrows(HdfsException.class, () -> ingester(2, 0, 0).ingest(archive, new Path(dir, "out"), Boolean.TRUE));
+
+        byte[] bomb = zip(new byte[4 * 1024 * 1024]);
+        assertThrows(HdfsException.class, () -> ingester(0, 0, 10).ingest(new ByteArrayInputStream(bomb),
+                ArchiveFormat.ZIP, new Path(dir, "bomb"), Boolean.TRUE));
+        assertThrows(HdfsException.class, () -> ingester(0, 1024, 0).ingest(new ByteArrayInputStream(bomb),
+                ArchiveFormat.ZIP, new Path(dir, "total"), Boolean.TRUE));
+        assertFalse(fileSystem.exists(new Path(dir, "bomb/a")));
+        assertEquals(0, leftovers(new Path(dir, "bomb")));
+    }
+
+    private ArchiveIngester ingester(int maxEntries, long maxTotalBytes, double maxCompressionRatio) {
+        return new ArchiveIngester(fileSystem, executor, bufferPool, null, maxEntries, maxTotalBytes, maxCompressionRatio);
+    }
+
+    private int leftovers(Path path) throws IOException {
+        if (!fileSystem.exists(path)) {
+            return 0;
+        }
+        int count = 0;
+        for (FileStatus status : fileSystem.listStatus(path)) {
+            if (status.getPath().getName().endsWith(".ingest")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static byte[] zip(String... names) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            for (String name : names) {
+                out.putNextEntry(new ZipEntry(name));
+                out.write(name.getBytes());
+                out.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] zip(byte[] content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            out.putNextEntry(new ZipEntry("a"));
+            out.write(content);
+            out.closeEntry();
+        }
+        return bytes.toByteArray();
+    }
+
+}
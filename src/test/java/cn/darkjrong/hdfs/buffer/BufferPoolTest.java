@@ -0,0 +1,123 @@
+package cn.darkjrong.hdfs.buffer;
+
+import cn.darkjrong.hdfs.exception.HdfsException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 传输缓冲池内存上限测试
+ *
+ * @author Rong.Jia
+ * @date 2022/01/09
+ */
+public class BufferPoolTest {
+
+    @Test
+    public void rejectWhenBudgetExhausted() {
+        BufferPool pool = new BufferPool(1024, 4096, 2048, 0);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(1024, pool.getBuffer(Boolean.FALSE, 1024).capacity());
+        }
+        assertEquals(4096, pool.getAllocatedBytes());
+        assertThrows(HdfsException.class, () -> pool.getBuffer(Boolean.FALSE, 1024));
+        assertThrows(HdfsException.class, () -> pool.getBuffer(Boolean.TRUE, 1024));
+        assertEquals(4, pool.getOutstanding());
+    }
+
+    @Test
+    public void keepSlabWhileSliceInUse() {
+        BufferPool pool = new BufferPool(1024, 4096, 2048, 0);
+        ByteBuffer first = pool.getBuffer(Boolean.FALSE, 1024);
+        ByteBuffer second = pool.getBuffer(Boolean.FALSE, 1024);
+        pool.getBuffer(Boolean.FALSE, 1024);
+        assertEquals(4096, pool.getAllocatedBytes());
+
+        // 第一个块中仍有缓冲区在使用, 不能回收
+        pool.putBuffer(first);
+        assertThrows(HdfsException.class, () -> pool.getBuffer(Boolean.TRUE, 1024));
+        assertEquals(4096, pool.getAllocatedBytes());
+
+        // 已归还的缓冲区仍可复用
+        assertNotNull(pool.getBuffer(Boolean.FALSE, 1024));
+        pool.putBuffer(second);
+        pool.putBuffer(first);
+        ByteBuffer direct = pool.getBuffer(Boolean.TRUE, 1024);
+        assertTrue(direct.isDirect());
+        assertEquals(4096, pool.getAllocatedBytes());
+    }
+
+    @Test
+    public void chargeOversizedBuffer() {
+        BufferPool pool = new BufferPool(1024, 4096, 1024, 0);
+        ByteBuffer large = pool.getBuffer(Boolean.FALSE, 3000);
+        assertEquals(3000, large.capacity());
+        assertEquals(3072, pool.getAllocatedBytes());
+        pool.getBuffer(Boolean.FALSE, 1024);
+        assertThrows(HdfsException.class, () -> pool.getBuffer(Boolean.FALSE, 1024));
+        assertThrows(HdfsException.class, () -> pool.getBuffer(Boolean.FALSE, 5000));
+
+        pool.putBuffer(large);
+        assertEquals(1024, pool.getAllocatedBytes());
+        assertEquals(1, pool.getOutstanding());
+    }
+
+    @Test
+    public void oversizedReleasesIdleSlabs() {
+        BufferPool pool = new BufferPool(1024, 4096, 1024, 0);
+        ByteBuffer[] buffers = new ByteBuffer[4];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.getBuffer(Boolean.TRUE, 1024);
+        }
+        for (ByteBuffer buffer : buffers) {
+            pool.putBuffer(buffer);
+        }
+        assertEquals(2048, pool.getBuffer(Boolean.FALSE, 2048).capacity());
+        assertEquals(4096, pool.getAllocatedBytes());
+    }
+
+    @Test
+    public void waitForRelease() throws Exception {
+        BufferPool pool = new BufferPool(1024, 1024, 1024, 5000);
+        ByteBuffer buffer = pool.getBuffer(Boolean.FALSE, 1024);
+        CountDownLatch started = new CountDownLatch(1);
+        Thread releaser = new Thread(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+            pool.putBuffer(buffer);
+        });
+        releaser.start();
+        started.await();
+        assertNotNull(pool.getBuffer(Boolean.FALSE, 1024));
+        releaser.join();
+    }
+
+    @Test
+    public void copyStream() throws Exception {
+        BufferPool pool = new BufferPool(16, 64, 32, 0);
+        byte[] data = new byte[100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long[] chunks = new long[1];
+        assertEquals(100, pool.copy(new ByteArrayInputStream(data), out, bytes -> chunks[0] += bytes));
+        assertArrayEquals(data, out.toByteArray());
+        assertEquals(100, chunks[0]);
+        assertEquals(0, pool.getOutstanding());
+    }
+
+}
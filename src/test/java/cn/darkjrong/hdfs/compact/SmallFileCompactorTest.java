@@ -0,0 +1,115 @@
+package cn.darkjrong.hdfs.compact;
+
+import cn.darkjrong.hdfs.buffer.BufferPool;
+import cn.hutool.core.io.IoUtil;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 小文件合并测试, 使用本地文件系统
+ *
+ * @author Rong.Jia
+ * @date 2022/01/06
+ */
+public class SmallFileCompactorTest {
+
+    @TempDir
+    File directory;
+
+    private FileSystem fileSystem;
+    private ExecutorService executor;
+    private Path dir;
+    private SmallFileCompactor compactor;
+    private int sequence;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        fileSystem = FileSystem.getLocal(new Configuration());
+        executor = Executors.newFixedThreadPool(2);
+        dir = new Path(directory.toURI());
+        compactor = new SmallFileCompactor(fileSystem, executor, new BufferPool(4096, 64 * 1024, 16 * 1024, 1000));
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        fileSystem.close();
+    }
+
+    @Test
+    public void mergeGroup() throws Exception {
+        write("a", "1111");
+        write("b", "22");
+        write("c", "333");
+
+        CompactResult result = compactor.compact(dir.toUri().getPath(), 1024, 1000, 1024);
+
+        assertEquals(1, result.getMergedGroups());
+        assertEquals(3, result.getMergedFiles());
+        assertEquals(9, result.getMergedBytes());
+        assertEquals("111122333", read(new Path(result.getOutputs().get(0))));
+        assertFalse(fileSystem.exists(new Path(dir, "a")));
+        assertFalse(fileSystem.exists(new Path(dir, "c")));
+    }
+
+    @Test
+    public void recoverInterruptedMerge() throws Exception {
+        write("a", "1111");
+        write("b", "22");
+        // 上次合并已发布输出文件, 删除原文件前中断
+        Path output = new Path(dir, SmallFileCompactor.OUTPUT_PREFIX + "1");
+        try (FSDataOutputStream out = fileSystem.create(output)) {
+            out.write("111122".getBytes(StandardCharsets.UTF_8));
+        }
+        Path tmpDir = new Path(dir, ".compact-tmp");
+        try (FSDataOutputStream out = fileSystem.create(new Path(tmpDir, output.getName() + ".manifest"))) {
+            out.write((output.toUri().getPath() + "\n" + new Path(dir, "a").toUri().getPath() + "\n"
+                    + new Path(dir, "b").toUri().getPath()).getBytes(StandardCharsets.UTF_8));
+        }
+        // 未发布的临时输出
+        try (FSDataOutputStream out = fileSystem.create(new Path(tmpDir, SmallFileCompactor.OUTPUT_PREFIX + "2"))) {
+            out.write(1);
+        }
+        fileSystem.setTimes(output, System.currentTimeMillis() - 60_000, -1);
+
+        CompactResult result = compactor.compact(dir.toUri().getPath(), 10, 1000, 1024);
+
+        assertEquals(1, result.getRecoveredGroups());
+        assertEquals(0, result.getMergedGroups());
+        assertFalse(fileSystem.exists(new Path(dir, "a")));
+        assertFalse(fileSystem.exists(new Path(dir, "b")));
+        assertTrue(fileSystem.exists(output));
+        assertEquals(0, fileSystem.listStatus(tmpDir).length);
+    }
+
+    private void write(String name, String content) throws Exception {
+        Path path = new Path(dir, name);
+        try (FSDataOutputStream out = fileSystem.create(path)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        fileSystem.setTimes(path, System.currentTimeMillis() - 60_000 + (++sequence), -1);
+    }
+
+    private String read(Path path) throws Exception {
+        try (FSDataInputStream in = fileSystem.open(path)) {
+            return IoUtil.read(in, StandardCharsets.UTF_8);
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package cn.darkjrong.hdfs.dedup;
+
+import cn.hutool.core.util.HexUtil;
+import org.junit.jupiter.api.Test;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * 分段内容哈希测试
+ *
+ * @author Rong.Jia
+ * @date 2022/01/25
+ */
+public class ContentHasherTest {
+
+    private static final int PART_SIZE = 1024;
+
+    @Test
+    public void sequentialEqualsParallel() {
+        byte[] data = random(PART_SIZE * 3 + 100);
+
+        ContentHasher parallel = new ContentHasher(PART_SIZE);
+        for (int offset = 0; offset < data.length; offset += PART_SIZE) {
+            MessageDigest part = ContentHasher.newDigest();
+            part.update(data, offset, Math.min(PART_SIZE, data.length - offset));
+            parallel.updatePart(part.digest());
+        }
+
+        assertEquals(parallel.digest(), hash(data, data.length));
+    }
+
+    @Test
+    public void independentOfWriteSize() {
+        byte[] data = random(PART_SIZE * 2 + 1);
+        String expected = hash(data, data.length);
+        assertEquals(expected, hash(data, 1));
+        assertEquals(expected, hash(data, 7));
+        assertEquals(expected, hash(data, PART_SIZE + 3));
+    }
+
+    @Test
+    public void exactMultipleOfPartSize() {
+        byte[] data = random(PART_SIZE * 2);
+        MessageDigest top = ContentHasher.newDigest();
+        top.update(sha256(Arrays.copyOfRange(data, 0, PART_SIZE)));
+        top.update(sha256(Arrays.copyOfRange(data, PART_SIZE, data.length)));
+
+        // 末尾不追加空段
+        assertEquals(HexUtil.encodeHexStr(top.digest()), hash(data, 100));
+    }
+
+    @Test
+    public void emptyContent() {
+        assertEquals(HexUtil.encodeHexStr(sha256(new byte[0])), new ContentHasher(PART_SIZE).digest());
+    }
+
+    @Test
+    public void partSizeChangesId() {
+        byte[] data = random(PART_SIZE * 2);
+        ContentHasher other = new ContentHasher(PART_SIZE * 2);
+        other.update(data, 0, data.length);
+        assertNotEquals(hash(data, data.length), other.digest());
+    }
+
+    private static String hash(byte[] data, int writeSize) {
+        ContentHasher hasher = new ContentHasher(PART_SIZE);
+        for (int offset = 0; offset < data.length; offset += writeSize) {
+            hasher.update(data, offset, Math.min(writeSize, data.length - offset));
+        }
+        return hasher.digest();
+    }
+
+    private static byte[] sha256(byte[] data) {
+        MessageDigest digest = ContentHasher.newDigest();
+        digest.update(data);
+        return digest.digest();
+    }
+
+    private static byte[] random(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+}
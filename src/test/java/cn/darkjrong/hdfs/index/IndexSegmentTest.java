@@ -0,0 +1,114 @@
+package cn.darkjrong.hdfs.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 堆外有序段测试
+ *
+ * @author Rong.Jia
+ * @date 2022/01/27
+ */
+public class IndexSegmentTest {
+
+    @Test
+    public void sortAndKeepLast() {
+        IndexSegment segment = new IndexSegment.Builder(0)
+                .add(file("/b", 1, "hdfs"))
+                .add(file("/a/x", 1, "hdfs"))
+                .add(file("/a", 1, "root"))
+                .add(file("/a/x", 2, "root"))
+                .build();
+
+        assertEquals(3, segment.size());
+        assertEquals("/a", segment.get(0).getPath());
+        assertEquals("/a/x", segment.get(1).getPath());
+        assertEquals("/b", segment.get(2).getPath());
+        assertEquals(2, segment.get(1).getLength());
+        assertEquals("root", segment.get(1).getOwner());
+        assertEquals("hdfs", segment.get(2).getOwner());
+        segment.release();
+    }
+
+    @Test
+    public void lowerBound() {
+        IndexSegment segment = new IndexSegment.Builder(0)
+                .add(file("/a", 1, "hdfs"))
+                .add(file("/a/x", 1, "hdfs"))
+                .add(file("/a-b", 1, "hdfs"))
+                .add(file("/b", 1, "hdfs"))
+                .build();
+
+        // 按码点排序, '-' 小于 '/', /a-b 排在 /a 下的文件之前
+        assertEquals(2, segment.lowerBound(bytes("/a/")));
+        assertFalse(segment.startsWith(1, bytes("/a/")));
+        assertTrue(segment.startsWith(2, bytes("/a/")));
+        assertEquals(4, segment.lowerBound(bytes("/c")));
+        assertEquals(3, segment.find(bytes("/b")));
+        assertEquals(-1, segment.find(bytes("/a/y")));
+        segment.release();
+    }
+
+    @Test
+    public void mergeAcrossChunks() {
+        Random random = new Random(27);
+        TreeMap<String, Long> expected = new TreeMap<>(IndexSegment.PATH_ORDER);
+        IndexSegment.Builder builder = new IndexSegment.Builder(0);
+        for (int i = 0; i < 50000; i++) {
+            String path = "/data/" + random.nextInt(100) + "/" + random.nextInt(1000) + ".log";
+            expected.put(path, (long) i);
+            builder.add(file(path, i, "hdfs"));
+        }
+        IndexSegment segment = builder.build();
+
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < segment.size(); i++) {
+            IndexedFile file = segment.get(i);
+            paths.add(file.getPath());
+            assertEquals(expected.get(file.getPath()).longValue(), file.getLength());
+        }
+        assertEquals(new ArrayList<>(expected.keySet()), paths);
+        assertTrue(segment.memory() > 1024 * 1024);
+        segment.release();
+    }
+
+    @Test
+    public void releaseWhenUnreferenced() {
+        IndexSegment segment = new IndexSegment.Builder(0).build();
+        assertEquals(0, segment.size());
+        assertEquals(0, segment.lowerBound(bytes("/a")));
+
+        assertTrue(segment.retain());
+        segment.release();
+        assertEquals(1, segment.references());
+        segment.release();
+        assertEquals(0, segment.references());
+        assertFalse(segment.retain());
+    }
+
+    private static IndexedFile file(String path, long length, String owner) {
+        IndexedFile file = new IndexedFile();
+        file.setPath(path);
+        file.setLength(length);
+        file.setModificationTime(length);
+        file.setReplication((short) 3);
+        file.setPermission((short) 0644);
+        file.setOwner(owner);
+        file.setGroup("supergroup");
+        return file;
+    }
+
+    private static byte[] bytes(String path) {
+        return path.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
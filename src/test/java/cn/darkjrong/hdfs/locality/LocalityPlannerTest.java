@@ -0,0 +1,53 @@
+package cn.darkjrong.hdfs.locality;
+
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 数据本地性规划测试
+ *
+ * @author Rong.Jia
+ * @date 2022/01/16
+ */
+public class LocalityPlannerTest {
+
+    @Test
+    public void keepEmptyFile() {
+        List<BlockSplit> splits = LocalityPlanner.toSplits(file("/data/empty", 0));
+
+        assertEquals(1, splits.size());
+        assertEquals("/data/empty", splits.get(0).getPath());
+        assertEquals(0, splits.get(0).getLength());
+        assertTrue(splits.get(0).getHosts().isEmpty());
+        assertEquals(splits, LocalityPlanner.groupByHost(splits).get(LocalityPlanner.ANY_HOST));
+    }
+
+    @Test
+    public void balanceHosts() {
+        List<BlockSplit> splits = new ArrayList<>(LocalityPlanner.toSplits(file("/data/a", 300,
+                new BlockLocation(null, new String[]{"h1", "h2"}, 0, 200),
+                new BlockLocation(null, new String[]{"h1", "h2"}, 200, 100))));
+
+        Map<String, List<BlockSplit>> groups = LocalityPlanner.groupByHost(splits);
+
+        assertEquals(1, groups.get("h1").size());
+        assertEquals(1, groups.get("h2").size());
+        assertEquals(300L, LocalityPlanner.bytesByHost(splits).get("h1").longValue());
+    }
+
+    private static LocatedFileStatus file(String path, long length, BlockLocation... locations) {
+        return new LocatedFileStatus(length, Boolean.FALSE, 3, 128 * 1024 * 1024, 0, 0, FsPermission.getFileDefault(),
+                "hdfs", "supergroup", null, new Path(path), locations);
+    }
+
+}
@@ -0,0 +1,117 @@
+package cn.darkjrong.hdfs.pack;
+
+import cn.darkjrong.hdfs.exception.HdfsException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 容器文件格式测试, 使用本地文件系统
+ *
+ * @author Rong.Jia
+ * @date 2022/01/05
+ */
+public class PackWriterTest {
+
+    @TempDir
+    File directory;
+
+    private FileSystem fileSystem;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        fileSystem = FileSystem.getLocal(new Configuration());
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        fileSystem.close();
+    }
+
+    @Test
+    public void readByKeyAndName() {
+        PackKey first;
+        PackKey second;
+        try (PackWriter writer = new PackWriter(fileSystem, new Path(directory.toURI()), 1024 * 1024)) {
+            first = writer.append("a.txt", bytes("hello"));
+            second = writer.append("b.txt", bytes("world!"));
+        }
+        assertEquals(first.getContainer(), second.getContainer());
+        assertEquals(0, first.getOffset());
+        assertEquals(5, first.getLength());
+        assertEquals(5, second.getOffset());
+
+        try (PackReader reader = new PackReader(fileSystem, 4)) {
+            assertArrayEquals(bytes("hello"), reader.read(first));
+            assertArrayEquals(bytes("world!"), reader.read(PackKey.parse(second.toString())));
+            assertArrayEquals(bytes("world!"), reader.read(first.getContainer(), "b.txt"));
+            assertEquals(second, reader.lookup(first.getContainer(), "b.txt"));
+            assertNull(reader.read(first.getContainer(), "c.txt"));
+        }
+    }
+
+    @Test
+    public void rollWhenContainerFull() {
+        PackKey first;
+        PackKey second;
+        try (PackWriter writer = new PackWriter(fileSystem, new Path(directory.toURI()), 8)) {
+            first = writer.append("a", bytes("123456"));
+            second = writer.append("b", bytes("789"));
+        }
+        assertNotEquals(first.getContainer(), second.getContainer());
+        assertEquals(0, second.getOffset());
+        try (PackReader reader = new PackReader(fileSystem, 1)) {
+            assertArrayEquals(bytes("123456"), reader.read(first.getContainer(), "a"));
+            assertArrayEquals(bytes("789"), reader.read(second.getContainer(), "b"));
+        }
+    }
+
+    @Test
+    public void rejectUnfinishedContainer() throws Exception {
+        Path container = new Path(new Path(directory.toURI()), "broken" + PackWriter.SUFFIX);
+        try (FSDataOutputStream out = fileSystem.create(container)) {
+            out.write(new byte[PackWriter.TRAILER_LENGTH]);
+        }
+        try (PackReader reader = new PackReader(fileSystem, 1)) {
+            assertThrows(HdfsException.class, () -> reader.lookup(container.toUri().getPath(), "a"));
+        }
+    }
+
+    @Test
+    public void throttleEveryAppend() {
+        AtomicLong throttled = new AtomicLong();
+        try (PackWriter writer = new PackWriter(fileSystem, new Path(directory.toURI()), 1024, throttled::addAndGet)) {
+            writer.append("a", bytes("hello"));
+            writer.append("b", bytes("world!"));
+        }
+        assertEquals(11, throttled.get());
+    }
+
+    @Test
+    public void parseKey() {
+        PackKey key = new PackKey("/data/pack-1#x.pak", 123456789L, 4096);
+        assertEquals(key, PackKey.parse(key.toString()));
+        assertThrows(HdfsException.class, () -> PackKey.parse("/data/a.pak#zz"));
+        assertThrows(HdfsException.class, () -> PackKey.parse("/data/a.pak#!#1"));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
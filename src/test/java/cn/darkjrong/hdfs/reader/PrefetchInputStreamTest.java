@@ -0,0 +1,204 @@
+package cn.darkjrong.hdfs.reader;
+
+import cn.darkjrong.hdfs.buffer.BufferPool;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 预读输入流测试, 使用本地文件系统
+ *
+ * @author Rong.Jia
+ * @date 2022/01/17
+ */
+public class PrefetchInputStreamTest {
+
+    private static final int CHUNK = 1024;
+
+    @TempDir
+    File directory;
+
+    private FailingFileSystem fileSystem;
+    private ExecutorService executor;
+    private BufferPool bufferPool;
+    private Path path;
+    private byte[] data;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        fileSystem = new FailingFileSystem();
+        fileSystem.initialize(directory.toURI(), new Configuration());
+        executor = Executors.newFixedThreadPool(2);
+        bufferPool = new BufferPool(CHUNK, 64 * 1024, 16 * 1024, 1000);
+        data = new byte[10 * CHUNK + 100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        File file = new File(directory, "data");
+        Files.write(file.toPath(), data);
+        path = new Path(file.toURI());
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        fileSystem.close();
+    }
+
+    @Test
+    public void readFully() throws Exception {
+        AtomicLong charged = new AtomicLong();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PrefetchInputStream in = open(4, Long.MAX_VALUE, charged)) {
+            byte[] buffer = new byte[700];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+            assertEquals(data.length, in.getPos());
+        }
+        assertArrayEquals(data, out.toByteArray());
+        assertEquals(data.length, charged.get());
+        assertEquals(0, bufferPool.getOutstanding());
+    }
+
+    @Test
+    public void releaseOnPartialReadAndSkip() throws Exception {
+        try (PrefetchInputStream in = open(4, Long.MAX_VALUE, null)) {
+            assertEquals(data[0], (byte) in.read());
+            assertEquals(100, in.skip(100));
+            assertEquals(data[101], (byte) in.read());
+
+            // 跨出当前分片, 丢弃已预读的分片后从新位置预读
+            assertEquals(5 * CHUNK, in.skip(5 * CHUNK));
+            byte[] buffer = new byte[10];
+            assertEquals(10, in.read(buffer));
+            assertArrayEquals(Arrays.copyOfRange(data, 5 * CHUNK + 102, 5 * CHUNK + 112), buffer);
+
+            assertEquals(data.length - in.getPos(), in.skip(data.length));
+            assertEquals(-1, in.read());
+        }
+        assertEquals(0, bufferPool.getOutstanding());
+
+        PrefetchInputStream in = open(4, Long.MAX_VALUE, null);
+        in.read(new byte[10]);
+        in.close();
+        assertEquals(0, bufferPool.getOutstanding());
+        assertThrows(IOException.class, in::read);
+    }
+
+    @Test
+    public void clampWindowByMaxMemory() throws Exception {
+        try (PrefetchInputStream in = open(8, 3 * CHUNK, null)) {
+            assertEquals(3, in.getWindow());
+            in.read();
+            assertTrue(bufferPool.getOutstanding() <= 4);
+        }
+        try (PrefetchInputStream in = open(8, CHUNK / 2, null)) {
+            assertEquals(1, in.getWindow());
+        }
+        assertEquals(0, bufferPool.getOutstanding());
+    }
+
+    @Test
+    public void propagateReadError() throws Exception {
+        fileSystem.failAt = 3 * CHUNK;
+        PrefetchInputStream in = open(2, Long.MAX_VALUE, null);
+        long[] read = {0};
+        IOException error = assertThrows(IOException.class, () -> {
+            byte[] buffer = new byte[CHUNK];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                read[0] += len;
+            }
+        });
+        // 失败前的分片正常读出, 后台预读的异常在读到对应分片时抛出
+        assertEquals(3 * CHUNK, read[0]);
+        assertEquals("pread failed", error.getMessage());
+        in.close();
+        assertEquals(0, bufferPool.getOutstanding());
+    }
+
+    private PrefetchInputStream open(int window, long maxMemory, AtomicLong charged) throws IOException {
+        return new PrefetchInputStream(fileSystem.open(path), data.length, bufferPool, executor, window, maxMemory,
+                charged == null ? null : charged::addAndGet);
+    }
+
+    /**
+     * 定位读越过指定偏移时失败
+     */
+    private static class FailingFileSystem extends RawLocalFileSystem {
+
+        private volatile long failAt = Long.MAX_VALUE;
+
+        @Override
+        public FSDataInputStream open(Path path, int bufferSize) throws IOException {
+            return new FSDataInputStream(new FailingInputStream(super.open(path, bufferSize)));
+        }
+
+        private class FailingInputStream extends FSInputStream {
+
+            private final FSDataInputStream in;
+
+            private FailingInputStream(FSDataInputStream in) {
+                this.in = in;
+            }
+
+            @Override
+            public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+                if (position + length > failAt) {
+                    throw new IOException("pread failed");
+                }
+                return in.read(position, buffer, offset, length);
+            }
+
+            @Override
+            public int read() throws IOException {
+                return in.read();
+            }
+
+            @Override
+            public void seek(long pos) throws IOException {
+                in.seek(pos);
+            }
+
+            @Override
+            public long getPos() throws IOException {
+                return in.getPos();
+            }
+
+            @Override
+            public boolean seekToNewSource(long targetPos) {
+                return Boolean.FALSE;
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+
+        }
+
+    }
+
+}
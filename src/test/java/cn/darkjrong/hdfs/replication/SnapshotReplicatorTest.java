@@ -0,0 +1,143 @@
+package cn.darkjrong.hdfs.replication;
+
+import cn.darkjrong.hdfs.buffer.BufferPool;
+import cn.darkjrong.hdfs.copy.ClusterCopier;
+import cn.darkjrong.hdfs.copy.CopyOptions;
+import cn.darkjrong.hdfs.exception.HdfsException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.apache.hadoop.hdfs.DFSUtilClient;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport.DiffReportEntry;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport.DiffType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 快照增量复制测试, 源为模拟快照的文件系统, 目标为本地文件系统
+ *
+ * @author Rong.Jia
+ * @date 2022/01/20
+ */
+public class SnapshotReplicatorTest {
+
+    private static final Path ROOT = new Path("/data");
+
+    @TempDir
+    File directory;
+
+    private SnapshotFileSystem source;
+    private FailingFileSystem target;
+    private ExecutorService executor;
+    private SnapshotReplicator replicator;
+    private Path targetRoot;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        source = new SnapshotFileSystem();
+        target = new FailingFileSystem();
+        target.initialize(directory.toURI(), new Configuration());
+        executor = Executors.newFixedThreadPool(2);
+        replicator = new SnapshotReplicator(source, target, new ClusterCopier(source, target, executor,
+                new BufferPool(4096, 64 * 1024, 16 * 1024, 1000), null));
+        targetRoot = new Path(directory.toURI());
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        target.close();
+    }
+
+    @Test
+    public void keepPreviousSnapshotWhenApplyFails() throws Exception {
+        source.snapshots.add("r-1");
+        target.create(new Path(targetRoot, "a")).close();
+
+        target.failRename = Boolean.TRUE;
+        assertThrows(HdfsException.class, () -> replicator.replicate(ROOT, targetRoot, "r", new CopyOptions()));
+        assertEquals(Collections.singleton("r-1"), source.snapshots);
+
+        target.failRename = Boolean.FALSE;
+        ReplicationResult result = replicator.replicate(ROOT, targetRoot, "r", new CopyOptions());
+
+        assertEquals("r-1", source.diffs.get(1)[0]);
+        assertEquals("r-1", result.getFromSnapshot());
+        assertEquals(1, result.getRenamed());
+        assertTrue(target.exists(new Path(targetRoot, "b")));
+        assertFalse(target.exists(new Path(targetRoot, "a")));
+        assertEquals(Collections.singleton(result.getToSnapshot()), source.snapshots);
+    }
+
+    /**
+     * 在内存中记录快照, 差异报告固定为 a 重命名为 b
+     */
+    private static class SnapshotFileSystem extends DistributedFileSystem {
+
+        private final Set<String> snapshots = new TreeSet<>();
+        private final List<String[]> diffs = new ArrayList<>();
+
+        @Override
+        public FileStatus[] listStatus(Path path) {
+            return snapshots.stream()
+                    .map(a -> new FileStatus(0, Boolean.TRUE, 0, 0, 0, new Path(path, a)))
+                    .toArray(FileStatus[]::new);
+        }
+
+        @Override
+        public Path createSnapshot(Path path, String snapshotName) {
+            snapshots.add(snapshotName);
+            return new Path(path, HdfsConstants.DOT_SNAPSHOT_DIR + Path.SEPARATOR + snapshotName);
+        }
+
+        @Override
+        public void deleteSnapshot(Path snapshotDir, String snapshotName) {
+            snapshots.remove(snapshotName);
+        }
+
+        @Override
+        public SnapshotDiffReport getSnapshotDiffReport(Path snapshotDir, String fromSnapshot, String toSnapshot) {
+            diffs.add(new String[]{fromSnapshot, toSnapshot});
+            return new SnapshotDiffReport(snapshotDir.toString(), fromSnapshot, toSnapshot, Collections.singletonList(
+                    new DiffReportEntry(DiffType.RENAME, DFSUtilClient.string2Bytes("a"), DFSUtilClient.string2Bytes("b"))));
+        }
+
+    }
+
+    private static class FailingFileSystem extends RawLocalFileSystem {
+
+        private volatile boolean failRename;
+
+        @Override
+        public boolean rename(Path src, Path dst) throws IOException {
+            if (failRename) {
+                throw new IOException("rename failed");
+            }
+            return super.rename(src, dst);
+        }
+
+    }
+
+}
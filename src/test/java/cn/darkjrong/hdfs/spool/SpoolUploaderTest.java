@@ -0,0 +1,118 @@
+package cn.darkjrong.hdfs.spool;
+
+import cn.darkjrong.hdfs.buffer.BufferPool;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 本地缓冲上传测试, 使用本地文件系统
+ *
+ * @author Rong.Jia
+ * @date 2022/01/08
+ */
+public class SpoolUploaderTest {
+
+    @TempDir
+    File directory;
+
+    private FileSystem fileSystem;
+    private Path dir;
+    private SpoolUploader uploader;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        fileSystem = FileSystem.getLocal(new Configuration());
+        dir = new Path(FileUtil.mkdir(new File(directory, "target")).toURI());
+        uploader = new SpoolUploader(fileSystem, new BufferPool(4096, 64 * 1024, 16 * 1024, 1000),
+                new File(directory, "spool"), 1, 100, 10_000);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        uploader.close();
+        fileSystem.close();
+    }
+
+    @Test
+    public void overwriteExisting() throws Exception {
+        Path target = new Path(dir, "a");
+        write(target, "old");
+
+        uploader.submit(stream("new"), target.toUri().getPath(), Boolean.TRUE);
+        awaitIdle();
+
+        assertEquals("new", read(target));
+        assertEquals(1, fileSystem.listStatus(dir).length);
+    }
+
+    @Test
+    public void failFastWhenTargetExists() throws Exception {
+        Path target = new Path(dir, "a");
+        write(target, "old");
+
+        String id = uploader.submit(stream("new"), target.toUri().getPath(), Boolean.FALSE);
+        // 重试间隔10秒, 重试时无法在等待时间内结束
+        awaitIdle();
+
+        assertEquals("old", read(target));
+        assertTrue(new File(directory, "spool/failed/" + id + ".data").exists());
+        assertEquals(1, fileSystem.listStatus(dir).length);
+    }
+
+    @Test
+    public void clearJournalWhenAlreadyPublished() throws Exception {
+        Path target = new Path(dir, "a");
+        // 上次上传已发布, 任务日志未删除时进程退出
+        write(target, "new");
+
+        String id = uploader.submit(stream("new"), target.toUri().getPath(), Boolean.FALSE);
+        awaitIdle();
+
+        assertEquals("new", read(target));
+        assertFalse(new File(directory, "spool/failed/" + id + ".data").exists());
+        assertFalse(new File(directory, "spool/" + id + ".task").exists());
+        assertFalse(new File(directory, "spool/" + id + ".data").exists());
+    }
+
+    private void awaitIdle() throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (uploader.getPending() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, uploader.getPending());
+    }
+
+    private void write(Path path, String content) throws Exception {
+        try (FSDataOutputStream out = fileSystem.create(path)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private String read(Path path) throws Exception {
+        try (FSDataInputStream in = fileSystem.open(path)) {
+            return IoUtil.read(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,125 @@
+package cn.darkjrong.hdfs.support;
+
+import org.apache.hadoop.ipc.RetriableException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 自适应并发限制测试, 延迟由测试直接给出, 不依赖集群
+ *
+ * @author Rong.Jia
+ * @date 2022/01/12
+ */
+public class AdaptiveLimiterTest {
+
+    private static final long SMALL = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long LARGE = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void mixedTaskSizesKeepSeparateBaselines() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(8, 4, 16, 2.0, 0.5);
+        for (int i = 0; i < 50; i++) {
+            run(limiter, "list", SMALL);
+            run(limiter, "copy", LARGE);
+        }
+        assertEquals(0, limiter.getDrops());
+        assertEquals(8, limiter.getLimit());
+
+        // 同类型中延迟明显升高仍然减少
+        run(limiter, "list", SMALL * 10);
+        assertEquals(1, limiter.getDrops());
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void sharedBaselineCollapsesToMinimum() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(8, 4, 16, 2.0, 0.5);
+        for (int i = 0; i < 50; i++) {
+            run(limiter, "task", SMALL);
+        }
+        for (int i = 0; i < 5; i++) {
+            run(limiter, "task", LARGE);
+        }
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void dropOncePerBurst() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(16, 1, 16, 2.0, 0.5);
+        for (int i = 0; i < 50; i++) {
+            run(limiter, "list", SMALL);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < 16; i++) {
+            limiter.acquire();
+        }
+        // 减少之前开始的慢调用只减少一次
+        for (int i = 0; i < 16; i++) {
+            limiter.release("list", start, LARGE, null);
+        }
+        assertEquals(1, limiter.getDrops());
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    public void overloadBacksOffToMinimum() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(16, 4, 16, 2.0, 0.5);
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire();
+            limiter.release("list", System.nanoTime(), SMALL, new RetriableException("busy"));
+        }
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void increaseOnlyWhenSaturated() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(2, 1, 4, 2.0, 0.5);
+        for (int i = 0; i < 20; i++) {
+            run(limiter, "list", SMALL);
+        }
+        assertEquals(2, limiter.getLimit());
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire();
+            limiter.acquire();
+            long start = System.nanoTime();
+            limiter.release("list", start, SMALL, null);
+            limiter.release("list", start, SMALL, null);
+        }
+        // 上限增加到3后两个并发不再用满
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    public void executeAcquiresPermit() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 1, 2.0, 0.5);
+        LimitedExecutor executor = new LimitedExecutor(4, "limited-test-", limiter);
+        AtomicInteger maxInFlight = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(8);
+        try {
+            for (int i = 0; i < 8; i++) {
+                executor.execute(() -> {
+                    maxInFlight.accumulateAndGet(limiter.getInFlight(), Math::max);
+                    done.countDown();
+                });
+            }
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(1, maxInFlight.get());
+            assertEquals(0, executor.submit("list", () -> limiter.getInFlight() - 1).get().intValue());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void run(AdaptiveLimiter limiter, String operation, long latency) throws Exception {
+        limiter.acquire();
+        limiter.release(operation, System.nanoTime(), latency, null);
+    }
+
+}
@@ -0,0 +1,133 @@
+package cn.darkjrong.hdfs.support;
+
+import cn.darkjrong.hdfs.exception.HdfsException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 熔断器状态转换测试, 使用可控时钟
+ *
+ * @author Rong.Jia
+ * @date 2022/01/14
+ */
+public class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(5);
+
+    private final AtomicLong clock = new AtomicLong();
+    private CircuitBreaker breaker;
+
+    @BeforeEach
+    public void setUp() {
+        breaker = new CircuitBreaker(10, 5, 0.5, 1000, 0.8, 30_000, 2, clock::get);
+    }
+
+    @Test
+    public void openOnFailureRate() {
+        call("exist", FAST, null);
+        call("exist", FAST, null);
+        call("exist", FAST, new IOException("connection refused"));
+        call("exist", FAST, new IOException("connection refused"));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        call("exist", FAST, new IOException("connection refused"));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(HdfsException.class, () -> breaker.acquire("exist"));
+        assertEquals(1, breaker.getRejected());
+        assertEquals(1, breaker.getTrips());
+    }
+
+    @Test
+    public void ignoreClientErrors() {
+        for (int i = 0; i < 10; i++) {
+            call("getFileStatus", FAST, new FileNotFoundException("/data/none"));
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void slowDataCallsDoNotTrip() {
+        for (int i = 0; i < 10; i++) {
+            call("download", SLOW, null);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        // 元数据慢调用占窗口的80%时打开
+        for (int i = 0; i < 7; i++) {
+            call("listStatus", SLOW, null);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        call("listStatus", SLOW, null);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void halfOpenCloseAfterProbes() {
+        trip();
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(29));
+        assertThrows(HdfsException.class, () -> breaker.acquire("exist"));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        breaker.acquire("exist");
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.acquire("exist");
+        // 探测调用已满
+        assertThrows(HdfsException.class, () -> breaker.acquire("exist"));
+
+        breaker.onResult("exist", FAST, null);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onResult("exist", FAST, null);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        // 关闭后重新统计
+        call("exist", FAST, new IOException("connection refused"));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void halfOpenReopenOnFailure() {
+        trip();
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        breaker.acquire("exist");
+        breaker.onResult("exist", FAST, new IOException("connection refused"));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2, breaker.getTrips());
+
+        // 重新打开后从新的打开时间计时
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertThrows(HdfsException.class, () -> breaker.acquire("exist"));
+    }
+
+    @Test
+    public void releaseUnusedProbe() {
+        trip();
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        breaker.acquire("exist");
+        breaker.acquire("exist");
+        breaker.release();
+        breaker.acquire("exist");
+        assertThrows(HdfsException.class, () -> breaker.acquire("exist"));
+    }
+
+    private void trip() {
+        for (int i = 0; i < 5; i++) {
+            call("exist", FAST, new IOException("connection refused"));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    private void call(String operation, long latency, Throwable error) {
+        breaker.acquire(operation);
+        breaker.onResult(operation, latency, error);
+    }
+
+}
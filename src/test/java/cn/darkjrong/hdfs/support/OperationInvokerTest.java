@@ -0,0 +1,75 @@
+package cn.darkjrong.hdfs.support;
+
+import cn.darkjrong.hdfs.exception.HdfsException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 操作执行器超时测试
+ *
+ * @author Rong.Jia
+ * @date 2022/01/10
+ */
+public class OperationInvokerTest {
+
+    private OperationInvoker invoker;
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp() {
+        invoker = new OperationInvoker(50, 1000, 0, null, null, null);
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        invoker.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void timeoutByOperationType() throws Exception {
+        assertThrows(HdfsException.class, () -> invoker.call("exist", () -> sleep(200)));
+        assertEquals("done", invoker.call("upload", () -> sleep(200)));
+        assertEquals(1, invoker.getTimeouts());
+    }
+
+    @Test
+    public void jobIgnoresCallTimeout() throws Exception {
+        assertEquals("done", invoker.callJob("copy", null, () -> sleep(1200)));
+        assertThrows(HdfsException.class, () -> invoker.withDeadline(Duration.ofMillis(50), () -> {
+            try {
+                return invoker.callJob("copy", null, () -> sleep(1200));
+            } catch (Exception e) {
+                throw new HdfsException(e);
+            }
+        }));
+    }
+
+    @Test
+    public void propagateDeadline() {
+        assertThrows(HdfsException.class, () -> invoker.withDeadline(Duration.ofMillis(100), () -> {
+            Future<String> future = executor.submit(invoker.propagate(() -> invoker.call("upload", () -> sleep(500))));
+            try {
+                return future.get();
+            } catch (Exception e) {
+                throw new HdfsException(e);
+            }
+        }));
+    }
+
+    private static String sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+        return "done";
+    }
+
+}
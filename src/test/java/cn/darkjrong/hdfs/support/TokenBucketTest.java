@@ -0,0 +1,105 @@
+package cn.darkjrong.hdfs.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 令牌桶与限流测试
+ *
+ * @author Rong.Jia
+ * @date 2022/01/13
+ */
+public class TokenBucketTest {
+
+    @Test
+    public void burstThenRate() throws Exception {
+        TokenBucket bucket = new TokenBucket(1000, 100);
+        long start = System.nanoTime();
+        bucket.acquire(100, Boolean.FALSE);
+        assertTrue(elapsedMillis(start) < 50, "容量内的突发不应等待");
+
+        start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            bucket.acquire(10, Boolean.FALSE);
+        }
+        long elapsed = elapsedMillis(start);
+        assertTrue(elapsed >= 150, "200个令牌按1000/s生成, 实际 " + elapsed + "ms");
+        assertTrue(elapsed < 2000, "等待过长 " + elapsed + "ms");
+    }
+
+    @Test
+    public void overdraftLargeRequest() throws Exception {
+        TokenBucket bucket = new TokenBucket(1000, 100);
+        long start = System.nanoTime();
+        // 超过容量的请求在桶满时放行, 透支的令牌由后续请求偿还
+        bucket.acquire(300, Boolean.FALSE);
+        assertTrue(elapsedMillis(start) < 50);
+
+        start = System.nanoTime();
+        bucket.acquire(1, Boolean.FALSE);
+        assertTrue(elapsedMillis(start) >= 150);
+    }
+
+    @Test
+    public void priorityGoesFirst() throws Exception {
+        TokenBucket bucket = new TokenBucket(10, 1);
+        bucket.acquire(1, Boolean.FALSE);
+        AtomicLong batchDone = new AtomicLong();
+        AtomicLong priorityDone = new AtomicLong();
+        CountDownLatch started = new CountDownLatch(1);
+        Thread batch = new Thread(() -> {
+            started.countDown();
+            try {
+                bucket.acquire(1, Boolean.FALSE);
+                batchDone.set(System.nanoTime());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        batch.start();
+        started.await();
+        Thread.sleep(20);
+        bucket.acquire(1, Boolean.TRUE);
+        priorityDone.set(System.nanoTime());
+        batch.join(5000);
+        assertTrue(batchDone.get() > 0);
+        assertTrue(priorityDone.get() < batchDone.get(), "交互式请求应先获取令牌");
+    }
+
+    @Test
+    public void throttleBytesAndPriority() throws Exception {
+        Throttle unlimited = new Throttle(0, 0, 0, 1, Throttle.Priority.BATCH);
+        long start = System.nanoTime();
+        unlimited.acquireBytes(Long.MAX_VALUE);
+        unlimited.acquireOperation("upload");
+        assertTrue(elapsedMillis(start) < 50);
+
+        Throttle throttle = new Throttle(0, 0, 1000, 0.1, Throttle.Priority.BATCH);
+        start = System.nanoTime();
+        for (int i = 0; i < 30; i++) {
+            throttle.acquireBytes(10);
+        }
+        assertTrue(elapsedMillis(start) >= 150);
+
+        // 在其他线程执行时沿用提交线程的优先级
+        Callable<Throttle.Priority> propagated = throttle.withPriority(Throttle.Priority.INTERACTIVE,
+                () -> throttle.propagate(throttle::getPriority));
+        FutureTask<Throttle.Priority> task = new FutureTask<>(propagated);
+        new Thread(task).start();
+        assertEquals(Throttle.Priority.INTERACTIVE, task.get());
+        assertEquals(Throttle.Priority.BATCH, throttle.getPriority());
+    }
+
+    private static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+}
@@ -0,0 +1,193 @@
+package cn.darkjrong.hdfs.usage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 目录用量缓存测试, 使用模拟的统计函数
+ *
+ * @author Rong.Jia
+ * @date 2022/01/23
+ */
+public class UsageCacheTest {
+
+    private static final List<String> PATHS = Arrays.asList("/a", "/b", "/c");
+
+    private final Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+    private volatile CountDownLatch interrupted = new CountDownLatch(1);
+    private ExecutorService executor;
+    private UsageCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (cache != null) {
+            cache.close();
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void expireByTtl() throws Exception {
+        cache = new UsageCache(this::load, executor, 200, 0);
+        DirectoryUsage first = cache.get(Collections.singletonList("/a")).get("/a");
+        assertSame(first, cache.get(Collections.singletonList("/a")).get("/a"));
+        assertEquals(1, loads("/a"));
+
+        Thread.sleep(250);
+        DirectoryUsage second = cache.get(Collections.singletonList("/a")).get("/a");
+        assertNotSame(first, second);
+        assertEquals(2, loads("/a"));
+    }
+
+    @Test
+    public void loadOncePerPath() throws Exception {
+        cache = new UsageCache(this::load, executor, 60_000, 0);
+        gate = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Map<String, DirectoryUsage>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(callers.submit(() -> cache.get(PATHS)));
+            }
+            Thread.sleep(100);
+            gate.countDown();
+
+            DirectoryUsage usage = futures.get(0).get(5, TimeUnit.SECONDS).get("/a");
+            for (Future<Map<String, DirectoryUsage>> future : futures) {
+                Map<String, DirectoryUsage> results = future.get(5, TimeUnit.SECONDS);
+                assertEquals(PATHS, new ArrayList<>(results.keySet()));
+                assertSame(usage, results.get("/a"));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        for (String path : PATHS) {
+            assertEquals(1, loads(path));
+        }
+    }
+
+    @Test
+    public void refreshAccessedAndEvictOthers() throws Exception {
+        cache = new UsageCache(this::load, executor, 300, 50);
+        cache.get(PATHS);
+        assertEquals(3, cache.size());
+
+        // 只访问 /a, 后台刷新使其保持有效, 其余条目超过TTL未被访问后淘汰
+        long end = System.currentTimeMillis() + 700;
+        while (System.currentTimeMillis() < end) {
+            cache.get(Collections.singletonList("/a"));
+            Thread.sleep(20);
+        }
+        assertEquals(1, cache.size());
+        assertTrue(loads("/a") > 3);
+    }
+
+    @Test
+    public void cancelOnClose() throws Exception {
+        cache = new UsageCache(this::load, executor, 60_000, 0);
+        gate = new CountDownLatch(1);
+        ExecutorService callers = Executors.newSingleThreadExecutor();
+        try {
+            Future<Map<String, DirectoryUsage>> future = callers.submit(() -> cache.get(Collections.singletonList("/a")));
+            Thread.sleep(100);
+            cache.close();
+
+            assertTrue(future.get(5, TimeUnit.SECONDS).isEmpty());
+            assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+            assertEquals(0, cache.size());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void topByOrder() {
+        cache = new UsageCache(this::load, executor, 60_000, 0);
+        assertEquals(Arrays.asList("/a", "/b", "/c"), top(UsageOrder.LENGTH, 3));
+        assertEquals(Arrays.asList("/a", "/c", "/b"), top(UsageOrder.SPACE_CONSUMED, 3));
+        assertEquals(Arrays.asList("/b", "/c", "/a"), top(UsageOrder.FILE_COUNT, 3));
+        assertEquals(Arrays.asList("/b", "/c", "/a"), top(UsageOrder.SPACE_HEADROOM, 3));
+        assertEquals(Arrays.asList("/c", "/b", "/a"), top(UsageOrder.NAMESPACE_HEADROOM, 3));
+        assertEquals(Collections.singletonList("/a"), top(UsageOrder.LENGTH, 1));
+        assertTrue(top(UsageOrder.LENGTH, -1).isEmpty());
+        for (String path : PATHS) {
+            assertEquals(1, loads(path));
+        }
+    }
+
+    private List<String> top(UsageOrder order, int limit) {
+        return cache.top(PATHS, order, limit).stream().map(DirectoryUsage::getPath).collect(Collectors.toList());
+    }
+
+    private int loads(String path) {
+        return loads.computeIfAbsent(path, a -> new AtomicInteger()).get();
+    }
+
+    /**
+     * 模拟统计, 可由 gate 阻塞, 被中断时记录
+     */
+    private DirectoryUsage load(String path) {
+        loads.computeIfAbsent(path, a -> new AtomicInteger()).incrementAndGet();
+        try {
+            gate.await();
+        } catch (InterruptedException e) {
+            interrupted.countDown();
+            throw new IllegalStateException(e);
+        }
+        DirectoryUsage usage = new DirectoryUsage();
+        usage.setPath(path);
+        usage.setDirectoryCount(1);
+        usage.setUpdateTime(System.currentTimeMillis());
+        switch (path) {
+            case "/a":
+                usage.setLength(300);
+                usage.setSpaceConsumed(900);
+                usage.setFileCount(1);
+                usage.setQuota(-1);
+                usage.setSpaceQuota(-1);
+                break;
+            case "/b":
+                usage.setLength(200);
+                usage.setSpaceConsumed(400);
+                usage.setFileCount(30);
+                usage.setQuota(100);
+                usage.setSpaceQuota(500);
+                break;
+            default:
+                usage.setLength(100);
+                usage.setSpaceConsumed(600);
+                usage.setFileCount(5);
+                usage.setQuota(40);
+                usage.setSpaceQuota(1000);
+                break;
+        }
+        return usage;
+    }
+
+}
@@ -0,0 +1,199 @@
+package cn.darkjrong.hdfs.writer;
+
+import cn.darkjrong.hdfs.exception.HdfsException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.apache.hadoop.fs.Syncable;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.util.Progressable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 滚动写入器测试, 使用本地文件系统
+ *
+ * @author Rong.Jia
+ * @date 2022/01/07
+ */
+public class RollingWriterTest {
+
+    @TempDir
+    File directory;
+
+    private SyncCountingFileSystem fileSystem;
+    private Path dir;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        fileSystem = new SyncCountingFileSystem();
+        fileSystem.initialize(directory.toURI(), new Configuration());
+        dir = new Path(directory.toURI());
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        fileSystem.close();
+    }
+
+    @Test
+    public void groupCommit() {
+        try (RollingWriter writer = writer(1024 * 1024)) {
+            writer.writeLine("a");
+            writer.writeLine("b");
+            long seq = writer.writeLine("c");
+            writer.sync(seq);
+            writer.sync(1);
+            assertEquals(1, fileSystem.syncs.get());
+
+            writer.writeAndSync(bytes("d\n"));
+            assertEquals(2, fileSystem.syncs.get());
+        }
+    }
+
+    @Test
+    public void rollBySize() throws Exception {
+        try (RollingWriter writer = writer(8)) {
+            writer.write(bytes("12345"));
+            assertEquals(1, inProgress().size());
+            writer.write(bytes("6789"));
+            assertEquals(0, inProgress().size());
+            writer.write(bytes("0"));
+        }
+        List<String> contents = new ArrayList<>();
+        for (FileStatus status : fileSystem.listStatus(dir)) {
+            assertFalse(status.getPath().getName().startsWith(RollingWriter.IN_PROGRESS_PREFIX));
+            contents.add(new String(Files.readAllBytes(new File(status.getPath().toUri()).toPath()),
+                    StandardCharsets.UTF_8));
+        }
+        assertEquals(2, contents.size());
+        assertTrue(contents.contains("123456789"));
+        assertTrue(contents.contains("0"));
+    }
+
+    @Test
+    public void failWaitersWhenRollFails() throws Exception {
+        try (RollingWriter writer = writer(1024 * 1024)) {
+            long seq = writer.write(bytes("lost"));
+            fileSystem.failSync = Boolean.TRUE;
+            assertThrows(HdfsException.class, writer::roll);
+            assertThrows(HdfsException.class, () -> writer.sync(seq));
+            assertEquals(0, fileSystem.open.get());
+
+            fileSystem.failSync = Boolean.FALSE;
+            writer.writeAndSync(bytes("kept"));
+        }
+        assertEquals(0, fileSystem.open.get());
+    }
+
+    @Test
+    public void uniqueFileNames() throws Exception {
+        try (RollingWriter first = writer(1024 * 1024); RollingWriter second = writer(1024 * 1024)) {
+            first.write(bytes("a"));
+            second.write(bytes("b"));
+            assertEquals(2, inProgress().size());
+        }
+        assertEquals(2, fileSystem.listStatus(dir).length);
+        assertEquals(0, inProgress().size());
+    }
+
+    private RollingWriter writer(long rollSize) {
+        return new RollingWriter(fileSystem, dir, "audit", 1024 * 1024, 60_000, rollSize, 3_600_000, Boolean.FALSE);
+    }
+
+    private List<FileStatus> inProgress() throws IOException {
+        List<FileStatus> files = new ArrayList<>();
+        for (FileStatus status : fileSystem.listStatus(dir)) {
+            if (status.getPath().getName().startsWith(RollingWriter.IN_PROGRESS_PREFIX)) {
+                files.add(status);
+            }
+        }
+        return files;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 统计 hflush/hsync 次数与未关闭的输出流, 可使提交失败
+     */
+    private static class SyncCountingFileSystem extends RawLocalFileSystem {
+
+        private final AtomicInteger syncs = new AtomicInteger();
+        private final AtomicInteger open = new AtomicInteger();
+        private volatile boolean failSync;
+
+        @Override
+        public FSDataOutputStream create(Path path, FsPermission permission, boolean overwrite, int bufferSize,
+                                         short replication, long blockSize, Progressable progress) throws IOException {
+            FSDataOutputStream out = super.create(path, permission, overwrite, bufferSize, replication, blockSize, progress);
+            open.incrementAndGet();
+            return new FSDataOutputStream(new SyncCountingStream(out), null);
+        }
+
+        private class SyncCountingStream extends OutputStream implements Syncable {
+
+            private final FSDataOutputStream out;
+            private boolean closed;
+
+            private SyncCountingStream(FSDataOutputStream out) {
+                this.out = out;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void hflush() throws IOException {
+                if (failSync) {
+                    throw new IOException("hflush failed");
+                }
+                syncs.incrementAndGet();
+                out.hflush();
+            }
+
+            @Override
+            public void hsync() throws IOException {
+                hflush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = Boolean.TRUE;
+                    open.decrementAndGet();
+                    out.close();
+                }
+            }
+
+        }
+
+    }
+
+}